@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import hmi.xml.XMLTokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding for SkeletonInterpolator clips, as a fast alternative for the XML encoding.
+ * The format consists of a header, followed by a time array and a packed float block:
+ * <ul>
+ * <li>magic number (int) and format version (int)</li>
+ * <li>configType and rotationEncoding (Strings)</li>
+ * <li>number of parts (int), followed by the partIds (Strings)</li>
+ * <li>configSize and number of frames (ints)</li>
+ * <li>zero padding, such that the time array starts at a multiple of 8 bytes</li>
+ * <li>the frame times (doubles)</li>
+ * <li>the frame configurations (floats), one frame after another</li>
+ * </ul>
+ * Strings are encoded as an int byte count, followed by the UTF-8 bytes. All numbers are big-endian, like DataOutput.
+ * Rotations in the float block are always quaternions: the rotationEncoding of the original clip is
+ * preserved, but rotations have been converted already, as in a decoded SkeletonInterpolator.
+ * Files can be memory-mapped: the ConfigList of the resulting SkeletonInterpolator is backed by a FloatBuffer
+ * view on the mapped float block, so the configurations are not parsed nor copied at load time.
+ */
+public final class BinaryClip
+{
+    public static final int MAGIC = 0x484D4943; // "HMIC"
+    public static final int VERSION = 1;
+    public static final String FILE_EXTENSION = ".bin";
+
+    /* static methods only */
+    private BinaryClip()
+    {
+    }
+
+    /**
+     * Writes the binary encoding of a SkeletonInterpolator to out.
+     */
+    public static void write(SkeletonInterpolator ski, OutputStream out) throws IOException
+    {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        String[] partIds = ski.getPartIds();
+        int configSize = ski.getConfigSize();
+        int frames = ski.size();
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        writeString(dataOut, ski.getConfigType());
+        writeString(dataOut, ski.getRotationEncoding());
+        dataOut.writeInt(partIds.length);
+        for (String partId : partIds)
+        {
+            writeString(dataOut, partId);
+        }
+        dataOut.writeInt(configSize);
+        dataOut.writeInt(frames);
+        while (dataOut.size() % 8 != 0)
+        {
+            dataOut.writeByte(0);
+        }
+        for (int i = 0; i < frames; i++)
+        {
+            dataOut.writeDouble(ski.getTime(i));
+        }
+        for (int i = 0; i < frames; i++)
+        {
+            float[] config = ski.getConfig(i);
+            for (int j = 0; j < configSize; j++)
+            {
+                dataOut.writeFloat(config[j]);
+            }
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Writes the binary encoding of a SkeletonInterpolator to a file.
+     */
+    public static void write(SkeletonInterpolator ski, File file) throws IOException
+    {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file)))
+        {
+            write(ski, out);
+        }
+    }
+
+    /**
+     * Memory-maps a binary clip file, and returns a SkeletonInterpolator with a ConfigList backed by the mapped file data.
+     */
+    public static SkeletonInterpolator map(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel())
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped);
+        }
+    }
+
+    /**
+     * Decodes a binary clip from the specified buffer, starting at its current position. 
+     * The ConfigList of the resulting SkeletonInterpolator is backed by a view on the buffer.
+     * The position of the specified buffer is not modified.
+     */
+    public static SkeletonInterpolator read(ByteBuffer buffer) throws IOException
+    {
+        ByteBuffer buf = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        try
+        {
+            if (buf.getInt() != MAGIC)
+            {
+                throw new IOException("BinaryClip: not a binary clip");
+            }
+            int version = buf.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException("BinaryClip: unsupported version " + version);
+            }
+            String configType = readString(buf);
+            String rotationEncoding = readString(buf);
+            String[] partIds = new String[buf.getInt()];
+            for (int i = 0; i < partIds.length; i++)
+            {
+                partIds[i] = readString(buf);
+            }
+            int configSize = buf.getInt();
+            int frames = buf.getInt();
+            buf.position((buf.position() + 7) & ~7);
+            double[] times = new double[frames];
+            buf.asDoubleBuffer().get(times);
+            buf.position(buf.position() + frames * 8);
+            buf.limit(buf.position() + frames * configSize * 4);
+            FloatBuffer configs = buf.slice().order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+            SkeletonInterpolator ski = new SkeletonInterpolator(partIds, new ConfigList(times, configs, configSize), configType);
+            ski.setRotationEncoding(rotationEncoding);
+            return ski;
+        }
+        catch (RuntimeException e) // BufferUnderflowException, IllegalArgumentException for truncated or corrupt data
+        {
+            throw new IOException("BinaryClip: corrupt binary clip", e);
+        }
+    }
+
+    /**
+     * Converts an XML encoded SkeletonInterpolator file to a binary clip file.
+     */
+    public static void convert(File xmlFile, File binFile) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(xmlFile), StandardCharsets.UTF_8)))
+        {
+            SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(reader));
+            write(ski, binFile);
+        }
+    }
+
+    private static void writeString(DataOutputStream dataOut, String str) throws IOException
+    {
+        if (str == null)
+        {
+            dataOut.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        dataOut.writeInt(bytes.length);
+        dataOut.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf)
+    {
+        int len = buf.getInt();
+        if (len < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Converts XML encoded SkeletonInterpolator files to binary clip files.
+     * Arguments: &lt;xml file&gt; [&lt;binary file&gt;], or several xml files, 
+     * in which case the binary files get the same base name, with extension .bin
+     */
+    public static void main(String[] arg) throws IOException
+    {
+        if (arg.length == 0)
+        {
+            System.out.println("provide conversion arguments:  <SkeletonInterpolator xml file> [<output file>] ");
+            return;
+        }
+        if (arg.length == 2 && arg[1].endsWith(FILE_EXTENSION))
+        {
+            convert(new File(arg[0]), new File(arg[1]));
+            return;
+        }
+        for (String xmlFile : arg)
+        {
+            int extPos = xmlFile.lastIndexOf(".xml");
+            String baseFile = (extPos < 0) ? xmlFile : xmlFile.substring(0, extPos);
+            convert(new File(xmlFile), new File(baseFile + FILE_EXTENSION));
+        }
+    }
+}
@@ -0,0 +1,590 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import hmi.math.Quat4f;
+import hmi.math.Vec3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A BlendTree combines a number of SkeletonInterpolator clips into a single pose, by means of weighted blending,
+ * overriding layers with per joint masks, and additive layers. The tree is built from Nodes that are created
+ * by the tree itself: clip nodes as leaves, and blend, override, and additive nodes combining their children.
+ * <br>
+ * The tree itself contains no evaluation state: weights, clip start times and pose buffers are
+ * maintained by a BlendTreeEvaluator, so one tree can be shared by many characters, each with their
+ * own BlendTreeEvaluator. The tree should be complete before it is evaluated, and not be modified afterwards.
+ * <br>
+ * A pose consists of a rotation and a translation for each of the joints of the tree, together with
+ * rotation and translation weights in [0, 1] that specify to what extent a node determines the joint.
+ * A clip node for instance has weight 1 for the joints that it animates, and weight 0 for other joints.
+ * Joint masks are maps from joint sids to weights (like the motiongraph WeightMap); joints that are not in
+ * the mask have weight 0.
+ */
+public class BlendTree
+{
+    private final String[] jointIds;
+    private final Map<String, Integer> jointIndices = new HashMap<String, Integer>();
+    private final List<String> weightNames = new ArrayList<String>();
+    private final List<Float> weightDefaults = new ArrayList<Float>();
+    private int nodeCount = 0;
+    private int clipCount = 0;
+    private Node root;
+
+    private static final float[] IDENTITY = Quat4f.getIdentity();
+
+    /**
+     * Creates a BlendTree for the joints with the specified sids
+     */
+    public BlendTree(String[] jointIds)
+    {
+        this.jointIds = jointIds.clone();
+        for (int i = 0; i < jointIds.length; i++)
+        {
+            jointIndices.put(jointIds[i], i);
+        }
+    }
+
+    /**
+     * Creates a BlendTree for all joints of the skeleton with the specified root that have a sid.
+     */
+    public BlendTree(VJoint skeletonRoot)
+    {
+        this(collectSids(skeletonRoot));
+    }
+
+    private static String[] collectSids(VJoint skeletonRoot)
+    {
+        List<String> sids = new ArrayList<String>();
+        for (VJoint vj : skeletonRoot.getParts())
+        {
+            if (vj.getSid() != null) sids.add(vj.getSid());
+        }
+        return sids.toArray(new String[sids.size()]);
+    }
+
+    /**
+     * Returns the sids of the joints of the tree; the order of these determines the layout of the pose buffers.
+     */
+    public String[] getJointIds()
+    {
+        return jointIds.clone();
+    }
+
+    public int getJointCount()
+    {
+        return jointIds.length;
+    }
+
+    /**
+     * Returns the index of the joint with the specified sid, or -1 if the tree does not contain it.
+     */
+    public int getJointIndex(String sid)
+    {
+        Integer index = jointIndices.get(sid);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the index of the weight parameter with the specified name, or -1 if there is no such weight.
+     */
+    public int getWeightIndex(String name)
+    {
+        return weightNames.indexOf(name);
+    }
+
+    public int getWeightCount()
+    {
+        return weightNames.size();
+    }
+
+    float getWeightDefault(int index)
+    {
+        return weightDefaults.get(index);
+    }
+
+    int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    int getClipCount()
+    {
+        return clipCount;
+    }
+
+    /*
+     * Returns the clip index of clip node node, or -1 if node is not a clip node of this tree
+     */
+    int getClipIndex(Node node)
+    {
+        if (node instanceof ClipNode && node.tree == this) return ((ClipNode) node).clipIndex;
+        return -1;
+    }
+
+    /**
+     * Defines a weight parameter, with the specified default value. Weights are referred to by name by the blend, override and additive
+     * nodes. Nodes that use an undefined weight name define it, with default value 1.
+     */
+    public int addWeight(String name, float defaultValue)
+    {
+        int index = weightNames.indexOf(name);
+        if (index >= 0)
+        {
+            weightDefaults.set(index, defaultValue);
+            return index;
+        }
+        weightNames.add(name);
+        weightDefaults.add(defaultValue);
+        return weightNames.size() - 1;
+    }
+
+    private int weightIndex(String name)
+    {
+        int index = weightNames.indexOf(name);
+        return (index >= 0) ? index : addWeight(name, 1f);
+    }
+
+    private float[] createMask(Map<String, Float> mask)
+    {
+        float[] m = new float[jointIds.length];
+        for (int i = 0; i < jointIds.length; i++)
+        {
+            if (mask == null)
+            {
+                m[i] = 1f;
+            }
+            else
+            {
+                Float w = mask.get(jointIds[i]);
+                m[i] = (w == null) ? 0f : w;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Sets the node that determines the pose of the tree.
+     */
+    public void setRoot(Node root)
+    {
+        this.root = root;
+    }
+
+    public Node getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Creates a leaf node, that interpolates the specified clip. The clip is evaluated at the time of the evaluator,
+     * minus the clip start time that is set in the evaluator. When loop is true, the clip is repeated.
+     */
+    public Node createClip(SkeletonInterpolator clip, boolean loop)
+    {
+        return new ClipNode(this, clip, loop);
+    }
+
+    /**
+     * Creates a node that computes the weighted average of the poses of its children. Per joint, the weight of a child is
+     * the value of its weight parameter times the joint weight in the pose of that child.
+     */
+    public Node createBlend(Node[] children, String[] weightNames)
+    {
+        return createBlend(children, weightNames, null);
+    }
+
+    /**
+     * Creates a node that computes the weighted average of the poses of its children. Per joint, the weight of a child is
+     * the value of its weight parameter times the joint weight in the pose of that child, times the value for that joint in the
+     * mask for that child. masks, or individual masks, may be null, denoting a mask with weight 1 for all joints.
+     */
+    public Node createBlend(Node[] children, String[] weightNames, List<Map<String, Float>> masks)
+    {
+        if (children.length != weightNames.length || (masks != null && masks.size() != children.length))
+        {
+            throw new IllegalArgumentException("BlendTree: blend node requires a weight (and mask) for each child");
+        }
+        int[] weights = new int[children.length];
+        float[][] childMasks = new float[children.length][];
+        for (int i = 0; i < children.length; i++)
+        {
+            weights[i] = weightIndex(weightNames[i]);
+            childMasks[i] = createMask(masks == null ? null : masks.get(i));
+        }
+        return new BlendNode(this, children.clone(), weights, childMasks);
+    }
+
+    /**
+     * Creates a node that blends the overlay pose over the base pose, for the joints in the mask (or all joints, if mask is null).
+     * The overlay is blended in with the value of the specified weight.
+     */
+    public Node createOverride(Node base, Node overlay, String weightName, Map<String, Float> mask)
+    {
+        return new LayerNode(this, base, overlay, weightIndex(weightName), createMask(mask), false);
+    }
+
+    /**
+     * Creates a node that adds the rotations and translations of the additive pose to the base pose, for the joints in the mask
+     * (or all joints, if mask is null), conform AdditiveT1RBlend: qOut = qBase * qAdd. The additive pose is scaled by the
+     * value of the specified weight.
+     */
+    public Node createAdditive(Node base, Node additive, String weightName, Map<String, Float> mask)
+    {
+        return new LayerNode(this, base, additive, weightIndex(weightName), createMask(mask), true);
+    }
+
+    /**
+     * A node of a BlendTree
+     */
+    public abstract static class Node
+    {
+        final int slot; // index of the pose buffers of this node in a BlendTreeEvaluator
+        final BlendTree tree;
+
+        Node(BlendTree tree)
+        {
+            this.tree = tree;
+            this.slot = tree.nodeCount++;
+        }
+
+        /*
+         * Evaluates the node for time t, writing the result in the pose buffers of the evaluator for this node.
+         */
+        abstract void evaluate(BlendTreeEvaluator ev, double t);
+    }
+
+    private static final class ClipNode extends Node
+    {
+        private final SkeletonInterpolator clip;
+        private final boolean loop;
+        private final int clipIndex; // index of the clip state in a BlendTreeEvaluator
+        private final int[] rotationIndices; // rotation index within the clip config, per tree joint, or -1
+        private final int[] translationIndices;
+
+        ClipNode(BlendTree tree, SkeletonInterpolator clip, boolean loop)
+        {
+            super(tree);
+            this.clip = clip;
+            this.loop = loop;
+            this.clipIndex = tree.clipCount++;
+            int n = tree.jointIds.length;
+            rotationIndices = new int[n];
+            translationIndices = new int[n];
+            for (int j = 0; j < n; j++)
+            {
+                rotationIndices[j] = -1;
+                translationIndices[j] = -1;
+            }
+            String[] partIds = clip.getPartIds();
+            for (int p = 0; p < partIds.length; p++)
+            {
+                int j = tree.getJointIndex(partIds[p]);
+                if (j >= 0)
+                {
+                    rotationIndices[j] = clip.getRotationIndex(p);
+                    translationIndices[j] = clip.getTranslationIndex(p);
+                }
+            }
+        }
+
+        @Override
+        void evaluate(BlendTreeEvaluator ev, double t)
+        {
+            float[] rot = ev.rotations[slot];
+            float[] rotW = ev.rotationWeights[slot];
+            float[] trans = ev.translations[slot];
+            float[] transW = ev.translationWeights[slot];
+            ConfigList configs = clip.getConfigList();
+            int size = configs.size();
+            if (size == 0)
+            {
+                for (int j = 0; j < rotW.length; j++)
+                {
+                    Quat4f.setIdentity(rot, j * 4);
+                }
+                Arrays.fill(rotW, 0f);
+                Arrays.fill(trans, 0f);
+                Arrays.fill(transW, 0f);
+                return;
+            }
+            double localTime = t - ev.clipStarts[clipIndex];
+            double start = configs.getStartTime();
+            double duration = configs.getEndTime() - start;
+            if (loop && duration > 0)
+            {
+                localTime = start + ((localTime - start) % duration + duration) % duration;
+            }
+            int lower = findLowerIndex(configs, localTime, ev.clipCursors[clipIndex]);
+            ev.clipCursors[clipIndex] = lower;
+            int upper = Math.min(lower + 1, size - 1);
+            double interval = configs.getTime(upper) - configs.getTime(lower);
+            float alpha = (interval <= 0 || localTime <= configs.getTime(lower)) ? 0f : (float) Math.min(1.0,
+                    (localTime - configs.getTime(lower)) / interval);
+            ev.ensureConfigScratch(configs.getConfigSize());
+            float[] lc = configs.getConfigData(lower, ev.lowerConfigScratch);
+            int lo = configs.getConfigOffset(lower);
+            float[] uc = configs.getConfigData(upper, ev.upperConfigScratch);
+            int uo = configs.getConfigOffset(upper);
+            for (int j = 0; j < rotationIndices.length; j++)
+            {
+                int ri = rotationIndices[j];
+                if (ri >= 0)
+                {
+                    Quat4f.interpolate(rot, j * 4, lc, lo + ri, uc, uo + ri, alpha);
+                    rotW[j] = 1f;
+                }
+                else
+                {
+                    Quat4f.setIdentity(rot, j * 4);
+                    rotW[j] = 0f;
+                }
+                int ti = translationIndices[j];
+                if (ti >= 0)
+                {
+                    Vec3f.interpolate(trans, j * 3, lc, lo + ti, uc, uo + ti, alpha);
+                    transW[j] = 1f;
+                }
+                else
+                {
+                    Vec3f.setZero(trans, j * 3);
+                    transW[j] = 0f;
+                }
+            }
+        }
+
+        /*
+         * Finds the index i such that time[i] <= t < time[i+1], or 0 when t is before the start, or size-1 when t is at or after the end.
+         * The index from the previous frame, hint, is tried first.
+         */
+        private static int findLowerIndex(ConfigList configs, double t, int hint)
+        {
+            int size = configs.size();
+            if (t <= configs.getTime(0)) return 0;
+            if (t >= configs.getTime(size - 1)) return size - 1;
+            if (hint >= 0 && hint < size - 1 && configs.getTime(hint) <= t)
+            {
+                if (t < configs.getTime(hint + 1)) return hint;
+                if (hint + 2 < size && t < configs.getTime(hint + 2)) return hint + 1;
+            }
+            int low = 0;
+            int high = size - 1; // invariant: time[low] <= t < time[high]
+            while (high - low > 1)
+            {
+                int probe = (high + low) >>> 1;
+                if (t < configs.getTime(probe))
+                {
+                    high = probe;
+                }
+                else
+                {
+                    low = probe;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class BlendNode extends Node
+    {
+        private final Node[] children;
+        private final int[] weights;
+        private final float[][] masks;
+
+        BlendNode(BlendTree tree, Node[] children, int[] weights, float[][] masks)
+        {
+            super(tree);
+            this.children = children;
+            this.weights = weights;
+            this.masks = masks;
+        }
+
+        @Override
+        void evaluate(BlendTreeEvaluator ev, double t)
+        {
+            for (Node child : children)
+            {
+                child.evaluate(ev, t);
+            }
+            float[] rot = ev.rotations[slot];
+            float[] rotW = ev.rotationWeights[slot];
+            float[] trans = ev.translations[slot];
+            float[] transW = ev.translationWeights[slot];
+            int n = rotW.length;
+            for (int j = 0; j < n; j++)
+            {
+                int ri = j * 4;
+                int ti = j * 3;
+                float rotTotal = 0f;
+                float transTotal = 0f;
+                rot[ri] = rot[ri + 1] = rot[ri + 2] = rot[ri + 3] = 0f;
+                trans[ti] = trans[ti + 1] = trans[ti + 2] = 0f;
+                for (int c = 0; c < children.length; c++)
+                {
+                    int cslot = children[c].slot;
+                    float w = ev.weights[weights[c]] * masks[c][j];
+                    if (w <= 0f) continue;
+                    float wr = w * ev.rotationWeights[cslot][j];
+                    if (wr > 0f)
+                    {
+                        float[] q = ev.rotations[cslot];
+                        float dot = rot[ri] * q[ri] + rot[ri + 1] * q[ri + 1] + rot[ri + 2] * q[ri + 2] + rot[ri + 3] * q[ri + 3];
+                        float sw = (dot < 0f) ? -wr : wr; // keep quaternions in the same hemisphere
+                        rot[ri] += sw * q[ri];
+                        rot[ri + 1] += sw * q[ri + 1];
+                        rot[ri + 2] += sw * q[ri + 2];
+                        rot[ri + 3] += sw * q[ri + 3];
+                        rotTotal += wr;
+                    }
+                    float wt = w * ev.translationWeights[cslot][j];
+                    if (wt > 0f)
+                    {
+                        float[] tr = ev.translations[cslot];
+                        trans[ti] += wt * tr[ti];
+                        trans[ti + 1] += wt * tr[ti + 1];
+                        trans[ti + 2] += wt * tr[ti + 2];
+                        transTotal += wt;
+                    }
+                }
+                if (rotTotal > 0f)
+                {
+                    Quat4f.normalize(rot, ri);
+                }
+                else
+                {
+                    Quat4f.setIdentity(rot, ri);
+                }
+                rotW[j] = Math.min(1f, rotTotal);
+                if (transTotal > 0f)
+                {
+                    float inv = 1f / transTotal;
+                    trans[ti] *= inv;
+                    trans[ti + 1] *= inv;
+                    trans[ti + 2] *= inv;
+                }
+                transW[j] = Math.min(1f, transTotal);
+            }
+        }
+    }
+
+    /*
+     * Override or additive layer on top of a base pose
+     */
+    private static final class LayerNode extends Node
+    {
+        private final Node base;
+        private final Node layer;
+        private final int weight;
+        private final float[] mask;
+        private final boolean additive;
+
+        LayerNode(BlendTree tree, Node base, Node layer, int weight, float[] mask, boolean additive)
+        {
+            super(tree);
+            this.base = base;
+            this.layer = layer;
+            this.weight = weight;
+            this.mask = mask;
+            this.additive = additive;
+        }
+
+        @Override
+        void evaluate(BlendTreeEvaluator ev, double t)
+        {
+            base.evaluate(ev, t);
+            layer.evaluate(ev, t);
+            float[] rot = ev.rotations[slot];
+            float[] rotW = ev.rotationWeights[slot];
+            float[] trans = ev.translations[slot];
+            float[] transW = ev.translationWeights[slot];
+            float[] baseRot = ev.rotations[base.slot];
+            float[] baseRotW = ev.rotationWeights[base.slot];
+            float[] baseTrans = ev.translations[base.slot];
+            float[] baseTransW = ev.translationWeights[base.slot];
+            float[] layerRot = ev.rotations[layer.slot];
+            float[] layerRotW = ev.rotationWeights[layer.slot];
+            float[] layerTrans = ev.translations[layer.slot];
+            float[] layerTransW = ev.translationWeights[layer.slot];
+            System.arraycopy(baseRot, 0, rot, 0, rot.length);
+            System.arraycopy(baseRotW, 0, rotW, 0, rotW.length);
+            System.arraycopy(baseTrans, 0, trans, 0, trans.length);
+            System.arraycopy(baseTransW, 0, transW, 0, transW.length);
+            float layerWeight = ev.weights[weight];
+            if (layerWeight <= 0f) return;
+            for (int j = 0; j < rotW.length; j++)
+            {
+                float w = layerWeight * mask[j];
+                if (w <= 0f) continue;
+                w = Math.min(1f, w);
+                int ri = j * 4;
+                int ti = j * 3;
+                float wr = w * layerRotW[j];
+                if (wr > 0f)
+                {
+                    if (additive)
+                    {
+                        Quat4f.interpolate(rot, ri, IDENTITY, 0, layerRot, ri, wr);
+                        Quat4f.mul(rot, ri, baseRot, ri, rot, ri);
+                        if (baseRotW[j] <= 0f) rotW[j] = wr;
+                    }
+                    else if (baseRotW[j] <= 0f)
+                    {
+                        Quat4f.set(rot, ri, layerRot, ri);
+                        rotW[j] = wr;
+                    }
+                    else
+                    {
+                        Quat4f.interpolate(rot, ri, baseRot, ri, layerRot, ri, wr);
+                        rotW[j] = baseRotW[j] + (1f - baseRotW[j]) * wr;
+                    }
+                }
+                float wt = w * layerTransW[j];
+                if (wt > 0f)
+                {
+                    if (additive)
+                    {
+                        trans[ti] += wt * layerTrans[ti];
+                        trans[ti + 1] += wt * layerTrans[ti + 1];
+                        trans[ti + 2] += wt * layerTrans[ti + 2];
+                        if (baseTransW[j] <= 0f) transW[j] = wt;
+                    }
+                    else if (baseTransW[j] <= 0f)
+                    {
+                        Vec3f.set(trans, ti, layerTrans, ti);
+                        transW[j] = wt;
+                    }
+                    else
+                    {
+                        Vec3f.interpolate(trans, ti, baseTrans, ti, layerTrans, ti, wt);
+                        transW[j] = baseTransW[j] + (1f - baseTransW[j]) * wt;
+                    }
+                }
+            }
+        }
+    }
+}
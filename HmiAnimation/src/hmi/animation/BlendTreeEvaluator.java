@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+/**
+ * Evaluates a (shared) BlendTree for a single character. The evaluator holds the per character state:
+ * weight values, clip start times, and the pose buffers for all nodes of the tree, allocated on construction.
+ * Evaluation does not allocate memory, and does not create intermediate SkeletonInterpolators.
+ * The result is available in getRotations() and getTranslations(), and is copied to the target
+ * VJoint skeleton and/or FlatSkeleton, if set. Joints with weight 0 in the resulting pose are left unchanged.
+ * <br>
+ * Evaluators for the same tree can run in different threads, provided that the clips are not modified.
+ * Configs of buffer backed ConfigLists (see BinaryClip) are read from the buffer into per evaluator scratch arrays.
+ */
+public class BlendTreeEvaluator
+{
+    private final BlendTree tree;
+
+    // package accessible state, used by the nodes of the tree:
+    final float[] weights;
+    final double[] clipStarts;
+    final int[] clipCursors;
+    final float[][] rotations; // rotations[slot] contains the pose rotations for node slot, 4 floats per joint
+    final float[][] rotationWeights; // rotationWeights[slot] contains the rotation weights for node slot, per joint
+    final float[][] translations; // 3 floats per joint
+    final float[][] translationWeights;
+    float[] lowerConfigScratch = new float[0]; // copies of buffer backed configs, see ensureConfigScratch
+    float[] upperConfigScratch = new float[0];
+
+    private VJoint[] targetJoints;
+    private FlatSkeleton flatTarget;
+    private int[] flatIndices;
+
+    public BlendTreeEvaluator(BlendTree tree)
+    {
+        this.tree = tree;
+        int nodes = tree.getNodeCount();
+        int joints = tree.getJointCount();
+        weights = new float[tree.getWeightCount()];
+        for (int i = 0; i < weights.length; i++)
+        {
+            weights[i] = tree.getWeightDefault(i);
+        }
+        clipStarts = new double[tree.getClipCount()];
+        clipCursors = new int[tree.getClipCount()];
+        rotations = new float[nodes][joints * 4];
+        rotationWeights = new float[nodes][joints];
+        translations = new float[nodes][joints * 3];
+        translationWeights = new float[nodes][joints];
+    }
+
+    /* Makes sure that the config scratch arrays can hold configs of the specified size */
+    void ensureConfigScratch(int configSize)
+    {
+        if (lowerConfigScratch.length < configSize)
+        {
+            lowerConfigScratch = new float[configSize];
+            upperConfigScratch = new float[configSize];
+        }
+    }
+
+    public BlendTree getBlendTree()
+    {
+        return tree;
+    }
+
+    /**
+     * Sets the value of weight parameter index, see BlendTree.getWeightIndex
+     */
+    public void setWeight(int index, float value)
+    {
+        weights[index] = value;
+    }
+
+    /**
+     * Sets the value of the weight parameter with the specified name
+     */
+    public void setWeight(String name, float value)
+    {
+        int index = tree.getWeightIndex(name);
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("BlendTreeEvaluator: unknown weight " + name);
+        }
+        weights[index] = value;
+    }
+
+    public float getWeight(int index)
+    {
+        return weights[index];
+    }
+
+    /**
+     * Sets the start time for the clip of clip node clipNode: the clip is evaluated at time t - startTime.
+     */
+    public void setClipStart(BlendTree.Node clipNode, double startTime)
+    {
+        int clipIndex = tree.getClipIndex(clipNode);
+        if (clipIndex < 0)
+        {
+            throw new IllegalArgumentException("BlendTreeEvaluator: not a clip node of this BlendTree");
+        }
+        clipStarts[clipIndex] = startTime;
+    }
+
+    /**
+     * Sets the skeleton that receives the evaluated pose, resolving the joints by means of a VJointPartsMap.
+     */
+    public void setTarget(VJoint target)
+    {
+        if (target == null)
+        {
+            targetJoints = null;
+            return;
+        }
+        VJointPartsMap partsMap = new VJointPartsMap(target);
+        String[] jointIds = tree.getJointIds();
+        targetJoints = new VJoint[jointIds.length];
+        for (int j = 0; j < jointIds.length; j++)
+        {
+            targetJoints[j] = partsMap.get(jointIds[j]);
+        }
+    }
+
+    /**
+     * Sets the FlatSkeleton that receives the evaluated pose.
+     */
+    public void setFlatTarget(FlatSkeleton flatTarget)
+    {
+        this.flatTarget = flatTarget;
+        if (flatTarget == null)
+        {
+            flatIndices = null;
+            return;
+        }
+        String[] jointIds = tree.getJointIds();
+        flatIndices = new int[jointIds.length];
+        for (int j = 0; j < jointIds.length; j++)
+        {
+            flatIndices[j] = flatTarget.getJointIndex(jointIds[j]);
+        }
+    }
+
+    /**
+     * Returns the rotations of the evaluated pose, 4 floats per joint, in the joint order of the BlendTree.
+     */
+    public float[] getRotations()
+    {
+        return rotations[tree.getRoot().slot];
+    }
+
+    /**
+     * Returns the per joint rotation weights of the evaluated pose
+     */
+    public float[] getRotationWeights()
+    {
+        return rotationWeights[tree.getRoot().slot];
+    }
+
+    /**
+     * Returns the translations of the evaluated pose, 3 floats per joint, in the joint order of the BlendTree.
+     */
+    public float[] getTranslations()
+    {
+        return translations[tree.getRoot().slot];
+    }
+
+    /**
+     * Returns the per joint translation weights of the evaluated pose
+     */
+    public float[] getTranslationWeights()
+    {
+        return translationWeights[tree.getRoot().slot];
+    }
+
+    /**
+     * Evaluates the tree for time t, and copies the result to the targets.
+     */
+    public void evaluate(double t)
+    {
+        BlendTree.Node root = tree.getRoot();
+        if (root == null) return;
+        root.evaluate(this, t);
+        float[] rot = rotations[root.slot];
+        float[] rotW = rotationWeights[root.slot];
+        float[] trans = translations[root.slot];
+        float[] transW = translationWeights[root.slot];
+        if (targetJoints != null)
+        {
+            for (int j = 0; j < targetJoints.length; j++)
+            {
+                VJoint vj = targetJoints[j];
+                if (vj == null) continue;
+                if (rotW[j] > 0f) vj.setRotation(rot, j * 4);
+                if (transW[j] > 0f) vj.setTranslation(trans, j * 3);
+            }
+        }
+        if (flatTarget != null)
+        {
+            float[] flatRotations = flatTarget.getRotations();
+            float[] flatTranslations = flatTarget.getTranslations();
+            for (int j = 0; j < flatIndices.length; j++)
+            {
+                int index = flatIndices[j];
+                if (index < 0) continue;
+                if (rotW[j] > 0f) System.arraycopy(rot, j * 4, flatRotations, index * FlatSkeleton.ROTATION_STRIDE, 4);
+                if (transW[j] > 0f) System.arraycopy(trans, j * 3, flatTranslations, index * FlatSkeleton.TRANSLATION_STRIDE, 3);
+            }
+        }
+    }
+}
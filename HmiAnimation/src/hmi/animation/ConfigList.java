@@ -33,11 +33,24 @@ import hmi.xml.XMLStructureAdapter;
 import hmi.xml.XMLTokenizer;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.StringTokenizer;
 
 /**
  * A ConfigList defines a sequence of configurations of type float[] plus
  * corresponding timestamps of type double.
+ * A ConfigList can also be backed by a FloatBuffer, for instance a view on a
+ * memory-mapped binary clip file (see BinaryClip). In that case the configurations are not 
+ * copied when the ConfigList is created, and are read directly from the buffer, without caching,
+ * so concurrent readers need no synchronization. getConfig(i) then returns a copy; getConfig(i, dst, dstIndex)
+ * or getConfigData(i, scratch) read configs without allocation. Methods that modify the list
+ * convert it into a normal, array based, ConfigList first.
+ * Finally, a ConfigList can be contiguous: all configurations are then stored in a single
+ * float array, config i starting at getConfigOffset(i) within getConfigData(i). For such lists,
+ * getConfig(i) returns a copy; getConfig(i, dst, dstIndex) or the getConfigData/getConfigOffset
+ * view should be used to access configurations without allocation.
+ * Sub lists and copies of contiguous lists share their data, until one of them is modified.
  */
 public class ConfigList extends XMLStructureAdapter implements Cloneable
 {
@@ -53,22 +66,150 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
                                                    // be > 0
     private int configSize; // length of a configList element, in number of
                             // floats.
+    private FloatBuffer configBuffer; // non-null for buffer backed lists: config i starts at i*configSize.
+                                      // configList is null for buffer backed lists.
+    private float[] configData; // non-null for contiguous lists: config i starts at dataOffset + i*configSize.
+                                // configList is null for contiguous lists.
+    private int dataOffset;
+    private boolean sharedData; // configData might be shared with other ConfigLists, and must be copied before modification
 
     /**
      * Constructor
      * @param configSize number of configs in the list
      */
     public ConfigList(int configSize)
+    {
+        this(configSize, false);
+    }
+
+    /**
+     * Creates an empty ConfigList, storing configurations of length configSize. When contiguous is true,
+     * all configs are stored in a single float array, rather than in separate arrays.
+     */
+    public ConfigList(int configSize, boolean contiguous)
     {
         arraySize = DEFAULTARRAYSIZE;
         time = new double[arraySize];
-        configList = new float[arraySize][];
         listSize = 0;
         this.configSize = configSize;
+        if (contiguous)
+        {
+            configData = new float[arraySize * configSize];
+        }
+        else
+        {
+            configList = new float[arraySize][];
+        }
+    }
+
+    /**
+     * Creates a ConfigList that is backed by the specified FloatBuffer, containing
+     * times.length configurations of length configSize, stored consecutively,
+     * starting at index 0 of the buffer. The buffer data is not copied. The times must be ordered.
+     */
+    public ConfigList(double[] times, FloatBuffer configBuffer, int configSize)
+    {
+        if (configBuffer.capacity() < times.length * configSize)
+        {
+            throw new IllegalArgumentException("ConfigList: FloatBuffer too small for " + times.length + " configs of size " + configSize);
+        }
+        this.time = times;
+        this.listSize = times.length;
+        this.arraySize = times.length;
+        this.configSize = configSize;
+        this.configBuffer = configBuffer;
+    }
+
+    /**
+     * Creates a contiguous ConfigList for times.length configurations of length configSize, stored
+     * consecutively in configData, starting at index 0. The times and configData arrays are not copied,
+     * but used as storage for the new ConfigList. The times must be ordered.
+     */
+    public ConfigList(double[] times, float[] configData, int configSize)
+    {
+        if (configData.length < times.length * configSize)
+        {
+            throw new IllegalArgumentException("ConfigList: configData too small for " + times.length + " configs of size " + configSize);
+        }
+        this.time = times;
+        this.listSize = times.length;
+        this.arraySize = times.length;
+        this.configSize = configSize;
+        this.configData = configData;
+    }
+
+    /**
+     * Returns true when this ConfigList is backed by a FloatBuffer.
+     */
+    public boolean isBufferBacked()
+    {
+        return configBuffer != null;
+    }
+
+    /**
+     * Returns the FloatBuffer that backs this ConfigList, or null for array based ConfigLists.
+     */
+    public FloatBuffer getConfigBuffer()
+    {
+        return configBuffer;
+    }
+
+    /**
+     * Returns true when all configs of this ConfigList are stored in a single float array.
+     */
+    public boolean isContiguous()
+    {
+        return configData != null;
+    }
+
+    /*
+     * Converts a buffer backed list into an array based list, by copying all configs.
+     */
+    private void detachBuffer()
+    {
+        if (configBuffer == null) return;
+        float[][] configs = new float[arraySize][];
+        for (int i = 0; i < listSize; i++)
+        {
+            configs[i] = getConfig(i);
+        }
+        configList = configs;
+        configBuffer = null;
+    }
+
+    /*
+     * Makes sure that a contiguous list has its own copy of configData
+     */
+    private void unshareData()
+    {
+        if (!sharedData) return;
+        float[] newData = new float[Math.max(arraySize, listSize) * configSize];
+        System.arraycopy(configData, dataOffset, newData, 0, listSize * configSize);
+        configData = newData;
+        dataOffset = 0;
+        sharedData = false;
+    }
+
+    /*
+     * To be called before modifying the list
+     */
+    private void prepareModification()
+    {
+        detachBuffer();
+        unshareData();
     }
 
     public ConfigList copy()
     {
+        if (configBuffer != null)
+        {
+            // buffer backed data is not modified by this ConfigList, so can be shared
+            return new ConfigList(time.clone(), configBuffer.duplicate(), configSize);
+        }
+        if (configData != null)
+        {
+            return sharedSubList(0, listSize);
+        }
         ConfigList c = new ConfigList(configSize);
         c.time = time.clone();
         c.listSize = listSize;
@@ -85,6 +226,20 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         return c;
     }
 
+    /**
+     * Returns a contiguous copy of this ConfigList
+     */
+    public ConfigList contiguousCopy()
+    {
+        if (configData != null) return copy();
+        float[] data = new float[listSize * configSize];
+        for (int i = 0; i < listSize; i++)
+        {
+            getConfig(i, data, i * configSize);
+        }
+        return new ConfigList(Arrays.copyOf(time, listSize), data, configSize);
+    }
+
     public ConfigList(XMLTokenizer tokenizer) throws IOException
     {
         this(0);
@@ -117,44 +272,159 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
 
     public void mirrorRotation(int index)
     {
+        prepareModification();
+        float q[] = Quat4f.getQuat4f();
         for (int i = 0; i < listSize; i++)
         {
-            float[] config = configList[i];
-            float q[] = Quat4f.getQuat4f();
-            Quat4f.set(q, 0, config, index);
-            Quat4f.set(config, index, q[Quat4f.s], q[Quat4f.x], -q[Quat4f.y], -q[Quat4f.z]);
+            float[] config = getConfigData(i);
+            int offset = getConfigOffset(i) + index;
+            Quat4f.set(q, 0, config, offset);
+            Quat4f.set(config, offset, q[Quat4f.s], q[Quat4f.x], -q[Quat4f.y], -q[Quat4f.z]);
         }
     }
 
     public void mirrorTranslation(int index)
     {
+        prepareModification();
+        float v[] = Vec3f.getVec3f();
         for (int i = 0; i < listSize; i++)
         {
-            float[] config = configList[i];
-            float v[] = Vec3f.getVec3f();
-            Vec3f.set(v, 0, config, index);
-            Vec3f.set(config, index, -v[Vec3f.X], v[Vec3f.Y], v[Vec3f.Z]);
+            float[] config = getConfigData(i);
+            int offset = getConfigOffset(i) + index;
+            Vec3f.set(v, 0, config, offset);
+            Vec3f.set(config, offset, -v[Vec3f.X], v[Vec3f.Y], v[Vec3f.Z]);
         }
     }
 
+    /**
+     * Returns a ConfigList with the configs start, .. end-1 of this list. For array based lists, the new
+     * list refers to the same config arrays; contiguous lists share their config data
+     * (until one of the lists is modified), and buffer backed lists share the buffer.
+     */
     public ConfigList subConfigList(int start, int end)
     {
+        if (configData != null)
+        {
+            return sharedSubList(start, end);
+        }
+        if (configBuffer != null)
+        {
+            FloatBuffer fb = configBuffer.duplicate();
+            fb.position(start * configSize);
+            return new ConfigList(Arrays.copyOfRange(time, start, end), fb.slice(), configSize);
+        }
         ConfigList cl = new ConfigList(configSize);
-        for (int i = start; i < end; i++)
+        int n = end - start;
+        cl.ensureArraySize(n);
+        System.arraycopy(time, start, cl.time, 0, n);
+        for (int i = 0; i < n; i++)
         {
-            cl.addConfig(getTime(i), getConfig(i));
+            cl.configList[i] = getConfig(start + i);
         }
+        cl.listSize = n;
+        return cl;
+    }
+
+    /*
+     * Creates a contiguous list, sharing configData with this list, for configs start .. end-1
+     */
+    private ConfigList sharedSubList(int start, int end)
+    {
+        ConfigList cl = new ConfigList(Arrays.copyOfRange(time, start, end), configData, configSize);
+        cl.dataOffset = dataOffset + start * configSize;
+        cl.sharedData = true;
+        sharedData = true;
         return cl;
     }
 
     /**
-     * Returns the Config at index i
+     * Returns the Config at index i.
+     * <p>
+     * <b>For contiguous and buffer backed lists, this returns a newly allocated copy of the config:
+     * modifications of the returned array do not change the list</b>, and every call allocates.
+     * Only for array based lists the config array itself is returned. Use setConfig to modify a config,
+     * and getConfig(i, dst, dstIndex), or getConfigData(i) (or getConfigData(i, scratch)) with getConfigOffset(i),
+     * to read configs in loops or per frame.
      */
     public float[] getConfig(int i)
     {
+        if (configData != null || configBuffer != null)
+        {
+            float[] conf = new float[configSize];
+            getConfig(i, conf, 0);
+            return conf;
+        }
         return configList[i];
     }
 
+    /**
+     * Copies the Config at index i into dst, starting at dstIndex. For buffer backed
+     * lists, the data is read directly from the buffer, using absolute gets, so this is
+     * safe for concurrent readers.
+     */
+    public void getConfig(int i, float[] dst, int dstIndex)
+    {
+        if (configData != null)
+        {
+            System.arraycopy(configData, dataOffset + i * configSize, dst, dstIndex, configSize);
+        }
+        else if (configBuffer != null)
+        {
+            int index = i * configSize;
+            for (int k = 0; k < configSize; k++)
+            {
+                dst[dstIndex + k] = configBuffer.get(index + k);
+            }
+        }
+        else
+        {
+            System.arraycopy(configList[i], 0, dst, dstIndex, configSize);
+        }
+    }
+
+    /**
+     * Returns the float array that holds config i, starting at getConfigOffset(i). This provides a view
+     * on the config, without copying. For contiguous lists the array holds (many) other
+     * configs as well, and might be shared with other ConfigLists; it should not be modified.
+     * Use setConfig to modify a config. For buffer backed lists, a copy is returned; use getConfigData(i, scratch)
+     * to avoid allocation.
+     */
+    public float[] getConfigData(int i)
+    {
+        return (configData != null) ? configData : getConfig(i);
+    }
+
+    /**
+     * As getConfigData(i), but for buffer backed lists config i is read from the buffer into scratch
+     * (of length at least getConfigSize()), which is returned. So this never allocates.
+     */
+    public float[] getConfigData(int i, float[] scratch)
+    {
+        if (configBuffer != null)
+        {
+            getConfig(i, scratch, 0);
+            return scratch;
+        }
+        return getConfigData(i);
+    }
+
+    /**
+     * Returns the offset of config i within getConfigData(i)
+     */
+    public int getConfigOffset(int i)
+    {
+        return (configData != null) ? dataOffset + i * configSize : 0;
+    }
+
+    /**
+     * Overwrites the Config at index i with data from src, starting at srcIndex. The time of the config is not changed.
+     */
+    public void setConfig(int i, float[] src, int srcIndex)
+    {
+        prepareModification();
+        System.arraycopy(src, srcIndex, getConfigData(i), getConfigOffset(i), configSize);
+    }
+
     public double getStartTime()
     {
         return (listSize == 0) ? 0.0 : time[0];
@@ -168,36 +438,78 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
     /**
      * Adds a VPartsConfig at the appropriate place, depending on the time value
      * The value is inserted at the position determined by findLowerIndex(time)
-     * + 1.
+     * + 1. For contiguous lists, the conf data is copied.
      */
     public void addConfig(double t, float[] conf)
     {
+        prepareModification();
         ensureArraySize(listSize + 1);
         int pos = findInsertIndex(t);
-        for (int p = listSize; p > pos; p--)
+        System.arraycopy(time, pos, time, pos + 1, listSize - pos);
+        time[pos] = t;
+        if (configData != null)
         {
-            configList[p] = configList[p - 1];
-            time[p] = time[p - 1];
+            int offset = dataOffset + pos * configSize;
+            System.arraycopy(configData, offset, configData, offset + configSize, (listSize - pos) * configSize);
+            System.arraycopy(conf, 0, configData, offset, configSize);
+        }
+        else
+        {
+            System.arraycopy(configList, pos, configList, pos + 1, listSize - pos);
+            configList[pos] = conf;
         }
-        time[pos] = t;
-        configList[pos] = conf;
         listSize++;
     }
 
     public void addConfigs(ConfigList cl)
     {
-        for (int i = 0; i < cl.getConfigSize(); i++)
-        {
-            addConfig(cl.getTime(i), cl.getConfig(i));
-        }
+        addConfigs(0.0, cl);
     }
 
+    /**
+     * Adds all configs from cl, with their time shifted by timeOffset. When all (shifted) times
+     * are at or after the end time of this list, the configs are appended in bulk.
+     */
     public void addConfigs(double timeOffset, ConfigList cl)
     {
-        for (int i = 0; i < cl.getConfigSize(); i++)
+        int n = cl.size();
+        if (n == 0) return;
+        if (listSize > 0 && timeOffset + cl.getTime(0) < time[listSize - 1])
+        {
+            for (int i = 0; i < n; i++)
+            {
+                addConfig(timeOffset + cl.getTime(i), cl.getConfig(i));
+            }
+            return;
+        }
+        prepareModification();
+        ensureArraySize(listSize + n);
+        for (int i = 0; i < n; i++)
         {
-            addConfig(timeOffset + cl.getTime(i), cl.getConfig(i));
+            time[listSize + i] = timeOffset + cl.getTime(i);
         }
+        if (configData != null)
+        {
+            if (cl.configData != null)
+            {
+                System.arraycopy(cl.configData, cl.dataOffset, configData, dataOffset + listSize * configSize, n * configSize);
+            }
+            else
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    cl.getConfig(i, configData, dataOffset + (listSize + i) * configSize);
+                }
+            }
+        }
+        else
+        {
+            for (int i = 0; i < n; i++)
+            {
+                configList[listSize + i] = cl.getConfig(i);
+            }
+        }
+        listSize += n;
     }
 
     /*
@@ -207,14 +519,29 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
     private void ensureArraySize(int requestedSize)
     {
         if (requestedSize <= arraySize) return;
-        while (arraySize < requestedSize)
-            arraySize *= 2;
-        float[][] newConfigList = new float[arraySize][];
+        int newSize = Math.max(arraySize, DEFAULTARRAYSIZE);
+        while (newSize < requestedSize)
+            newSize *= 2;
+        arraySize = newSize;
         double[] newTime = new double[arraySize];
-        System.arraycopy(configList, 0, newConfigList, 0, listSize);
         System.arraycopy(time, 0, newTime, 0, listSize);
-        configList = newConfigList;
         time = newTime;
+        if (configData != null)
+        {
+            if (dataOffset + arraySize * configSize > configData.length)
+            {
+                float[] newData = new float[arraySize * configSize];
+                System.arraycopy(configData, dataOffset, newData, 0, listSize * configSize);
+                configData = newData;
+                dataOffset = 0;
+            }
+        }
+        else
+        {
+            float[][] newConfigList = new float[arraySize][];
+            System.arraycopy(configList, 0, newConfigList, 0, listSize);
+            configList = newConfigList;
+        }
     }
 
     /*
@@ -287,7 +614,7 @@ public class ConfigList extends XMLStructureAdapter implements Cloneable
         {
             appendNewLine(buf, fmt);
             buf.append(Double.toString(time[i]));
-            float[] c = configList[i];
+            float[] c = getConfig(i);
             for (int j = 0; j < c.length; j++)
             {
                 buf.append(' ');
@@ -0,0 +1,479 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import hmi.math.Mat3f;
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
+import hmi.math.Vec3f;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled, array based version of one or more VJoint trees.
+ * The joints are stored in topological (depth first, preorder) order, so that the parent
+ * of a joint always has a smaller index than the joint itself. Rotations, translations,
+ * scaling vectors and global matrices are kept in contiguous float arrays, with strides
+ * 4, 3, 3 and 16 respectively. The global matrices are calculated in a single linear pass
+ * over these arrays, rather than by a recursive walk over the VJoint objects.
+ *
+ * A FlatSkeleton keeps references to the VJoints it was compiled from, and can synchronize
+ * in both directions: readFromJoints copies the local transforms from the VJoints, writeToJoints
+ * copies the local transforms back, and writeGlobalMatrices copies the calculated global matrices
+ * into the VJoint global matrices, so code that relies on VJoint.getGlobalMatrix, like renderers and
+ * Skeleton joint matrices, keeps working. The structure of the VJoint trees is fixed at construction time;
+ * when joints are added or removed, a new FlatSkeleton must be compiled.
+ * Like VJoint, this class is not thread-safe.
+ */
+@edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "EI_EXPOSE_REP", justification = "Representations are exposed for efficiency reasons")
+public class FlatSkeleton
+{
+    public static final int ROTATION_STRIDE = 4;
+    public static final int TRANSLATION_STRIDE = 3;
+    public static final int SCALE_STRIDE = 3;
+    public static final int MATRIX_STRIDE = Mat4f.MAT4F_SIZE;
+
+    private final VJoint[] joints;
+    private final int[] parentIndices; // -1 for roots
+
+    private final float[] rotations;
+    private final float[] translations;
+    private final float[] scales;
+    private final float[][] skewMatrices; // null elements, except for joints with SKEW scaling
+    private final float[][] rawLocalMatrices; // null elements, except for joints with a non-affine local matrix
+    private final boolean[] projective; // true for joints with a non-affine local matrix, and their descendants
+    private final float[] globalMatrices;
+
+    // temp vars, used for joints with skew scaling or non-affine matrices
+    private final float[] tmpT = Vec3f.getVec3f();
+    private final float[] tmpQ = Quat4f.getQuat4f();
+    private final float[] tmpS = Vec3f.getVec3f();
+    private final float[] tmpLocal = Mat4f.getMat4f();
+    private final float[] tmpParent = Mat4f.getMat4f();
+    private final float[] tmpGlobal = Mat4f.getMat4f();
+
+    /**
+     * Compiles a FlatSkeleton for the VJoint tree with the specified root.
+     */
+    public FlatSkeleton(VJoint root)
+    {
+        this(Collections.singletonList(root));
+    }
+
+    /**
+     * Compiles a FlatSkeleton for all VJoint trees of the specified Skeleton.
+     */
+    public FlatSkeleton(Skeleton skeleton)
+    {
+        this(skeleton.getRoots());
+    }
+
+    /**
+     * Compiles a FlatSkeleton for the VJoint trees with the specified roots.
+     * The transforms are initialized from the current VJoint transforms.
+     */
+    public FlatSkeleton(List<VJoint> roots)
+    {
+        ArrayList<VJoint> jointList = new ArrayList<>();
+        ArrayList<Integer> parentList = new ArrayList<>();
+        for (VJoint root : roots)
+        {
+            if (root != null)
+            {
+                addJoints(root, -1, jointList, parentList);
+            }
+        }
+        int n = jointList.size();
+        joints = jointList.toArray(new VJoint[n]);
+        parentIndices = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            parentIndices[i] = parentList.get(i);
+        }
+        rotations = new float[n * ROTATION_STRIDE];
+        translations = new float[n * TRANSLATION_STRIDE];
+        scales = new float[n * SCALE_STRIDE];
+        skewMatrices = new float[n][];
+        rawLocalMatrices = new float[n][];
+        projective = new boolean[n];
+        globalMatrices = new float[n * MATRIX_STRIDE];
+        for (int i = 0; i < n; i++)
+        {
+            Mat4f.setIdentity(globalMatrices, i * MATRIX_STRIDE);
+        }
+        readFromJoints();
+    }
+
+    /* Preorder traversal, so parents precede their children */
+    private static void addJoints(VJoint vj, int parentIndex, List<VJoint> jointList, List<Integer> parentList)
+    {
+        int index = jointList.size();
+        jointList.add(vj);
+        parentList.add(parentIndex);
+        for (VJoint child : vj.getChildren())
+        {
+            addJoints(child, index, jointList, parentList);
+        }
+    }
+
+    /**
+     * The number of joints.
+     */
+    public int size()
+    {
+        return joints.length;
+    }
+
+    /**
+     * Returns the VJoint with the specified index.
+     */
+    public VJoint getVJoint(int index)
+    {
+        return joints[index];
+    }
+
+    /**
+     * Returns the index of the joint identified by sid, id, or name, or -1 when not present.
+     */
+    public int getJointIndex(String partIdent)
+    {
+        if (partIdent == null)
+        {
+            return -1;
+        }
+        for (int i = 0; i < joints.length; i++)
+        {
+            VJoint vj = joints[i];
+            if (partIdent.equals(vj.getSid()) || partIdent.equals(vj.getId()) || partIdent.equals(vj.getName()))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the VJoint, or -1 when not part of this FlatSkeleton.
+     */
+    public int getJointIndex(VJoint vj)
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            if (joints[i] == vj)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the parent of the specified joint, or -1 for root joints.
+     */
+    public int getParentIndex(int index)
+    {
+        return parentIndices[index];
+    }
+
+    /**
+     * Returns (a reference to) the parent index array.
+     */
+    public int[] getParentIndices()
+    {
+        return parentIndices;
+    }
+
+    /**
+     * Returns (a reference to) the rotation array, containing a Quat4f for every joint.
+     * Writing into this array is allowed.
+     */
+    public float[] getRotations()
+    {
+        return rotations;
+    }
+
+    /**
+     * Returns (a reference to) the translation array, containing a Vec3f for every joint.
+     * Writing into this array is allowed.
+     */
+    public float[] getTranslations()
+    {
+        return translations;
+    }
+
+    /**
+     * Returns (a reference to) the scale array, containing a Vec3f for every joint.
+     * Writing into this array is allowed.
+     */
+    public float[] getScales()
+    {
+        return scales;
+    }
+
+    /**
+     * Returns (a reference to) the global matrix array, containing a Mat4f for every joint.
+     * Direct modification should not occur.
+     */
+    public float[] getGlobalMatrices()
+    {
+        return globalMatrices;
+    }
+
+    /**
+     * Sets the rotation of the specified joint.
+     */
+    public void setRotation(int index, float[] q)
+    {
+        Quat4f.set(rotations, index * ROTATION_STRIDE, q, 0);
+    }
+
+    /**
+     * Sets the rotation of the specified joint from four floats in q, starting at qIndex.
+     */
+    public void setRotation(int index, float[] q, int qIndex)
+    {
+        Quat4f.set(rotations, index * ROTATION_STRIDE, q, qIndex);
+    }
+
+    /**
+     * Copies the rotation of the specified joint into q.
+     */
+    public void getRotation(int index, float[] q)
+    {
+        Quat4f.set(q, 0, rotations, index * ROTATION_STRIDE);
+    }
+
+    /**
+     * Sets the translation of the specified joint.
+     */
+    public void setTranslation(int index, float[] t)
+    {
+        Vec3f.set(translations, index * TRANSLATION_STRIDE, t, 0);
+    }
+
+    /**
+     * Sets the translation of the specified joint from three floats in t, starting at tIndex.
+     */
+    public void setTranslation(int index, float[] t, int tIndex)
+    {
+        Vec3f.set(translations, index * TRANSLATION_STRIDE, t, tIndex);
+    }
+
+    /**
+     * Copies the translation of the specified joint into t.
+     */
+    public void getTranslation(int index, float[] t)
+    {
+        Vec3f.set(t, 0, translations, index * TRANSLATION_STRIDE);
+    }
+
+    /**
+     * Copies the global matrix of the specified joint into m.
+     */
+    public void getGlobalMatrix(int index, float[] m)
+    {
+        Mat4f.set(m, 0, globalMatrices, index * MATRIX_STRIDE);
+    }
+
+    /**
+     * Copies the local rotation, translation and scaling of all VJoints into the flat arrays.
+     * VJoints with SKEW scaling but without a (valid) skew matrix, like VJoints with a non-affine local matrix,
+     * are not decomposed by VJoint; for those joints the VJoint local matrix is copied and used as is.
+     */
+    public final void readFromJoints()
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            VJoint vj = joints[i];
+            vj.getRotation(rotations, i * ROTATION_STRIDE);
+            vj.getTranslation(translations, i * TRANSLATION_STRIDE);
+            vj.getScale(scales, i * SCALE_STRIDE);
+            skewMatrices[i] = null;
+            rawLocalMatrices[i] = null;
+            if (vj.getScalingType() == Mat3f.ScalingType.SKEW)
+            {
+                float[] local = vj.getLocalMatrix();
+                float[] skew = vj.getSkewMatrix();
+                if (skew == null || !Mat4f.isAffine(local))
+                {
+                    rawLocalMatrices[i] = Mat4f.getMat4f();
+                    Mat4f.set(rawLocalMatrices[i], local);
+                }
+                else
+                {
+                    skewMatrices[i] = Mat3f.getMat3f();
+                    Mat3f.set(skewMatrices[i], skew);
+                }
+            }
+            int pi = parentIndices[i];
+            projective[i] = (rawLocalMatrices[i] != null && !Mat4f.isAffine(rawLocalMatrices[i])) || (pi >= 0 && projective[pi]);
+        }
+    }
+
+    /**
+     * Copies the rotation, translation and scaling from the flat arrays into the VJoints.
+     * Skew scaling of VJoints is left unmodified, and VJoints whose local matrix is used as is
+     * (see readFromJoints) are not modified at all.
+     */
+    public void writeToJoints()
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            if (rawLocalMatrices[i] != null)
+            {
+                continue;
+            }
+            VJoint vj = joints[i];
+            vj.setRotation(rotations, i * ROTATION_STRIDE);
+            vj.setTranslation(translations, i * TRANSLATION_STRIDE);
+            if (skewMatrices[i] == null)
+            {
+                vj.setScale(scales, i * SCALE_STRIDE);
+            }
+        }
+    }
+
+    /**
+     * Copies the calculated global matrices into the VJoint global matrices.
+     */
+    public void writeGlobalMatrices()
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            Mat4f.set(joints[i].getGlobalMatrix(), 0, globalMatrices, i * MATRIX_STRIDE);
+        }
+    }
+
+    /**
+     * Equivalent to calculateMatrices(Mat4f.ID)
+     */
+    public void calculateMatrices()
+    {
+        calculateMatrices(Mat4f.ID);
+    }
+
+    /**
+     * Calculates the global matrices for all joints, in a single pass over the joint arrays.
+     * The calculation per joint is: global = parent.global * local, where local = T o R o S.
+     * For root joints, the parent global matrix is specified by means of rootParentMatrix.
+     * Like VJoint.getLocalMatrix, rotation quaternions are normalized in the process.
+     * Joints with a skew matrix or a copied local matrix, and joints below a non-affine local matrix,
+     * are calculated with full 4x4 matrix multiplication.
+     */
+    public void calculateMatrices(float[] rootParentMatrix)
+    {
+        for (int i = 0; i < joints.length; i++)
+        {
+            int pi = parentIndices[i];
+            float[] pm;
+            int po;
+            if (pi < 0)
+            {
+                pm = rootParentMatrix;
+                po = 0;
+            }
+            else
+            {
+                pm = globalMatrices;
+                po = pi * MATRIX_STRIDE;
+            }
+            int go = i * MATRIX_STRIDE;
+            if (skewMatrices[i] != null || rawLocalMatrices[i] != null || projective[i])
+            {
+                calculateFullMatrix(i, pm, po, go);
+                continue;
+            }
+            int qo = i * ROTATION_STRIDE;
+            Quat4f.normalize(rotations, qo);
+            float qs = rotations[qo];
+            float qx = rotations[qo + 1];
+            float qy = rotations[qo + 2];
+            float qz = rotations[qo + 3];
+            int so = i * SCALE_STRIDE;
+            float sx = scales[so];
+            float sy = scales[so + 1];
+            float sz = scales[so + 2];
+            int to = i * TRANSLATION_STRIDE;
+
+            // local rotation/scale part, l = R o S
+            float l00 = sx * (1.0f - 2.0f * qy * qy - 2.0f * qz * qz);
+            float l01 = sy * (2.0f * qx * qy - 2.0f * qs * qz);
+            float l02 = sz * (2.0f * qs * qy + 2.0f * qx * qz);
+            float l10 = sx * (2.0f * qx * qy + 2.0f * qs * qz);
+            float l11 = sy * (1.0f - 2.0f * qx * qx - 2.0f * qz * qz);
+            float l12 = sz * (-2.0f * qs * qx + 2.0f * qy * qz);
+            float l20 = sx * (-2.0f * qs * qy + 2.0f * qx * qz);
+            float l21 = sy * (2.0f * qs * qx + 2.0f * qy * qz);
+            float l22 = sz * (1.0f - 2.0f * qx * qx - 2.0f * qy * qy);
+            float l03 = translations[to];
+            float l13 = translations[to + 1];
+            float l23 = translations[to + 2];
+
+            // global = parent * local, for affine matrices
+            for (int r = 0; r < 3; r++)
+            {
+                int pr = po + 4 * r;
+                float p0 = pm[pr];
+                float p1 = pm[pr + 1];
+                float p2 = pm[pr + 2];
+                int gr = go + 4 * r;
+                globalMatrices[gr] = p0 * l00 + p1 * l10 + p2 * l20;
+                globalMatrices[gr + 1] = p0 * l01 + p1 * l11 + p2 * l21;
+                globalMatrices[gr + 2] = p0 * l02 + p1 * l12 + p2 * l22;
+                globalMatrices[gr + 3] = p0 * l03 + p1 * l13 + p2 * l23 + pm[pr + 3];
+            }
+            globalMatrices[go + Mat4f.M30] = 0f;
+            globalMatrices[go + Mat4f.M31] = 0f;
+            globalMatrices[go + Mat4f.M32] = 0f;
+            globalMatrices[go + Mat4f.M33] = 1f;
+        }
+    }
+
+    /* slow path for joints with a skewing matrix, a copied local matrix, or a non-affine parent matrix */
+    private void calculateFullMatrix(int i, float[] pm, int po, int go)
+    {
+        float[] local = rawLocalMatrices[i];
+        if (local == null)
+        {
+            Quat4f.normalize(rotations, i * ROTATION_STRIDE);
+            Quat4f.set(tmpQ, 0, rotations, i * ROTATION_STRIDE);
+            Vec3f.set(tmpT, 0, translations, i * TRANSLATION_STRIDE);
+            if (skewMatrices[i] != null)
+            {
+                Mat4f.setFromTRSMat3f(tmpLocal, tmpT, tmpQ, skewMatrices[i]);
+            }
+            else
+            {
+                Vec3f.set(tmpS, 0, scales, i * SCALE_STRIDE);
+                Mat4f.setFromTRSVec3f(tmpLocal, tmpT, tmpQ, tmpS);
+            }
+            local = tmpLocal;
+        }
+        Mat4f.set(tmpParent, 0, pm, po);
+        Mat4f.mul(tmpGlobal, tmpParent, local);
+        Mat4f.set(globalMatrices, go, tmpGlobal, 0);
+    }
+
+}
@@ -48,6 +48,9 @@ import java.util.List;
  * the (synchronized) updateTransformMatrices method, which accesses the joint matrices
  * in a safe way. Afterwards, the render Thread can freely use the transform matrices,
  * without locking. 
+ * The exchange between 2) and 3) is double buffered: putData writes the joint matrices into a
+ * back buffer, and then swaps it with the front buffer that is read by getData.
+ * See also SkeletonUpdateScheduler, for updating many Skeletons in parallel.
  */
 public class Skeleton// implements ExchangeBuffer
 {
@@ -64,12 +67,18 @@ public class Skeleton// implements ExchangeBuffer
  
    
    private float[][] jointMatrices; // transform matrices for all joints, linked to the global matrices within the VJoints.
-   private float[][] jointMatricesBuffer; // matrix buffers, used to copy jointMatrices data.
+   private float[][] jointMatricesBuffer; // matrix buffers, used to copy jointMatrices data. ("back" buffer, written by the animator Thread)
+   private float[][] publishedMatricesBuffer; // published matrix buffers ("front" buffer, read by the render Thread)
+   private final Object publishLock = new Object(); // guards the buffer swap and the reading of the published buffers
    
    private float[][] inverseBindMatrices;
    private float[][] transformMatrices;
    private boolean invalidMatrices = true; // signals "invalid" matrix arrays, due to modifications for roots and/or jointSids
    
+   private boolean useFlatSkeleton = false;
+   private FlatSkeleton flatSkeleton;  // compiled lazily, discarded when the roots are modified
+   private int lastUpdateCount = 0;
+   
    /* prevent Skeletons without id */
    private Skeleton() {}
    
@@ -207,6 +216,7 @@ public class Skeleton// implements ExchangeBuffer
         if (! jointSidsSpecified) { jointSids.clear(); }
         for (VJoint rt : roots) { addRoot(rt); }
         invalidMatrices = true;
+        flatSkeleton = null;
     }
    
    /**
@@ -225,6 +235,7 @@ public class Skeleton// implements ExchangeBuffer
            addJoints(root); 
        }
        invalidMatrices = true;
+       flatSkeleton = null;
    }
    
 //   /* Inorder traversal, adding joint sids to jointSids List */
@@ -276,44 +287,130 @@ public class Skeleton// implements ExchangeBuffer
        updateOnWriteMatrices = status;
    }
    
+   /**
+    * Returns true when writeBuffer calls updateJointMatrices itself.
+    */
+   public boolean isUpdateOnWrite() {
+       return updateOnWriteMatrices;
+   }
+   
     /**
      * Implements the writeBuffer op from the ExchangeBuffer interface. 
-     * This implementation is not Thread-safe.
+     * Equivalent to writeBuffer() followed by publish(). 
+     * putData should be called by a single animator Thread at a time, 
+     * but can run concurrently with getData calls from a render Thread.
      */
 //    @Override
     public void putData() {
         //System.out.println("Skeleton.writeBuffer jointMatrices.length= " + jointMatrices.length);
+        writeBuffer();
+        publish();
+    }
+    
+    /**
+     * Copies the joint matrices into the (unpublished) back buffer, after calling updateJointMatrices
+     * when setUpdateOnWrite(true) has been called. The data becomes visible for getData only after publish.
+     * Not Thread-safe with respect to other writeBuffer or publish calls.
+     */
+    public void writeBuffer() {
         if (updateOnWriteMatrices) {
             updateJointMatrices();           
         }
+        allocateJointMatrices();
         for (int i=0; i<jointMatrices.length; i++) {
-            
-            Mat4f.set(jointMatricesBuffer[i], jointMatrices[i]);
+            if (jointMatrices[i] != null) {
+                Mat4f.set(jointMatricesBuffer[i], jointMatrices[i]);
+            }
         } 
     }
-   
+    
+    /**
+     * Publishes the data written by the last writeBuffer call, by swapping the back and front buffers.
+     * The swap is atomic with respect to getData, so a render Thread always reads a complete set of matrices.
+     */
+    public void publish() {
+        synchronized (publishLock) {
+            float[][] published = publishedMatricesBuffer;
+            publishedMatricesBuffer = jointMatricesBuffer;
+            jointMatricesBuffer = published;
+        }
+    }
    
   
     
      /**
      * Implements the readBuffer op from the ExchangeBuffer interface. 
-     * This implementation is not Thread-safe.
+     * Copies the last published joint matrices into the transform matrices.
+     * Can be called concurrently with putData/writeBuffer/publish,
+     * but not concurrently with other getData calls.
      */
 //    @Override
     public void getData() {
         //System.out.println("Skeleton.readBuffer");
-       updateTransformMatrices();
+       synchronized (publishLock) {
+           updateTransformMatrices();
+       }
     }
    
     /**
-     * Calls calculateMatrices for all VJoint roots.
+     * When set, updateJointMatrices uses a FlatSkeleton, compiled from the VJoint trees, 
+     * rather than the recursive VJoint.calculateMatrices.
+     */
+    public void setUseFlatSkeleton(boolean status) {
+        useFlatSkeleton = status;
+    }
+    
+    /**
+     * Returns the FlatSkeleton for the current VJoint trees, compiling it when necessary.
+     * The FlatSkeleton is recompiled after roots have been added or replaced.
+     * Structural modifications of the VJoint trees themselves are not detected; 
+     * call invalidateFlatSkeleton in that case.
+     */
+    public FlatSkeleton getFlatSkeleton() {
+        if (flatSkeleton == null) {
+            flatSkeleton = new FlatSkeleton(roots);
+        }
+        return flatSkeleton;
+    }
+    
+    /**
+     * Discards the current FlatSkeleton, for instance after VJoints have been added to or removed from the trees.
+     */
+    public void invalidateFlatSkeleton() {
+        flatSkeleton = null;
+    }
+   
+    /**
+     * Calls calculateMatrices for all VJoint roots, or, when setUseFlatSkeleton(true) has been called,
+     * reads the VJoint transforms into the FlatSkeleton, calculates the global matrices in
+     * a single linear pass, and copies them back into the VJoint global matrices.
      * This method is not Thread-safe.
      */
     public void updateJointMatrices() {
         //System.out.println("updateJointMatrices");
+        if (useFlatSkeleton) {
+            FlatSkeleton flat = getFlatSkeleton();
+            flat.readFromJoints();
+            flat.calculateMatrices();
+            flat.writeGlobalMatrices();
+            lastUpdateCount = flat.size();
+            return;
+        }
+        int count = 0;
         for (VJoint rt : roots) {
             rt.calculateMatrices();
+            count += rt.getLastUpdateCount();
         }
+        lastUpdateCount = count;
+    }
+    
+    /**
+     * Returns the number of joint matrices that were actually recalculated 
+     * by the last updateJointMatrices call. Joints for which neither the local transform
+     * nor that of an ancestor changed since the previous call are skipped.
+     */
+    public int getLastUpdateCount() {
+        return lastUpdateCount;
     }
    
     /*
@@ -329,14 +426,14 @@ public class Skeleton// implements ExchangeBuffer
                 //System.out.println("Skeleton.updateTransformMatrices -- copy");
                 for (int i=0; i<transformMatrices.length; i++) {
                     if (transformMatrices[i] != null) {
-                        Mat4f.set(transformMatrices[i], jointMatricesBuffer[i]);
+                        Mat4f.set(transformMatrices[i], publishedMatricesBuffer[i]);
                     }
                 }             
             } else { // multiply with inverse bind matrices:
                 //System.out.println("Skeleton.updateTransformMatrices -- multiply inverBindMatrices");
                 for (int i=0; i<transformMatrices.length; i++) {
                     if (transformMatrices[i] != null) {
-                        Mat4f.mul(transformMatrices[i], jointMatricesBuffer[i], inverseBindMatrices[i]);
+                        Mat4f.mul(transformMatrices[i], publishedMatricesBuffer[i], inverseBindMatrices[i]);
                     }
                 }            
             }
@@ -359,7 +456,7 @@ public class Skeleton// implements ExchangeBuffer
             System.out.println("Null jointMatricesBuffer");
         } else {
             for (int i=0; i<jointMatrices.length; i++) {
-                System.out.println("jointMatricesBuffer[" + i + "] " + Mat4f.toString(jointMatricesBuffer[i]));
+                System.out.println("jointMatricesBuffer[" + i + "] " + Mat4f.toString(publishedMatricesBuffer[i]));
             }
         }
     }
@@ -385,27 +482,34 @@ public class Skeleton// implements ExchangeBuffer
     }
    
     
+    /* (Re)allocates the matrix arrays when invalid. Runs under publishLock, since getData reads the same arrays. */
     private void allocateJointMatrices() {
-        if ( invalidMatrices) {    
-            //System.out.println("allocateJointMatrices");
-           jointMatrices = new float[joints.size()][];
-           jointMatricesBuffer = new float[joints.size()][];
-           //inverseBindMatrices = new float[jointSids.size()][];
-           transformMatrices = new float[joints.size()][];
-           // inverseBindMatrices are not allocated here.
-           int index = 0;
-           for (VJoint vj : joints) {
-               if (vj != null) {
-                   jointMatrices[index] = vj.getGlobalMatrix();
-                   jointMatricesBuffer[index] = Mat4f.getMat4f();
-                   transformMatrices[index] = Mat4f.getMat4f();
-               } else {
-                   System.out.println("Skeleton.getTransformMatrices: no VJoint found for sid=\"" + jointSids.get(index) + "\"");
+        synchronized (publishLock) {
+            if ( invalidMatrices) {    
+                //System.out.println("allocateJointMatrices");
+               jointMatrices = new float[joints.size()][];
+               float[][] backBuffer = new float[joints.size()][];
+               float[][] frontBuffer = new float[joints.size()][];
+               //inverseBindMatrices = new float[jointSids.size()][];
+               transformMatrices = new float[joints.size()][];
+               // inverseBindMatrices are not allocated here.
+               int index = 0;
+               for (VJoint vj : joints) {
+                   if (vj != null) {
+                       jointMatrices[index] = vj.getGlobalMatrix();
+                       backBuffer[index] = Mat4f.getMat4f();
+                       frontBuffer[index] = Mat4f.getMat4f();
+                       transformMatrices[index] = Mat4f.getMat4f();
+                   } else {
+                       System.out.println("Skeleton.getTransformMatrices: no VJoint found for sid=\"" + jointSids.get(index) + "\"");
+                   }
+                   index++;
                }
-               index++;
+               jointMatricesBuffer = backBuffer;
+               publishedMatricesBuffer = frontBuffer;
+               invalidMatrices = false;
            }
-           invalidMatrices = false;
-       }
+        }
     }
     
    /**
@@ -84,8 +84,20 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     private float[] lowerConfig, upperConfig;
 
+    private int lowerOffset, upperOffset; // offsets of the configs within lowerConfig and upperConfig
+
+    private float[] lowerScratch, upperScratch; // copies of the lower and upper config, for buffer backed ConfigLists
+
     private float[] buf = new float[4]; // temp copy buffer for Vec3f and Quat4f elements
 
+    private boolean nlerp = false; // use normalized linear interpolation rather than slerp for rotations
+
+    private FlatSkeleton flatTarget;
+
+    private int[] flatIndices; // flatIndices[i] is the FlatSkeleton joint index for partIds[i], or -1
+
+    private float[] flatConfig; // interpolated config buffer for the flat target
+
     /**
      * Creates a new, uninitialized, SkeletonInterpolator
      */
@@ -225,6 +237,36 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         this.rotationEncoding = rotationEncoding;
     }
 
+    /**
+     * Returns the rotation encoding, as specified by the XML encoding. 
+     * Decoded configs always contain quaternions, whatever the rotation encoding.
+     */
+    public String getRotationEncoding()
+    {
+        return rotationEncoding;
+    }
+
+    /**
+     * Returns the index of the translation of part partIndex within a config, or -1 if the config
+     * contains no translation for that part.
+     */
+    public int getTranslationIndex(int partIndex)
+    {
+        if (hasRootTranslation) return (partIndex == 0) ? 0 : -1;
+        if (!hasTranslation) return -1;
+        return partIndex * stride;
+    }
+
+    /**
+     * Returns the index of the rotation (quaternion) of part partIndex within a config, or -1 if the config
+     * contains no rotations.
+     */
+    public int getRotationIndex(int partIndex)
+    {
+        if (!hasRotation) return -1;
+        return (hasRootTranslation ? 3 : 0) + partIndex * stride + (hasTranslation ? 3 : 0);
+    }
+
     /**
      * Returns the (uniform) size of configs, in number of floats.
      */
@@ -250,7 +292,8 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     }
 
     /**
-     * Returns the Config at index i
+     * Returns the Config at index i. Like ConfigList.getConfig(i), this returns a copy for contiguous and
+     * buffer backed config lists, so modifications of the returned array are lost.
      */
     public float[] getConfig(int i)
     {
@@ -389,6 +432,11 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
             {
                 configType = configType.substring(2);
             }
+            calculateConfigSize();
+        }
+        if (flatTarget != null)
+        {
+            setFlatTarget(flatTarget);
         }
     }
 
@@ -409,45 +457,45 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
     public float[] getInterpolatedConfig(double t, float[] conf)
     {
         if (configs.size() == 0) return null;
-        if (conf == null) conf = new float[configs.getConfig(0).length];
+        if (conf == null) conf = new float[configs.getConfigSize()];
         float alpha = getInterpolationConfigs(t); // sets lowerConfig and upperConfig
-        interpolateConfigs(conf, alpha, lowerConfig, upperConfig);
+        interpolateConfigs(conf, alpha, lowerConfig, lowerOffset, upperConfig, upperOffset);
         return conf;
     }
 
-    private void interpolateConfigs(float[] conf, float alpha, float[] lowerConfig, float[] upperConfig)
+    private void interpolateConfigs(float[] conf, float alpha, float[] lowerConfig, int lower, float[] upperConfig, int upper)
     {
         int index = 0;
         if (hasRootTranslation && partIds.length > 0)
         {
-            Vec3f.interpolate(conf, 0, lowerConfig, 0, upperConfig, 0, alpha);
+            Vec3f.interpolate(conf, 0, lowerConfig, lower, upperConfig, upper, alpha);
             index += 3;
         }
         for (int i = 0; i < partIds.length; i++)
         {
             if (hasTranslation)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, index, lowerConfig, lower + index, upperConfig, upper + index, alpha);
                 index += 3;
             }
             if (hasRotation)
             {
-                Quat4f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Quat4f.interpolate(conf, index, lowerConfig, lower + index, upperConfig, upper + index, alpha);
                 index += 4;
             }
             if (hasScale)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, index, lowerConfig, lower + index, upperConfig, upper + index, alpha);
                 index += 3;
             }
             if (hasVelocity)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, index, lowerConfig, lower + index, upperConfig, upper + index, alpha);
                 index += 3;
             }
             if (hasAngularVelocity)
             {
-                Vec3f.interpolate(conf, index, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(conf, index, lowerConfig, lower + index, upperConfig, upper + index, alpha);
                 index += 3;
             }
         }
@@ -473,8 +521,8 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
      */
     public void setTargetParts(int c)
     {
-        float config[] = getConfig(c);
-        int index = 0;
+        float config[] = configs.getConfigData(c);
+        int index = configs.getConfigOffset(c);
         if (hasRootTranslation)
         {
             targetParts[0].setTranslation(config, index);
@@ -592,7 +640,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         int index = 0;
         if (hasRootTranslation)
         {
-            Vec3f.interpolate(buf, 0, lowerConfig, 0, upperConfig, 0, alpha);
+            Vec3f.interpolate(buf, 0, lowerConfig, lowerOffset, upperConfig, upperOffset, alpha);
             targetParts[0].setTranslation(buf);
             index += 3;
         }
@@ -603,25 +651,152 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
             if (hasTranslation)
             {
-                Vec3f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(buf, 0, lowerConfig, lowerOffset + index, upperConfig, upperOffset + index, alpha);
                 targetParts[i].setTranslation(buf);
                 index += 3;
             }
             if (hasRotation)
             {
-                Quat4f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
+                Quat4f.interpolate(buf, 0, lowerConfig, lowerOffset + index, upperConfig, upperOffset + index, alpha);
                 targetParts[i].setRotation(buf);
                 index += 4;
             }
             if (hasScale)
             {
-                Vec3f.interpolate(buf, 0, lowerConfig, index, upperConfig, index, alpha);
+                Vec3f.interpolate(buf, 0, lowerConfig, lowerOffset + index, upperConfig, upperOffset + index, alpha);
                 targetParts[i].setScale(buf);
                 index += 3;
             }
         }
     }
 
+    /**
+     * When nlerp is true, rotations are interpolated by interpolateConfig and interpolateFlatTarget using
+     * normalized linear interpolation, rather than slerp. This is cheaper, and for the small angles between
+     * consecutive frames of a clip the difference is negligible.
+     */
+    public void setNlerp(boolean nlerp)
+    {
+        this.nlerp = nlerp;
+    }
+
+    public boolean isNlerp()
+    {
+        return nlerp;
+    }
+
+    /**
+     * Interpolates the config for the specified time, and places the result in dst, starting at dstIndex.
+     * The whole config is interpolated linearly in one pass, after which rotations are either normalized (nlerp)
+     * or recalculated by means of slerp. This method does not allocate memory.
+     */
+    public void interpolateConfig(double time, float[] dst, int dstIndex)
+    {
+        if (configs.size() == 0) return;
+        float alpha = getInterpolationConfigs(time); // sets lowerConfig and upperConfig
+        float[] lc = lowerConfig;
+        float[] uc = upperConfig;
+        int lo = lowerOffset;
+        int uo = upperOffset;
+        for (int i = 0; i < configSize; i++)
+        {
+            dst[dstIndex + i] = lc[lo + i] + alpha * (uc[uo + i] - lc[lo + i]);
+        }
+        if (!hasRotation) return;
+        int index = (hasRootTranslation ? 3 : 0) + (hasTranslation ? 3 : 0);
+        for (int p = 0; p < partIds.length; p++)
+        {
+            if (nlerp)
+            {
+                float cosOmega = lc[lo + index] * uc[uo + index] + lc[lo + index + 1] * uc[uo + index + 1] + lc[lo + index + 2]
+                        * uc[uo + index + 2] + lc[lo + index + 3] * uc[uo + index + 3];
+                if (cosOmega < 0)
+                { // interpolate from -lowerConfig, like slerp does
+                    for (int k = 0; k < 4; k++)
+                    {
+                        dst[dstIndex + index + k] = -lc[lo + index + k] + alpha * (uc[uo + index + k] + lc[lo + index + k]);
+                    }
+                }
+                Quat4f.normalize(dst, dstIndex + index);
+            }
+            else
+            {
+                Quat4f.interpolate(dst, dstIndex + index, lc, lo + index, uc, uo + index, alpha);
+            }
+            index += stride;
+        }
+    }
+
+    /**
+     * Sets a FlatSkeleton as target for interpolateFlatTarget. Parts of this interpolator that do not occur
+     * in the FlatSkeleton are ignored.
+     */
+    public void setFlatTarget(FlatSkeleton flatTarget)
+    {
+        this.flatTarget = flatTarget;
+        if (flatTarget == null)
+        {
+            flatIndices = null;
+            flatConfig = null;
+            return;
+        }
+        flatIndices = new int[partIds.length];
+        for (int i = 0; i < partIds.length; i++)
+        {
+            flatIndices[i] = flatTarget.getJointIndex(partIds[i]);
+        }
+        flatConfig = new float[configSize];
+    }
+
+    public FlatSkeleton getFlatTarget()
+    {
+        return flatTarget;
+    }
+
+    /**
+     * Interpolates the config for the specified time, by means of interpolateConfig, and copies translations,
+     * rotations and scalings directly into the arrays of the flat target. This method does not allocate memory.
+     */
+    public void interpolateFlatTarget(double time)
+    {
+        if (flatTarget == null) return;
+        if (configs.size() == 0) return;
+        interpolateConfig(time, flatConfig, 0);
+        float[] translations = flatTarget.getTranslations();
+        float[] rotations = flatTarget.getRotations();
+        float[] scales = flatTarget.getScales();
+        int index = 0;
+        if (hasRootTranslation)
+        {
+            if (flatIndices.length > 0 && flatIndices[0] >= 0)
+            {
+                System.arraycopy(flatConfig, 0, translations, flatIndices[0] * FlatSkeleton.TRANSLATION_STRIDE, 3);
+            }
+            index += 3;
+        }
+        for (int i = 0; i < flatIndices.length; i++)
+        {
+            int j = flatIndices[i];
+            if (hasTranslation)
+            {
+                if (j >= 0) System.arraycopy(flatConfig, index, translations, j * FlatSkeleton.TRANSLATION_STRIDE, 3);
+                index += 3;
+            }
+            if (hasRotation)
+            {
+                if (j >= 0) System.arraycopy(flatConfig, index, rotations, j * FlatSkeleton.ROTATION_STRIDE, 4);
+                index += 4;
+            }
+            if (hasScale)
+            {
+                if (j >= 0) System.arraycopy(flatConfig, index, scales, j * FlatSkeleton.SCALE_STRIDE, 3);
+                index += 3;
+            }
+            if (hasVelocity) index += 3;
+            if (hasAngularVelocity) index += 3;
+        }
+    }
+
     /**
      * Finds the interval [lowerIndex, upperIndex] for a specified time t, such that
      * time[lowerIndex] <= t < time[upperIndex], where upperIndex == lowerIndex+1. This assumes that
@@ -713,8 +888,23 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
         lowerTime = configs.getTime(lowerIndex);
         upperTime = configs.getTime(upperIndex);
 
-        lowerConfig = configs.getConfig(lowerIndex);
-        upperConfig = configs.getConfig(upperIndex);
+        if (configs.isBufferBacked())
+        {
+            if (lowerScratch == null || lowerScratch.length != configs.getConfigSize())
+            {
+                lowerScratch = new float[configs.getConfigSize()];
+                upperScratch = new float[configs.getConfigSize()];
+            }
+            lowerConfig = configs.getConfigData(lowerIndex, lowerScratch);
+            upperConfig = configs.getConfigData(upperIndex, upperScratch);
+        }
+        else
+        {
+            lowerConfig = configs.getConfigData(lowerIndex);
+            upperConfig = configs.getConfigData(upperIndex);
+        }
+        lowerOffset = configs.getConfigOffset(lowerIndex);
+        upperOffset = configs.getConfigOffset(upperIndex);
 
         interval = upperTime - lowerTime;
         float alpha = (interval <= 0.0f) ? 0.0f : (float) ((t - lowerTime) / interval);
@@ -910,27 +1100,31 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     private void convertFromAxisAngles()
     {
+        float[] conf = new float[configs.getConfigSize()];
         for (int i = 0; i < configs.size(); i++)
         {
-            float[] conf = configs.getConfig(i);
+            configs.getConfig(i, conf, 0);
             int startIndex = (hasRootTranslation) ? 3 : 0;
             for (int ri = startIndex; ri < configSize; ri += stride)
             {
                 Quat4f.setFromAxisAngle4f(conf, ri, conf, ri);
             }
+            configs.setConfig(i, conf, 0);
         }
     }
 
     private void reverseQuats()
     {
+        float[] conf = new float[configs.getConfigSize()];
         for (int i = 0; i < configs.size(); i++)
         {
-            float[] conf = configs.getConfig(i);
+            configs.getConfig(i, conf, 0);
             int startIndex = (hasRootTranslation) ? 3 : 0;
             for (int ri = startIndex; ri < configSize; ri += stride)
             {
                 Quat4f.setFromXYZW(conf, ri, conf, ri);
             }
+            configs.setConfig(i, conf, 0);
         }
     }
 
@@ -965,7 +1159,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
             float alpha = (float)(t / duration);
             getInterpolatedConfig(tSource+t, startConfig);
             target.getInterpolatedConfig(tTarget+t, endConfig);
-            interpolateConfigs(result, alpha, startConfig, endConfig);
+            interpolateConfigs(result, alpha, startConfig, 0, endConfig, 0);
             blend.configs.addConfig(t, result);
         }
         return blend;
@@ -992,7 +1186,7 @@ public class SkeletonInterpolator extends XMLStructureAdapter implements ClockLi
 
     public void appendInterpolator(double startTime, SkeletonInterpolator ski)
     {
-        ConfigList cl = new ConfigList(getConfigSize() + ski.getConfigSize());
+        ConfigList cl = new ConfigList(getConfigSize(), configs.isContiguous());
         cl.addConfigs(getConfigList());
         cl.addConfigs(startTime, ski.getConfigList());
         setConfigList(cl);
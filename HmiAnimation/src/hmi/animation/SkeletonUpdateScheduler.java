@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import hmi.util.ClockListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates a set of Skeletons in parallel, on a ForkJoinPool.
+ * For every registered Skeleton, one update consists of calling time(t) for all animators 
+ * (typically SkeletonInterpolators) that have the Skeleton VJoints as target, followed by 
+ * Skeleton.updateJointMatrices (unless done by writeBuffer) and Skeleton.writeBuffer. Different Skeletons are updated 
+ * in parallel; the animators for a single Skeleton are called in registration order, on the same Thread.
+ * After all Skeletons have been updated, the new joint matrices are published, by calling
+ * Skeleton.publish for all Skeletons. Render Threads can therefore call Skeleton.getData
+ * at any time, without tearing. 
+ * It is assumed that animators for different Skeletons do not share VJoints or other mutable state.
+ * The update calls themselves should not be made concurrently: a SkeletonUpdateScheduler would typically be 
+ * registered as ClockListener for a single clock. Skeletons and animators can be added and removed at any time.
+ */
+public class SkeletonUpdateScheduler implements ClockListener
+{
+    private static Logger logger = LoggerFactory.getLogger(SkeletonUpdateScheduler.class.getName());
+
+    private final ForkJoinPool pool;
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private int threshold = 1; // max number of Skeletons updated sequentially within a single task
+
+    /* a Skeleton with its animators */
+    private static final class Entry
+    {
+        private final Skeleton skeleton;
+        private final List<ClockListener> animators = new CopyOnWriteArrayList<>();
+        private boolean written = false; // set when the back buffer contains a new, unpublished, update
+
+        private Entry(Skeleton skeleton)
+        {
+            this.skeleton = skeleton;
+        }
+
+        private void update(double t)
+        {
+            for (ClockListener animator : animators)
+            {
+                animator.time(t);
+            }
+            if (!skeleton.isUpdateOnWrite())
+            {
+                skeleton.updateJointMatrices(); // otherwise done by writeBuffer
+            }
+            skeleton.writeBuffer();
+            written = true;
+        }
+    }
+
+    /* updates entries[lo, hi), splitting the range when larger than threshold */
+    private final class UpdateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final Entry[] tasks;
+        private final int lo, hi;
+        private final double t;
+
+        private UpdateTask(Entry[] tasks, int lo, int hi, double t)
+        {
+            this.tasks = tasks;
+            this.lo = lo;
+            this.hi = hi;
+            this.t = t;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (hi - lo <= threshold)
+            {
+                for (int i = lo; i < hi; i++)
+                {
+                    try
+                    {
+                        tasks[i].update(t);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.warn("Update failed for Skeleton " + tasks[i].skeleton.getId(), e);
+                    }
+                }
+            }
+            else
+            {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new UpdateTask(tasks, lo, mid, t), new UpdateTask(tasks, mid, hi, t));
+            }
+        }
+    }
+
+    /**
+     * Creates a scheduler that uses the common ForkJoinPool.
+     */
+    public SkeletonUpdateScheduler()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a scheduler that uses the specified ForkJoinPool.
+     */
+    public SkeletonUpdateScheduler(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the maximum number of Skeletons that are updated sequentially within a single task. 
+     * The default is 1; larger values reduce scheduling overhead for cheap Skeleton updates.
+     */
+    public void setThreshold(int threshold)
+    {
+        this.threshold = Math.max(1, threshold);
+    }
+
+    /**
+     * Registers a Skeleton, with zero or more animators that will be called, in order, 
+     * before the joint matrices of the Skeleton are updated.
+     * When the Skeleton was registered already, the animators are added to the existing ones. 
+     */
+    public void addSkeleton(Skeleton skeleton, ClockListener... animators)
+    {
+        Entry entry = getEntry(skeleton);
+        if (entry == null)
+        {
+            entry = new Entry(skeleton);
+            entries.add(entry);
+        }
+        Collections.addAll(entry.animators, animators);
+    }
+
+    /**
+     * Adds an animator for a registered Skeleton, or registers the Skeleton when not yet present.
+     */
+    public void addAnimator(Skeleton skeleton, ClockListener animator)
+    {
+        addSkeleton(skeleton, animator);
+    }
+
+    /**
+     * Removes an animator for the specified Skeleton. Returns true if the animator was present.
+     */
+    public boolean removeAnimator(Skeleton skeleton, ClockListener animator)
+    {
+        Entry entry = getEntry(skeleton);
+        return entry != null && entry.animators.remove(animator);
+    }
+
+    /**
+     * Removes the Skeleton and its animators. Returns true if the Skeleton was present.
+     */
+    public boolean removeSkeleton(Skeleton skeleton)
+    {
+        Entry entry = getEntry(skeleton);
+        return entry != null && entries.remove(entry);
+    }
+
+    /**
+     * Returns the registered Skeletons.
+     */
+    public List<Skeleton> getSkeletons()
+    {
+        List<Skeleton> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries)
+        {
+            result.add(entry.skeleton);
+        }
+        return result;
+    }
+
+    private Entry getEntry(Skeleton skeleton)
+    {
+        for (Entry entry : entries)
+        {
+            if (entry.skeleton == skeleton)
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calls initTime for all registered animators, on the calling Thread.
+     */
+    @Override
+    public void initTime(double initTime)
+    {
+        for (Entry entry : entries)
+        {
+            for (ClockListener animator : entry.animators)
+            {
+                animator.initTime(initTime);
+            }
+        }
+    }
+
+    /**
+     * The time method for the ClockListener interface; equivalent to update.
+     */
+    @Override
+    public void time(double currentTime)
+    {
+        update(currentTime);
+    }
+
+    /**
+     * Updates all registered Skeletons in parallel for time t, and then publishes the new joint matrices.
+     * Returns when all Skeletons have been updated and published.
+     */
+    public void update(double t)
+    {
+        Entry[] tasks = entries.toArray(new Entry[0]);
+        if (tasks.length == 0)
+        {
+            return;
+        }
+        pool.invoke(new UpdateTask(tasks, 0, tasks.length, t));
+        for (Entry entry : tasks)
+        {
+            if (entry.written) // skip Skeletons for which the update failed
+            {
+                entry.skeleton.publish();
+                entry.written = false;
+            }
+        }
+    }
+}
@@ -72,6 +72,10 @@ public class VJoint implements VObject
     final private float[] localMatrix = Mat4f.getIdentity();
     final private float[] globalMatrix = Mat4f.getIdentity();
     private boolean validLocalMatrix = false; // "dirty bit" for localMatrix.
+    private boolean validGlobalMatrix = false; // "dirty bit" for globalMatrix, relative to the parent globalMatrix
+    private boolean dirtySubtree = true; // true when this VJoint or some descendant has an invalid globalMatrix
+    private float[] lastParentMatrix = null; // parent matrix used for the last calculateMatrices call on this VJoint
+    private int lastUpdateCount = 0; // number of global matrices recomputed by the last calculateMatrices call
     private boolean hasSharedBuffers = false; // denotes whether the translation
                                               // and/or rotation
     // array should be considered a shared array, because getTranslationBuffer
@@ -274,6 +278,7 @@ public class VJoint implements VObject
     private void setParent(VJoint parent)
     {
         this.parent = parent;
+        invalidateGlobalMatrix();
     }
 
     /**
@@ -645,6 +650,31 @@ public class VJoint implements VObject
     /* VJoint methods are not thread-safe. */
     /************************************************************************/
 
+    /*
+     * Marks the local matrix, and therefore the global matrices for the subtree starting at this VJoint, as invalid.
+     */
+    private void invalidateLocalMatrix()
+    {
+        validLocalMatrix = false;
+        invalidateGlobalMatrix();
+    }
+
+    /*
+     * Marks the global matrix as invalid, and marks the path up to the root as having a dirty subtree.
+     * Descendants are not visited: their global matrices are recomputed when the parent global matrix is.
+     */
+    private void invalidateGlobalMatrix()
+    {
+        validGlobalMatrix = false;
+        dirtySubtree = true;
+        VJoint vj = parent;
+        while (vj != null && !vj.dirtySubtree)
+        {
+            vj.dirtySubtree = true;
+            vj = vj.parent;
+        }
+    }
+
     /**
      * Returns the current translation vector in the form of a float array of length 3
      */
@@ -671,6 +701,7 @@ public class VJoint implements VObject
     public float[] getTranslationBuffer()
     {
         hasSharedBuffers = true;
+        invalidateGlobalMatrix();
         return translation;
     }
 
@@ -681,7 +712,7 @@ public class VJoint implements VObject
     {
         translation = ta;
         hasSharedBuffers = true;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -691,7 +722,7 @@ public class VJoint implements VObject
     public void setTranslation(float[] ta)
     {
         System.arraycopy(ta, 0, translation, 0, 3);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -701,7 +732,7 @@ public class VJoint implements VObject
     public void setTranslation(float[] ta, int taIndex)
     {
         System.arraycopy(ta, taIndex, translation, 0, 3);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -713,7 +744,7 @@ public class VJoint implements VObject
         translation[0] = tx;
         translation[1] = ty;
         translation[2] = tz;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     public void clearTranslation()
@@ -721,7 +752,7 @@ public class VJoint implements VObject
         translation[0] = 0f;
         translation[1] = 0f;
         translation[2] = 0f;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -730,7 +761,7 @@ public class VJoint implements VObject
     public void translate(float[] tvec)
     {
         Vec3f.add(translation, tvec);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     // /**
@@ -754,7 +785,7 @@ public class VJoint implements VObject
     public void setRotation(float[] ra)
     {
         System.arraycopy(ra, 0, rotation, 0, 4);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -784,7 +815,7 @@ public class VJoint implements VObject
     public void setRotation(float[] ra, int raIndex)
     {
         System.arraycopy(ra, raIndex, rotation, 0, 4);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -863,6 +894,7 @@ public class VJoint implements VObject
     public float[] getRotationBuffer()
     {
         hasSharedBuffers = true;
+        invalidateGlobalMatrix();
         return rotation;
     }
 
@@ -873,7 +905,7 @@ public class VJoint implements VObject
     {
         rotation = rot;
         hasSharedBuffers = true;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -883,13 +915,13 @@ public class VJoint implements VObject
     public void setRotation(float qs, float qx, float qy, float qz)
     {
         Quat4f.set(rotation, qs, qx, qy, qz);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     public void clearRotation()
     {
         Quat4f.set(rotation, 1f, 0f, 0f, 0f);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     // /**
@@ -908,7 +940,7 @@ public class VJoint implements VObject
     public void setAxisAngle(float ax, float ay, float az, float angle)
     {
         Quat4f.setFromAxisAngle4f(rotation, ax, ay, az, angle);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -917,7 +949,7 @@ public class VJoint implements VObject
     public void setRollPitchYawDegrees(float roll, float pitch, float yaw)
     {
         Quat4f.setFromRollPitchYawDegrees(rotation, roll, pitch, yaw);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -927,7 +959,7 @@ public class VJoint implements VObject
     public void rotate(float[] rq)
     {
         Quat4f.mul(rotation, rq, rotation);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
      /**
@@ -937,7 +969,7 @@ public class VJoint implements VObject
     public void insertRotation(float[] rq)
     {
         Quat4f.mul(rotation, rotation, rq);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -963,7 +995,7 @@ public class VJoint implements VObject
     {
         Quat4f.mul(rotation, rq, rotation);
         Quat4f.transformVec3f(rq, translation);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -976,7 +1008,7 @@ public class VJoint implements VObject
     {
         Quat4f.transformVec3f(rq, translation);
         Vec3f.scale(scale, translation);
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -1033,7 +1065,7 @@ public class VJoint implements VObject
             scalingType = Mat3f.ScalingType.ALIGNED;
             scaleMatrix = null;
         }
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     public void scale(float sx, float sy, float sz)
@@ -1050,11 +1082,13 @@ public class VJoint implements VObject
             scaleVec[0] *= sx;
             scaleVec[1] *= sy;
             scaleVec[2] *= sz;
+            invalidateLocalMatrix();
             break;
         case SKEW:
             scaleMatrix[Mat3f.M00] *= sx;
             scaleMatrix[Mat3f.M11] *= sy;
             scaleMatrix[Mat3f.M22] *= sz;
+            invalidateLocalMatrix();
             break;
         default:
             logger.error("VJoint.getLocalMatrix: unknown scaling type: " + scalingType);
@@ -1071,7 +1105,7 @@ public class VJoint implements VObject
         scaleVec = null;
         scaleMatrix = null;
         scalingType = Mat3f.ScalingType.IDENTITY;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -1126,7 +1160,7 @@ public class VJoint implements VObject
         this.scaleMatrix = matrix;
         scaleVec = null;
         scalingType = Mat3f.ScalingType.SKEW;
-        validLocalMatrix = false;
+        invalidateLocalMatrix();
     }
 
     /**
@@ -1193,6 +1227,7 @@ public class VJoint implements VObject
     private void decomposeLocalMatrix()
     {
         validLocalMatrix = true;
+        invalidateGlobalMatrix();
         if (!Mat4f.isAffine(localMatrix))
         {
             scalingType = Mat3f.ScalingType.SKEW;
@@ -1246,16 +1281,62 @@ public class VJoint implements VObject
     public final void setLocalMatrix(float[] matrix4f)
     {
         Mat4f.set(localMatrix, matrix4f);
+        invalidateGlobalMatrix();
     }
 
     /**
-     * Returns a reference to the global transform matrix.
+     * Returns a reference to the global transform matrix. The matrix is not recalculated;
+     * its value is the one from the last calculateMatrices call that reached this VJoint.
+     * See also getUpdatedGlobalMatrix.
      */
     public final float[] getGlobalMatrix()
     {
         return globalMatrix;
     }
 
+    /**
+     * Returns a reference to the global transform matrix, after recalculating the global matrices
+     * along the path from the root, but only for those VJoints that have been invalidated since the 
+     * last calculation. For the root, the parent matrix from the last calculateMatrices call is used,
+     * or the identity matrix if there was no such call.
+     */
+    public final float[] getUpdatedGlobalMatrix()
+    {
+        updatePathMatrices();
+        return globalMatrix;
+    }
+
+    /*
+     * Recalculates invalid global matrices on the path from the root to this VJoint.
+     * Returns true when the global matrix of this VJoint has been recalculated. In that case
+     * the global matrices of the children are marked as invalid, since they are not recalculated here.
+     */
+    private boolean updatePathMatrices()
+    {
+        boolean parentChanged = (parent != null) && parent.updatePathMatrices();
+        if (!parentChanged && validGlobalMatrix && !hasSharedBuffers)
+        {
+            return false;
+        }
+        float[] parentMatrix = parent != null ? parent.globalMatrix : (lastParentMatrix != null ? lastParentMatrix : Mat4f.ID);
+        Mat4f.mul(globalMatrix, parentMatrix, getLocalMatrix());
+        validGlobalMatrix = true;
+        for (VJoint vchild : children)
+        {
+            vchild.invalidateGlobalMatrix();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of global matrices that were actually recalculated in the subtree of this VJoint,
+     * by the last calculateMatrices call that visited this VJoint.
+     */
+    public int getLastUpdateCount()
+    {
+        return lastUpdateCount;
+    }
+
     public String localMatrixToString()
     {
         return Mat4f.toString(getLocalMatrix());
@@ -1278,15 +1359,66 @@ public class VJoint implements VObject
      * Performs a recursive tree walk over the scene graph with this VJoint as root, calculating the global and local matrices for all visited
      * VObjects, automatically setting all local matrices The calculation per VJoint is: globalMatrix' = parent.globalMatrix * localMatrix. For this
      * (root) VJoint, the &quot;parent's&quot; global matrix is specified by means of the parentGlobalMatrix parameter.
+     * Only subtrees that have been invalidated since the last calculation, by modification of the local transform, are visited and recalculated.
+     * VJoints with shared buffers are always recalculated. When parentGlobalMatrix differs from the one used in the previous call, the whole tree is
+     * recalculated.
      */
     public void calculateMatrices(float[] parentGlobalMatrix)
     {
-        Mat4f.mul(globalMatrix, parentGlobalMatrix, getLocalMatrix());
+        boolean parentChanged = (lastParentMatrix == null || !Mat4f.equals(lastParentMatrix, parentGlobalMatrix));
+        if (parentChanged)
+        {
+            if (lastParentMatrix == null)
+            {
+                lastParentMatrix = Mat4f.getMat4f();
+            }
+            Mat4f.set(lastParentMatrix, parentGlobalMatrix);
+        }
+        lastUpdateCount = 0;
+        updateMatrices(parentGlobalMatrix, parentChanged);
+    }
+
+    /**
+     * Recalculates the global and local matrices for all VJoints in the tree with this VJoint as root,
+     * whether invalidated or not.
+     */
+    public void calculateAllMatrices(float[] parentGlobalMatrix)
+    {
+        if (lastParentMatrix == null)
+        {
+            lastParentMatrix = Mat4f.getMat4f();
+        }
+        Mat4f.set(lastParentMatrix, parentGlobalMatrix);
+        lastUpdateCount = 0;
+        updateMatrices(parentGlobalMatrix, true);
+    }
 
-        for (VJoint vchild : children)
+    /*
+     * Recursive part of calculateMatrices. The update count is accumulated in the lastUpdateCount of this VJoint,
+     * and added to the count of the parent by the caller. Returns whether the subtree should remain marked as dirty, 
+     * which is the case when it contains VJoints with shared buffers.
+     */
+    private boolean updateMatrices(float[] parentGlobalMatrix, boolean parentChanged)
+    {
+        boolean recalculate = parentChanged || !validGlobalMatrix || hasSharedBuffers;
+        if (recalculate)
         {
-            vchild.calculateMatrices(globalMatrix);
+            Mat4f.mul(globalMatrix, parentGlobalMatrix, getLocalMatrix());
+            validGlobalMatrix = true;
+            lastUpdateCount++;
         }
+        boolean keepDirty = hasSharedBuffers;
+        if (recalculate || dirtySubtree)
+        {
+            for (VJoint vchild : children)
+            {
+                vchild.lastUpdateCount = 0;
+                keepDirty |= vchild.updateMatrices(globalMatrix, recalculate);
+                lastUpdateCount += vchild.lastUpdateCount;
+            }
+            dirtySubtree = keepDirty;
+        }
+        return dirtySubtree;
     }
 
     /**
@@ -1688,6 +1820,9 @@ public class VJoint implements VObject
             buf.append(" validLocalMatrix=");
             buf.append(validLocalMatrix);
             newLine(buf, tab);
+            buf.append(" validGlobalMatrix=");
+            buf.append(validGlobalMatrix);
+            newLine(buf, tab);
             buf.append(" hasSharedBuffers=");
             buf.append(hasSharedBuffers);
         }
@@ -0,0 +1,15 @@
+package hmi.animation.motiongraph;
+
+/**
+ * Implemented by the configurable parts of a {@link MotionGraph} ({@link hmi.animation.motiongraph.alignment.IAlignment},
+ * {@link hmi.animation.motiongraph.metrics.IDistance}, {@link hmi.animation.motiongraph.blending.IBlend},
+ * {@link hmi.animation.motiongraph.split.ISplit}) whose behaviour depends on more than their class, so that a
+ * {@link MotionGraphCache} is invalidated when their configuration changes.
+ */
+public interface IConfigurationKey {
+
+    /**
+     * @return a String that is equal for instances that construct the same MotionGraph from the same motions.
+     */
+    String getConfigurationKey();
+}
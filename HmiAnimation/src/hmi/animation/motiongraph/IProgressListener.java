@@ -0,0 +1,18 @@
+package hmi.animation.motiongraph;
+
+/**
+ * Receives progress updates during the construction of a {@link MotionGraph}.
+ * <p>
+ * Progress of the parallel phases (see {@link MotionGraph#PHASE_DISTANCES}) is reported from worker threads.
+ */
+public interface IProgressListener {
+
+    /**
+     * Called when {@code done} out of {@code total} steps of construction phase {@code phase} are finished.
+     * <p>
+     * @param phase one of the MotionGraph PHASE_ constants
+     * @param done number of finished steps
+     * @param total total number of steps for this phase
+     */
+    void progress(String phase, long done, long total);
+}
@@ -6,24 +6,43 @@ import hmi.animation.motiongraph.alignment.IAlignment;
 import hmi.animation.motiongraph.blending.Blend;
 import hmi.animation.motiongraph.blending.IBlend;
 import hmi.animation.motiongraph.metrics.Equals;
+import hmi.animation.motiongraph.metrics.IBoundedDistance;
 import hmi.animation.motiongraph.metrics.IDistance;
 import hmi.animation.motiongraph.metrics.IEquals;
 import hmi.animation.motiongraph.metrics.JointAngles;
 import hmi.animation.motiongraph.split.DefaultSplit;
 import hmi.animation.motiongraph.split.ISplit;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import lombok.Getter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Use {@link Builder} to create an Instance.
  * <p>
+ * Construction computes the distances between all candidate transitions in parallel, in tiles of the distance matrix,
+ * on a {@link ForkJoinPool}. If the {@link IDistance} is an {@link IBoundedDistance}, its lower bound is used to skip
+ * the full distance computation for pairs that can not be blended. Sizes and timings of the construction are
+ * available from {@link #getStatistics()}, progress can be monitored with an {@link IProgressListener}.
+ * <p>
  * TODO: Frames->Seconds
  * <p>
  * Created by Zukie on 15/06/15.
@@ -55,12 +74,40 @@ public final class MotionGraph implements IMotionGraph {
      */
     public static final boolean MIRRORED = false;
 
+    /**
+     * Maximum number of rows and columns of a tile of the distance matrix that is computed by a single task.
+     */
+    public static final int DISTANCE_TILE_SIZE = 16;
+
+    /**
+     * Margin for the comparison of a distance lower bound with {@link #DEFAULT_THRESHOLD}, to allow for
+     * rounding differences between the lower bound and the distance.
+     */
+    private static final double LOWER_BOUND_MARGIN = 1.0001;
+
+    public static final String PHASE_CONNECT = "connect";
+    public static final String PHASE_SPLIT = "split";
+    public static final String PHASE_DISTANCES = "distances";
+    public static final String PHASE_BLENDS = "blends";
+    public static final String PHASE_PRUNE = "prune";
+
+    private static Logger logger = LoggerFactory.getLogger(MotionGraph.class.getName());
+
     @Getter
     private final List<Edge> edges;
     
     @Getter
     private final List<Node> nodes;
 
+    /**
+     * Statistics of the construction of this graph.
+     */
+    @Getter
+    private final MotionGraphStatistics statistics = new MotionGraphStatistics();
+
+    private final IProgressListener progressListener;
+    private final ForkJoinPool pool;
+
     private final IAlignment align;
     private final IBlend blending;
     
@@ -99,13 +146,26 @@ public final class MotionGraph implements IMotionGraph {
         this.align = align;
         this.metric = metric;
         this.blending = blending;
-        this.edges = new LinkedList<>(edges);
-        this.nodes = new LinkedList<>(nodes);
+        this.edges = new ArrayList<>(edges);
+        this.nodes = new ArrayList<>(nodes);
+        this.progressListener = null;
+        this.pool = null;
     }
     
     public MotionGraph(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending, ISplit split) {
-        edges = new LinkedList<>();
-        nodes = new LinkedList<>();
+        this(motions, align, metric, blending, split, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a MotionGraph from {@code motions}.
+     * <p>
+     * @param progressListener receives progress updates during construction, may be null
+     * @param pool pool for the parallel computation of distances
+     */
+    public MotionGraph(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending, ISplit split,
+            IProgressListener progressListener, ForkJoinPool pool) {
+        edges = new ArrayList<>();
+        nodes = new ArrayList<>();
         if (motions == null || motions.isEmpty()) {
             throw new IllegalArgumentException("motions null or empty.");
         }
@@ -121,10 +181,15 @@ public final class MotionGraph implements IMotionGraph {
         if (split == null) {
             throw new IllegalArgumentException("No ISplit specified.");
         }
+        if (pool == null) {
+            throw new IllegalArgumentException("No ForkJoinPool specified.");
+        }
 
         this.align = align;
         this.metric = metric;
         this.blending = blending;
+        this.progressListener = progressListener;
+        this.pool = pool;
         
         this.init(motions, split);
     }
@@ -164,27 +229,48 @@ public final class MotionGraph implements IMotionGraph {
 
         }
 
-        System.out.println("NODES BEFORE: " + nodes.size());
-        System.out.println("EDGES BEFORE: " + edges.size());
+        statistics.setBefore(nodes.size(), edges.size());
 
+        long start = System.nanoTime();
         this.connectMotions();
+        statistics.setPhaseTime(PHASE_CONNECT, System.nanoTime() - start);
+
+        start = System.nanoTime();
         this.split(split);
-        this.createBlends();
+        statistics.setPhaseTime(PHASE_SPLIT, System.nanoTime() - start);
+
+        this.createBlends(); // records PHASE_DISTANCES and PHASE_BLENDS
+
+        start = System.nanoTime();
         this.prune();
-        System.out.println("NODES AFTER: " + nodes.size());
-        System.out.println("EDGES AFTER: " + edges.size());
+        statistics.setPhaseTime(PHASE_PRUNE, System.nanoTime() - start);
+
+        statistics.setAfter(nodes.size(), edges.size());
+        logger.info("MotionGraph constructed: {}", statistics);
+    }
+
+    private void progress(String phase, long done, long total) {
+        if (progressListener != null) {
+            progressListener.progress(phase, done, total);
+        }
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
     }
 
     /**
      * Randomly splits Motions in the graph. TODO: Create Split-Class.
      */
     private void split(ISplit split) {
-        List<Edge> oldEdges = new LinkedList<>(edges);
+        List<Edge> oldEdges = new ArrayList<>(edges);
+        edges.clear(); // all old edges are replaced by their splits
+        int done = 0;
         for (Edge oldEdge : oldEdges) {
 
             Node startNode = oldEdge.getStartNode();
             Node endNode = oldEdge.getEndNode();
-            removeEdge(oldEdge);
+            detachEdge(oldEdge);
 
             List<SkeletonInterpolator> splits = split.split(oldEdge.getMotion());
 
@@ -202,18 +288,17 @@ public final class MotionGraph implements IMotionGraph {
                 newEdge.setEndNode(startNode);
                 this.edges.add(newEdge);
             }
-
+            progress(PHASE_SPLIT, ++done, oldEdges.size());
         }
     }
 
     /**
-     * Remove Edge from MotionGraph and it's nodes.
+     * Remove Edge from it's nodes, but not from the MotionGraph.
      * <p/>
      *
      * @param edge
      */
-    private void removeEdge(Edge edge) {
-        this.edges.remove(edge);
+    private void detachEdge(Edge edge) {
         edge.getStartNode().getIncomingEdges().remove(edge);
         edge.getStartNode().getOutgoingEdges().remove(edge);
 
@@ -222,28 +307,36 @@ public final class MotionGraph implements IMotionGraph {
     }
 
     /**
-     * Removes all Nodes, which have no successors.
+     * Removes all Nodes, which have no successors, and their incoming edges, until all remaining nodes have successors.
+     * Runs in time linear in the number of nodes and edges.
      */
     private void prune() {
-
-        boolean pruned = true;
-
-        do {
-            pruned = true;
-            for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext();) {
-                Node node = iterator.next();
-                if (!node.hasNext()) {
-                    while (!node.getIncomingEdges().isEmpty()) {
-                        removeEdge(node.getIncomingEdges().get(0));
-                    }
-
-                    pruned = false;
-                    iterator.remove();
-                    break;
+        Set<Node> graphNodes = identitySet();
+        graphNodes.addAll(nodes);
+        Set<Node> removedNodes = identitySet();
+        Set<Edge> removedEdges = identitySet();
+        Deque<Node> deadEnds = new ArrayDeque<>();
+        for (Node node : nodes) {
+            if (!node.hasNext()) {
+                removedNodes.add(node);
+                deadEnds.add(node);
+            }
+        }
+        while (!deadEnds.isEmpty()) {
+            Node node = deadEnds.poll();
+            for (Edge edge : new ArrayList<>(node.getIncomingEdges())) {
+                Node predecessor = edge.getStartNode();
+                detachEdge(edge);
+                removedEdges.add(edge);
+                if (!predecessor.hasNext() && graphNodes.contains(predecessor) && removedNodes.add(predecessor)) {
+                    deadEnds.add(predecessor);
                 }
             }
-        } while (!pruned);
-
+            progress(PHASE_PRUNE, removedNodes.size() - deadEnds.size(), removedNodes.size());
+        }
+        nodes.removeAll(removedNodes);
+        edges.removeAll(removedEdges);
+        statistics.setPruned(removedNodes.size(), removedEdges.size());
     }
 
     public void removeNodes(Set<Node> nodes)
@@ -269,9 +362,9 @@ public final class MotionGraph implements IMotionGraph {
         Edge currentEdge = currentNode.getOutgoingEdges().get(r.nextInt(currentNode.getOutgoingEdges().size()));
         currentEdge.played++;
         if (currentEdge.isBlend()) {
-            System.out.println("Edge: " + currentEdge.getId() + " p: " + currentEdge.played + " (blend)");
+            logger.debug("Edge: {} p: {} (blend)", currentEdge.getId(), currentEdge.played);
         } else {
-            System.out.println("Edge: " + currentEdge.getId() + " p: " + currentEdge.played);
+            logger.debug("Edge: {} p: {}", currentEdge.getId(), currentEdge.played);
         }
 
         SkeletonInterpolator next = currentEdge.getMotion();
@@ -296,6 +389,7 @@ public final class MotionGraph implements IMotionGraph {
 
         IEquals equals = new Equals();
 
+        int done = 0;
         for (Edge start : edges) {
             for (Edge end : edges) {
                 if (equals.startEndEquals(start.getMotion(), end.getMotion())) {
@@ -306,44 +400,181 @@ public final class MotionGraph implements IMotionGraph {
 
                 }
             }
+            progress(PHASE_CONNECT, ++done, edges.size());
         }
 
     }
 
     /**
      * Connect all Motions that are similar enough with blends.
+     * <p>
+     * The distances for all candidate pairs are computed up front, in parallel. This relies on
+     * {@link IDistance#distance(SkeletonInterpolator, SkeletonInterpolator, int)} depending only on the compared frames:
+     * the parts of motions that are split by {@link #createBlending} keep the distances of the motions they stem from,
+     * as long as they contain the compared frames.
      */
     private void createBlends() {
-        List<Node> starts = new LinkedList<>();
+        long startTime = System.nanoTime();
+        List<Node> starts = new ArrayList<>();
         for (Node node : nodes) {
             if (!node.getIncomingEdges().isEmpty()) {
                 starts.add(node);
             }
         }
-        List<Node> ends = new LinkedList<>();
+        List<Node> ends = new ArrayList<>();
         for (Node node : nodes) {
             if (node.hasNext()) {
                 ends.add(node);
             }
         }
 
-        for (Node start : starts) {
-            for (Node end : ends) {
+        // rows: motions ending in a start node, columns: motions starting in an end node
+        Map<Edge, Integer> rowIndex = new HashMap<>();
+        Edge[] rows = new Edge[starts.size()];
+        for (int i = 0; i < rows.length; i++) {
+            Edge edge = starts.get(i).getIncomingEdges().get(0);
+            if (edge.getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+                rows[i] = edge;
+                rowIndex.put(edge, i);
+            }
+        }
+        Map<Edge, Integer> columnIndex = new HashMap<>();
+        Edge[] columns = new Edge[ends.size()];
+        for (int j = 0; j < columns.length; j++) {
+            Edge edge = ends.get(j).getOutgoingEdges().get(0);
+            if (edge.getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+                columns[j] = edge;
+                columnIndex.put(edge, j);
+            }
+        }
+        double[][] distances = computeDistances(starts.toArray(new Node[starts.size()]), ends.toArray(new Node[ends.size()]),
+                rows, columns);
+        statistics.setPhaseTime(PHASE_DISTANCES, System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        Set<Edge> removedEdges = identitySet();
+        for (int i = 0; i < starts.size(); i++) {
+            Node start = starts.get(i);
+            for (int j = 0; j < ends.size(); j++) {
+                Node end = ends.get(j);
                 if (start == end) {
                     //motions already connected
                     continue;
                 }
+                Edge first = start.getIncomingEdges().get(0);
+                Edge second = end.getOutgoingEdges().get(0);
+
+                if (first.getMotion().size() >= DEFAULT_BLENDING_FRAMES
+                        && second.getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+                    Integer row = rowIndex.get(first);
+                    Integer column = columnIndex.get(second);
+                    double distance = (row != null && column != null) ? distances[row][column]
+                            : metric.distance(first.getMotion(), second.getMotion(), DEFAULT_BLENDING_FRAMES);
+                    if (distance <= DEFAULT_THRESHOLD) {
+                        createBlending(first, second, rowIndex, columnIndex, removedEdges);
+                    }
+                }
+            }
+            progress(PHASE_BLENDS, i + 1, starts.size());
+        }
+        edges.removeAll(removedEdges);
+        statistics.setPhaseTime(PHASE_BLENDS, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Computes the distance matrix for the motions in rows and columns. Pairs of which the row or column is null, or for
+     * which the start node of the row equals the end node of the column, are not computed. Pairs for which the lower
+     * bound of the distance exceeds the threshold get distance {@link Double#POSITIVE_INFINITY}.
+     */
+    private double[][] computeDistances(Node[] starts, Node[] ends, Edge[] rows, Edge[] columns) {
+        double[][] distances = new double[rows.length][columns.length];
+        DistanceTile tile = new DistanceTile(starts, ends, rows, columns, distances, 0, rows.length, 0, columns.length);
+        pool.invoke(tile);
+        statistics.setDistancePairs(tile.computed.get(), tile.prefiltered.get());
+        return distances;
+    }
 
-                if (start.getIncomingEdges().get(0).getMotion().size() >= DEFAULT_BLENDING_FRAMES
-                        && end.getOutgoingEdges().get(0).getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+    /**
+     * Task computing a tile of the distance matrix, splitting it in subtiles if it is larger than
+     * {@link #DISTANCE_TILE_SIZE} in either direction.
+     */
+    private final class DistanceTile extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Node[] starts;
+        private final Node[] ends;
+        private final Edge[] rows;
+        private final Edge[] columns;
+        private final double[][] distances;
+        private final int rowStart, rowEnd, columnStart, columnEnd;
+        private final AtomicLong computed;
+        private final AtomicLong prefiltered;
+        private final AtomicLong done;
+
+        DistanceTile(Node[] starts, Node[] ends, Edge[] rows, Edge[] columns, double[][] distances,
+                int rowStart, int rowEnd, int columnStart, int columnEnd) {
+            this(starts, ends, rows, columns, distances, rowStart, rowEnd, columnStart, columnEnd,
+                    new AtomicLong(), new AtomicLong(), new AtomicLong());
+        }
 
-                    if (metric.distance(start.getIncomingEdges().get(0).getMotion(),
-                            end.getOutgoingEdges().get(0).getMotion(), DEFAULT_BLENDING_FRAMES) <= DEFAULT_THRESHOLD) {
-                        createBlending(start.getIncomingEdges().get(0), end.getOutgoingEdges().get(0));
+        private DistanceTile(Node[] starts, Node[] ends, Edge[] rows, Edge[] columns, double[][] distances,
+                int rowStart, int rowEnd, int columnStart, int columnEnd,
+                AtomicLong computed, AtomicLong prefiltered, AtomicLong done) {
+            this.starts = starts;
+            this.ends = ends;
+            this.rows = rows;
+            this.columns = columns;
+            this.distances = distances;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.columnStart = columnStart;
+            this.columnEnd = columnEnd;
+            this.computed = computed;
+            this.prefiltered = prefiltered;
+            this.done = done;
+        }
+
+        private DistanceTile subTile(int rStart, int rEnd, int cStart, int cEnd) {
+            return new DistanceTile(starts, ends, rows, columns, distances, rStart, rEnd, cStart, cEnd, computed, prefiltered, done);
+        }
+
+        @Override
+        protected void compute() {
+            int rowCount = rowEnd - rowStart;
+            int columnCount = columnEnd - columnStart;
+            if (rowCount > DISTANCE_TILE_SIZE && rowCount >= columnCount) {
+                int mid = (rowStart + rowEnd) >>> 1;
+                invokeAll(subTile(rowStart, mid, columnStart, columnEnd), subTile(mid, rowEnd, columnStart, columnEnd));
+            } else if (columnCount > DISTANCE_TILE_SIZE) {
+                int mid = (columnStart + columnEnd) >>> 1;
+                invokeAll(subTile(rowStart, rowEnd, columnStart, mid), subTile(rowStart, rowEnd, mid, columnEnd));
+            } else {
+                computeTile();
+                long total = (long) rows.length * columns.length;
+                progress(PHASE_DISTANCES, done.addAndGet((long) rowCount * columnCount), total);
+            }
+        }
+
+        private void computeTile() {
+            IBoundedDistance bounded = (metric instanceof IBoundedDistance) ? (IBoundedDistance) metric : null;
+            for (int r = rowStart; r < rowEnd; r++) {
+                for (int c = columnStart; c < columnEnd; c++) {
+                    if (rows[r] == null || columns[c] == null || starts[r] == ends[c]) {
+                        distances[r][c] = Double.NaN;
+                        continue;
+                    }
+                    SkeletonInterpolator start = rows[r].getMotion();
+                    SkeletonInterpolator end = columns[c].getMotion();
+                    if (bounded != null
+                            && bounded.lowerBound(start, end, DEFAULT_BLENDING_FRAMES) > DEFAULT_THRESHOLD * LOWER_BOUND_MARGIN) {
+                        distances[r][c] = Double.POSITIVE_INFINITY;
+                        prefiltered.incrementAndGet();
+                    } else {
+                        distances[r][c] = metric.distance(start, end, DEFAULT_BLENDING_FRAMES);
+                        computed.incrementAndGet();
                     }
                 }
             }
-
         }
     }
 
@@ -359,7 +590,8 @@ public final class MotionGraph implements IMotionGraph {
      * @param first first motion
      * @param second second motion
      */
-    private void createBlending(Edge first, Edge second) {
+    private void createBlending(Edge first, Edge second, Map<Edge, Integer> rowIndex, Map<Edge, Integer> columnIndex,
+            Set<Edge> removedEdges) {
         Node newEnd;
         Node newStart;
         SkeletonInterpolator blendEnd;
@@ -376,7 +608,9 @@ public final class MotionGraph implements IMotionGraph {
             first.getStartNode().addOutgoingEdge(firstMotionPart1);
             first.getEndNode().addIncomingEdge(firstMotionPart2);
             newStart = new Node(firstMotionPart1, firstMotionPart2);
-            this.removeEdge(first);
+            this.detachEdge(first);
+            removedEdges.add(first);
+            inheritDistances(first, firstMotionPart1, firstMotionPart2, rowIndex, columnIndex);
 
             edges.add(firstMotionPart1);
             edges.add(firstMotionPart2);
@@ -398,7 +632,9 @@ public final class MotionGraph implements IMotionGraph {
             second.getStartNode().addOutgoingEdge(secondMotionPart1);
             second.getEndNode().addIncomingEdge(secondMotionPart2);
             newEnd = new Node(secondMotionPart1, secondMotionPart2);
-            this.removeEdge(second);
+            this.detachEdge(second);
+            removedEdges.add(second);
+            inheritDistances(second, secondMotionPart1, secondMotionPart2, rowIndex, columnIndex);
             edges.add(secondMotionPart1);
             edges.add(secondMotionPart2);
             nodes.add(newEnd);
@@ -416,6 +652,23 @@ public final class MotionGraph implements IMotionGraph {
         newEnd.addIncomingEdge(blended);
 
         edges.add(blended);
+        statistics.addBlend();
+    }
+
+    /**
+     * Lets the parts of a split edge take over its rows and columns in the distance matrix, if they contain the compared
+     * frames: the last {@link #DEFAULT_BLENDING_FRAMES} frames for rows, the first for columns.
+     */
+    private static void inheritDistances(Edge edge, Edge part1, Edge part2, Map<Edge, Integer> rowIndex,
+            Map<Edge, Integer> columnIndex) {
+        Integer row = rowIndex.get(edge);
+        if (row != null && part2.getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+            rowIndex.put(part2, row);
+        }
+        Integer column = columnIndex.get(edge);
+        if (column != null && part1.getMotion().size() >= DEFAULT_BLENDING_FRAMES) {
+            columnIndex.put(part1, column);
+        }
     }
 
     @Override
@@ -444,6 +697,9 @@ public final class MotionGraph implements IMotionGraph {
         private List<SkeletonInterpolator> motions = null;
         private Collection<Edge> edges;
         private Collection<Node> nodes;
+        private IProgressListener progressListener;
+        private ForkJoinPool pool;
+        private File cacheFile;
         
         public Builder(Collection<Edge> edges, Collection<Node> nodes)
         {
@@ -464,10 +720,39 @@ public final class MotionGraph implements IMotionGraph {
             {
                 return new MotionGraph(this.edges, this.nodes, this.align, this.metric, this.blending, this.split);
             }
+            else if (cacheFile == null)
+            {
+                return construct();
+            }
             else
             {
-                return new MotionGraph(this.motions, this.align, this.metric, this.blending, this.split);
+                return getCachedInstance();
+            }
+        }
+
+        private MotionGraph construct() {
+            return new MotionGraph(this.motions, this.align, this.metric, this.blending, this.split, this.progressListener,
+                    pool != null ? pool : ForkJoinPool.commonPool());
+        }
+
+        private MotionGraph getCachedInstance() {
+            String key = MotionGraphCache.key(motions, align, metric, blending, split);
+            try {
+                MotionGraph mg = MotionGraphCache.read(cacheFile, key, align, metric, blending, split);
+                if (mg != null) {
+                    logger.info("MotionGraph loaded from cache {}", cacheFile);
+                    return mg;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not load MotionGraph cache " + cacheFile + ", rebuilding it", e);
+            }
+            MotionGraph mg = construct();
+            try {
+                MotionGraphCache.write(mg, key, cacheFile);
+            } catch (IOException e) {
+                logger.warn("Could not write MotionGraph cache " + cacheFile, e);
             }
+            return mg;
         }
 
         public Builder align(IAlignment align) {
@@ -490,5 +775,28 @@ public final class MotionGraph implements IMotionGraph {
             return this;
         }
 
+        /**
+         * Loads the MotionGraph from cacheFile if it contains a {@link MotionGraphCache} snapshot of a MotionGraph
+         * constructed from the same motions, with the same configuration. Otherwise the MotionGraph is constructed and
+         * stored in cacheFile.
+         */
+        public Builder cache(File cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        public Builder progressListener(IProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * Sets the pool for the parallel computation of distances, by default {@link ForkJoinPool#commonPool()}.
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
     }
 }
@@ -0,0 +1,338 @@
+package hmi.animation.motiongraph;
+
+import hmi.animation.BinaryClip;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.IAlignment;
+import hmi.animation.motiongraph.blending.IBlend;
+import hmi.animation.motiongraph.metrics.IDistance;
+import hmi.animation.motiongraph.split.ISplit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary snapshot of a fully constructed {@link MotionGraph}: its nodes, edges and the motions of all edges,
+ * including the blends. A snapshot is stored with a key, computed by
+ * {@link #key(List, IAlignment, IDistance, IBlend, ISplit)} from the input motions and the configuration of the graph
+ * construction, and is only loaded for a matching key. {@link MotionGraph.Builder#cache(File)} uses this to load a
+ * MotionGraph from file, and only rebuild it when its inputs change.
+ * <p>
+ * The format is:
+ * <ul>
+ * <li>magic number (int) and format version (int)</li>
+ * <li>key (String), number of nodes (int) and number of edges (int)</li>
+ * <li>per node: id, number of incoming edges, their indices, number of outgoing edges, their indices (ints)</li>
+ * <li>per edge: id, start node index, end node index (ints), blend flag (byte), size of the motion (int), zero padding to
+ * a multiple of 8 bytes and the motion in the {@link BinaryClip} format</li>
+ * </ul>
+ * Strings are encoded as an int byte count, followed by the UTF-8 bytes. All numbers are big-endian. Files are
+ * memory-mapped when loaded, the motions of the loaded edges are backed by the mapped file. Therefore a snapshot file is
+ * never modified in place: {@link #write(MotionGraph, String, File)} writes a new file next to it, and moves that over the
+ * old one, so that MotionGraphs loaded from the old file keep reading its (unchanged) contents.
+ */
+public final class MotionGraphCache {
+
+    public static final int MAGIC = 0x484D4D47; // "HMMG"
+    public static final int VERSION = 1;
+    public static final String FILE_EXTENSION = ".mg.bin";
+
+    /* static methods only */
+    private MotionGraphCache() {
+    }
+
+    /**
+     * Returns the key of the configuration part of MotionGraph construction, {@link IConfigurationKey#getConfigurationKey()}
+     * if it implements {@link IConfigurationKey}, its class name otherwise.
+     */
+    public static String configurationKey(Object part) {
+        if (part == null) {
+            return "null";
+        }
+        if (part instanceof IConfigurationKey) {
+            return ((IConfigurationKey) part).getConfigurationKey();
+        }
+        return part.getClass().getName();
+    }
+
+    /**
+     * Computes the key of the MotionGraph that is constructed from motions with the specified configuration: a SHA-256
+     * hash of the motions, the configuration keys of align, metric, blending and split, and the construction constants of
+     * MotionGraph.
+     */
+    public static String key(List<SkeletonInterpolator> motions, IAlignment align, IDistance metric, IBlend blending,
+            ISplit split) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        buf.putInt(VERSION).putInt(MotionGraph.DEFAULT_BLENDING_FRAMES).putDouble(MotionGraph.DEFAULT_THRESHOLD);
+        buf.putInt(motions.size());
+        digest.update(buf.array(), 0, buf.position());
+        update(digest, configurationKey(align));
+        update(digest, configurationKey(metric));
+        update(digest, configurationKey(blending));
+        update(digest, configurationKey(split));
+        for (SkeletonInterpolator motion : motions) {
+            update(digest, motion);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private static void update(MessageDigest digest, String str) {
+        byte[] bytes = str == null ? new byte[0] : str.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(str == null ? -1 : bytes.length).array());
+        digest.update(bytes);
+    }
+
+    private static void update(MessageDigest digest, SkeletonInterpolator motion) {
+        update(digest, motion.getConfigType());
+        update(digest, motion.getRotationEncoding());
+        String[] partIds = motion.getPartIds();
+        digest.update(ByteBuffer.allocate(12).putInt(partIds.length).putInt(motion.getConfigSize()).putInt(motion.size())
+                .array());
+        for (String partId : partIds) {
+            update(digest, partId);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(8 + 4 * motion.getConfigSize());
+        for (int i = 0; i < motion.size(); i++) {
+            frame.clear();
+            frame.putDouble(motion.getTime(i));
+            frame.asFloatBuffer().put(motion.getConfig(i), 0, motion.getConfigSize());
+            digest.update(frame.array());
+        }
+    }
+
+    /**
+     * Writes the snapshot of mg with the specified key to file. The snapshot is written to a temporary file in the same
+     * directory, which then atomically replaces file; file itself is never written, as it may be mapped by loaded
+     * MotionGraphs.
+     */
+    public static void write(MotionGraph mg, String key, File file) throws IOException {
+        List<Node> nodes = mg.getNodes();
+        List<Edge> edges = mg.getEdges();
+        Map<Node, Integer> nodeIndex = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndex.put(nodes.get(i), i);
+        }
+        Map<Edge, Integer> edgeIndex = new IdentityHashMap<>();
+        for (int i = 0; i < edges.size(); i++) {
+            edgeIndex.put(edges.get(i), i);
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            write(nodes, edges, nodeIndex, edgeIndex, key, tmp);
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static void write(List<Node> nodes, List<Edge> edges, Map<Node, Integer> nodeIndex,
+            Map<Edge, Integer> edgeIndex, String key, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, key);
+            out.writeInt(nodes.size());
+            out.writeInt(edges.size());
+            for (Node node : nodes) {
+                out.writeInt(node.getId());
+                writeEdgeIndices(out, node.getIncomingEdges(), edgeIndex);
+                writeEdgeIndices(out, node.getOutgoingEdges(), edgeIndex);
+            }
+            ByteArrayOutputStream clip = new ByteArrayOutputStream();
+            for (Edge edge : edges) {
+                out.writeInt(edge.getId());
+                out.writeInt(index(nodeIndex, edge.getStartNode()));
+                out.writeInt(index(nodeIndex, edge.getEndNode()));
+                out.writeByte(edge.isBlend() ? 1 : 0);
+                clip.reset();
+                BinaryClip.write(edge.getMotion(), clip);
+                out.writeInt(clip.size());
+                while (out.size() % 8 != 0) {
+                    out.writeByte(0);
+                }
+                clip.writeTo(out);
+            }
+        }
+    }
+
+    private static void writeEdgeIndices(DataOutputStream out, List<Edge> edges, Map<Edge, Integer> edgeIndex)
+            throws IOException {
+        out.writeInt(edges.size());
+        for (Edge edge : edges) {
+            out.writeInt(index(edgeIndex, edge));
+        }
+    }
+
+    private static <T> int index(Map<T, Integer> indices, T t) {
+        Integer index = indices.get(t);
+        if (index == null) {
+            throw new IllegalArgumentException("MotionGraphCache: " + t + " is not part of the MotionGraph");
+        }
+        return index;
+    }
+
+    /**
+     * Loads the MotionGraph snapshot with the specified key from file, using the specified configuration for the loaded
+     * MotionGraph.
+     *
+     * @return the loaded MotionGraph, or null if file does not exist, or contains a snapshot with another key or
+     * version
+     * @throws IOException if file can not be read, or is corrupt
+     */
+    public static MotionGraph read(File file, String key, IAlignment align, IDistance metric, IBlend blending,
+            ISplit split) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        // check the header with a plain stream first, so that a file with another key or version is never mapped
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("MotionGraphCache: not a MotionGraph snapshot: " + file);
+            }
+            if (in.readInt() != VERSION || !key.equals(readString(in, file.length()))) {
+                return null;
+            }
+        } catch (EOFException e) {
+            throw new IOException("MotionGraphCache: corrupt MotionGraph snapshot: " + file, e);
+        }
+        ByteBuffer buf;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf = mapped.order(ByteOrder.BIG_ENDIAN);
+        }
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("MotionGraphCache: not a MotionGraph snapshot: " + file);
+            }
+            if (buf.getInt() != VERSION || !key.equals(readString(buf))) {
+                return null;
+            }
+            Node[] nodes = new Node[buf.getInt()];
+            Edge[] edges = new Edge[buf.getInt()];
+            int[][] incoming = new int[nodes.length][];
+            int[][] outgoing = new int[nodes.length][];
+            int maxNodeId = -1;
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new Node();
+                nodes[i].setId(buf.getInt());
+                maxNodeId = Math.max(maxNodeId, nodes[i].getId());
+                incoming[i] = readIndices(buf);
+                outgoing[i] = readIndices(buf);
+            }
+            int maxEdgeId = -1;
+            int[] startNodes = new int[edges.length];
+            int[] endNodes = new int[edges.length];
+            for (int i = 0; i < edges.length; i++) {
+                int id = buf.getInt();
+                startNodes[i] = buf.getInt();
+                endNodes[i] = buf.getInt();
+                boolean blend = buf.get() != 0;
+                int clipSize = buf.getInt();
+                buf.position((buf.position() + 7) & ~7);
+                edges[i] = new Edge(BinaryClip.read(buf));
+                buf.position(buf.position() + clipSize);
+                edges[i].setId(id);
+                edges[i].setBlend(blend);
+                maxEdgeId = Math.max(maxEdgeId, id);
+            }
+
+            // connect in the stored order of the incoming and outgoing edges of each node
+            for (int i = 0; i < nodes.length; i++) {
+                for (int e : incoming[i]) {
+                    nodes[i].addIncomingEdge(edges[e]);
+                }
+                for (int e : outgoing[i]) {
+                    nodes[i].addOutgoingEdge(edges[e]);
+                }
+            }
+            for (int i = 0; i < edges.length; i++) {
+                if (edges[i].getStartNode() != nodes[startNodes[i]] || edges[i].getEndNode() != nodes[endNodes[i]]) {
+                    throw new IOException("MotionGraphCache: inconsistent edge " + edges[i].getId() + " in " + file);
+                }
+            }
+            // newly created nodes and edges should not get the ids of loaded ones
+            Node.nodeId = Math.max(Node.nodeId, maxNodeId + 1);
+            Edge.edgeId = Math.max(Edge.edgeId, maxEdgeId + 1);
+
+            List<Edge> edgeList = new ArrayList<>(edges.length);
+            for (Edge edge : edges) {
+                edgeList.add(edge);
+            }
+            List<Node> nodeList = new ArrayList<>(nodes.length);
+            for (Node node : nodes) {
+                nodeList.add(node);
+            }
+            return new MotionGraph(edgeList, nodeList, align, metric, blending, split);
+        } catch (RuntimeException e) { // BufferUnderflowException, IllegalArgumentException, IndexOutOfBoundsException
+            throw new IOException("MotionGraphCache: corrupt MotionGraph snapshot: " + file, e);
+        }
+    }
+
+    private static int[] readIndices(ByteBuffer buf) {
+        int[] indices = new int[buf.getInt()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = buf.getInt();
+        }
+        return indices;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("MotionGraphCache: invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package hmi.animation.motiongraph;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * Sizes, counts and timings collected during the construction of a {@link MotionGraph}.
+ */
+public final class MotionGraphStatistics {
+
+    @Getter
+    private int nodesBefore;
+    @Getter
+    private int edgesBefore;
+    @Getter
+    private int nodesAfter;
+    @Getter
+    private int edgesAfter;
+    /**
+     * Number of motion pairs for which the full distance was computed.
+     */
+    @Getter
+    private long distancePairs;
+    /**
+     * Number of motion pairs that were rejected by the lower bound of the distance.
+     */
+    @Getter
+    private long prefilteredPairs;
+    @Getter
+    private int blends;
+    @Getter
+    private int prunedNodes;
+    @Getter
+    private int prunedEdges;
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+    void setBefore(int nodes, int edges) {
+        nodesBefore = nodes;
+        edgesBefore = edges;
+    }
+
+    void setAfter(int nodes, int edges) {
+        nodesAfter = nodes;
+        edgesAfter = edges;
+    }
+
+    void setDistancePairs(long computed, long prefiltered) {
+        distancePairs = computed;
+        prefilteredPairs = prefiltered;
+    }
+
+    void addBlend() {
+        blends++;
+    }
+
+    void setPruned(int nodes, int edges) {
+        prunedNodes = nodes;
+        prunedEdges = edges;
+    }
+
+    void setPhaseTime(String phase, long nanos) {
+        phaseNanos.put(phase, nanos);
+    }
+
+    /**
+     * @return the duration of each construction phase that was executed, in nanoseconds, in order of execution.
+     */
+    public Map<String, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(phaseNanos);
+    }
+
+    /**
+     * @return the duration of construction phase {@code phase} in milliseconds, or 0 if the phase was not executed.
+     */
+    public long getPhaseMillis(String phase) {
+        Long nanos = phaseNanos.get(phase);
+        return nanos == null ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("nodes: ").append(nodesBefore).append(" -> ").append(nodesAfter);
+        buf.append(", edges: ").append(edgesBefore).append(" -> ").append(edgesAfter);
+        buf.append(", distances: ").append(distancePairs).append(" (").append(prefilteredPairs).append(" prefiltered)");
+        buf.append(", blends: ").append(blends);
+        buf.append(", pruned: ").append(prunedNodes).append(" nodes, ").append(prunedEdges).append(" edges");
+        for (Map.Entry<String, Long> entry : phaseNanos.entrySet()) {
+            buf.append(", ").append(entry.getKey()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+        }
+        return buf.toString();
+    }
+}
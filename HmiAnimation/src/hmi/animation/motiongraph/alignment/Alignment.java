@@ -29,36 +29,47 @@ public class Alignment implements IAlignment {
             partIds[i] = second.getPartIds()[i];
         } // copy second.partIds
 
-        float[] firstConfig = first.getConfig(first.size() - frames); // Frame where blending starts
-
-
-
-        float[] quat1 = {firstConfig[Quat4f.S + 3], firstConfig[Quat4f.X + 3], firstConfig[Quat4f.Y + 3], firstConfig[Quat4f.Z + 3]};
+        ConfigList firstConfigs = first.getConfigList();
+        int firstFrame = first.size() - frames; // Frame where blending starts
+        float[] firstConfig = firstConfigs.getConfigData(firstFrame);
+        int firstOffset = firstConfigs.getConfigOffset(firstFrame);
+        ConfigList secondConfigs = second.getConfigList();
+        float[] secondConfig0 = secondConfigs.getConfigData(0);
+        int secondOffset0 = secondConfigs.getConfigOffset(0);
+
+        float[] quat1 = Quat4f.getQuat4f();
+        Quat4f.set(quat1, 0, firstConfig, firstOffset + 3);
         //Quaternion of first motion
 
         float[] firstRollPitchYaw = new float[3];
         Quat4f.getRollPitchYaw(quat1, firstRollPitchYaw);
 
-        float[] secondConf = {second.getConfig(0)[Quat4f.S + 3], second.getConfig(0)[Quat4f.X + 3],
-                second.getConfig(0)[Quat4f.Y + 3], second.getConfig(0)[Quat4f.Z + 3]};
+        float[] secondConf = Quat4f.getQuat4f();
+        Quat4f.set(secondConf, 0, secondConfig0, secondOffset0 + 3);
         float[] secondRollPitchYawConf0 = new float[3];
         Quat4f.getRollPitchYaw(secondConf, secondRollPitchYawConf0);
 
-        for (int i = 0; i < second.getConfigList().size(); i++) {
-            config = second.getConfig(i).clone();
+        float dx = firstConfig[firstOffset + Vec3f.X] - secondConfig0[secondOffset0 + Vec3f.X];
+        float dy = firstConfig[firstOffset + Vec3f.Y] - secondConfig0[secondOffset0 + Vec3f.Y];
+        float dz = firstConfig[firstOffset + Vec3f.Z] - secondConfig0[secondOffset0 + Vec3f.Z];
+        float[] quat2 = Quat4f.getQuat4f();
+        float[] secondRollPitchYaw = new float[3];
+
+        for (int i = 0; i < secondConfigs.size(); i++) {
+            config = new float[secondConfigs.getConfigSize()];
+            secondConfigs.getConfig(i, config, 0);
 
             // Adjust Translation
-            config[Vec3f.X] = config[Vec3f.X] - second.getConfig(0)[Vec3f.X] + firstConfig[Vec3f.X];
-            config[Vec3f.Y] = config[Vec3f.Y] - second.getConfig(0)[Vec3f.Y] + firstConfig[Vec3f.Y];
-            config[Vec3f.Z] = config[Vec3f.Z] - second.getConfig(0)[Vec3f.Z] + firstConfig[Vec3f.Z];
+            config[Vec3f.X] += dx;
+            config[Vec3f.Y] += dy;
+            config[Vec3f.Z] += dz;
 
 
             //Adjust Rotation
 
-            float[] quat2 = {config[Quat4f.S + 3], config[Quat4f.X + 3], config[Quat4f.Y + 3], config[Quat4f.Z + 3]};
+            Quat4f.set(quat2, 0, config, 3);
             // Quaterninon of second motion
 
-            float[] secondRollPitchYaw = new float[3];
             Quat4f.getRollPitchYaw(quat2, secondRollPitchYaw);
 
             secondRollPitchYaw[2] = secondRollPitchYaw[2] - secondRollPitchYawConf0[2] + firstRollPitchYaw[2];
@@ -23,15 +23,25 @@ public class PositionAlignment implements IAlignment
             partIds[i] = second.getPartIds()[i];
         } // copy second.partIds
 
-        float[] firstConfig = first.getConfig(first.size() - frames); // Frame where blending starts
-        
-        for (int i = 0; i < second.getConfigList().size(); i++) {
-            config = second.getConfig(i).clone();
+        ConfigList firstConfigs = first.getConfigList();
+        int firstFrame = first.size() - frames; // Frame where blending starts
+        float[] firstConfig = firstConfigs.getConfigData(firstFrame);
+        int firstOffset = firstConfigs.getConfigOffset(firstFrame);
+        ConfigList secondConfigs = second.getConfigList();
+        float[] secondConfig0 = secondConfigs.getConfigData(0);
+        int secondOffset0 = secondConfigs.getConfigOffset(0);
+        float dx = firstConfig[firstOffset + Vec3f.X] - secondConfig0[secondOffset0 + Vec3f.X];
+        float dy = firstConfig[firstOffset + Vec3f.Y] - secondConfig0[secondOffset0 + Vec3f.Y];
+        float dz = firstConfig[firstOffset + Vec3f.Z] - secondConfig0[secondOffset0 + Vec3f.Z];
+
+        for (int i = 0; i < secondConfigs.size(); i++) {
+            config = new float[secondConfigs.getConfigSize()];
+            secondConfigs.getConfig(i, config, 0);
 
             // Adjust Translation
-            config[Vec3f.X] = config[Vec3f.X] - second.getConfig(0)[Vec3f.X] + firstConfig[Vec3f.X];
-            config[Vec3f.Y] = config[Vec3f.Y] - second.getConfig(0)[Vec3f.Y] + firstConfig[Vec3f.Y];
-            config[Vec3f.Z] = config[Vec3f.Z] - second.getConfig(0)[Vec3f.Z] + firstConfig[Vec3f.Z];
+            config[Vec3f.X] += dx;
+            config[Vec3f.Y] += dy;
+            config[Vec3f.Z] += dz;
             configList.addConfig(second.getTime(i), config); //Set new config for new SkeletonInterplator
 
         }
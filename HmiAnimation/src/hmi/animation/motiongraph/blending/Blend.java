@@ -2,6 +2,8 @@ package hmi.animation.motiongraph.blending;
 
 import hmi.animation.ConfigList;
 import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.IConfigurationKey;
+import hmi.animation.motiongraph.MotionGraphCache;
 import hmi.animation.motiongraph.alignment.IAlignment;
 import hmi.math.Quat4f;
 
@@ -14,7 +16,7 @@ import java.util.Map;
  * Created by Zukie on 24/06/15.
  * @author Zukie
  */
-public class Blend implements IBlend {
+public class Blend implements IBlend, IConfigurationKey {
 
     IAlignment align;
 
@@ -22,6 +24,14 @@ public class Blend implements IBlend {
         this.align = align;
     }
 
+    /**
+     * {@inheritDoc} The key depends on the alignment.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "(" + MotionGraphCache.configurationKey(align) + ")";
+    }
+
     @Override
     public SkeletonInterpolator blend(SkeletonInterpolator first, SkeletonInterpolator second, int frames) {
         SkeletonInterpolator blendedMotion = new SkeletonInterpolator();
@@ -33,6 +43,8 @@ public class Blend implements IBlend {
         blendedMotion.setConfigType(second.getConfigType());
 
         blendedMotion.setConfigList(configList);
+        ConfigList firstConfigs = first.getConfigList();
+        ConfigList secondConfigs = second.getConfigList();
 
         for (int frame = 0; frame < frames; frame++) {
 
@@ -40,19 +52,28 @@ public class Blend implements IBlend {
             Map<String, float[]> configMap2 = new HashMap<>(second.getPartIds().length);
             List<String> keys = new LinkedList<>();
             //create the new config
-            float[] newConf = second.getConfig(frame).clone();
-
+            float[] newConf = new float[second.getConfigSize()];
+            secondConfigs.getConfig(frame, newConf, 0);
+
+            // views on the frames, without copying (contiguous lists)
+            int firstFrame = (first.size() - frames) + frame;
+            float[] firstData = firstConfigs.getConfigData(firstFrame);
+            int firstOffset = firstConfigs.getConfigOffset(firstFrame);
+            float[] firstRotData = firstConfigs.getConfigData(frame);
+            int firstRotOffset = firstConfigs.getConfigOffset(frame);
+            float[] secondData = secondConfigs.getConfigData(frame);
+            int secondOffset = secondConfigs.getConfigOffset(frame);
 
             // Adjust Transizion of fist motion
-            float x1 = first.getConfig((first.size() - frames) + frame)[0];
-            float y1 = first.getConfig((first.size() - frames) + frame)[1];
-            float z1 = first.getConfig((first.size() - frames) + frame)[2];
+            float x1 = firstData[firstOffset];
+            float y1 = firstData[firstOffset + 1];
+            float z1 = firstData[firstOffset + 2];
 
 
             //adjust transition of second motion
-            float x2 = second.getConfig(frame)[0];
-            float y2 = second.getConfig(frame)[1];
-            float z2 = second.getConfig(frame)[2];
+            float x2 = secondData[secondOffset];
+            float y2 = secondData[secondOffset + 1];
+            float z2 = secondData[secondOffset + 2];
 
 
             newConf[0] = (float) blendWeights(frame, frames) * x1 + (float) (1 - blendWeights(frame, frames)) * x2;
@@ -60,25 +81,25 @@ public class Blend implements IBlend {
             newConf[2] = (float) blendWeights(frame, frames) * z1 + (float) (1 - blendWeights(frame, frames)) * z2;
 
             //Adjust Rotation
-            int index1 = 3; //rotation values start at 3rd position in array
-            int index2 = 3;
+            int index1 = firstRotOffset + 3; //rotation values start at 3rd position in array
+            int index2 = secondOffset + 3;
 
             for (int part = 0; part < first.getPartIds().length; part++) {
                 configMap1.put(first.getPartIds()[part], new float[]{
-                        first.getConfig(frame)[index1 + part * 4],
-                        first.getConfig(frame)[index1 + part * 4 + 1],
-                        first.getConfig(frame)[index1 + part * 4 + 2],
-                        first.getConfig(frame)[index1 + part * 4 + 3]});
+                        firstRotData[index1 + part * 4],
+                        firstRotData[index1 + part * 4 + 1],
+                        firstRotData[index1 + part * 4 + 2],
+                        firstRotData[index1 + part * 4 + 3]});
                 if (!keys.contains(first.getPartIds()[part])) {
                     keys.add(first.getPartIds()[part]);
                 }
             }
             for (int part = 0; part < second.getPartIds().length; part++) {
                 configMap2.put(second.getPartIds()[part], new float[]{
-                        second.getConfig(frame)[index2 + part * 4],
-                        second.getConfig(frame)[index2 + part * 4 + 1],
-                        second.getConfig(frame)[index2 + part * 4 + 2],
-                        second.getConfig(frame)[index2 + part * 4 + 3]});
+                        secondData[index2 + part * 4],
+                        secondData[index2 + part * 4 + 1],
+                        secondData[index2 + part * 4 + 2],
+                        secondData[index2 + part * 4 + 3]});
                 if (!keys.contains(second.getPartIds()[part])) {
                     keys.add(second.getPartIds()[part]);
                 }
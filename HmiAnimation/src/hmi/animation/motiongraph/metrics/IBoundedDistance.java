@@ -0,0 +1,22 @@
+package hmi.animation.motiongraph.metrics;
+
+import hmi.animation.SkeletonInterpolator;
+
+/**
+ * Distance-Metric that can cheaply compute a lower bound for its distance. Used to pre-filter candidate transitions
+ * before computing the full distance.
+ */
+public interface IBoundedDistance extends IDistance {
+
+    /**
+     * Computes a lower bound for {@link #distance(SkeletonInterpolator, SkeletonInterpolator, int)}, that is:
+     * {@code lowerBound(start, end, frames) <= distance(start, end, frames)}. The lower bound should be considerably
+     * cheaper to compute than the distance itself.
+     * <p>
+     * @param start First Motion
+     * @param end Second Motion
+     * @param frames Number of Frames to use to compare the Motions
+     * @return lower bound of the distance
+     */
+    double lowerBound(SkeletonInterpolator start, SkeletonInterpolator end, int frames);
+}
@@ -1,7 +1,12 @@
 package hmi.animation.motiongraph.metrics;
 
 import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.IConfigurationKey;
+import hmi.animation.motiongraph.MotionGraphCache;
+import hmi.animation.motiongraph.alignment.Alignment;
 import hmi.animation.motiongraph.alignment.IAlignment;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.animation.motiongraph.alignment.PositionAlignment;
 import hmi.math.Quat4f;
 
 import java.util.HashMap;
@@ -20,12 +25,16 @@ import java.util.Set;
  * <p>
  * @author yannick-broeker
  */
-public final class JointAngles implements IDistance {
+public final class JointAngles implements IBoundedDistance, IConfigurationKey {
 
     /**
      * Default number of frames to be compared.
      */
     public static final int DEFAULT_COMPARED_FRAMES = 10;
+    /**
+     * Only every LOWER_BOUND_STRIDE-th pair of frames is compared in {@link #lowerBound}.
+     */
+    public static final int LOWER_BOUND_STRIDE = 4;
     /**
      * Weights for Joints
      */
@@ -44,6 +53,14 @@ public final class JointAngles implements IDistance {
         this.align = align;
     }
 
+    /**
+     * {@inheritDoc} The key depends on the alignment.
+     */
+    @Override
+    public String getConfigurationKey() {
+        return getClass().getName() + "(" + MotionGraphCache.configurationKey(align) + ")";
+    }
+
     /**
      * {@inheritDoc} This implementation calls
      * {@link #distance(SkeletonInterpolator, SkeletonInterpolator, int)} with
@@ -83,15 +100,48 @@ try {
     //start.size() - startFrame = current Frame, so +1 for number of Frames
         
         //TODO
-        return dist(start.getConfig(start.size() - startFrame), end.getConfig(endFrame),
+        int frame1 = start.size() - startFrame;
+        return dist(start.getConfigList().getConfigData(frame1), start.getConfigList().getConfigOffset(frame1),
+                end.getConfigList().getConfigData(endFrame), end.getConfigList().getConfigOffset(endFrame),
                 start.getConfigType(), end.getConfigType(),
-                start.getPartIds(), end.getPartIds());
+                start.getPartIds(), end.getPartIds(), false);
         } catch(Exception e) {System.err.println(start.size() - startFrame);throw e;}
 
     }
 
-    private double dist(float[] config1, float[] config2, String configType1, String configType2, String[] partIds1, String[] partIds2) {
-        int index1 = 0, index2 = 0;
+    /**
+     * {@inheritDoc} The distance is a sum of non-negative terms per frame pair, per joint. The lower bound is the sum
+     * of the terms that do not depend on the alignment (all joint rotations, except the root rotation), for every
+     * {@link #LOWER_BOUND_STRIDE}-th pair of frames. For alignments other than {@link Alignment},
+     * {@link PositionAlignment} (on motions with a root translation) and {@link NopAlignment}, which only change root
+     * translation and rotation, 0 is returned.
+     */
+    @Override
+    public double lowerBound(SkeletonInterpolator start, SkeletonInterpolator end, int frames) {
+        boolean rootOnlyAlignment = (align instanceof Alignment || align instanceof PositionAlignment)
+                && end.getConfigType().startsWith(SkeletonInterpolator.ROOT_TRANSFORM);
+        if (!rootOnlyAlignment && !(align instanceof NopAlignment)) {
+            return 0;
+        }
+        double bound = 0;
+        for (int i = 0; i < frames; i += LOWER_BOUND_STRIDE) {
+            int frame1 = start.size() - (frames - i);
+            bound += dist(start.getConfigList().getConfigData(frame1), start.getConfigList().getConfigOffset(frame1),
+                    end.getConfigList().getConfigData(i), end.getConfigList().getConfigOffset(i),
+                    start.getConfigType(), end.getConfigType(),
+                    start.getPartIds(), end.getPartIds(), true);
+        }
+        return bound;
+    }
+
+    /**
+     * Distance between the configs starting at offset1 in config1 and at offset2 in config2, as obtained
+     * from ConfigList.getConfigData and getConfigOffset, so without copying.
+     * When unalignedOnly is true, only the terms that are not affected by an alignment of the root of config2 are computed.
+     */
+    private double dist(float[] config1, int offset1, float[] config2, int offset2, String configType1, String configType2,
+            String[] partIds1, String[] partIds2, boolean unalignedOnly) {
+        int index1 = offset1, index2 = offset2;
         double rootTransformDist = 0;
         double rotDist = 0;
         Map<String, float[]> configMap1 = new HashMap<String, float[]>();
@@ -100,8 +150,10 @@ try {
 
         //Root-Translation
         if (configType1.contains(SkeletonInterpolator.ROOT_TRANSFORM) && configType2.contains(SkeletonInterpolator.ROOT_TRANSFORM)) {
-            for (; index1 < 3; index1++, index2++) {
-                rootTransformDist += Math.pow(config1[index1] - config2[index2], 2);
+            for (int k = 0; k < 3; k++, index1++, index2++) {
+                if (!unalignedOnly) {
+                    rootTransformDist += Math.pow(config1[index1] - config2[index2], 2);
+                }
             }
         } else if (configType1.contains(SkeletonInterpolator.ROOT_TRANSFORM)) {
             index1 += 3;
@@ -147,6 +199,9 @@ try {
                 float[] rotation2 = configMap2.get(key);
                 Float weight = weights.get(key);
                 weight = weight != null ? weight : 1;
+                if (unalignedOnly && partIds2.length > 0 && key.equals(partIds2[0])) {
+                    continue; // root rotation
+                }
                 if (rotation1 != null && rotation2 != null) {
                     rotDist += weight * quaternionNorm(rotation1, rotation2);
                 }
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hmi.math.Quat4f;
+import hmi.xml.XMLTokenizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for BinaryClip
+ */
+public class BinaryClipTest
+{
+    private static final float PRECISION = 0.0001f;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final String CLIP_XML = "<SkeletonInterpolator encoding=\"T1R\" parts=\"HumanoidRoot r_shoulder\">\n"
+            + "0.0  0.0 0.6 -1.5   -0.707 0.707 0.0 0.0   1.0 0.0 0.0 0.0\n"
+            + "1.1  0.0 0.6 -1.4   -0.707 0.707 0.0 0.0   0.0 0.0 1.0 0.0\n"
+            + "2.2  0.1 0.5 -1.3   -0.707 0.707 0.0 0.0   0.0 0.0 0.0 1.0\n"
+            + "</SkeletonInterpolator>";
+
+    private static final String AXISANGLE_XML = "<SkeletonInterpolator encoding=\"R\" rotationEncoding=\"axisangles\" parts=\"r_shoulder r_elbow\">\n"
+            + "0.0  1 0 0 0.5  0 1 0 1.0\n" 
+            + "0.5  1 0 0 0.7  0 1 0 0.2\n" 
+            + "</SkeletonInterpolator>";
+
+    private static void assertInterpolatorEquals(SkeletonInterpolator expected, SkeletonInterpolator actual)
+    {
+        assertArrayEquals(expected.getPartIds(), actual.getPartIds());
+        assertEquals(expected.getConfigType(), actual.getConfigType());
+        assertEquals(expected.getRotationEncoding(), actual.getRotationEncoding());
+        assertEquals(expected.getConfigSize(), actual.getConfigSize());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.getTime(i), actual.getTime(i), PRECISION);
+            assertArrayEquals(expected.getConfig(i), actual.getConfig(i), PRECISION);
+        }
+    }
+
+    private static SkeletonInterpolator roundTrip(SkeletonInterpolator ski) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryClip.write(ski, out);
+        return BinaryClip.read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(CLIP_XML));
+        SkeletonInterpolator copy = roundTrip(ski);
+        assertTrue(copy.getConfigList().isBufferBacked());
+        assertInterpolatorEquals(ski, copy);
+    }
+
+    @Test
+    public void testAxisAngleRoundTrip() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(AXISANGLE_XML));
+        SkeletonInterpolator copy = roundTrip(ski);
+        assertInterpolatorEquals(ski, copy);
+        float[] q = Quat4f.getQuat4fFromAxisAngle(1f, 0f, 0f, 0.5f);
+        float[] conf = new float[8];
+        copy.getConfigList().getConfig(0, conf, 0);
+        assertEquals(q[Quat4f.s], conf[0], PRECISION);
+        assertEquals(q[Quat4f.x], conf[1], PRECISION);
+    }
+
+    @Test
+    public void testMapConvertedFile() throws IOException
+    {
+        File xmlFile = tmpFolder.newFile("clip.xml");
+        try (Writer w = new FileWriter(xmlFile))
+        {
+            w.write(CLIP_XML);
+        }
+        File binFile = new File(tmpFolder.getRoot(), "clip" + BinaryClip.FILE_EXTENSION);
+        BinaryClip.convert(xmlFile, binFile);
+        SkeletonInterpolator mapped = BinaryClip.map(binFile);
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(CLIP_XML));
+        assertInterpolatorEquals(ski, mapped);
+    }
+
+    @Test
+    public void testInterpolateMapped() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(CLIP_XML));
+        SkeletonInterpolator copy = roundTrip(ski);
+        float[] expected = ski.getInterpolatedConfig(1.5, null);
+        float[] actual = copy.getInterpolatedConfig(1.5, null);
+        assertArrayEquals(expected, actual, PRECISION);
+    }
+
+    @Test
+    public void testModifyBufferBacked() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(CLIP_XML));
+        ConfigList configs = roundTrip(ski).getConfigList();
+        configs.addConfig(3.3, new float[configs.getConfigSize()]);
+        assertTrue(!configs.isBufferBacked());
+        assertEquals(4, configs.size());
+        assertArrayEquals(ski.getConfig(2), configs.getConfig(2), PRECISION);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupt() throws IOException
+    {
+        SkeletonInterpolator ski = new SkeletonInterpolator(new XMLTokenizer(CLIP_XML));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryClip.write(ski, out);
+        byte[] bytes = out.toByteArray();
+        ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 10);
+        BinaryClip.read(truncated);
+    }
+}
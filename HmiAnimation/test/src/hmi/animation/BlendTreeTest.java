@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import static hmi.testutil.math.Quat4fTestUtil.assertQuat4fRotationEquivalent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import hmi.math.Quat4f;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for BlendTree and BlendTreeEvaluator
+ */
+public class BlendTreeTest
+{
+    private static final float PRECISION = 0.0001f;
+
+    private static final String[] JOINTS = { "a", "b", "c" };
+
+    /*
+     * Clip for joints a and b, rotating about the x axis, from angle a0/b0 at time 0 to a1/b1 at time 1
+     */
+    private SkeletonInterpolator createClip(float a0, float b0, float a1, float b1)
+    {
+        String str = "<SkeletonInterpolator rotationEncoding=\"axisangles\" parts=\"a b\" encoding=\"R\">" + "0 1 0 0 " + a0
+                + " 1 0 0 " + b0 + "\n" + "1 1 0 0 " + a1 + " 1 0 0 " + b1 + "</SkeletonInterpolator>";
+        SkeletonInterpolator ski = new SkeletonInterpolator();
+        ski.readXML(str);
+        return ski;
+    }
+
+    private float[] getRotation(BlendTreeEvaluator ev, int joint)
+    {
+        return Arrays.copyOfRange(ev.getRotations(), joint * 4, joint * 4 + 4);
+    }
+
+    private void assertRotationX(float angle, float[] q)
+    {
+        assertQuat4fRotationEquivalent(Quat4f.getQuat4fFromAxisAngle(1, 0, 0, angle), q, PRECISION);
+    }
+
+    @Test
+    public void testClip()
+    {
+        SkeletonInterpolator ski = createClip(0.2f, 0.4f, 1.2f, 0.8f);
+        BlendTree tree = new BlendTree(JOINTS);
+        tree.setRoot(tree.createClip(ski, false));
+        BlendTreeEvaluator ev = new BlendTreeEvaluator(tree);
+        ev.evaluate(0.25);
+        assertRotationX(0.45f, getRotation(ev, 0));
+        assertRotationX(0.5f, getRotation(ev, 1));
+        assertArrayEquals(new float[] { 1, 1, 0 }, ev.getRotationWeights(), PRECISION);
+        assertArrayEquals(new float[] { 0, 0, 0 }, ev.getTranslationWeights(), PRECISION);
+
+        ev.evaluate(2);
+        assertRotationX(1.2f, getRotation(ev, 0));
+        ev.evaluate(-1);
+        assertRotationX(0.2f, getRotation(ev, 0));
+    }
+
+    @Test
+    public void testLoopAndClipStart()
+    {
+        SkeletonInterpolator ski = createClip(0f, 0f, 1f, 1f);
+        BlendTree tree = new BlendTree(JOINTS);
+        BlendTree.Node clip = tree.createClip(ski, true);
+        tree.setRoot(clip);
+        BlendTreeEvaluator ev = new BlendTreeEvaluator(tree);
+        ev.evaluate(2.25);
+        assertRotationX(0.25f, getRotation(ev, 0));
+        ev.setClipStart(clip, 0.5);
+        ev.evaluate(2.25);
+        assertRotationX(0.75f, getRotation(ev, 0));
+    }
+
+    @Test
+    public void testBlend()
+    {
+        BlendTree tree = new BlendTree(JOINTS);
+        BlendTree.Node walk = tree.createClip(createClip(0f, 0f, 0f, 0f), false);
+        BlendTree.Node run = tree.createClip(createClip(1f, 0.4f, 1f, 0.4f), false);
+        tree.setRoot(tree.createBlend(new BlendTree.Node[] { walk, run }, new String[] { "walk", "run" }));
+        BlendTreeEvaluator ev = new BlendTreeEvaluator(tree);
+        ev.evaluate(0.5);
+        assertRotationX(0.5f, getRotation(ev, 0));
+        assertRotationX(0.2f, getRotation(ev, 1));
+
+        ev.setWeight("walk", 0f);
+        ev.evaluate(0.5);
+        assertRotationX(1f, getRotation(ev, 0));
+
+        ev.setWeight("walk", 3f);
+        ev.setWeight("run", 1f);
+        ev.evaluate(0.5);
+        float[] q = Quat4f.getIdentity(); // nlerp of 3 * identity + 1 * q(1 rad)
+        float[] expected = Quat4f.getQuat4fFromAxisAngle(1, 0, 0, 1f);
+        for (int i = 0; i < 4; i++)
+        {
+            expected[i] = (3 * q[i] + expected[i]) / 4;
+        }
+        Quat4f.normalize(expected);
+        assertQuat4fRotationEquivalent(expected, getRotation(ev, 0), PRECISION);
+    }
+
+    @Test
+    public void testOverride()
+    {
+        BlendTree tree = new BlendTree(JOINTS);
+        BlendTree.Node base = tree.createClip(createClip(0.1f, 0.1f, 0.1f, 0.1f), false);
+        BlendTree.Node gesture = tree.createClip(createClip(1f, 1f, 1f, 1f), false);
+        Map<String, Float> mask = new HashMap<String, Float>();
+        mask.put("b", 1f);
+        tree.setRoot(tree.createOverride(base, gesture, "gesture", mask));
+        BlendTreeEvaluator ev = new BlendTreeEvaluator(tree);
+        ev.evaluate(0);
+        assertRotationX(0.1f, getRotation(ev, 0));
+        assertRotationX(1f, getRotation(ev, 1));
+        assertEquals(0, ev.getRotationWeights()[2], PRECISION);
+
+        ev.setWeight("gesture", 0.5f);
+        ev.evaluate(0);
+        assertRotationX(0.1f, getRotation(ev, 0));
+        assertRotationX(0.55f, getRotation(ev, 1));
+    }
+
+    @Test
+    public void testAdditive()
+    {
+        BlendTree tree = new BlendTree(JOINTS);
+        BlendTree.Node base = tree.createClip(createClip(0.2f, 0.2f, 0.2f, 0.2f), false);
+        BlendTree.Node breathe = tree.createClip(createClip(0.3f, 0.3f, 0.3f, 0.3f), false);
+        tree.setRoot(tree.createAdditive(base, breathe, "breathe", null));
+        BlendTreeEvaluator ev = new BlendTreeEvaluator(tree);
+        ev.evaluate(0);
+        assertRotationX(0.5f, getRotation(ev, 0));
+        ev.setWeight("breathe", 0.5f);
+        ev.evaluate(0);
+        assertRotationX(0.35f, getRotation(ev, 1));
+    }
+
+    @Test
+    public void testSharedTree()
+    {
+        BlendTree tree = new BlendTree(JOINTS);
+        BlendTree.Node walk = tree.createClip(createClip(0f, 0f, 0f, 0f), false);
+        BlendTree.Node run = tree.createClip(createClip(1f, 0.4f, 1f, 0.4f), false);
+        tree.addWeight("run", 0f);
+        tree.setRoot(tree.createBlend(new BlendTree.Node[] { walk, run }, new String[] { "walk", "run" }));
+
+        VJoint skeleton1 = new VJoint("a", "a");
+        skeleton1.addChild(new VJoint("b", "b"));
+        VJoint skeleton2 = new VJoint("a", "a");
+        skeleton2.addChild(new VJoint("b", "b"));
+        FlatSkeleton flat2 = new FlatSkeleton(skeleton2);
+
+        BlendTreeEvaluator ev1 = new BlendTreeEvaluator(tree);
+        ev1.setTarget(skeleton1);
+        BlendTreeEvaluator ev2 = new BlendTreeEvaluator(tree);
+        ev2.setFlatTarget(flat2);
+        ev2.setWeight("walk", 0f);
+        ev2.setWeight("run", 1f);
+
+        ev1.evaluate(0.5);
+        ev2.evaluate(0.5);
+        float[] q = Quat4f.getQuat4f();
+        skeleton1.getPart("b").getRotation(q);
+        assertRotationX(0f, q);
+        flat2.getRotation(flat2.getJointIndex("b"), q);
+        assertRotationX(0.4f, q);
+        flat2.getRotation(flat2.getJointIndex("a"), q);
+        assertRotationX(1f, q);
+    }
+}
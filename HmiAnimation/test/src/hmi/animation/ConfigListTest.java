@@ -199,4 +199,161 @@ public class ConfigListTest
         assertEquals(c4[7], clistDecoded.getConfig(4)[7], CONFIG_PRECISION);
 
     }
+
+    private void addAll(ConfigList cl)
+    {
+        cl.addConfig(0.0, c0);
+        cl.addConfig(1.1, c1);
+        cl.addConfig(2.2, c2);
+        cl.addConfig(3.3, c3);
+        cl.addConfig(4.4, c4);
+        cl.addConfig(5.5, c5);
+    }
+
+    @Test
+    public void testContiguousAddConfig()
+    {
+        ConfigList cl = new ConfigList(8, true);
+        assertTrue(cl.isContiguous());
+        cl.addConfig(7.7, c0);
+        cl.addConfig(3.3, c1);
+        cl.addConfig(5.5, c2);
+        cl.addConfig(8.8, c3);
+        for (int i = 0; i < 20; i++)
+        {
+            cl.addConfig(10 + i, c4);
+        }
+        assertEquals(24, cl.size());
+        assertEquals(3.3, cl.getTime(0), CONFIG_PRECISION);
+        assertEquals(7.7, cl.getTime(2), CONFIG_PRECISION);
+        assertArrayEquals(c1, cl.getConfig(0), CONFIG_PRECISION);
+        assertArrayEquals(c2, cl.getConfig(1), CONFIG_PRECISION);
+        assertArrayEquals(c0, cl.getConfig(2), CONFIG_PRECISION);
+        assertArrayEquals(c3, cl.getConfig(3), CONFIG_PRECISION);
+        assertArrayEquals(c4, cl.getConfig(23), CONFIG_PRECISION);
+        assertTrue(cl.getConfigData(0) == cl.getConfigData(3));
+        assertEquals(3 * 8, cl.getConfigOffset(3));
+    }
+
+    @Test
+    public void testContiguousView()
+    {
+        ConfigList cl = new ConfigList(8, true);
+        addAll(cl);
+        float[] data = cl.getConfigData(2);
+        int offset = cl.getConfigOffset(2);
+        for (int i = 0; i < 8; i++)
+        {
+            assertEquals(c2[i], data[offset + i], CONFIG_PRECISION);
+        }
+        float[] dst = new float[10];
+        cl.getConfig(3, dst, 2);
+        assertEquals(c3[0], dst[2], CONFIG_PRECISION);
+        assertEquals(c3[7], dst[9], CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testContiguousSubConfigListSharesData()
+    {
+        ConfigList cl = new ConfigList(8, true);
+        addAll(cl);
+        ConfigList sub = cl.subConfigList(2, 5);
+        assertEquals(3, sub.size());
+        assertEquals(2.2, sub.getTime(0), CONFIG_PRECISION);
+        assertTrue(sub.getConfigData(0) == cl.getConfigData(0));
+        assertEquals(cl.getConfigOffset(2), sub.getConfigOffset(0));
+        assertArrayEquals(c4, sub.getConfig(2), CONFIG_PRECISION);
+
+        // modification copies the data, leaving the other list intact
+        sub.addConfig(4.5, c0);
+        assertTrue(sub.getConfigData(0) != cl.getConfigData(0));
+        assertEquals(4, sub.size());
+        assertArrayEquals(c0, sub.getConfig(3), CONFIG_PRECISION);
+        assertArrayEquals(c5, cl.getConfig(5), CONFIG_PRECISION);
+        cl.setConfig(2, c5, 0);
+        assertArrayEquals(c5, cl.getConfig(2), CONFIG_PRECISION);
+        assertArrayEquals(c2, sub.getConfig(0), CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testAddConfigs()
+    {
+        addAll(clist);
+        ConfigList cl = new ConfigList(8);
+        cl.addConfigs(clist);
+        cl.addConfigs(10, clist);
+        assertEquals(12, cl.size());
+        assertEquals(15.5, cl.getEndTime(), CONFIG_PRECISION);
+        assertTrue(c1 == cl.getConfig(7));
+    }
+
+    @Test
+    public void testContiguousAddConfigs()
+    {
+        ConfigList cl = new ConfigList(8, true);
+        addAll(cl);
+        ConfigList cl2 = new ConfigList(8, true);
+        cl2.addConfigs(cl);
+        cl2.addConfigs(10, cl);
+        cl2.addConfigs(1, cl.subConfigList(0, 1)); // not at the end: inserted
+        assertEquals(13, cl2.size());
+        assertEquals(1.0, cl2.getTime(1), CONFIG_PRECISION);
+        assertArrayEquals(c0, cl2.getConfig(1), CONFIG_PRECISION);
+        assertEquals(10.0, cl2.getTime(7), CONFIG_PRECISION);
+        assertArrayEquals(c0, cl2.getConfig(7), CONFIG_PRECISION);
+        assertArrayEquals(c5, cl2.getConfig(12), CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testContiguousCopy()
+    {
+        addAll(clist);
+        ConfigList cl = clist.contiguousCopy();
+        assertTrue(cl.isContiguous());
+        assertEquals(6, cl.size());
+        for (int i = 0; i < 6; i++)
+        {
+            assertEquals(clist.getTime(i), cl.getTime(i), CONFIG_PRECISION);
+            assertArrayEquals(clist.getConfig(i), cl.getConfig(i), CONFIG_PRECISION);
+        }
+        ConfigList copy = cl.copy();
+        copy.mirrorTranslation(0);
+        assertEquals(-c0[0], copy.getConfig(0)[0], CONFIG_PRECISION);
+        assertEquals(c0[0], cl.getConfig(0)[0], CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testContiguousXML() throws java.io.IOException
+    {
+        ConfigList cl = new ConfigList(8, true);
+        addAll(cl);
+        ConfigList clistDecoded = new ConfigList(new XMLTokenizer(cl.toXMLString()));
+        assertEquals(6, clistDecoded.size());
+        assertArrayEquals(c3, clistDecoded.getConfig(3), CONFIG_PRECISION);
+    }
+
+    @Test
+    public void testBufferBacked()
+    {
+        float[] data = Floats.concat(c0, c1, c2);
+        ConfigList cl = new ConfigList(new double[] { 0, 1, 2 }, java.nio.FloatBuffer.wrap(data), 8);
+        assertTrue(cl.isBufferBacked());
+        assertArrayEquals(c1, cl.getConfig(1), CONFIG_PRECISION);
+        assertNotSame(cl.getConfig(1), cl.getConfig(1)); // not cached
+
+        float[] scratch = new float[8];
+        assertSame(scratch, cl.getConfigData(2, scratch));
+        assertArrayEquals(c2, scratch, CONFIG_PRECISION);
+        assertEquals(0, cl.getConfigOffset(2));
+
+        ConfigList sub = cl.subConfigList(1, 3);
+        assertTrue(sub.isBufferBacked());
+        assertEquals(2, sub.size());
+        assertArrayEquals(c2, sub.getConfig(1), CONFIG_PRECISION);
+
+        cl.mirrorTranslation(0);
+        assertFalse(cl.isBufferBacked());
+        assertEquals(-c0[0], cl.getConfig(0)[0], CONFIG_PRECISION);
+        assertEquals(c0[0], data[0], CONFIG_PRECISION);
+    }
 }
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hmi.math.Mat3f;
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
+import hmi.testutil.animation.HanimBody;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for FlatSkeleton
+ */
+public class FlatSkeletonTest
+{
+    private static final float PRECISION = 0.0001f;
+    private VJoint human;
+
+    @Before
+    public void setup()
+    {
+        human = HanimBody.getLOA1HanimBody();
+        human.getPart(Hanim.r_shoulder).setRotation(Quat4f.getQuat4fFromAxisAngle(1, 0, 0, 0.7f));
+        human.getPart(Hanim.r_elbow).setRotation(Quat4f.getQuat4fFromAxisAngle(0, 1, 0, 1.2f));
+        human.getPart(Hanim.l_hip).setRotation(Quat4f.getQuat4fFromAxisAngle(0, 0, 1, -0.4f));
+        human.getPart(Hanim.skullbase).setScale(1.1f, 0.9f, 1.2f);
+        human.setTranslation(0.1f, 1.0f, -0.3f);
+    }
+
+    private void assertGlobalMatricesEqual(FlatSkeleton flat)
+    {
+        float[] m = Mat4f.getMat4f();
+        for (int i = 0; i < flat.size(); i++)
+        {
+            flat.getGlobalMatrix(i, m);
+            assertArrayEquals(flat.getVJoint(i).getGlobalMatrix(), m, PRECISION);
+        }
+    }
+
+    @Test
+    public void testTopologicalOrder()
+    {
+        FlatSkeleton flat = new FlatSkeleton(human);
+        assertEquals(human.getParts().size(), flat.size());
+        assertEquals(-1, flat.getParentIndex(0));
+        for (int i = 1; i < flat.size(); i++)
+        {
+            int pi = flat.getParentIndex(i);
+            assertTrue(pi < i);
+            assertEquals(flat.getVJoint(i).getParent(), flat.getVJoint(pi));
+        }
+    }
+
+    @Test
+    public void testCalculateMatrices()
+    {
+        FlatSkeleton flat = new FlatSkeleton(human);
+        flat.calculateMatrices();
+        human.calculateMatrices();
+        assertGlobalMatricesEqual(flat);
+    }
+
+    @Test
+    public void testSkewScaling()
+    {
+        human.getPart(Hanim.r_elbow).setSkewMatrix(new float[] { 1f, 0.2f, 0f, 0f, 1.1f, 0f, 0.1f, 0f, 0.9f });
+        FlatSkeleton flat = new FlatSkeleton(human);
+        flat.calculateMatrices();
+        human.calculateMatrices();
+        assertGlobalMatricesEqual(flat);
+    }
+
+    @Test
+    public void testNonAffineLocalMatrix()
+    {
+        float[] m = Mat4f.getIdentity();
+        Mat4f.setTranslation(m, new float[] { 0f, -0.3f, 0.05f });
+        m[Mat4f.M30] = 0.1f;
+        m[Mat4f.M32] = -0.2f;
+        VJoint elbow = human.getPart(Hanim.r_elbow);
+        elbow.setLocalTransform(m);
+        assertEquals(Mat3f.ScalingType.SKEW, elbow.getScalingType());
+        FlatSkeleton flat = new FlatSkeleton(human); // local matrix used as is
+        flat.setRotation(flat.getJointIndex(Hanim.r_elbow), Quat4f.getQuat4fFromAxisAngle(0, 0, 1, 0.5f));
+        flat.calculateMatrices();
+        human.calculateMatrices();
+        assertGlobalMatricesEqual(flat);
+        flat.writeToJoints();
+        assertArrayEquals(m, elbow.getLocalMatrix(), PRECISION);
+    }
+
+    @Test
+    public void testWriteGlobalMatrices()
+    {
+        FlatSkeleton flat = new FlatSkeleton(human);
+        int index = flat.getJointIndex(Hanim.r_wrist);
+        flat.setRotation(flat.getJointIndex(Hanim.r_elbow), Quat4f.getQuat4fFromAxisAngle(0, 0, 1, 0.5f));
+        flat.calculateMatrices();
+        flat.writeGlobalMatrices();
+        float[] m = Mat4f.getMat4f();
+        flat.getGlobalMatrix(index, m);
+        assertArrayEquals(m, human.getPart(Hanim.r_wrist).getGlobalMatrix(), PRECISION);
+    }
+
+    @Test
+    public void testWriteToJoints()
+    {
+        FlatSkeleton flat = new FlatSkeleton(human);
+        float[] q = Quat4f.getQuat4fFromAxisAngle(0, 0, 1, 0.5f);
+        flat.setRotation(flat.getJointIndex(Hanim.r_elbow), q);
+        flat.setTranslation(0, new float[] { 1, 2, 3 });
+        flat.writeToJoints();
+        float[] r = Quat4f.getQuat4f();
+        human.getPart(Hanim.r_elbow).getRotation(r);
+        assertArrayEquals(q, r, PRECISION);
+        float[] t = new float[3];
+        human.getTranslation(t);
+        assertArrayEquals(new float[] { 1, 2, 3 }, t, PRECISION);
+
+        flat.calculateMatrices();
+        human.calculateMatrices();
+        assertGlobalMatricesEqual(flat);
+    }
+
+    @Test
+    public void testReadFromJoints()
+    {
+        FlatSkeleton flat = new FlatSkeleton(human);
+        human.getPart(Hanim.l_knee).setRotation(Quat4f.getQuat4fFromAxisAngle(1, 0, 0, 0.3f));
+        flat.readFromJoints();
+        flat.calculateMatrices();
+        human.calculateMatrices();
+        assertGlobalMatricesEqual(flat);
+    }
+
+    @Test
+    public void testSkeletonUpdateJointMatrices()
+    {
+        Skeleton skel = new Skeleton("skel", human);
+        skel.setUseFlatSkeleton(true);
+        skel.updateJointMatrices();
+        float[] wrist = Mat4f.getMat4f();
+        Mat4f.set(wrist, human.getPart(Hanim.r_wrist).getGlobalMatrix());
+        human.calculateMatrices();
+        assertArrayEquals(human.getPart(Hanim.r_wrist).getGlobalMatrix(), wrist, PRECISION);
+    }
+}
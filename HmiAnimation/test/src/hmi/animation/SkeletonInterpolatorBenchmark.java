@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import hmi.math.Quat4f;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Micro benchmark for the per frame interpolation of SkeletonInterpolator, comparing interpolateTargetParts
+ * with interpolateFlatTarget (slerp and nlerp) for skeletons of 20, 50 and 100 joints.
+ * Reports ns per joint, and the number of bytes allocated per interpolation, measured with the
+ * per thread allocation counter of the JVM.
+ * Run with: java hmi.animation.SkeletonInterpolatorBenchmark [iterations]
+ */
+public final class SkeletonInterpolatorBenchmark
+{
+    private static final int[] JOINT_COUNTS = { 20, 50, 100 };
+    private static final int FRAMES = 600;
+    private static final double FRAME_DURATION = 1.0 / 60.0;
+    private static final int DEFAULT_ITERATIONS = 200000;
+
+    private SkeletonInterpolatorBenchmark()
+    {
+    }
+
+    /**
+     * Creates a chain of joints, with sids j0, j1, ...
+     */
+    static VJoint createChain(int joints)
+    {
+        VJoint root = new VJoint("j0", "j0");
+        VJoint parent = root;
+        for (int i = 1; i < joints; i++)
+        {
+            VJoint vj = new VJoint("j" + i, "j" + i);
+            vj.setTranslation(0, 0.1f, 0);
+            parent.addChild(vj);
+            parent = vj;
+        }
+        return root;
+    }
+
+    /**
+     * Creates a contiguous T1R clip for a chain created by createChain, with random rotations.
+     */
+    static SkeletonInterpolator createClip(int joints, int frames, long seed)
+    {
+        Random random = new Random(seed);
+        String[] partIds = new String[joints];
+        for (int i = 0; i < joints; i++)
+        {
+            partIds[i] = "j" + i;
+        }
+        int configSize = 3 + 4 * joints;
+        ConfigList configs = new ConfigList(configSize, true);
+        float[] conf = new float[configSize];
+        for (int f = 0; f < frames; f++)
+        {
+            conf[0] = random.nextFloat();
+            conf[1] = random.nextFloat();
+            conf[2] = random.nextFloat();
+            for (int j = 0; j < joints; j++)
+            {
+                Quat4f.setFromAxisAngle4f(conf, 3 + 4 * j, random.nextFloat(), random.nextFloat(), random.nextFloat(),
+                        random.nextFloat() - 0.5f);
+            }
+            configs.addConfig(f * FRAME_DURATION, conf);
+        }
+        return new SkeletonInterpolator(partIds, configs, "T1R");
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, or -1 if not supported by the JVM.
+     */
+    static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private abstract static class Task
+    {
+        abstract void run(double time);
+    }
+
+    private static void runLoop(Task task, int iterations)
+    {
+        double duration = FRAMES * FRAME_DURATION;
+        for (int i = 0; i < iterations; i++)
+        {
+            task.run((i * 0.37 * FRAME_DURATION) % duration);
+        }
+    }
+
+    private static void measure(String label, int joints, Task task, int iterations)
+    {
+        runLoop(task, iterations); // warm up
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        runLoop(task, iterations);
+        long nanos = System.nanoTime() - start;
+        long bytesAfter = allocatedBytes();
+        String allocation = (bytesBefore < 0) ? "n/a" : String.format("%.2f", (double) (bytesAfter - bytesBefore) / iterations);
+        System.out.println(String.format("%-28s joints=%3d  %7.2f ns/joint  %s bytes/op", label, joints, (double) nanos
+                / ((long) iterations * joints), allocation));
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        for (int joints : JOINT_COUNTS)
+        {
+            final SkeletonInterpolator vjointSki = createClip(joints, FRAMES, joints);
+            vjointSki.setTarget(createChain(joints));
+            measure("interpolateTargetParts", joints, new Task()
+            {
+                @Override
+                void run(double time)
+                {
+                    vjointSki.interpolateTargetParts(time);
+                }
+            }, iterations);
+
+            final SkeletonInterpolator slerpSki = createClip(joints, FRAMES, joints);
+            slerpSki.setFlatTarget(new FlatSkeleton(createChain(joints)));
+            measure("interpolateFlatTarget slerp", joints, new Task()
+            {
+                @Override
+                void run(double time)
+                {
+                    slerpSki.interpolateFlatTarget(time);
+                }
+            }, iterations);
+
+            final SkeletonInterpolator nlerpSki = createClip(joints, FRAMES, joints);
+            nlerpSki.setFlatTarget(new FlatSkeleton(createChain(joints)));
+            nlerpSki.setNlerp(true);
+            measure("interpolateFlatTarget nlerp", joints, new Task()
+            {
+                @Override
+                void run(double time)
+                {
+                    nlerpSki.interpolateFlatTarget(time);
+                }
+            }, iterations);
+        }
+    }
+}
@@ -37,6 +37,7 @@ import hmi.xml.*;
 import hmi.math.*;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -554,6 +555,104 @@ public class SkeletonInterpolatorTest
         assertEquals(3, subSki.size());
     }
 
+    @Test
+    public void testInterpolateContiguous()
+    {
+        init1();
+        String[] partIds1 = new String[] { "Root", "Joint1" };
+        SkeletonInterpolator ski = new SkeletonInterpolator(partIds1, clist1, "T1R");
+        SkeletonInterpolator skiContiguous = new SkeletonInterpolator(partIds1, clist1.contiguousCopy(), "T1R");
+        SkeletonInterpolator skiSub = skiContiguous.subSkeletonInterpolator(2, 5);
+        for (double t = 0; t < 0.06; t += 0.003)
+        {
+            assertArrayEquals(ski.getInterpolatedConfig(t, null), skiContiguous.getInterpolatedConfig(t, null), PRECISION);
+        }
+        assertArrayEquals(ski.getInterpolatedConfig(t3, null), skiSub.getInterpolatedConfig(t3, null), PRECISION);
+    }
+
+    @Test
+    public void testInterpolateConfig()
+    {
+        SkeletonInterpolator ski = SkeletonInterpolatorBenchmark.createClip(10, 20, 1);
+        float[] expected = new float[ski.getConfigSize()];
+        float[] conf = new float[ski.getConfigSize() + 2];
+        for (double t = -0.1; t < 0.4; t += 0.007)
+        {
+            ski.getInterpolatedConfig(t, expected);
+            ski.interpolateConfig(t, conf, 2);
+            for (int i = 0; i < expected.length; i++)
+            {
+                assertEquals(expected[i], conf[i + 2], PRECISION);
+            }
+        }
+    }
+
+    @Test
+    public void testInterpolateConfigNlerp()
+    {
+        String str = "<SkeletonInterpolator rotationEncoding=\"quaternions\" parts=\"HumanoidRoot\" encoding=\"R\">"
+                + "0 1 0 0 0 \n" + "1 0.98007 0.19867 0 0 " + "</SkeletonInterpolator>";
+        SkeletonInterpolator ski = new SkeletonInterpolator();
+        ski.readXML(str);
+        ski.setNlerp(true);
+        float[] q = new float[4];
+        ski.interpolateConfig(0.5, q, 0);
+        assertQuat4fRotationEquivalent(Quat4f.getQuat4fFromAxisAngle(1, 0, 0, 0.2f), q, PRECISION);
+        assertEquals(1, Quat4f.length(q), PRECISION);
+
+        // -q represents the same rotation
+        str = "<SkeletonInterpolator rotationEncoding=\"quaternions\" parts=\"HumanoidRoot\" encoding=\"R\">"
+                + "0 1 0 0 0 \n" + "1 -0.98007 -0.19867 0 0 " + "</SkeletonInterpolator>";
+        ski = new SkeletonInterpolator();
+        ski.readXML(str);
+        ski.setNlerp(true);
+        ski.interpolateConfig(0.5, q, 0);
+        assertQuat4fRotationEquivalent(Quat4f.getQuat4fFromAxisAngle(1, 0, 0, 0.2f), q, PRECISION);
+    }
+
+    @Test
+    public void testInterpolateFlatTarget()
+    {
+        SkeletonInterpolator ski = SkeletonInterpolatorBenchmark.createClip(10, 20, 2);
+        VJoint chain = SkeletonInterpolatorBenchmark.createChain(10);
+        FlatSkeleton flat = new FlatSkeleton(SkeletonInterpolatorBenchmark.createChain(10));
+        ski.setTarget(chain);
+        ski.setFlatTarget(flat);
+        ski.interpolateTargetParts(0.123);
+        ski.interpolateFlatTarget(0.123);
+        float[] q = new float[4];
+        float[] tr = new float[3];
+        for (int i = 0; i < 10; i++)
+        {
+            VJoint vj = chain.getPart("j" + i);
+            int index = flat.getJointIndex("j" + i);
+            vj.getRotation(q);
+            assertArrayEquals(q, Arrays.copyOfRange(flat.getRotations(), index * 4, index * 4 + 4), PRECISION);
+            vj.getTranslation(tr);
+            assertArrayEquals(tr, Arrays.copyOfRange(flat.getTranslations(), index * 3, index * 3 + 3), PRECISION);
+        }
+    }
+
+    @Test
+    public void testInterpolateFlatTargetDoesNotAllocate()
+    {
+        final SkeletonInterpolator ski = SkeletonInterpolatorBenchmark.createClip(20, 100, 3);
+        ski.setFlatTarget(new FlatSkeleton(SkeletonInterpolatorBenchmark.createChain(20)));
+        Assume.assumeTrue(SkeletonInterpolatorBenchmark.allocatedBytes() >= 0);
+        // allocation by the JIT compiler might be attributed to this thread, so take the best of some runs
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++)
+        {
+            long before = SkeletonInterpolatorBenchmark.allocatedBytes();
+            for (int i = 0; i < 10000; i++)
+            {
+                ski.interpolateFlatTarget(i * 0.0002);
+            }
+            allocated = Math.min(allocated, SkeletonInterpolatorBenchmark.allocatedBytes() - before);
+        }
+        assertTrue("allocated " + allocated + " bytes", allocated < 1000);
+    }
+
     @Test
     public void testAppend()
     {
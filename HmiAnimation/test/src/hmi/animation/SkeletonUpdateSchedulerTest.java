@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
+import hmi.testutil.animation.HanimBody;
+import hmi.util.ClockListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for SkeletonUpdateScheduler
+ */
+public class SkeletonUpdateSchedulerTest
+{
+    private static final float PRECISION = 0.0001f;
+    private ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /* rotates the specified joint around the x axis, with angle t */
+    private static class RotationAnimator implements ClockListener
+    {
+        private final VJoint joint;
+        private double lastTime = -1;
+
+        RotationAnimator(VJoint joint)
+        {
+            this.joint = joint;
+        }
+
+        @Override
+        public void initTime(double t)
+        {
+        }
+
+        @Override
+        public void time(double t)
+        {
+            lastTime = t;
+            joint.setRotation(Quat4f.getQuat4fFromAxisAngle(1f, 0f, 0f, (float) t));
+        }
+    }
+
+    @Test
+    public void testUpdate()
+    {
+        SkeletonUpdateScheduler scheduler = new SkeletonUpdateScheduler(pool);
+        List<Skeleton> skeletons = new ArrayList<>();
+        List<RotationAnimator> animators = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            VJoint human = HanimBody.getLOA1HanimBody();
+            Skeleton skel = new Skeleton("skel" + i, human);
+            RotationAnimator animator = new RotationAnimator(human.getPart(Hanim.r_shoulder));
+            scheduler.addSkeleton(skel, animator);
+            skeletons.add(skel);
+            animators.add(animator);
+        }
+        assertEquals(10, scheduler.getSkeletons().size());
+        scheduler.time(0.5);
+
+        VJoint reference = HanimBody.getLOA1HanimBody();
+        reference.getPart(Hanim.r_shoulder).setRotation(Quat4f.getQuat4fFromAxisAngle(1f, 0f, 0f, 0.5f));
+        reference.calculateMatrices();
+        Skeleton refSkel = new Skeleton("ref", reference);
+        for (int i = 0; i < skeletons.size(); i++)
+        {
+            assertEquals(0.5, animators.get(i).lastTime, PRECISION);
+            Skeleton skel = skeletons.get(i);
+            float[][] matrices = skel.getTransformMatricesRef();
+            skel.getData();
+            for (int j = 0; j < matrices.length; j++)
+            {
+                VJoint refJoint = refSkel.getVJoint(skel.getJointSids().get(j));
+                assertArrayEquals(refJoint.getGlobalMatrix(), matrices[j], PRECISION);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveSkeleton()
+    {
+        SkeletonUpdateScheduler scheduler = new SkeletonUpdateScheduler(pool);
+        VJoint human = HanimBody.getLOA1HanimBody();
+        Skeleton skel = new Skeleton("skel", human);
+        RotationAnimator animator = new RotationAnimator(human.getPart(Hanim.r_shoulder));
+        scheduler.addSkeleton(skel, animator);
+        assertTrue(scheduler.removeSkeleton(skel));
+        assertFalse(scheduler.removeSkeleton(skel));
+        scheduler.update(1);
+        assertEquals(-1, animator.lastTime, PRECISION);
+    }
+
+    @Test
+    public void testPublishWithoutTearing() throws InterruptedException
+    {
+        final VJoint root = new VJoint("root", "root");
+        VJoint parent = root;
+        for (int i = 0; i < 20; i++)
+        {
+            VJoint child = new VJoint("j" + i, "j" + i);
+            parent.addChild(child);
+            parent = child;
+        }
+        final Skeleton skel = new Skeleton("skel", root);
+        final float[][] matrices = skel.getTransformMatricesRef();
+        SkeletonUpdateScheduler scheduler = new SkeletonUpdateScheduler(pool);
+        scheduler.addSkeleton(skel, new ClockListener()
+        {
+            @Override
+            public void initTime(double t)
+            {
+            }
+
+            @Override
+            public void time(double t)
+            {
+                root.setTranslation((float) t, 0f, 0f);
+            }
+        });
+        scheduler.update(0);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicBoolean torn = new AtomicBoolean(false);
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                while (running.get())
+                {
+                    skel.getData();
+                    float x = matrices[0][Mat4f.M03];
+                    for (float[] m : matrices)
+                    {
+                        if (m[Mat4f.M03] != x)
+                        {
+                            torn.set(true);
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        for (int i = 1; i < 5000; i++)
+        {
+            scheduler.update(i);
+        }
+        running.set(false);
+        reader.join();
+        assertFalse(torn.get());
+    }
+}
@@ -29,6 +29,8 @@ import java.util.*;
 import org.junit.Test;
 import org.junit.Before;
 
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
 import hmi.testutil.animation.HanimBody;
 
 /**
@@ -162,4 +164,82 @@ public class VJointTest
     }
 
     
+    @Test
+    public void testCalculateMatricesDirtySubtree()
+    {
+        vj0.calculateMatrices();
+        assertEquals(7, vj0.getLastUpdateCount());
+        vj0.calculateMatrices();
+        assertEquals(0, vj0.getLastUpdateCount());
+
+        vj011.setRotation(Quat4f.getQuat4fFromAxisAngle(1f, 0f, 0f, 0.5f));
+        vj0.calculateMatrices();
+        assertEquals(2, vj0.getLastUpdateCount());
+
+        vj01.setTranslation(0f, 1f, 0f);
+        vj0.calculateMatrices();
+        assertEquals(5, vj0.getLastUpdateCount());
+
+        vj0.calculateMatrices(Mat4f.getTranslationMatrix(new float[] { 1f, 0f, 0f }));
+        assertEquals(7, vj0.getLastUpdateCount());
+    }
+
+    @Test
+    public void testCalculateMatricesIncrementalEqualsFull()
+    {
+        VJoint human = HanimBody.getLOA1HanimBody();
+        human.calculateMatrices();
+        human.getPart(Hanim.r_shoulder).setRotation(Quat4f.getQuat4fFromAxisAngle(1f, 0f, 0f, 0.7f));
+        human.getPart(Hanim.l_knee).setTranslation(0f, -0.1f, 0.05f);
+        human.calculateMatrices();
+        float[] wrist = Mat4f.getMat4f();
+        Mat4f.set(wrist, human.getPart(Hanim.r_wrist).getGlobalMatrix());
+        float[] ankle = Mat4f.getMat4f();
+        Mat4f.set(ankle, human.getPart(Hanim.l_ankle).getGlobalMatrix());
+
+        human.calculateAllMatrices(Mat4f.ID);
+        assertTrue(Mat4f.epsilonEquals(wrist, human.getPart(Hanim.r_wrist).getGlobalMatrix(), 0.0001f));
+        assertTrue(Mat4f.epsilonEquals(ankle, human.getPart(Hanim.l_ankle).getGlobalMatrix(), 0.0001f));
+    }
+
+    @Test
+    public void testCalculateMatricesSharedBuffers()
+    {
+        vj0.calculateMatrices();
+        float[] rot = vj011.getRotationBuffer();
+        Quat4f.set(rot, Quat4f.getQuat4fFromAxisAngle(0f, 1f, 0f, 0.5f));
+        vj0.calculateMatrices();
+        assertEquals(2, vj0.getLastUpdateCount());
+        vj0.calculateMatrices();
+        assertEquals(2, vj0.getLastUpdateCount());
+    }
+
+    @Test
+    public void testAddChildInvalidates()
+    {
+        vj0.calculateMatrices();
+        VJoint extra = new VJoint("extra", "extra");
+        extra.setTranslation(0f, 2f, 0f);
+        vj010.addChild(extra);
+        vj0.calculateMatrices();
+        assertEquals(1, vj0.getLastUpdateCount());
+    }
+
+    @Test
+    public void testGetUpdatedGlobalMatrix()
+    {
+        vj0.calculateMatrices();
+        vj01.setTranslation(0f, 1f, 0f);
+        vj0110.setTranslation(0f, 0f, 2f);
+        float[] m = vj0110.getUpdatedGlobalMatrix();
+        float[] pos = new float[3];
+        Mat4f.getTranslation(pos, m);
+        assertEquals(1f, pos[1], 0.0001f);
+        assertEquals(2f, pos[2], 0.0001f);
+
+        vj0.calculateMatrices();
+        Mat4f.getTranslation(pos, vj010.getGlobalMatrix());
+        assertEquals(1f, pos[1], 0.0001f);
+    }
+
 }
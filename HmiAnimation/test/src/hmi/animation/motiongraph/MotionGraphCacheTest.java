@@ -0,0 +1,135 @@
+package hmi.animation.motiongraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.Alignment;
+import hmi.animation.motiongraph.alignment.NopAlignment;
+import hmi.animation.motiongraph.blending.Blend;
+import hmi.animation.motiongraph.metrics.JointAngles;
+import hmi.animation.motiongraph.split.DefaultSplit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the MotionGraphCache
+ */
+public class MotionGraphCacheTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static String key(List<SkeletonInterpolator> motions) {
+        Alignment align = new Alignment();
+        return MotionGraphCache.key(motions, align, new JointAngles(align), new Blend(align), new DefaultSplit());
+    }
+
+    private static void assertSameGraph(MotionGraph expected, MotionGraph actual) {
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+        assertEquals(expected.getEdges().size(), actual.getEdges().size());
+        for (int i = 0; i < expected.getNodes().size(); i++) {
+            Node n1 = expected.getNodes().get(i);
+            Node n2 = actual.getNodes().get(i);
+            assertEquals(n1.getId(), n2.getId());
+            assertEquals(n1.getIncomingEdges().size(), n2.getIncomingEdges().size());
+            assertEquals(n1.getOutgoingEdges().size(), n2.getOutgoingEdges().size());
+            for (int j = 0; j < n1.getOutgoingEdges().size(); j++) {
+                assertEquals(n1.getOutgoingEdges().get(j).getId(), n2.getOutgoingEdges().get(j).getId());
+            }
+        }
+        for (int i = 0; i < expected.getEdges().size(); i++) {
+            Edge e1 = expected.getEdges().get(i);
+            Edge e2 = actual.getEdges().get(i);
+            assertEquals(e1.getId(), e2.getId());
+            assertEquals(e1.isBlend(), e2.isBlend());
+            assertEquals(e1.getStartNode().getId(), e2.getStartNode().getId());
+            assertEquals(e1.getEndNode().getId(), e2.getEndNode().getId());
+            SkeletonInterpolator m1 = e1.getMotion();
+            SkeletonInterpolator m2 = e2.getMotion();
+            assertArrayEquals(m1.getPartIds(), m2.getPartIds());
+            assertEquals(m1.size(), m2.size());
+            for (int f = 0; f < m1.size(); f++) {
+                assertEquals(m1.getTime(f), m2.getTime(f), 0);
+                assertArrayEquals(m1.getConfig(f), m2.getConfig(f), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testKey() {
+        List<SkeletonInterpolator> motions = MotionGraphTest.createMotions();
+        assertEquals(key(motions), key(MotionGraphTest.createMotions()));
+
+        motions.get(1).getConfig(10)[5] += 0.01f;
+        assertNotEquals(key(MotionGraphTest.createMotions()), key(motions));
+
+        motions = MotionGraphTest.createMotions();
+        Alignment align = new Alignment();
+        NopAlignment nop = new NopAlignment();
+        assertNotEquals(key(motions),
+                MotionGraphCache.key(motions, align, new JointAngles(nop), new Blend(align), new DefaultSplit()));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        List<SkeletonInterpolator> motions = MotionGraphTest.createMotions();
+        MotionGraph mg = new MotionGraph.Builder(motions).getInstance();
+        File file = new File(tmpFolder.getRoot(), "graph" + MotionGraphCache.FILE_EXTENSION);
+        MotionGraphCache.write(mg, key(motions), file);
+
+        Alignment align = new Alignment();
+        MotionGraph loaded = MotionGraphCache.read(file, key(motions), align, new JointAngles(align), new Blend(align),
+                new DefaultSplit());
+        assertSameGraph(mg, loaded);
+        assertTrue(Edge.edgeId > loaded.getEdges().get(0).getId());
+
+        assertNull(MotionGraphCache.read(file, "otherkey", align, new JointAngles(align), new Blend(align),
+                new DefaultSplit()));
+        assertNull(MotionGraphCache.read(new File(tmpFolder.getRoot(), "missing"), key(motions), align,
+                new JointAngles(align), new Blend(align), new DefaultSplit()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadCorrupt() throws IOException {
+        List<SkeletonInterpolator> motions = MotionGraphTest.createMotions();
+        MotionGraph mg = new MotionGraph.Builder(motions).getInstance();
+        File file = new File(tmpFolder.getRoot(), "graph" + MotionGraphCache.FILE_EXTENSION);
+        MotionGraphCache.write(mg, key(motions), file);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.getChannel().truncate(file.length() / 2);
+        }
+        Alignment align = new Alignment();
+        MotionGraphCache.read(file, key(motions), align, new JointAngles(align), new Blend(align), new DefaultSplit());
+    }
+
+    @Test
+    public void testBuilderCache() {
+        File file = new File(tmpFolder.getRoot(), "graph" + MotionGraphCache.FILE_EXTENSION);
+        MotionGraph built = new MotionGraph.Builder(MotionGraphTest.createMotions()).cache(file).getInstance();
+        assertTrue(file.isFile());
+        assertTrue(built.getStatistics().getNodesBefore() > 0);
+
+        MotionGraph loaded = new MotionGraph.Builder(MotionGraphTest.createMotions()).cache(file).getInstance();
+        assertEquals(0, loaded.getStatistics().getNodesBefore()); // not constructed
+        assertSameGraph(built, loaded);
+
+        List<SkeletonInterpolator> changed = MotionGraphTest.createMotions();
+        changed.remove(2);
+        MotionGraph rebuilt = new MotionGraph.Builder(changed).cache(file).getInstance();
+        assertTrue(rebuilt.getStatistics().getNodesBefore() > 0);
+
+        // the rebuilt snapshot replaced the file, rather than overwriting the one that loaded is mapped on
+        assertSameGraph(built, loaded);
+        assertEquals(1, tmpFolder.getRoot().list().length);
+    }
+}
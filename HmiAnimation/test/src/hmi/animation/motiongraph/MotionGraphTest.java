@@ -0,0 +1,147 @@
+package hmi.animation.motiongraph;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hmi.animation.ConfigList;
+import hmi.animation.SkeletonInterpolator;
+import hmi.animation.motiongraph.alignment.Alignment;
+import hmi.animation.motiongraph.metrics.IDistance;
+import hmi.animation.motiongraph.metrics.JointAngles;
+import hmi.math.Quat4f;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the construction of the MotionGraph
+ */
+public class MotionGraphTest {
+
+    private static final String[] PART_IDS = { "HumanoidRoot", "l_shoulder", "r_shoulder", "l_elbow" };
+    private static final double DT = 0.01;
+
+    /**
+     * Creates a T1R motion with sinusoidal joint rotations about the x axis.
+     */
+    static SkeletonInterpolator createMotion(int frames, float amplitude, float offset, float frequency) {
+        ConfigList configs = new ConfigList(3 + 4 * PART_IDS.length);
+        for (int f = 0; f < frames; f++) {
+            float[] config = new float[configs.getConfigSize()];
+            double t = f * DT;
+            config[0] = (float) (0.1 * t);
+            config[1] = 1;
+            for (int j = 0; j < PART_IDS.length; j++) {
+                float angle = (j == 0) ? 0 : offset + amplitude * (float) Math.sin(2 * Math.PI * frequency * t + j);
+                Quat4f.setFromAxisAngle4f(config, 3 + 4 * j, 1, 0, 0, angle);
+            }
+            configs.addConfig(t, config);
+        }
+        return new SkeletonInterpolator(PART_IDS.clone(), configs, "T1R");
+    }
+
+    static List<SkeletonInterpolator> createMotions() {
+        List<SkeletonInterpolator> motions = new ArrayList<>();
+        motions.add(createMotion(1001, 0.5f, 0, 2f));
+        motions.add(createMotion(1001, 0.55f, 0, 2f));
+        motions.add(createMotion(1001, 0.5f, 1.5f, 2f));
+        return motions;
+    }
+
+    /**
+     * IDistance hiding the lower bound of the JointAngles metric.
+     */
+    private static IDistance unbounded(final IDistance metric) {
+        return new IDistance() {
+            @Override
+            @Deprecated
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end) {
+                return metric.distance(start, end, JointAngles.DEFAULT_COMPARED_FRAMES);
+            }
+
+            @Override
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end, int startFrame, int endFrame) {
+                return metric.distance(start, end, startFrame, endFrame);
+            }
+
+            @Override
+            public double distance(SkeletonInterpolator start, SkeletonInterpolator end, int frames) {
+                return metric.distance(start, end, frames);
+            }
+        };
+    }
+
+    @Test
+    public void testLowerBound() {
+        JointAngles metric = new JointAngles(new Alignment());
+        List<SkeletonInterpolator> motions = createMotions();
+        for (SkeletonInterpolator start : motions) {
+            for (SkeletonInterpolator end : motions) {
+                double bound = metric.lowerBound(start, end, MotionGraph.DEFAULT_BLENDING_FRAMES);
+                assertThat(bound, lessThanOrEqualTo(metric.distance(start, end, MotionGraph.DEFAULT_BLENDING_FRAMES)));
+            }
+        }
+        assertThat(metric.lowerBound(motions.get(0), motions.get(2), MotionGraph.DEFAULT_BLENDING_FRAMES),
+                greaterThan(MotionGraph.DEFAULT_THRESHOLD));
+    }
+
+    @Test
+    public void testPrefilterDoesNotChangeGraph() {
+        Alignment align = new Alignment();
+        MotionGraph bounded = new MotionGraph.Builder(createMotions()).align(align).metric(new JointAngles(align))
+                .getInstance();
+        MotionGraph unbounded = new MotionGraph.Builder(createMotions()).align(align)
+                .metric(unbounded(new JointAngles(align))).pool(new ForkJoinPool(1)).getInstance();
+
+        assertThat(bounded.getStatistics().getPrefilteredPairs(), greaterThan(0L));
+        assertEquals(0, unbounded.getStatistics().getPrefilteredPairs());
+        assertThat(bounded.getStatistics().getBlends(), greaterThan(0));
+        assertEquals(unbounded.getStatistics().getBlends(), bounded.getStatistics().getBlends());
+        assertEquals(unbounded.getNodes().size(), bounded.getNodes().size());
+        assertEquals(unbounded.getEdges().size(), bounded.getEdges().size());
+        for (int i = 0; i < bounded.getEdges().size(); i++) {
+            assertEquals(unbounded.getEdges().get(i).getMotion().size(), bounded.getEdges().get(i).getMotion().size());
+            assertEquals(unbounded.getEdges().get(i).isBlend(), bounded.getEdges().get(i).isBlend());
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        final Map<String, long[]> progress = new HashMap<>();
+        MotionGraph mg = new MotionGraph.Builder(createMotions()).progressListener(new IProgressListener() {
+            @Override
+            public void progress(String phase, long done, long total) {
+                synchronized (progress) {
+                    long[] p = progress.get(phase);
+                    if (p == null || p[0] < done) {
+                        progress.put(phase, new long[] { done, total });
+                    }
+                }
+            }
+        }).getInstance();
+
+        for (Node node : mg.getNodes()) {
+            assertTrue(node.hasNext());
+        }
+        for (Edge edge : mg.getEdges()) {
+            assertTrue(mg.getNodes().contains(edge.getStartNode()));
+            assertTrue(mg.getNodes().contains(edge.getEndNode()));
+        }
+        MotionGraphStatistics statistics = mg.getStatistics();
+        assertEquals(mg.getNodes().size(), statistics.getNodesAfter());
+        assertEquals(mg.getEdges().size(), statistics.getEdgesAfter());
+        assertEquals(3, statistics.getEdgesBefore());
+        assertTrue(statistics.getPhaseNanos().containsKey(MotionGraph.PHASE_DISTANCES));
+
+        long[] distances = progress.get(MotionGraph.PHASE_DISTANCES);
+        assertEquals(distances[1], distances[0]);
+        assertThat(statistics.getDistancePairs() + statistics.getPrefilteredPairs(), lessThanOrEqualTo(distances[1]));
+    }
+}
@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.faceanimation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Keeps track of morph target values, like MorphTargetHandler, mostly without locks and, once all target names are known, without allocation.
+ * Every target name is mapped to a dense index the first time it is used (or up front, by the constructor or registerMorphTargets),
+ * and the weights are stored as float bits in atomic int arrays, so add/remove/set from animation threads are atomic per weight.
+ * The render thread obtains a consistent copy of all weights with getSnapshot: a snapshot is retried when it overlaps with an update,
+ * so it never contains half of an addMorphTargets, removeMorphTargets or setMorphTargets call. When updates keep overlapping with
+ * the snapshot, new updates are briefly blocked until the snapshot is done, so that the render thread can not starve.
+ * Targets whose weight has become 0 remain registered, and are part of snapshots with weight 0.
+ */
+@ThreadSafe
+public class IndexedMorphTargetHandler
+{
+    private static final int SEGMENT_SIZE = 64;
+
+    /* Number of lock-free attempts of getSnapshot, before it blocks new updates */
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 16;
+
+    /* Dense index for every registered target name */
+    private final ConcurrentHashMap<String, Integer> indices = new ConcurrentHashMap<String, Integer>();
+    /* The registered target names, by index; replaced (copy on write) when a target is registered */
+    private volatile String[] names = new String[0];
+    /* The weights as float bits, in fixed size segments, so that registering a target never moves existing weights */
+    private volatile AtomicIntegerArray[] segments = new AtomicIntegerArray[0];
+    private final Object registerLock = new Object();
+
+    /* Number of updates in progress, and number of completed updates, used by getSnapshot */
+    private final AtomicInteger activeUpdates = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+
+    /* Held by getSnapshot while it blocks new updates; snapshotPending is set while it is held */
+    private final Object snapshotLock = new Object();
+    private volatile boolean snapshotPending = false;
+
+    /**
+     * The names and weights of all registered morph targets at some moment, filled by getSnapshot.
+     */
+    public static final class Snapshot
+    {
+        private String[] names = new String[0];
+        private float[] weights = new float[0];
+
+        /** The (shared, not to be modified) array of target names */
+        public String[] getNames()
+        {
+            return names;
+        }
+
+        /** The weights, with the same length as the names array */
+        public float[] getWeights()
+        {
+            return weights;
+        }
+
+        public int size()
+        {
+            return names.length;
+        }
+    }
+
+    public IndexedMorphTargetHandler()
+    {
+    }
+
+    /**
+     * Creates a handler with the specified target names registered up front.
+     */
+    public IndexedMorphTargetHandler(Collection<String> targetNames)
+    {
+        for (String name : targetNames)
+        {
+            getIndex(name);
+        }
+    }
+
+    /**
+     * Registers the specified target names, so that later updates for them need no allocation.
+     */
+    public void registerMorphTargets(String[] targetNames)
+    {
+        for (String name : targetNames)
+        {
+            getIndex(name);
+        }
+    }
+
+    /**
+     * Returns the dense index for the target name, registering the name when needed.
+     */
+    public int getIndex(String targetName)
+    {
+        Integer index = indices.get(targetName);
+        if (index != null) return index;
+        synchronized (registerLock)
+        {
+            index = indices.get(targetName);
+            if (index != null) return index;
+            int n = names.length;
+            if (n == segments.length * SEGMENT_SIZE)
+            {
+                AtomicIntegerArray[] newSegments = Arrays.copyOf(segments, segments.length + 1);
+                newSegments[segments.length] = new AtomicIntegerArray(SEGMENT_SIZE); // 0 bits is 0.0f
+                segments = newSegments;
+            }
+            String[] newNames = Arrays.copyOf(names, n + 1);
+            newNames[n] = targetName;
+            names = newNames;
+            indices.put(targetName, n);
+            return n;
+        }
+    }
+
+    /**
+     * Returns the number of registered targets.
+     */
+    public int getNrOfTargets()
+    {
+        return names.length;
+    }
+
+    private void addWeight(int index, float delta)
+    {
+        AtomicIntegerArray segment = segments[index / SEGMENT_SIZE];
+        int i = index % SEGMENT_SIZE;
+        while (true)
+        {
+            int bits = segment.get(i);
+            int newBits = Float.floatToRawIntBits(Float.intBitsToFloat(bits) + delta);
+            if (segment.compareAndSet(i, bits, newBits)) return;
+        }
+    }
+
+    private void setWeight(int index, float weight)
+    {
+        segments[index / SEGMENT_SIZE].set(index % SEGMENT_SIZE, Float.floatToRawIntBits(weight));
+    }
+
+    private float getWeight(int index)
+    {
+        return Float.intBitsToFloat(segments[index / SEGMENT_SIZE].get(index % SEGMENT_SIZE));
+    }
+
+    private void beginUpdate()
+    {
+        if (snapshotPending)
+        {
+            synchronized (snapshotLock)
+            {
+                // wait until the pending snapshot is done
+            }
+        }
+        activeUpdates.incrementAndGet();
+    }
+
+    private void endUpdate()
+    {
+        version.incrementAndGet();
+        activeUpdates.decrementAndGet();
+    }
+
+    /** Add given weights for given morph targets to the list of desired targets */
+    public void addMorphTargets(String[] targetNames, float[] weights)
+    {
+        beginUpdate();
+        try
+        {
+            for (int i = 0; i < targetNames.length; i++)
+            {
+                addWeight(getIndex(targetNames[i]), weights[i]);
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
+    /** Remove given weights for given morph targets from the list of desired targets */
+    public void removeMorphTargets(String[] targetNames, float[] weights)
+    {
+        beginUpdate();
+        try
+        {
+            for (int i = 0; i < targetNames.length; i++)
+            {
+                addWeight(getIndex(targetNames[i]), -weights[i]);
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
+    /** Sets the weights of the given morph targets */
+    public void setMorphTargets(String[] targetNames, float[] weights)
+    {
+        beginUpdate();
+        try
+        {
+            for (int i = 0; i < targetNames.length; i++)
+            {
+                setWeight(getIndex(targetNames[i]), weights[i]);
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
+    public float getCurrentWeight(String targetName)
+    {
+        Integer index = indices.get(targetName);
+        if (index == null) return 0;
+        return getWeight(index);
+    }
+
+    /**
+     * Fills the snapshot with the names and weights of all registered targets. The snapshot's weight array is reused,
+     * unless the number of targets has changed. The weights are consistent: the result of a set of complete add/remove/set calls.
+     * The copy is repeated (yielding in between) as long as it overlaps with updates, which are short. After MAX_SNAPSHOT_ATTEMPTS
+     * attempts, new updates are blocked until the copy succeeds; updates that are already in progress are finished first.
+     */
+    public Snapshot getSnapshot(Snapshot snapshot)
+    {
+        for (int attempt = 0; attempt < MAX_SNAPSHOT_ATTEMPTS; attempt++)
+        {
+            if (tryCopyWeights(snapshot)) return snapshot;
+            Thread.yield();
+        }
+        synchronized (snapshotLock)
+        {
+            snapshotPending = true;
+            try
+            {
+                while (!tryCopyWeights(snapshot))
+                {
+                    Thread.yield();
+                }
+            }
+            finally
+            {
+                snapshotPending = false;
+            }
+        }
+        return snapshot;
+    }
+
+    /* Copies the weights into snapshot, and returns true if the copy did not overlap with an update */
+    private boolean tryCopyWeights(Snapshot snapshot)
+    {
+        long v = version.get();
+        if (activeUpdates.get() != 0) return false;
+        copyWeights(snapshot);
+        return activeUpdates.get() == 0 && version.get() == v;
+    }
+
+    private void copyWeights(Snapshot snapshot)
+    {
+        String[] currentNames = names;
+        int n = currentNames.length;
+        if (snapshot.weights.length != n)
+        {
+            snapshot.weights = new float[n];
+        }
+        snapshot.names = currentNames;
+        for (int index = 0; index < n; index++)
+        {
+            snapshot.weights[index] = getWeight(index);
+        }
+    }
+
+    /**
+     * Get an immutable copy of the current desired morph target configuration, with the targets that have a non-zero weight, as
+     * MorphTargetHandler.getDesiredMorphTargets. Allocates; use getSnapshot for every frame.
+     */
+    public ImmutableMap<String, Float> getDesiredMorphTargets()
+    {
+        Snapshot snapshot = getSnapshot(new Snapshot());
+        ImmutableMap.Builder<String, Float> builder = ImmutableMap.builder();
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            if (snapshot.weights[i] != 0)
+            {
+                builder.put(snapshot.names[i], snapshot.weights[i]);
+            }
+        }
+        return builder.build();
+    }
+}
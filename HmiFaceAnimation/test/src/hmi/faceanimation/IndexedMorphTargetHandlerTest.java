@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.faceanimation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * IndexedMorphTargetHandler test cases
+ */
+public class IndexedMorphTargetHandlerTest
+{
+    private static final float PRECISION = 0.00001f;
+
+    @Test
+    public void testAddRemove()
+    {
+        IndexedMorphTargetHandler handler = new IndexedMorphTargetHandler();
+        handler.addMorphTargets(new String[] { "a", "b" }, new float[] { 0.5f, 0.25f });
+        handler.addMorphTargets(new String[] { "a" }, new float[] { 0.25f });
+        assertEquals(0.75f, handler.getCurrentWeight("a"), PRECISION);
+        assertEquals(0.25f, handler.getCurrentWeight("b"), PRECISION);
+        assertEquals(0f, handler.getCurrentWeight("c"), PRECISION);
+
+        handler.removeMorphTargets(new String[] { "b" }, new float[] { 0.25f });
+        assertEquals(0f, handler.getCurrentWeight("b"), PRECISION);
+        assertEquals(1, handler.getDesiredMorphTargets().size());
+        assertEquals(0.75f, handler.getDesiredMorphTargets().get("a"), PRECISION);
+
+        handler.setMorphTargets(new String[] { "a" }, new float[] { 0.1f });
+        assertEquals(0.1f, handler.getCurrentWeight("a"), PRECISION);
+    }
+
+    @Test
+    public void testSnapshot()
+    {
+        IndexedMorphTargetHandler handler = new IndexedMorphTargetHandler(Arrays.asList("a", "b", "c"));
+        assertEquals(3, handler.getNrOfTargets());
+        assertEquals(1, handler.getIndex("b"));
+        handler.addMorphTargets(new String[] { "c", "a" }, new float[] { 0.3f, 0.1f });
+        IndexedMorphTargetHandler.Snapshot snapshot = handler.getSnapshot(new IndexedMorphTargetHandler.Snapshot());
+        assertArrayEquals(new String[] { "a", "b", "c" }, snapshot.getNames());
+        assertArrayEquals(new float[] { 0.1f, 0f, 0.3f }, snapshot.getWeights(), PRECISION);
+
+        float[] weights = snapshot.getWeights();
+        handler.addMorphTargets(new String[] { "b" }, new float[] { 0.2f });
+        handler.getSnapshot(snapshot);
+        assertTrue(weights == snapshot.getWeights()); // reused
+        assertArrayEquals(new float[] { 0.1f, 0.2f, 0.3f }, snapshot.getWeights(), PRECISION);
+
+        handler.addMorphTargets(new String[] { "d" }, new float[] { 0.4f });
+        handler.getSnapshot(snapshot);
+        assertEquals(4, snapshot.size());
+        assertEquals(0.4f, snapshot.getWeights()[3], PRECISION);
+    }
+
+    @Test
+    public void testManyTargets()
+    {
+        IndexedMorphTargetHandler handler = new IndexedMorphTargetHandler();
+        for (int i = 0; i < 200; i++)
+        {
+            handler.addMorphTargets(new String[] { "t" + i }, new float[] { i });
+        }
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(i, handler.getIndex("t" + i));
+            assertEquals(i, handler.getCurrentWeight("t" + i), PRECISION);
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException
+    {
+        // every update adds to "a" and removes the same amount from "b", so a consistent snapshot has a + b == 0
+        final IndexedMorphTargetHandler handler = new IndexedMorphTargetHandler(Arrays.asList("a", "b"));
+        final String[] names = { "a", "b" };
+        final int updates = 20000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < updates; i++)
+                    {
+                        handler.addMorphTargets(names, new float[] { 1f, -1f });
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        boolean inconsistent = false;
+        IndexedMorphTargetHandler.Snapshot snapshot = new IndexedMorphTargetHandler.Snapshot();
+        boolean running = true;
+        while (running)
+        {
+            handler.getSnapshot(snapshot);
+            if (snapshot.getWeights()[0] + snapshot.getWeights()[1] != 0f) inconsistent = true;
+            running = false;
+            for (Thread thread : threads)
+            {
+                running |= thread.isAlive();
+            }
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertFalse(inconsistent);
+        assertEquals(threads.length * updates, handler.getCurrentWeight("a"), PRECISION);
+        assertEquals(-threads.length * updates, handler.getCurrentWeight("b"), PRECISION);
+    }
+
+    @Test(timeout = 20000)
+    public void testSnapshotNotStarvedByUpdates() throws InterruptedException
+    {
+        final IndexedMorphTargetHandler handler = new IndexedMorphTargetHandler(Arrays.asList("a", "b"));
+        final String[] names = { "a", "b" };
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    while (!stop.get())
+                    {
+                        handler.addMorphTargets(names, new float[] { 1f, -1f });
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        try
+        {
+            IndexedMorphTargetHandler.Snapshot snapshot = new IndexedMorphTargetHandler.Snapshot();
+            for (int i = 0; i < 1000; i++)
+            {
+                handler.getSnapshot(snapshot);
+                assertEquals(0f, snapshot.getWeights()[0] + snapshot.getWeights()[1], 0f);
+            }
+        }
+        finally
+        {
+            stop.set(true);
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.facegraphics;
+
+/**
+ * The FAP influences for the vertices of one face mesh, in the format of GLSkinnedMesh.setFapVertexWeights:
+ * fapCount[v] is the number of FAPs for vertex v, and the FAP indices and weights for the vertices are stored
+ * one vertex after the other in fapIndex and fapWeight.
+ * The tables are built from the compiled deformer weights, with a vertex array (in increasing order) and a weight array
+ * per FAP, where the vertex indices are global indices within the head, i.e. over all face meshes.
+ */
+final class FapVertexWeights
+{
+    final int[] fapCount;
+    final int[] fapIndex;
+    final float[] fapWeight;
+
+    /**
+     * Builds the tables for the mesh with global vertex indices firstVertex, ..., firstVertex + nrOfVertices - 1.
+     * vertices[fi] and weights[fi] are the influenced vertices and weights for the FAP with index fi, or null.
+     */
+    FapVertexWeights(int[][] vertices, float[][] weights, int firstVertex, int nrOfVertices)
+    {
+        fapCount = new int[nrOfVertices];
+        int numInfluences = 0;
+        for (int fi = 0; fi < vertices.length; fi++)
+        {
+            if (vertices[fi] == null)
+                continue;
+            for (int vertexIndex : vertices[fi])
+            {
+                int v = vertexIndex - firstVertex;
+                if (v >= 0 && v < nrOfVertices)
+                {
+                    fapCount[v]++;
+                    numInfluences++;
+                }
+            }
+        }
+
+        // offsets[v]: position of the next influence for vertex v
+        int[] offsets = new int[nrOfVertices];
+        int offset = 0;
+        for (int v = 0; v < nrOfVertices; v++)
+        {
+            offsets[v] = offset;
+            offset += fapCount[v];
+        }
+        fapIndex = new int[numInfluences];
+        fapWeight = new float[numInfluences];
+        for (int fi = 0; fi < vertices.length; fi++)
+        {
+            if (vertices[fi] == null)
+                continue;
+            int[] fapVertices = vertices[fi];
+            float[] fapWeights = weights[fi];
+            for (int i = 0; i < fapVertices.length; i++)
+            {
+                int v = fapVertices[i] - firstVertex;
+                if (v >= 0 && v < nrOfVertices)
+                {
+                    int p = offsets[v]++;
+                    fapIndex[p] = fi;
+                    fapWeight[p] = fapWeights[i];
+                }
+            }
+        }
+    }
+}
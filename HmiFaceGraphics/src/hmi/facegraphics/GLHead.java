@@ -39,9 +39,9 @@ import hmi.xml.XMLTokenizer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 public class GLHead extends XMLStructureAdapter implements Head
 {
@@ -68,6 +68,8 @@ public class GLHead extends XMLStructureAdapter implements Head
     private float[] neutralVertexData = new float[0];
     private ArrayList<GLSkinnedMesh> faceMeshes = new ArrayList<GLSkinnedMesh>();
     private ArrayList<Integer> faceMeshesVertexDataCount = new ArrayList<Integer>();
+    private ArrayList<float[]> faceMeshesVertexData = new ArrayList<float[]>(); // per mesh buffers, reused by applyVertexData
+    private float[] amplitudes = new float[0]; // FAP amplitudes, reused for every deformation
 
     private enum Operation
     {
@@ -280,6 +282,7 @@ public class GLHead extends XMLStructureAdapter implements Head
         faceMeshes.add(faceMesh);
 		float[] vData = faceMesh.getVertexData(0,null);
 		faceMeshesVertexDataCount.add(new Integer(vData.length));
+		faceMeshesVertexData.add(new float[vData.length]);
 		int newLength = vertexData.length+vData.length;
 		vertexData = new float[newLength];
 		neutralVertexData = new float[newLength];
@@ -327,69 +330,53 @@ public class GLHead extends XMLStructureAdapter implements Head
          * Set vertex-to-fap bindings. Per vertex, we must know: - number of FAPs possibly having an influence on this vertex - indices of these FAPs
          * - weights of these FAP <> vertex influence
          * 
-         * We first walk over all the deformers and ask them to give us vertex-indices and corresponding weights.
+         * The deformers compile their vertex-indices and corresponding weights into arrays; these are recalculated for all deformers here.
          */
-		// needed to calculate PER MESH! i.e. translate overall indices somehow back to mesh-specific indices
-		int meshIndex = 0;
-		int firstVertexIndexForMesh = 0;
-        for (GLSkinnedMesh gsm: faceMeshes)
-		{
-			//how many vertices for this gsm?
-			int numVertices = faceMeshesVertexDataCount.get(meshIndex).intValue()/3;
-			int[] fapCount = new int[numVertices]; //for each vertex, how many faps is it connected to? index is mesh specific! (not index in vertexData, which is the "global" list
-			TreeMap<Integer, ArrayList<Integer>> fapIndices = new TreeMap<Integer, ArrayList<Integer>>(); //for each mesh specific vertex the list of indices of faps associated to it
-			TreeMap<Integer, ArrayList<Float>> fapWeights = new TreeMap<Integer, ArrayList<Float>>(); //for each mesh specific vertex the weights for the above faps
-			int numInfluences = 0;
-			HashMap<FAP, HashMap<Integer, Float>> fapDeformerWeights = new HashMap<FAP, HashMap<Integer, Float>>();
-			for (FAP fap : faps.values())
-			{
-				//these are GLOBAL vertex deformer weights, indexing the vertexData array
-				HashMap<Integer, Float> deformerWeights = getDeformer(fap).getVertexWeights();
-				fapDeformerWeights.put(fap, deformerWeights);
-				for (int vertexIndex : deformerWeights.keySet())
-				{
-					//System.out.println("v"+ vertexIndex + "/"+ firstVertexIndexForMesh+"/"+fapCount.length);
-					int meshSpecificVertexIndex = vertexIndex - firstVertexIndexForMesh;
-					
-					if (meshSpecificVertexIndex <0 || meshSpecificVertexIndex >= numVertices) continue; //don't add for indices that don't concern this mesh
-					
-					fapCount[meshSpecificVertexIndex]++;
-
-					if (fapIndices.get(meshSpecificVertexIndex) == null) fapIndices.put(meshSpecificVertexIndex, new ArrayList<Integer>());
-					fapIndices.get(meshSpecificVertexIndex).add(fap.index);
-
-					float weight = deformerWeights.get(vertexIndex);
-					if (fapWeights.get(meshSpecificVertexIndex) == null) fapWeights.put(meshSpecificVertexIndex, new ArrayList<Float>());
-					fapWeights.get(meshSpecificVertexIndex).add(weight);
-
-					numInfluences++;
-				}
-			}
-
-			// Now we have all FAP-indices and weights ordered by vertex-index, we can
-			// flatten this structure to obtain some simple arrays.
-			int[] fapIndex = new int[numInfluences];
-			float[] fapWeight = new float[numInfluences];
+        for (FAP fap : faps.values())
+        {
+            getDeformer(fap).invalidateVertexWeights();
+        }
+        updateFapVertexWeights();
+        scheduleDeform();
+    }
 
-			int currentInfluence = 0;
-			for (ArrayList<Integer> indices : fapIndices.values())
-			{
-				for (int meshSpecificIndex : indices)
-					fapIndex[currentInfluence++] = meshSpecificIndex;
-			}
+    /**
+     * Updates the vertex-to-fap bindings after the parameters of the specified deformer have changed. Only the weights of that deformer are
+     * recalculated; the tables for the face meshes are rebuilt from the compiled weights of all deformers.
+     */
+    public void updateVertexWeights(Deformer deformer)
+    {
+        deformer.invalidateVertexWeights();
+        updateFapVertexWeights();
+        scheduleDeform();
+    }
 
-			currentInfluence = 0;
-			for (ArrayList<Float> weights : fapWeights.values())
-			{
-				for (float weight : weights)
-					fapWeight[currentInfluence++] = weight;
-			}
+    /*
+     * Builds the fapCount/fapIndex/fapWeight tables for all face meshes from the compiled deformer weights.
+     * The deformer weights are GLOBAL vertex indices, indexing the vertexData array, and are translated to mesh specific indices.
+     */
+    private void updateFapVertexWeights()
+    {
+        Collection<FAP> faps = MPEG4.getFAPs().values();
+        int[][] vertices = new int[faps.size()][];
+        float[][] weights = new float[faps.size()][];
+        for (FAP fap : faps)
+        {
+            Deformer deformer = getDeformer(fap);
+            vertices[fap.index] = deformer.getWeightVertices();
+            weights[fap.index] = deformer.getWeightValues();
+        }
 
-			gsm.setFapVertexWeights(fapCount, fapIndex, fapWeight);
-			meshIndex++;
-			firstVertexIndexForMesh += numVertices;
-		}
-        scheduleDeform();
+        int meshIndex = 0;
+        int firstVertexIndexForMesh = 0;
+        for (GLSkinnedMesh gsm : faceMeshes)
+        {
+            int numVertices = faceMeshesVertexDataCount.get(meshIndex).intValue() / 3;
+            FapVertexWeights fvw = new FapVertexWeights(vertices, weights, firstVertexIndexForMesh, numVertices);
+            gsm.setFapVertexWeights(fvw.fapCount, fvw.fapIndex, fvw.fapWeight);
+            meshIndex++;
+            firstVertexIndexForMesh += numVertices;
+        }
     }
 
     public void scheduleDeform()
@@ -397,19 +384,26 @@ public class GLHead extends XMLStructureAdapter implements Head
         deformScheduled = true;
     }
 
-    public void deformWhenScheduled()
+    /* Copies the current deformer values into the amplitudes array, which is allocated only when the number of FAPs changes */
+    private float[] getAmplitudes()
     {
-        if (!deformScheduled) return;
-
         HashMap<Integer, FAP> faps = MPEG4.getFAPs();
-        int nrOfFaps = faps.size();
-
-        float[] amplitudes = new float[nrOfFaps];
-        for (FAP fap2 : faps.values())
+        if (amplitudes.length != faps.size())
+        {
+            amplitudes = new float[faps.size()];
+        }
+        for (FAP fap : faps.values())
         {
-            amplitudes[fap2.index] = ((float) getDeformer(fap2).getValue()) / 1024;
+            amplitudes[fap.index] = ((float) getDeformer(fap).getValue()) / 1024;
         }
+        return amplitudes;
+    }
 
+    public void deformWhenScheduled()
+    {
+        if (!deformScheduled) return;
+
+        float[] amplitudes = getAmplitudes();
 		applyVertexData();
         for (GLSkinnedMesh gsm: faceMeshes)
 		{
@@ -429,15 +423,7 @@ public class GLHead extends XMLStructureAdapter implements Head
         // displacements.put(fap, disp);
         // displacementsDirty = true;
 
-        HashMap<Integer, FAP> faps = MPEG4.getFAPs();
-        int nrOfFaps = faps.size();
-
-        float[] amplitudes = new float[nrOfFaps];
-        for (FAP fap2 : faps.values())
-        {
-            amplitudes[fap2.index] = ((float) getDeformer(fap2).getValue()) / 1024;
-        }
-
+        float[] amplitudes = getAmplitudes();
         for (GLSkinnedMesh gsm: faceMeshes)
 		{
 			gsm.setFapAmplitudes(amplitudes);
@@ -535,13 +521,10 @@ public class GLHead extends XMLStructureAdapter implements Head
 		for (int i = 0; i < faceMeshes.size(); i++)
 		{
 			GLSkinnedMesh gsm = faceMeshes.get(i);
-			float[] newVertexData = new float[faceMeshesVertexDataCount.get(i).intValue()];
+			float[] newVertexData = faceMeshesVertexData.get(i);
 			//copy the right vertex data from main array
-			for (int h = 0; h < newVertexData.length; h++)
-			{
-				newVertexData[h] = vertexData[j];
-				j++;
-			}
+			System.arraycopy(vertexData, j, newVertexData, 0, newVertexData.length);
+			j += newVertexData.length;
 			gsm.setVertexData(0, newVertexData);
 		}
 	}
@@ -23,7 +23,7 @@
 package hmi.facegraphics;
 
 import hmi.faceanimation.FaceController;
-import hmi.faceanimation.MorphTargetHandler;
+import hmi.faceanimation.IndexedMorphTargetHandler;
 import hmi.faceanimation.model.FAP;
 import hmi.faceanimation.model.MPEG4;
 import hmi.faceanimation.model.MPEG4Configuration;
@@ -35,8 +35,6 @@ import java.util.Collection;
 
 import lombok.Delegate;
 
-import com.google.common.collect.ImmutableMap;
-
 /**
  * The FaceController is the access point for deforming the face of an avatar, just like VJoints are the accesspoint for deforming its body.
  * 
@@ -51,8 +49,25 @@ public class HMIFaceController implements FaceController
     private GLScene theGLScene;
     private Collection<String> possibleFaceMorphTargetNames = new ArrayList<String>();
 
-    @Delegate
-    private MorphTargetHandler morphTargetHandler = new MorphTargetHandler();
+    /** The MorphFaceController methods that are delegated to the morphTargetHandler */
+    private interface MorphTargetMethods
+    {
+        void setMorphTargets(String[] targetNames, float[] weights);
+
+        float getCurrentWeight(String targetName);
+
+        void addMorphTargets(String[] targetNames, float[] weights);
+
+        void removeMorphTargets(String[] targetNames, float[] weights);
+    }
+
+    @Delegate(types = MorphTargetMethods.class)
+    private IndexedMorphTargetHandler morphTargetHandler = new IndexedMorphTargetHandler();
+
+    /* Reused by copy(): the snapshot of all weights, and the targets with a non-zero weight that are passed to theGLScene */
+    private IndexedMorphTargetHandler.Snapshot morphTargetSnapshot = new IndexedMorphTargetHandler.Snapshot();
+    private String[] activeTargetNames = new String[0];
+    private float[] activeTargetWeights = new float[0];
     
     /** store the current config, for add- and remove-mpeg4configuration */
     private MPEG4Configuration currentConfig = new MPEG4Configuration();
@@ -96,6 +111,7 @@ public class HMIFaceController implements FaceController
     public void setPossibleFaceMorphTargetNames(Collection<String> names)
     {
         possibleFaceMorphTargetNames = names;
+        morphTargetHandler.registerMorphTargets(names.toArray(new String[names.size()]));
     }
 
     /**
@@ -115,17 +131,31 @@ public class HMIFaceController implements FaceController
             glHead.deformWhenScheduled();
         }
 
-        ImmutableMap<String, Float> desiredMorphTargets = morphTargetHandler.getDesiredMorphTargets();
-        String[] targetNames = new String[desiredMorphTargets.size()];
-        float[] targetWeights = new float[desiredMorphTargets.size()];
-        int i = 0;
-        for (String targetName : desiredMorphTargets.keySet())
+        // consistent weights for all known targets, of which only the non-zero ones are passed on
+        morphTargetHandler.getSnapshot(morphTargetSnapshot);
+        String[] names = morphTargetSnapshot.getNames();
+        float[] weights = morphTargetSnapshot.getWeights();
+        int active = 0;
+        for (float weight : weights)
+        {
+            if (weight != 0) active++;
+        }
+        if (activeTargetNames.length != active)
         {
-            targetNames[i] = targetName;
-            targetWeights[i] = desiredMorphTargets.get(targetName);
-            i++;
+            activeTargetNames = new String[active];
+            activeTargetWeights = new float[active];
+        }
+        int j = 0;
+        for (int i = 0; i < weights.length; i++)
+        {
+            if (weights[i] != 0)
+            {
+                activeTargetNames[j] = names[i];
+                activeTargetWeights[j] = weights[i];
+                j++;
+            }
         }
-        theGLScene.setMorphTargets(targetNames, targetWeights);
+        theGLScene.setMorphTargets(activeTargetNames, activeTargetWeights);
     }
 
     /*
@@ -31,6 +31,7 @@ import hmi.xml.XMLStructureAdapter;
 import hmi.xml.XMLTokenizer;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 
 public abstract class Deformer extends XMLStructureAdapter implements DeformerServer
@@ -43,6 +44,13 @@ public abstract class Deformer extends XMLStructureAdapter implements DeformerSe
     protected float[] fpNeutralPos, fpPos;
     private float[] displacement;
 
+    /* The compiled vertex weights: the vertices with a weight > 0, in increasing order, and their weights */
+    private int[] weightVertices;
+    private float[] weightValues;
+    private boolean weightsValid = false;
+    /* The vertex mask as lookup table, only while compiling the vertex weights */
+    private boolean[] vertexMaskLookup;
+
     protected DeformerClient client;
 
     public Deformer()
@@ -60,6 +68,7 @@ public abstract class Deformer extends XMLStructureAdapter implements DeformerSe
         fpNeutralPos = head.getFPPosition(fap.getFeaturePoint());
         if (fpNeutralPos == null)
             fpNeutralPos = new float[] { 0.0f, 0.0f, 0.0f };
+        weightsValid = false;
     }
 
     public FAP getFAP()
@@ -70,7 +79,7 @@ public abstract class Deformer extends XMLStructureAdapter implements DeformerSe
     public void updateSize(float size)
     {
         this.size = size;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -257,18 +266,100 @@ public abstract class Deformer extends XMLStructureAdapter implements DeformerSe
         return 0.0f;
     }
 
-    public HashMap<Integer, Float> getVertexWeights()
+    /**
+     * Returns whether the vertex with the specified index is in the vertex mask of the head for this deformer's FAP.
+     */
+    boolean inVertexMask(int index)
     {
-        HashMap<Integer, Float> weights = new HashMap<Integer, Float>();
+        if (vertexMaskLookup != null)
+            return vertexMaskLookup[index];
+        return head.getVertexMask(fap).contains(index);
+    }
+
+    /**
+     * Marks the compiled vertex weights as invalid, so they are calculated again when needed. To be called when the head geometry changes.
+     */
+    public void invalidateVertexWeights()
+    {
+        weightsValid = false;
+    }
+
+    /**
+     * To be called when a parameter that determines the vertex weights has changed: recalculates the weights of this deformer only,
+     * and lets the head update its vertex weight tables.
+     */
+    protected void vertexWeightsChanged()
+    {
+        head.updateVertexWeights(this);
+    }
+
+    /**
+     * Returns the (shared) array with the indices of the vertices with a weight &gt; 0, in increasing order. See getWeightValues()
+     */
+    public int[] getWeightVertices()
+    {
+        compileVertexWeights();
+        return weightVertices;
+    }
 
+    /**
+     * Returns the (shared) array with the weights for the vertices returned by getWeightVertices()
+     */
+    public float[] getWeightValues()
+    {
+        compileVertexWeights();
+        return weightValues;
+    }
+
+    /* Calculates the weights for all vertices of the head, and keeps those &gt; 0, unless they are still valid */
+    private void compileVertexWeights()
+    {
+        if (weightsValid)
+            return;
         int numVertices = head.getNumVertices();
-        for (int index = 0; index < numVertices; index++)
+        if (fap != null)
+        {
+            vertexMaskLookup = new boolean[numVertices];
+            for (int index : head.getVertexMask(fap))
+            {
+                if (index >= 0 && index < numVertices)
+                    vertexMaskLookup[index] = true;
+            }
+        }
+        int[] vertices = new int[numVertices];
+        float[] weights = new float[numVertices];
+        int count = 0;
+        try
         {
-            float alpha = getWeight(index);
-            if (alpha > 0.0f)
-                weights.put(index, alpha);
+            for (int index = 0; index < numVertices; index++)
+            {
+                float alpha = getWeight(index);
+                if (alpha > 0.0f)
+                {
+                    vertices[count] = index;
+                    weights[count] = alpha;
+                    count++;
+                }
+            }
         }
+        finally
+        {
+            vertexMaskLookup = null;
+        }
+        weightVertices = Arrays.copyOf(vertices, count);
+        weightValues = Arrays.copyOf(weights, count);
+        weightsValid = true;
+    }
 
+    public HashMap<Integer, Float> getVertexWeights()
+    {
+        HashMap<Integer, Float> weights = new HashMap<Integer, Float>();
+        int[] vertices = getWeightVertices();
+        float[] values = getWeightValues();
+        for (int i = 0; i < vertices.length; i++)
+        {
+            weights.put(vertices[i], values[i]);
+        }
         return weights;
     }
 
@@ -304,6 +395,7 @@ public abstract class Deformer extends XMLStructureAdapter implements DeformerSe
 
         tokenizer.takeSTag("deformer");
         tokenizer.takeETag("deformer");
+        invalidateVertexWeights();
     }
 
     // @Deprecated
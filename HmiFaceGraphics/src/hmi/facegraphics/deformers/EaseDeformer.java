@@ -53,7 +53,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateEase(int ease)
     {
         this.ease = ease;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -71,7 +71,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateScalex(float scale)
     {
         scalex = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -89,7 +89,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateScaley(float scale)
     {
         scaley = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -107,7 +107,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateScalez(float scale)
     {
         scalez = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -125,7 +125,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateUseVM(boolean value)
     {
         this.useVertexMask = value;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -143,7 +143,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     public void updateInvertVM(boolean value)
     {
         this.invertVertexMask = value;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -161,7 +161,7 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
     @Override
     float getWeight(int index)
     {
-        boolean inVM = head.getVertexMask(fap).contains(index);
+        boolean inVM = inVertexMask(index);
         if (invertVertexMask)
             inVM = !inVM;
         if (useVertexMask && !inVM)
@@ -280,5 +280,6 @@ public class EaseDeformer extends Deformer implements EaseDeformerServer
 
         tokenizer.takeSTag("ease-deformer");
         tokenizer.takeETag("ease-deformer");
+        invalidateVertexWeights();
     }
 }
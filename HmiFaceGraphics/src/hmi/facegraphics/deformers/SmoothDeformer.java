@@ -52,7 +52,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     {
         this.smoothCenter = smoothCenter;
         bez = null;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -71,7 +71,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     {
         this.smoothSide = smoothSide;
         bez = null;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -89,7 +89,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     public void updateScalex(float scale)
     {
         scalex = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -107,7 +107,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     public void updateScaley(float scale)
     {
         scaley = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -125,7 +125,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     public void updateScalez(float scale)
     {
         scalez = scale;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -143,7 +143,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     public void updateUseVM(boolean value)
     {
         this.useVertexMask = value;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -161,7 +161,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     public void updateInvertVM(boolean value)
     {
         this.invertVertexMask = value;
-        head.calculateVertexWeights();
+        vertexWeightsChanged();
         deform();
     }
 
@@ -179,7 +179,7 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
     @Override
     float getWeight(int index)
     {
-        boolean inVM = head.getVertexMask(fap).contains(index);
+        boolean inVM = inVertexMask(index);
         if (invertVertexMask)
             inVM = !inVM;
         if (useVertexMask && !inVM)
@@ -327,5 +327,6 @@ public class SmoothDeformer extends Deformer implements SmoothDeformerServer
 
         tokenizer.takeSTag("smooth-deformer");
         tokenizer.takeETag("smooth-deformer");
+        invalidateVertexWeights();
     }
 }
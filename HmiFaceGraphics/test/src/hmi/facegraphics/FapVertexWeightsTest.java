@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.facegraphics;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * unit tests for the FapVertexWeights tables
+ */
+public class FapVertexWeightsTest
+{
+    // FAP 0 influences global vertices 1, 3 and 6; FAP 1 none; FAP 2 influences vertices 3 and 4; FAP 3 vertex 1
+    private final int[][] vertices = { { 1, 3, 6 }, null, { 3, 4 }, { 1 } };
+    private final float[][] weights = { { 0.1f, 0.3f, 0.6f }, null, { 0.5f, 0.4f }, { 0.7f } };
+
+    @Test
+    public void testFirstMesh()
+    {
+        FapVertexWeights fvw = new FapVertexWeights(vertices, weights, 0, 5);
+        assertArrayEquals(new int[] { 0, 2, 0, 2, 1 }, fvw.fapCount);
+        assertArrayEquals(new int[] { 0, 3, 0, 2, 2 }, fvw.fapIndex);
+        assertArrayEquals(new float[] { 0.1f, 0.7f, 0.3f, 0.5f, 0.4f }, fvw.fapWeight, 0f);
+    }
+
+    @Test
+    public void testSecondMesh()
+    {
+        // global vertices 5, 6, 7
+        FapVertexWeights fvw = new FapVertexWeights(vertices, weights, 5, 3);
+        assertArrayEquals(new int[] { 0, 1, 0 }, fvw.fapCount);
+        assertArrayEquals(new int[] { 0 }, fvw.fapIndex);
+        assertArrayEquals(new float[] { 0.6f }, fvw.fapWeight, 0f);
+    }
+}
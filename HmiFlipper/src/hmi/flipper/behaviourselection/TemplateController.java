@@ -8,12 +8,19 @@ package hmi.flipper.behaviourselection;
 import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.behaviourselection.template.TemplateState;
 import hmi.flipper.behaviourselection.template.effects.Effect;
+import hmi.flipper.behaviourselection.template.effects.Function;
 import hmi.flipper.behaviourselection.template.effects.Update;
 import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
+import hmi.flipper.informationstate.ChangeListener;
+import hmi.flipper.informationstate.Record;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -30,6 +37,14 @@ import org.xml.sax.SAXException;
  * It will only execute 1 Template which has a Behaviour, but Templates without Behaviours (InformationState updates),
  * are always executed.
  * 
+ * With incremental checking (see setIncrementalChecking()), the preconditions of a Template are only checked again
+ * when one of the InformationState-variables they depend on has changed; for the other Templates the results of the 
+ * previous check are used. 
+ * 
+ * With parallel checking (see setParallelism()), the preconditions of the Templates are checked by multiple threads, 
+ * against a read-only snapshot of the InformationState. Selecting the Templates and applying their Effects and 
+ * Behaviours is still done afterwards by the calling thread, in the order of the Templates, so the result is the same.
+ * 
  * @author Mark ter Maat
  * @version 0.1
  *
@@ -42,6 +57,9 @@ public class TemplateController
     private static final int RECENCY_SIZE = 5;
     private static final boolean SHOW_EFFECT_CONFLICTS = true;
     private static final double HISTORY_MODIFIER = 0.1;
+
+    /* The number of Templates a thread checks at least, when checking in parallel */
+    private static final int PARALLEL_BATCH_SIZE = 16;
     
     /* The TemplateParser to parse Template-files */
     private TemplateParser templateParser = new TemplateParser();
@@ -57,6 +75,22 @@ public class TemplateController
 
     protected DefaultRecord internalIS;
 
+    /* Incremental checking: the index of the Templates, the results of their preconditions, the InformationState these 
+     * results are based on, and the paths of the variables that changed since the last check */
+    private boolean incrementalChecking = false;
+    private TemplateIndex templateIndex = null;
+    private TemplateState[] preconditionStates = null;
+    private DefaultRecord indexedIS = null;
+    private ArrayList<String> changedPaths = new ArrayList<String>();
+    private ChangeListener changeListener = new ChangeListener() {
+        public void changed( Record record, String path ) {
+            changedPaths.add(path);
+        }
+    };
+
+    /* Parallel checking: the pool of threads that check the preconditions, or NULL to check them in the calling thread */
+    private ForkJoinPool checkPool = null;
+
     /**
      * Creates a new TemplateController
      */
@@ -79,17 +113,21 @@ public class TemplateController
 
     /**
      * Processes the given TemplateFile, asks the parser to Parse it, and adds the returned list of Templates to its own list.
+     * The Functions of the Templates are searched in the classes with user-specified functions that are already added 
+     * (see addFunction()), Functions that can not be found yet are searched again when classes are added.
      * 
      * @param templateFile - the Template-filename
-     * @return true if the parsing was succesfull, and false if it wasn't.
+     * @return true if the parsing was succesfull, and false if it wasn't or if a Function has incorrect arguments;
+     * in the latter cases, none of the Templates of the file are added.
      */
     public boolean processTemplateFile( String templateFile )
     {
         if( templateFile.length() == 0 ) return false;
         try {
             ArrayList<Template> lijst = templateParser.parseFile(templateFile); 
-            if( lijst != null ) templates.addAll(lijst);
-            else return false;
+            if( lijst == null || !resolveFunctions(lijst) ) return false;
+            templates.addAll(lijst);
+            return true;
         }catch( ParserConfigurationException e ) {
             e.printStackTrace();
             return false;
@@ -103,7 +141,32 @@ public class TemplateController
             return false;
             // TODO: Handle exception
         }
-        return true;
+    }
+
+    /**
+     * Searches the classes with user-specified functions for the methods of the unresolved Functions of the given Templates.
+     * 
+     * @param templateList - the Templates to search the Functions of
+     * @return false if a Function has a method with incorrect arguments, true otherwise
+     */
+    private boolean resolveFunctions( ArrayList<Template> templateList )
+    {
+        boolean correct = true;
+        for( Template template : templateList ) {
+            for( Function function : template.getFunctions() ) {
+                if( function.isResolved() ) continue;
+                try {
+                    if( !function.resolve(functionClasses) && functionClasses.size() > 0 ) {
+                        logger.debug("Function '{}' of Template {}({}) not found in the function-classes added so far", 
+                                new Object[]{function.getName(), template.getId(), template.getName()});
+                    }
+                }catch( TemplateParseException e ) {
+                    logger.error("Error in Function of Template {}({}): {}", new Object[]{template.getId(), template.getName(), e.getMessage()});
+                    correct = false;
+                }
+            }
+        }
+        return correct;
     }
 
 
@@ -126,8 +189,23 @@ public class TemplateController
         ArrayList<TemplateState> templatesToRun = new ArrayList<TemplateState>();
 
         /* Check all Templates */
-        for( Template template : templates ) {
-            TemplateState state = template.checkTemplate(is);
+        TemplateState[] checkedStates = null;
+        if( incrementalChecking ) {
+            checkedStates = checkPreconditions(is);
+        } else if( checkPool != null ) {
+            boolean[] check = new boolean[templates.size()];
+            Arrays.fill(check, true);
+            checkedStates = new TemplateState[templates.size()];
+            checkPreconditions(is, check, checkedStates);
+        }
+        for( int t=0; t<templates.size(); t++ ) {
+            Template template = templates.get(t);
+            TemplateState state;
+            if( checkedStates != null ) {
+                state = template.createTemplateState(checkedStates[t]);
+            } else {
+                state = template.checkTemplate(is);
+            }
             if( state.isComparesSatisfied() && state.isIndicatorsSatisfied() ) {
                 if( state.isTriggersSatisfied() ) {
                     if( state.getEffects().size() > 0 && state.getBehaviour() == null ) {
@@ -235,6 +313,160 @@ public class TemplateController
         }
     }
 
+    /**
+     * Checks the preconditions of the Templates that depend on a variable that changed since the last check, 
+     * and returns the results of all Templates (using the previous results for the others).
+     * If the list of Templates or the InformationState is not the same as in the last check, all Templates are checked.
+     * 
+     * @param is - the current InformationState.
+     * @return the results of the preconditions, by Template-index
+     */
+    private TemplateState[] checkPreconditions( DefaultRecord is )
+    {
+        boolean[] affected = new boolean[templates.size()];
+        if( templateIndex == null || templateIndex.size() != templates.size() || indexedIS != is ) {
+            stopIncrementalChecking();
+            templateIndex = new TemplateIndex(templates);
+            preconditionStates = new TemplateState[templates.size()];
+            indexedIS = is;
+            is.addChangeListener(changeListener);
+            Arrays.fill(affected, true);
+        } else {
+            templateIndex.markUnindexed(affected);
+            for( String path : changedPaths ) {
+                templateIndex.markAffected(path, affected);
+            }
+        }
+        changedPaths.clear();
+
+        checkPreconditions(is, affected, preconditionStates);
+        return preconditionStates;
+    }
+
+    /**
+     * Checks the preconditions of the Templates marked in the given array, and puts the results in the given array.
+     * With parallel checking, the Templates are divided over the threads of the pool, and checked against a snapshot
+     * of the given InformationState.
+     * 
+     * @param is - the current InformationState.
+     * @param check - true for the Templates (by index) that have to be checked
+     * @param states - the array to put the results in, by Template-index
+     */
+    private void checkPreconditions( DefaultRecord is, boolean[] check, TemplateState[] states )
+    {
+        if( checkPool == null ) {
+            for( int t=0; t<templates.size(); t++ ) {
+                if( check[t] ) {
+                    states[t] = templates.get(t).checkPreconditions(is);
+                }
+            }
+        } else {
+            checkPool.invoke(new CheckTask(is.snapshot(), check, states, 0, templates.size()));
+        }
+    }
+
+    /**
+     * A task that checks the preconditions of a range of Templates, and splits itself if the range is too large.
+     */
+    private class CheckTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final DefaultRecord is;
+        private final boolean[] check;
+        private final TemplateState[] states;
+        private final int start;
+        private final int end;
+
+        CheckTask( DefaultRecord is, boolean[] check, TemplateState[] states, int start, int end )
+        {
+            this.is = is;
+            this.check = check;
+            this.states = states;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if( end - start > PARALLEL_BATCH_SIZE ) {
+                int middle = (start + end) / 2;
+                invokeAll(new CheckTask(is, check, states, start, middle), new CheckTask(is, check, states, middle, end));
+            } else {
+                for( int t=start; t<end; t++ ) {
+                    if( check[t] ) {
+                        states[t] = templates.get(t).checkPreconditions(is);
+                    }
+                }
+            }
+        }
+    }
+
+    /* Removes the index and the results of incremental checking */
+    private void stopIncrementalChecking()
+    {
+        if( indexedIS != null ) {
+            indexedIS.removeChangeListener(changeListener);
+        }
+        indexedIS = null;
+        templateIndex = null;
+        preconditionStates = null;
+        changedPaths.clear();
+    }
+
+    /**
+     * Sets whether the Templates are checked incrementally: if true, the preconditions of a Template are only checked
+     * again when one of the InformationState-variables they depend on has changed since the previous check.
+     * Changes are noticed through the set() and remove() methods of the InformationState and its substructures; 
+     * changes made in another way have to be reported with DefaultRecord.markChanged().
+     * Templates with preconditions that do not report what they depend on are always checked.
+     * 
+     * @param incrementalChecking - true to check incrementally, false (the default) to check all Templates every time
+     */
+    public void setIncrementalChecking( boolean incrementalChecking )
+    {
+        this.incrementalChecking = incrementalChecking;
+        if( !incrementalChecking ) {
+            stopIncrementalChecking();
+        }
+    }
+
+    /**
+     * @return true if the Templates are checked incrementally, see setIncrementalChecking()
+     */
+    public boolean isIncrementalChecking()
+    {
+        return incrementalChecking;
+    }
+
+    /**
+     * Sets the number of threads that check the preconditions of the Templates. 
+     * With more than 1 thread, the preconditions are checked in parallel against a read-only snapshot of the 
+     * InformationState (see DefaultRecord.snapshot()), so they should not modify the InformationState or other shared data.
+     * The Effects and Behaviours are always executed by the thread that calls checkTemplates().
+     * 
+     * @param threads - the number of threads, 1 (the default) to check all preconditions in the calling thread
+     */
+    public void setParallelism( int threads )
+    {
+        if( checkPool != null ) {
+            checkPool.shutdown();
+            checkPool = null;
+        }
+        if( threads > 1 ) {
+            checkPool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * @return the number of threads that check the preconditions of the Templates, see setParallelism()
+     */
+    public int getParallelism()
+    {
+        return checkPool == null ? 1 : checkPool.getParallelism();
+    }
+
     /**
      * Update the list of recently executed Behaviours, based on the given TemplateState
      * @param state
@@ -324,12 +556,14 @@ public class TemplateController
     }
 
     /**
-     * Adds the given Object to the list of classes that contains user-specified functions.
+     * Adds the given Object to the list of classes that contains user-specified functions,
+     * and searches it for the methods of the Functions of the Templates that are not found yet.
      * @param obj
      */
     public void addFunction( Object obj)
     {
         functionClasses.add(obj);
+        resolveFunctions(templates);
     }
 
     /**
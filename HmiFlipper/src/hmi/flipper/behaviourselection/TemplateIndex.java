@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.behaviourselection;
+
+import hmi.flipper.behaviourselection.template.Template;
+import hmi.flipper.informationstate.Path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A TemplateIndex maps the InformationState-variables to the Templates whose preconditions depend on them.
+ * Given the path of a changed variable, it determines which Templates have to be checked again.
+ *
+ * The Templates are indexed on the first segment of their paths (the name of the variable in the root of the
+ * InformationState). A changed path affects a Template if it is a prefix of one of its paths or the other way around.
+ * List-positions (_first, _last, indexes and select expressions) match anything, because a change to one element
+ * of a List can change which element such a position refers to.
+ *
+ * The index refers to the Templates by their index in the list it was created with.
+ */
+
+class TemplateIndex
+{
+    /* The paths of each Template, or NULL if it is unknown what the Template depends on */
+    private final ArrayList<ArrayList<Path>> paths = new ArrayList<ArrayList<Path>>();
+
+    /* The indexes of the Templates that use each root-variable name */
+    private final HashMap<String,ArrayList<Integer>> templatesByName = new HashMap<String,ArrayList<Integer>>();
+
+    /* The indexes of the Templates that have to be checked on every change */
+    private final ArrayList<Integer> unindexed = new ArrayList<Integer>();
+
+    /**
+     * Creates the index of the given Templates.
+     * @param templates - the Templates
+     */
+    TemplateIndex( ArrayList<Template> templates )
+    {
+        for( int t=0; t<templates.size(); t++ ) {
+            ArrayList<Path> templatePaths = templates.get(t).getPaths();
+            if( templatePaths == null ) {
+                paths.add(null);
+                unindexed.add(t);
+                continue;
+            }
+
+            /* A select expression that refers to the root of the InformationState depends on that variable too */
+            ArrayList<Path> dependencies = new ArrayList<Path>();
+            for( Path path : templatePaths ) {
+                addDependencies(path, dependencies);
+            }
+            paths.add(dependencies);
+
+            for( Path path : dependencies ) {
+                ArrayList<Integer> indexes = templatesByName.get(path.getName(0));
+                if( indexes == null ) {
+                    indexes = new ArrayList<Integer>();
+                    templatesByName.put(path.getName(0), indexes);
+                }
+                if( indexes.size() == 0 || indexes.get(indexes.size()-1) != t ) {
+                    indexes.add(t);
+                }
+            }
+        }
+    }
+
+    private static void addDependencies( Path path, ArrayList<Path> dependencies )
+    {
+        dependencies.add(path);
+        for( int i=0; i<path.size(); i++ ) {
+            if( path.getSegment(i).getSelectRootPath() != null ) {
+                addDependencies(path.getSegment(i).getSelectRootPath(), dependencies);
+            }
+        }
+    }
+
+    /**
+     * @return the number of indexed Templates
+     */
+    int size()
+    {
+        return paths.size();
+    }
+
+    /**
+     * Marks all Templates that have to be checked on every change.
+     * @param affected - the flags to set, by Template-index
+     */
+    void markUnindexed( boolean[] affected )
+    {
+        for( int t : unindexed ) {
+            affected[t] = true;
+        }
+    }
+
+    /**
+     * Marks all Templates affected by a change of the variable with the given path.
+     * @param changedPath - the path of the changed variable
+     * @param affected - the flags to set, by Template-index
+     */
+    void markAffected( String changedPath, boolean[] affected )
+    {
+        Path changed = new Path(changedPath);
+        ArrayList<Integer> indexes = templatesByName.get(changed.getName(0));
+        if( indexes == null ) {
+            return;
+        }
+        for( int t : indexes ) {
+            if( affected[t] ) continue;
+            for( Path path : paths.get(t) ) {
+                if( overlaps(changed, path) ) {
+                    affected[t] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if a change of the variable at path p1 could change the variable at path p2, or the other way around.
+     */
+    static boolean overlaps( Path p1, Path p2 )
+    {
+        int n = Math.min(p1.size(), p2.size());
+        for( int i=0; i<n; i++ ) {
+            if( isListPosition(p1.getSegment(i)) || isListPosition(p2.getSegment(i)) ) {
+                return true;
+            }
+            if( !p1.getName(i).equals(p2.getName(i)) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isListPosition( Path.Segment segment )
+    {
+        return segment.getPosition() != Path.Position.None || segment.getName().startsWith("_");
+    }
+}
@@ -14,6 +14,7 @@ import hmi.flipper.behaviourselection.template.preconditions.Indicator;
 import hmi.flipper.behaviourselection.template.preconditions.Precondition;
 import hmi.flipper.defaultInformationstate.DefaultRecord;
 import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.informationstate.Path;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -225,9 +226,21 @@ public class Template
      * @return
      */
     public TemplateState checkTemplate( DefaultRecord is )
+    {
+        return createTemplateState(checkPreconditions(is));
+    }
+
+    /**
+     * This method uses the given InformationState to check which kind of preconditions of this template are fulfilled 
+     * (compares, indicators, and triggers), and the total number of non-fulfilled preconditions.
+     * The returned TemplateState does not contain Effects or a Behaviour yet, see createTemplateState().
+     * 
+     * @param is - the Current InformationState
+     * @return the TemplateState with the results of the preconditions
+     */
+    public TemplateState checkPreconditions( DefaultRecord is )
     {
         /* Initializing variables */
-        TemplateState resultState;
         boolean comparesSatisfied = true;
         boolean indicatorsSatisfied = true;
         boolean triggersSatisfied = true;
@@ -261,8 +274,23 @@ public class Template
         }
 
         /* Create a new TemplateState */
-        resultState = new TemplateState(this,comparesSatisfied,indicatorsSatisfied,
+        return new TemplateState(this,comparesSatisfied,indicatorsSatisfied,
                 triggersSatisfied,(compares.size()+indicators.size()+triggers.size()),nrMissing);
+    }
+
+    /**
+     * Creates a new TemplateState with the results of the given preconditions-state (see checkPreconditions()),
+     * and the Effects and Behaviour of this template. If all preconditions are fulfilled, the optional 
+     * choice-blocks are chosen at random again.
+     * 
+     * @param preconditionState - the results of the preconditions
+     * @return the new TemplateState
+     */
+    public TemplateState createTemplateState( TemplateState preconditionState )
+    {
+        TemplateState resultState = new TemplateState(this,preconditionState.isComparesSatisfied(),preconditionState.isIndicatorsSatisfied(),
+                preconditionState.isTriggersSatisfied(),preconditionState.getTotalNrOfPreconditions(),preconditionState.getNrOfMissingPreconditions());
+        int nrMissing = preconditionState.getNrOfMissingPreconditions();
 
         /* Determine which choice-blocks are chosen, and make a list of all Effects that have to be executed. */
         ArrayList<Effect> currEffects = new ArrayList<Effect>();
@@ -304,6 +332,50 @@ public class Template
         return resultState;
     }
 
+    /**
+     * Returns the paths of the InformationState-variables the preconditions of this template depend on.
+     * 
+     * @return the list of paths, or NULL if it is unknown what one of the preconditions depends on
+     */
+    public ArrayList<Path> getPaths()
+    {
+        ArrayList<Path> paths = new ArrayList<Path>();
+        ArrayList<Precondition> preconditions = new ArrayList<Precondition>();
+        preconditions.addAll(compares);
+        preconditions.addAll(indicators);
+        preconditions.addAll(triggers);
+        for( Precondition p : preconditions ) {
+            ArrayList<Path> preconditionPaths = p.getPaths();
+            if( preconditionPaths == null ) {
+                return null;
+            }
+            paths.addAll(preconditionPaths);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the Functions in the Effects of this template, including those in the optional choice-blocks.
+     * 
+     * @return the list of Functions
+     */
+    public ArrayList<Function> getFunctions()
+    {
+        ArrayList<Effect> allEffects = new ArrayList<Effect>(effects);
+        for( ArrayList<Choice> option : optional ) {
+            for( Choice choice : option ) {
+                allEffects.addAll(choice.effects);
+            }
+        }
+        ArrayList<Function> functions = new ArrayList<Function>();
+        for( Effect effect : allEffects ) {
+            if( effect instanceof Function ) {
+                functions.add((Function)effect);
+            }
+        }
+        return functions;
+    }
+
     /**
      * Given the DOM Template-Element, returns the Template that fits the XML.
      * This class creates a new Template and returns this.
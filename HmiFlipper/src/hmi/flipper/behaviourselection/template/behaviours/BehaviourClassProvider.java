@@ -12,7 +12,8 @@ import java.util.HashMap;
 
 /**
  *
- * A provider for BehaviourClasses
+ * A provider for BehaviourClasses. Each BehaviourClass is found and instantiated only once, when the first Behaviour
+ * that uses it is parsed; after that the same instance is returned.
  * @author Mark ter Maat
  *
  */
@@ -26,13 +27,14 @@ public class BehaviourClassProvider
         me = this;
     }
 
-    public static BehaviourClass getBehaviourClass( String name ) throws TemplateParseException
+    public static synchronized BehaviourClass getBehaviourClass( String name ) throws TemplateParseException
     {
         if( me == null ) {
             new BehaviourClassProvider();
         }
-        if( me.instantiations.get(name) != null ) {
-            return me.instantiations.get(name);
+        BehaviourClass instance = me.instantiations.get(name);
+        if( instance != null ) {
+            return instance;
         }
         Class<?> c;
         BehaviourClass bc = null;
@@ -13,10 +13,14 @@ import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
 import hmi.flipper.informationstate.Record;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -24,18 +28,35 @@ import org.w3c.dom.NodeList;
 
 /**
  * A Function is a type of Effect. When applied, it will search for a method with the correct name and number of arguments and execute this.
+ * The method is searched only once (see resolve()), and called through a MethodHandle.
+ * 
+ * @version 0.1.1
+ * The method is resolved once, when the Templates are loaded or the function-classes are added to the TemplateController.
  * 
- * @author Mark ter Maat
  * @version 0.1
+ * First version
+ * 
+ * @author Mark ter Maat
  */
 
 public class Function extends Effect
 {
+    private static Logger logger = LoggerFactory.getLogger(Function.class.getName());
+
     /* The name of the method to execute */
     private String name;
     /* The list of arguments to supply the method */
     private ArrayList<AbstractValue> arguments = new ArrayList<AbstractValue>();
 
+    /* The type of the resolved methods: a method with 1 argument (the String-values of the arguments) */
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(void.class, String[].class);
+
+    /* The resolved method, bound to the object it is called on, and the list of function-classes it was found in */
+    private MethodHandle handle = null;
+    /* Whether the resolved method takes a String per argument, rather than a String[] */
+    private boolean spread = false;
+    private ArrayList<Object> resolvedClasses = null;
+
     /**
      * Creates a new Function with the given name and arguments
      * 
@@ -65,58 +86,127 @@ public class Function extends Effect
     }
 
     /**
-     * Given the current InformationState, and the TemplateController, retrieve a list of classes which
-     * contain user-specified functions from the TemplateController, search these classes for a method
-     * with the correct name and number of arguments, and execute this function the the current values
-     * of the arguments.
-     * 
-     * @param is - the current InformationState
-     * @param controller - the TemplateController than manages the Template containing this Update.
-     * @throws TemplateRunException
+     * @return the name of the method to execute
      */
-    public void apply( Record is, TemplateController tc ) throws TemplateRunException
+    public String getName()
     {
-        /* Get a list of all classes containing user-specified functions */
-        ArrayList<Object> functionClasses = tc.getFunctionClasses();
+        return name;
+    }
 
+    /**
+     * Searches the given list of classes which contain user-specified functions for a public method with the name 
+     * of this Function and 1 argument that accepts a String[] (for example 'void name( String[] args )' or 
+     * 'void name( String... args )'), or a String-argument for each argument of this Function 
+     * (for example 'void name( String arg1, String arg2 )'), and keeps it to execute this Function. 
+     * If more objects have such a method, the first one in the list is used.
+     * 
+     * @param functionClasses - the list of objects with user-specified functions
+     * @return true if the method was found, false if it was not
+     * @throws TemplateParseException if a method with the name was found, but none with the correct argument
+     */
+    public boolean resolve( ArrayList<Object> functionClasses ) throws TemplateParseException
+    {
+        boolean nameFound = false;
         for( Object object : functionClasses ) {
-            Class<?> c = object.getClass();
-
-            for( Method method : c.getMethods() ) {
-                /* Check all methods of all classes */
+            for( Method method : object.getClass().getMethods() ) {
                 if( method.getName().equals(name) ) {
-                    /* Make a list with the current values of the arguments */
-                    ArrayList<Value> argValues = new ArrayList<Value>();
-                    for( AbstractValue av : arguments ) {
-                    	Value tmpVal = av.getValue(is);
-                    	if(tmpVal != null){
-                    		argValues.add(tmpVal);
-                    	}
-                    }
-                    String[] args = new String[argValues.size()];
-                    for( int i=0; i<argValues.size(); i++ ) {
-                        args[i] = argValues.get(i).toString();
+                    nameFound = true;
+                    Class<?>[] types = method.getParameterTypes();
+                    boolean arrayArgument = types.length == 1 && types[0].isAssignableFrom(String[].class);
+                    if( arrayArgument || acceptsStrings(types) ) {
+                        try {
+                            MethodHandle mh = MethodHandles.publicLookup().unreflect(method).bindTo(object);
+                            if( !arrayArgument ) {
+                                mh = mh.asSpreader(String[].class, types.length);
+                            }
+                            handle = mh.asType(FUNCTION_TYPE);
+                            spread = !arrayArgument;
+                        }catch( IllegalAccessException e ) {
+                            throw new TemplateParseException("Function '"+name+"' could not be accessed.", null, null, "Function '"+name+"'");
+                        }
+                        resolvedClasses = functionClasses;
+                        return true;
                     }
+                }
+            }
+        }
+        handle = null;
+        resolvedClasses = null;
+        if( nameFound ) {
+            throw new TemplateParseException("Function '"+name+"' does not accept a String[] or "+arguments.size()+" Strings as arguments.", 
+                    null, null, "Function '"+name+"'");
+        }
+        return false;
+    }
 
-                    /* Execute the function with the current values of the arguments */
-                    try {
-                    	Object a = (Object)args;
-                        method.invoke(object, a);
-                        return;
-                    }catch( IllegalAccessException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }catch( InvocationTargetException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }catch( IllegalArgumentException e ) {
-                    	e.printStackTrace();
-                        throw new TemplateRunException("Error while calling function '"+name+"'.");
-                    }
+    /* Returns true if the given parameter-types are a String-argument for each argument of this Function */
+    private boolean acceptsStrings( Class<?>[] types )
+    {
+        if( types.length != arguments.size() ) {
+            return false;
+        }
+        for( Class<?> type : types ) {
+            if( !type.isAssignableFrom(String.class) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the method of this Function has been found, see resolve()
+     */
+    public boolean isResolved()
+    {
+        return handle != null;
+    }
+
+    /**
+     * Given the current InformationState, and the TemplateController, execute the method of this Function with the current 
+     * values of the arguments. Arguments without a value are left out of the String[] of a 'void name( String[] args )' method,
+     * and passed as null to a method with a String-argument for each argument. If the method was not yet found in the list of classes which contain user-specified functions 
+     * of the TemplateController, it is searched first (see resolve()).
+     * 
+     * @param is - the current InformationState
+     * @param controller - the TemplateController than manages the Template containing this Update.
+     * @throws TemplateRunException
+     */
+    public void apply( Record is, TemplateController tc ) throws TemplateRunException
+    {
+        /* Find the method, if this has not been done for the list of classes containing user-specified functions */
+        if( handle == null || resolvedClasses != tc.getFunctionClasses() ) {
+            try {
+                if( !resolve(tc.getFunctionClasses()) ) {
+                    throw new TemplateRunException("Could not find function '"+name+"'.");
                 }
+            }catch( TemplateParseException e ) {
+                throw new TemplateRunException(e.getMessage());
             }
         }
-        throw new TemplateRunException("Could not find function '"+name+"'.");
+
+        /* Make an array with the current values of the arguments; for a String per argument, each argument keeps its position */
+        ArrayList<String> argValues = new ArrayList<String>(arguments.size());
+        for( AbstractValue av : arguments ) {
+            Value tmpVal = av.getValue(is);
+            if( tmpVal != null ) {
+                argValues.add(tmpVal.toString());
+            }else if( spread ) {
+                argValues.add(null);
+            }
+        }
+        String[] args = argValues.toArray(new String[argValues.size()]);
+
+        /* Execute the function with the current values of the arguments */
+        try {
+            handle.invokeExact(args);
+        }catch( Exception e ) {
+            logger.error("Error while calling function '{}'.", name, e);
+            throw new TemplateRunException("Error while calling function '"+name+"': "+e);
+        }catch( Throwable e ) {
+            /* An Error, which is not handled here */
+            if( e instanceof Error ) throw (Error)e;
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
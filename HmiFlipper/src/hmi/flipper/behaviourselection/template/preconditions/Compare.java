@@ -21,8 +21,11 @@ import hmi.flipper.behaviourselection.template.preconditions.compares.CompareNot
 import hmi.flipper.behaviourselection.template.preconditions.compares.CompareNotExists;
 import hmi.flipper.behaviourselection.template.value.AbstractValue;
 import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.informationstate.Path;
 import hmi.flipper.informationstate.Record;
 
+import java.util.ArrayList;
+
 /**
  * This is an abstract class of a Compare. Depending on what kind of comparison has to be made, a different subclass should be used.
  * 
@@ -76,6 +79,18 @@ public abstract class Compare extends Precondition
      */
     public abstract boolean isValid( Record is );
 
+    /**
+     * Returns the paths of the InformationState-variables referenced by the values of this Compare.
+     */
+    @Override
+    public ArrayList<Path> getPaths()
+    {
+        ArrayList<Path> paths = new ArrayList<Path>();
+        if( abstractValue1 != null ) paths.addAll(abstractValue1.getPaths());
+        if( abstractValue2 != null ) paths.addAll(abstractValue2.getPaths());
+        return paths;
+    }
+
     /**
      * Given the DOM Compare-Element, returns the Precondition that fits the XML.
      * This class will look at the type of comparator and calls the corresponding subclass.
@@ -11,8 +11,11 @@ import org.w3c.dom.Element;
 
 import hmi.flipper.behaviourselection.template.Template;
 import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.informationstate.Path;
 import hmi.flipper.informationstate.Record;
 
+import java.util.ArrayList;
+
 /**
  * An ICompare is a Compare that is used in an Indicator. It contains a normal Compare, and a modifier (which modifiers the Indicator's proof-value). 
  * 
@@ -52,6 +55,15 @@ public class ICompare
         return compare.isValid(is);
     }
 
+    /**
+     * Returns the paths of the InformationState-variables the Compare depends on, see Precondition.getPaths().
+     * @return the list of paths, or NULL if unknown
+     */
+    public ArrayList<Path> getPaths()
+    {
+        return compare.getPaths();
+    }
+
     /**
      * Returns the modifier.
      * @return
@@ -16,6 +16,7 @@ import hmi.flipper.behaviourselection.template.value.AbstractValue;
 import hmi.flipper.behaviourselection.template.value.Value;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
+import hmi.flipper.informationstate.Path;
 import hmi.flipper.informationstate.Record;
 
 /**
@@ -139,6 +140,25 @@ public class Indicator extends Precondition
         }
     }
 
+    /**
+     * Returns the paths of the InformationState-variables referenced by the start- and end-value and by the Compares of this Indicator.
+     */
+    @Override
+    public ArrayList<Path> getPaths()
+    {
+        ArrayList<Path> paths = new ArrayList<Path>();
+        paths.addAll(abstractStartValue.getPaths());
+        paths.addAll(abstractEndValue.getPaths());
+        for( ICompare compare : indicatorCompares ) {
+            ArrayList<Path> comparePaths = compare.getPaths();
+            if( comparePaths == null ) {
+                return null;
+            }
+            paths.addAll(comparePaths);
+        }
+        return paths;
+    }
+
     /**
      * Given the current proof-value and a modifier, calculate the new proof-value and return this.
      * 
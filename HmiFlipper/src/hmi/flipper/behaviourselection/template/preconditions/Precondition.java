@@ -5,8 +5,11 @@
 
 package hmi.flipper.behaviourselection.template.preconditions;
 
+import hmi.flipper.informationstate.Path;
 import hmi.flipper.informationstate.Record;
 
+import java.util.ArrayList;
+
 /**
  * This interface defines a Precondition of a template. This can either be a Compare or an Indicator.
  * 
@@ -25,4 +28,15 @@ public abstract class Precondition
      *          - false if the precondition is not valid, or if an error occurred.
      */
     public abstract boolean isValid( Record is );
+
+    /**
+     * Returns the paths of the InformationState-variables this Precondition depends on, so that it only has to be 
+     * checked again when one of these variables changes.
+     * 
+     * @return the list of paths, or NULL if it is unknown what this Precondition depends on (then it is always checked).
+     */
+    public ArrayList<Path> getPaths()
+    {
+        return null;
+    }
 }
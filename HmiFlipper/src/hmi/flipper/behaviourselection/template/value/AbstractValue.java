@@ -10,8 +10,11 @@ import hmi.flipper.behaviourselection.template.value.Value.ExportType;
 import hmi.flipper.exceptions.TemplateParseException;
 import hmi.flipper.exceptions.TemplateRunException;
 import hmi.flipper.informationstate.Item;
+import hmi.flipper.informationstate.Path;
 import hmi.flipper.informationstate.Record;
 
+import java.util.ArrayList;
+
 /**
  * An AbstractValue is a description of a value (the value-string from the XML), rather than the value itself.
  * If this is an atomic value (an Integer, a Double or a String), then the real Value can be calculated immediately.
@@ -20,6 +23,9 @@ import hmi.flipper.informationstate.Record;
  * 
  * Therefore, use the function getValue() to get the real Value of this AbstractValue.
  * 
+ * @version 0.1.2
+ * IS-references are compiled into a Path once, instead of being parsed at every getValue().
+ * 
  * @version 0.1.1
  * Added support for more elaborate Strings (with spaces, and the following characters ,.?!_
  * 
@@ -41,6 +47,9 @@ public class AbstractValue
     /* The string-representation of the second value (if existing), and the real Value (NULL if the string is an IS-reference) */
     private String valueString2;
     private Value value2;
+    /* The compiled IS-references of the first and the second value (NULL if the value is not an IS-reference) */
+    private Path path;
+    private Path path2;
 
     /* If there are 2 components, this stores the mathematical operator (+-/*) */
     private String operator;
@@ -110,10 +119,14 @@ public class AbstractValue
                 this.valueString = valueString.substring(0, valueString.indexOf(operator)).replaceAll(" ", "");
                 if( !this.valueString.contains("$") ) {     
                     value = getStaticValue( this.valueString );
+                } else {
+                    path = compilePath( this.valueString );
                 }
                 this.valueString2 = valueString.substring(valueString.indexOf(operator)+1).replaceAll(" ", "");
                 if( !this.valueString2.contains("$") ) {
                     value2 = getStaticValue( this.valueString2 );
+                } else {
+                    path2 = compilePath( this.valueString2 );
                 }
                 numberOfComponents = 2;
             }
@@ -122,11 +135,54 @@ public class AbstractValue
             this.valueString = valueString;
             if( !valueString.contains("$") ) {
                 value = getStaticValue( valueString );
+            } else {
+                path = compilePath( valueString );
             }
             numberOfComponents = 1;
         }
     }
 
+    /**
+     * Returns the IS-reference in the given String-representation of a value: the part starting with the $-sign.
+     * 
+     * @param str - the String-representation of the value
+     * @return the IS-reference, or NULL if there is no $-sign
+     */
+    private static String getReference( String str )
+    {
+        /* Determine the start-index and the end-index of the IS-reference */
+        int startindex = str.indexOf("$");
+        if( startindex == -1 ) {
+            return null;
+        }
+        int endindex = -1;
+        for( int i=startindex+1; i<str.length(); i++ ) {
+            char ch = str.charAt(i);
+            if( !(Character.isLetter(ch) || Character.isDigit(ch) || ch == '_' || ch == '.' || ch == '='|| ch == ':' || ch == '[' || ch == ']') ) {
+                endindex = i;
+            }
+        }
+        if( endindex == -1 ) {
+            endindex = str.length();
+        }
+        return str.substring(startindex,endindex);
+    }
+
+    /**
+     * Compiles the IS-reference in the given String-representation of a value into a Path.
+     * 
+     * @param str - the String-representation of the value
+     * @return the compiled Path, or NULL if there is no $-sign
+     */
+    private static Path compilePath( String str )
+    {
+        String reference = getReference(str);
+        if( reference == null ) {
+            return null;
+        }
+        return new Path(reference);
+    }
+
     /**
      * If the value is atomic, calculate the Value and return it.
      * 
@@ -196,25 +252,31 @@ public class AbstractValue
      */
     public Value getDynamicValue( String str, Record is ) throws TemplateRunException
     {
-        /* Determine the start-index and the end-index of the IS-reference, and create the IS-path */
-        int startindex = str.indexOf("$");
-        if( startindex == -1 ) {
+        /* Determine the IS-reference, and create the IS-path */
+        String reference = getReference(str);
+        if( reference == null ) {
             throw new TemplateRunException("Missing $-sign in referenced value ("+str+").");
         }
-        int endindex = -1;
-        for( int i=startindex+1; i<str.length(); i++ ) {
-            char ch = str.charAt(i);
-            if( !(Character.isLetter(ch) || Character.isDigit(ch) || ch == '_' || ch == '.' || ch == '='|| ch == ':' || ch == '[' || ch == ']') ) {
-                endindex = i;
-            }
-        }
-        if( endindex == -1 ) {
-            endindex = str.length();
-        }
-        String path = str.substring(startindex,endindex);
 
         /* Use the reference-path, get the InformationState-Item of the corresponding IS-variable */
-        Item item = is.getValueOfPath(path, is);
+        return getDynamicValue( is.getValueOfPath(reference, is) );
+    }
+
+    /**
+     * Using the given compiled IS-reference and the current InformationState, calculate the current Value
+     * 
+     * @param path - the compiled IS-reference
+     * @param is - the current InformationState
+     * @return Value
+     */
+    public Value getDynamicValue( Path path, Record is )
+    {
+        return getDynamicValue( is.getValueOfPath(path, is) );
+    }
+
+    /* Creates the Value of the given IS-Item, or returns NULL if there is no Item */
+    private Value getDynamicValue( Item item )
+    {
         if( item == null ) {
             return null;
         } else {
@@ -239,6 +301,8 @@ public class AbstractValue
              * If not, then get the variable from the IS. */
             if( value != null ) {
                 return value;
+            } else if( path != null ) {
+                return getDynamicValue(path,is);
             } else {
                 return getDynamicValue(valueString,is);
             }
@@ -248,6 +312,8 @@ public class AbstractValue
             Value v1;
             if( value != null ) {
                 v1 = value;
+            } else if( path != null ) {
+                v1 = getDynamicValue(path,is);
             } else {
                 v1 = getDynamicValue(valueString,is);
             }
@@ -256,6 +322,8 @@ public class AbstractValue
             Value v2;
             if( value2 != null ) {
                 v2 = value2;
+            } else if( path2 != null ) {
+                v2 = getDynamicValue(path2,is);
             } else {
                 v2 = getDynamicValue(valueString2,is);
             }
@@ -274,6 +342,19 @@ public class AbstractValue
         }	
     }
 
+    /**
+     * Returns the compiled IS-references of this AbstractValue: the InformationState-variables its Value depends on.
+     * 
+     * @return the list of paths, which is empty if the Value is static
+     */
+    public ArrayList<Path> getPaths()
+    {
+        ArrayList<Path> paths = new ArrayList<Path>();
+        if( path != null ) paths.add(path);
+        if( path2 != null ) paths.add(path2);
+        return paths;
+    }
+
     /**
      * Combine the 2 given Values into 1 Value, depending on the types of the 2 Values
      * 
@@ -251,6 +251,22 @@ public class DefaultItem implements Serializable, Item
         return getValueOfPath(path, null);
     }
 
+    /**
+     * Retrieves the value of the given compiled Path, starting at the given segment.
+     * If there are no segments left, or if the type of this Item is a String, Integer, or Double it will return this Item.
+     * 
+     * @param path - the compiled path
+     * @param segment - the index of the first segment of the path that refers to the substructure of this Item
+     * @return the wanted Item
+     */
+    public Item getValueOfPath( Path path, int segment, Record rootIS )
+    {
+        if( segment >= path.size() ) return this;
+        if( type == Type.Record ) return recordValue.getValueOfPath(path, segment, rootIS);
+        if( type == Type.List ) return listValue.getValueOfPath(path, segment, rootIS);
+        return this;
+    }
+
     public void set( String path, Object value )
     {
         if( path == null ) {
@@ -306,4 +322,28 @@ public class DefaultItem implements Serializable, Item
         return ret;
     }
 
+    /**
+     * Returns a copy of the given Item for a read-only snapshot (see DefaultRecord.snapshot()).
+     * The value of a DefaultRecord or a DefaultList is replaced by its snapshot, other Records and Lists are shared.
+     * 
+     * @param item - the Item to copy
+     * @return the copy
+     */
+    static Item snapshot( Item item )
+    {
+        Item.Type type = item.getType();
+        DefaultItem copy = new DefaultItem(type);
+        if( type == Type.String ) copy.stringValue = item.getString();
+        if( type == Type.Integer ) copy.integerValue = item.getInteger();
+        if( type == Type.Double ) copy.doubleValue = item.getDouble();
+        if( type == Type.Record ) {
+            Record record = item.getRecord();
+            copy.recordValue = (record instanceof DefaultRecord) ? ((DefaultRecord)record).snapshot() : record;
+        }
+        if( type == Type.List ) {
+            List list = item.getList();
+            copy.listValue = (list instanceof DefaultList) ? ((DefaultList)list).snapshot() : list;
+        }
+        return copy;
+    }
 }
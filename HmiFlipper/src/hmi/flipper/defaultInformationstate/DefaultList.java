@@ -18,6 +18,12 @@ import hmi.flipper.informationstate.*;
  * This means you can only add items to the beginning or the end of the list, 
  * and you can only get items from the beginning or the end of the list too.
  * 
+ * @version 0.1.4
+ * Added read-only snapshots, see DefaultRecord.snapshot().
+ * 
+ * @version 0.1.3
+ * Changes are reported to the ChangeListeners of the Records that contain this List.
+ * 
  * @version 0.1.1
  * Added support for the removal of elements given a Path.
  * 
@@ -41,12 +47,24 @@ public class DefaultList implements Serializable, List
     /* The list with Items */
     private ArrayList<Item> list = new ArrayList<Item>();
 
+    /* The Records and Lists that contain this List, to report changes to the ChangeListeners of the root Record */
+    private transient ArrayList<Owner> owners = null;
+
+    /* True if this List is a read-only snapshot, and the last snapshot of this List (NULL if it has changed since) */
+    private final boolean readOnly;
+    private transient DefaultList snapshot = null;
+
     /**
      * Creates a new List.
      */
     public DefaultList()
     {
+        this(false);
+    }
 
+    private DefaultList( boolean readOnly )
+    {
+        this.readOnly = readOnly;
     }
 
     public Item getValueOfPath( String path){
@@ -146,8 +164,83 @@ public class DefaultList implements Serializable, List
         }
     }
 
+    /**
+     * Returns the Item of the given compiled Path, of which the segment at the given index contains the location of the Item
+     * in this List (_first/_last, an integer index, or a select expression). After that, the remaining segments are passed
+     * to the Item. This gives the same result as getValueOfPath(String, Record), but does not parse the path again.
+     * 
+     * @param path - the compiled path of the wanted Item
+     * @param segment - the index of the segment with the location in this List
+     * @return the wanted Item, or NULL if it does not exist
+     */
+    public Item getValueOfPath( Path path, int segment, Record rootIS )
+    {
+        if( list.size() == 0 ) {
+            return null;
+        }
+
+        Path.Segment position = path.getSegment(segment);
+        int index = -1;
+        switch( position.getPosition() ) {
+            case First:
+                index = 0;
+                break;
+            case Last:
+                index = list.size()-1;
+                break;
+            case Index:
+                index = position.getIndex();
+                break;
+            case Select:
+                index = select(position, rootIS);
+                break;
+            default:
+                break;
+        }
+
+        /* Return the value of the required index */
+        if( index >= 0 && index < list.size() ) {
+            return list.get(index).getValueOfPath(path, segment+1, rootIS);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the last Item in this List that matches the given compiled select expression, or -1.
+     */
+    private int select( Path.Segment position, Record rootIS )
+    {
+        if( position.getError() != null ) {
+            System.err.println(position.getError());
+            return -1;
+        }
+        String val = position.getSelectValue();
+        if( position.getSelectRootPath() != null ) {
+            if( rootIS != null ) {
+                Item valItem = rootIS.getValueOfPath(position.getSelectRootPath(), rootIS);
+                if( valItem != null && (valItem.getType() == Item.Type.Double || valItem.getType() == Item.Type.Integer || valItem.getType() == Item.Type.String) ) {
+                    val = valItem.getValue().toString();
+                } else {
+                    val = "notfound";
+                }
+            } else {
+                System.out.println("List.getValueOfPath's rootIS is null, unable to parse list selector: "+position.getName());
+            }
+        }
+
+        int index = -1;
+        for( int listIndex = 0; listIndex < list.size(); listIndex++ ) {
+            Item sub = list.get(listIndex).getValueOfPath(position.getSelectPath(), 0, rootIS);
+            if( sub != null && sub.getValue().toString().equals(val) ) index = listIndex;
+        }
+        return index;
+    }
+
     public void set( String path, Object value )
     {
+        checkWritable();
+
         /* Get required index of list */
         String position;
         String valuePath;
@@ -165,7 +258,7 @@ public class DefaultList implements Serializable, List
                 i.set(valuePath,value);
             } else {
                 Item i = new DefaultItem(value);
-                list.add(i);
+                add(list.size(), i);
                 i.set(valuePath,value);
             }
         } else if( position.toLowerCase().equals(LAST) ) {
@@ -174,13 +267,13 @@ public class DefaultList implements Serializable, List
                 i.set(valuePath,value);
             } else {
                 Item i = new DefaultItem(value);
-                list.add(i);
+                add(list.size(), i);
                 i.set(valuePath,value);
             }
         } else if( position.toLowerCase().equals(ADDFIRST) ) {
             if( valuePath == null ) {
                 Item i = new DefaultItem(value);
-                list.add(0, i);
+                add(0, i);
             } else {
                 Item i;
                 if( valuePath.startsWith("_") ) {
@@ -190,13 +283,13 @@ public class DefaultList implements Serializable, List
                     // Next item is a Record
                     i = new DefaultItem(new DefaultRecord());
                 }
-                list.add(0, i);
+                add(0, i);
                 i.set(valuePath, value);
             }
         } else if( position.toLowerCase().equals(ADDLAST) ) {
             if( valuePath == null ) {
                 Item i = new DefaultItem(value);
-                list.add(i);
+                add(list.size(), i);
             } else {
                 Item i;
                 if( valuePath.startsWith("_") ) {
@@ -206,10 +299,11 @@ public class DefaultList implements Serializable, List
                     // Next item is a Record
                     i = new DefaultItem(new DefaultRecord());
                 }
-                list.add(i);
+                add(list.size(), i);
                 i.set(valuePath, value);
             }
         }
+        changed();
     }
 
     /**
@@ -218,7 +312,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( String value )
     {
-        list.add(new DefaultItem(value));
+        add(list.size(), new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -227,7 +322,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( Integer value )
     {
-        list.add(new DefaultItem(value));
+        add(list.size(), new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -236,7 +332,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( Double value )
     {
-        list.add(new DefaultItem(value));
+        add(list.size(), new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -245,7 +342,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( Record value )
     {
-        list.add(new DefaultItem(value));
+        add(list.size(), new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -254,7 +352,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( List value )
     {
-        list.add(new DefaultItem(value));
+        add(list.size(), new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -263,7 +362,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemEnd( Item value )
     {
-        list.add(value);
+        add(list.size(), value);
+        changed();
     }
 
     /**
@@ -272,7 +372,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( String value )
     {
-        list.add(0, new DefaultItem(value));
+        add(0, new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -281,7 +382,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( Integer value )
     {
-        list.add(0, new DefaultItem(value));
+        add(0, new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -290,7 +392,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( Double value )
     {
-        list.add(0, new DefaultItem(value));
+        add(0, new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -299,7 +402,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( Record value )
     {
-        list.add(0, new DefaultItem(value));
+        add(0, new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -308,7 +412,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( List value )
     {
-        list.add(0, new DefaultItem(value));
+        add(0, new DefaultItem(value));
+        changed();
     }
 
     /**
@@ -317,7 +422,8 @@ public class DefaultList implements Serializable, List
      */
     public void addItemStart( Item value )
     {
-        list.add(0, value);
+        add(0, value);
+        changed();
     }
 
     /**
@@ -511,6 +617,8 @@ public class DefaultList implements Serializable, List
      */
     public void remove( String path )
     {
+        checkWritable();
+
         /* Get required index of list */
         int index = -1;
         String position;
@@ -538,11 +646,11 @@ public class DefaultList implements Serializable, List
             index = list.size()-1;
         }
         if( position.toLowerCase().equals("_addfirst") ) {
-            list.add(0, new DefaultItem(list.get(0).getType()));
+            add(0, new DefaultItem(list.get(0).getType()));
             index = 0;
         }
         if( position.toLowerCase().equals("_addlast") ) {
-            list.add(new DefaultItem(list.get(0).getType()));
+            add(list.size(), new DefaultItem(list.get(0).getType()));
             index = list.size()-1;
         }
         if (position.toLowerCase().startsWith("_select[")) {
@@ -579,7 +687,7 @@ public class DefaultList implements Serializable, List
             // If we want to remove a List item entirely, we do that here instead of passing it on to the inner Record
             if( valuePath == null)
             {
-              list.remove(index);
+              Owner.disown(list.remove(index), this, null);
             }
             else
             {
@@ -589,14 +697,99 @@ public class DefaultList implements Serializable, List
             // If we want to remove a List item entirely, we do that here instead of passing it on to the inner Record
             if( valuePath == null)
             {
-              list.remove(index);
+              Owner.disown(list.remove(index), this, null);
             }
             else
             {
               i.getRecord().remove(valuePath);
             }
         } else {
-            list.remove(index);
+            Owner.disown(list.remove(index), this, null);
+        }
+        changed();
+    }
+
+    /* Adds the given Item at the given index, and makes this List the Owner of its substructure */
+    private void add( int index, Item item )
+    {
+        checkWritable();
+        list.add(index, item);
+        Owner.adopt(item, new Owner(this));
+    }
+
+    /* Reports a change of this List to the Owners of this List */
+    void changed()
+    {
+        snapshot = null;
+        if( owners != null ) {
+            for( Owner owner : owners ) {
+                if( owner.hasSnapshot() || owner.isObserved() ) owner.changed(null);
+            }
+        }
+    }
+
+    /* Returns true if a change in this List would be reported to a ChangeListener */
+    boolean isObserved()
+    {
+        return Owner.isObserved(owners);
+    }
+
+    void addOwner( Owner owner )
+    {
+        if( owners == null ) {
+            owners = new ArrayList<Owner>();
+        }
+        owners.add(owner);
+    }
+
+    void removeOwner( Object container, String name )
+    {
+        Owner.remove(owners, container, name);
+    }
+
+    /**
+     * Returns a read-only snapshot of this List, see DefaultRecord.snapshot().
+     * @return the snapshot, or this List if it is a snapshot itself
+     */
+    public DefaultList snapshot()
+    {
+        if( readOnly ) {
+            return this;
+        }
+        if( snapshot == null ) {
+            DefaultList copy = new DefaultList(true);
+            copy.list.ensureCapacity(list.size());
+            for( Item i : list ) {
+                copy.list.add(DefaultItem.snapshot(i));
+            }
+            snapshot = copy;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return true if this List is a read-only snapshot
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /* Returns true if this List has a snapshot that has to be discarded when it changes */
+    boolean hasSnapshot()
+    {
+        return snapshot != null;
+    }
+
+    void clearSnapshot()
+    {
+        snapshot = null;
+    }
+
+    private void checkWritable()
+    {
+        if( readOnly ) {
+            throw new UnsupportedOperationException("This List is a read-only snapshot");
         }
     }
 
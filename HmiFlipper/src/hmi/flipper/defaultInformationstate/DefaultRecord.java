@@ -9,6 +9,7 @@ import hmi.flipper.informationstate.*;
 import hmi.flipper.informationstate.Item.Type;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -23,6 +24,12 @@ import java.util.HashMap;
  * 
  * It is also possible to specify a path to a variable (for example if it is inside a record or a list, or even deeper).
  * 
+ * @version 0.1.5
+ * Added read-only snapshots, which share the unchanged parts of the previous snapshot.
+ * 
+ * @version 0.1.4
+ * Added ChangeListeners, which are notified of all set() and remove() calls, including those on substructures.
+ * 
  * @version 0.1.3
  * getType() methods now accept Paths too.
  * 
@@ -44,12 +51,25 @@ public class DefaultRecord implements Serializable, Record
     /* This record, programmed as a HashMap where the key is the name of the variable, and the value the Item-object of the value. */
     private HashMap<String,Item> is = new HashMap<String,Item>();
 
+    /* The listeners that are notified of changes, and the Records and Lists that contain this Record (to notify their listeners) */
+    private transient ArrayList<ChangeListener> listeners = null;
+    private transient ArrayList<Owner> owners = null;
+
+    /* True if this Record is a read-only snapshot, and the last snapshot of this Record (NULL if it has changed since) */
+    private final boolean readOnly;
+    private transient DefaultRecord snapshot = null;
+
     /**
      * Creates a new InformationState
      */
     public DefaultRecord()
     {
+        this(false);
+    }
 
+    private DefaultRecord( boolean readOnly )
+    {
+        this.readOnly = readOnly;
     }
 
     /**
@@ -90,6 +110,36 @@ public class DefaultRecord implements Serializable, Record
         }
     }
 
+    /**
+     * Returns the Item at the place of the given compiled Path.
+     * This gives the same result as getValueOfPath(path.toString(), rootIS), but does not parse the path again.
+     * 
+     * @param path - the compiled path of the variable in the InformationState you want.
+     * @return the Item at the wanted place, or NULL if it does not exist.
+     */
+    public Item getValueOfPath( Path path, Record rootIS )
+    {
+        return getValueOfPath(path, 0, rootIS);
+    }
+
+    /**
+     * Returns the Item at the place of the given compiled Path, of which the segment at the given index is the name
+     * of a variable in this Record.
+     * 
+     * @param path - the compiled path of the variable in the InformationState you want.
+     * @param segment - the index of the segment with the name of the variable in this Record
+     * @return the Item at the wanted place, or NULL if it does not exist.
+     */
+    public Item getValueOfPath( Path path, int segment, Record rootIS )
+    {
+        Item i = is.get(path.getName(segment));
+        if( i != null ) {
+            return i.getValueOfPath(path, segment+1, rootIS);
+        } else {
+            return null;
+        }
+    }
+
     public Item.Type getTypeOfPath( String path , Record rootIS)
     {
         path = path.replaceAll(DefaultList.ADDFIRST, DefaultList.FIRST);
@@ -104,6 +154,8 @@ public class DefaultRecord implements Serializable, Record
 
     public void set( String path, Object value )
     {
+        checkWritable();
+
         /* Check if the path starts with a $ */
         if( path.charAt(0) == '$' ) {
             path = path.substring(1);
@@ -120,15 +172,27 @@ public class DefaultRecord implements Serializable, Record
                 } else {
                     i = new DefaultItem(new DefaultRecord());
                 }
+                put(p1,i);
             }
+            /* The substructure reports the change */
             i.set( p2, value );
-            is.put(p1,i);
         } else {
         	if(value instanceof Item){
-        		is.put(path, (Item)value);
+        		put(path, (Item)value);
         	} else {
-        		is.put(path, new DefaultItem(value));
+        		put(path, new DefaultItem(value));
         	}
+        	changed(path);
+        }
+    }
+
+    /* Puts the given Item in this Record, and makes this Record the Owner of its substructure */
+    private void put( String name, Item item )
+    {
+        Item old = is.put(name, item);
+        if( old != item ) {
+            Owner.disown(old, this, name);
+            Owner.adopt(item, new Owner(this, name));
         }
     }
 
@@ -274,6 +338,8 @@ public class DefaultRecord implements Serializable, Record
      */
     public void remove( String path )
     {
+        checkWritable();
+
         /* Check if the path starts with a $ */
         if( path.charAt(0) == '$' ) {
             path = path.substring(1);
@@ -298,12 +364,160 @@ public class DefaultRecord implements Serializable, Record
             return;
         } else if( valuePath == null ) {
             is.remove(name);
+            Owner.disown(i, this, name);
+            changed(name);
         } else if( i.getType() == Item.Type.List ) {
             i.getList().remove(valuePath);
         } else if( i.getType() == Item.Type.Record ) {
             i.getRecord().remove(valuePath);
         } else {
             is.remove(name);
+            changed(name);
+        }
+    }
+
+    /**
+     * Adds a ChangeListener, which is notified of every set() and remove() on this Record or its substructures.
+     * Changes made in another way (for example through getItems(), or by modifying an Item directly) are not noticed, 
+     * these can be reported with markChanged().
+     * 
+     * @param listener - the listener to add
+     */
+    public void addChangeListener( ChangeListener listener )
+    {
+        if( listeners == null ) {
+            listeners = new ArrayList<ChangeListener>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the given ChangeListener.
+     * @param listener - the listener to remove
+     */
+    public void removeChangeListener( ChangeListener listener )
+    {
+        if( listeners != null ) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Notifies the ChangeListeners that the variable with the given path has changed.
+     * The snapshots of the variable with the first name of the path (and its substructures) are discarded too.
+     * @param path - the path of the changed variable
+     */
+    public void markChanged( String path )
+    {
+        if( path.charAt(0) == '$' ) {
+            path = path.substring(1);
+        }
+        int dot = path.indexOf('.');
+        Item i = is.get(dot == -1 ? path : path.substring(0, dot));
+        if( i != null ) {
+            clearSnapshots(i);
+        }
+        changed(path);
+    }
+
+    /* Notifies the listeners of this Record, and the Owners of this Record, of a change at the given (relative) path */
+    void changed( String path )
+    {
+        snapshot = null;
+        if( listeners != null ) {
+            for( ChangeListener listener : listeners ) {
+                listener.changed(this, path);
+            }
+        }
+        if( owners != null ) {
+            for( Owner owner : owners ) {
+                if( owner.hasSnapshot() || owner.isObserved() ) owner.changed(path);
+            }
+        }
+    }
+
+    /* Returns true if a change in this Record would be reported to a ChangeListener */
+    boolean isObserved()
+    {
+        return (listeners != null && listeners.size() > 0) || Owner.isObserved(owners);
+    }
+
+    void addOwner( Owner owner )
+    {
+        if( owners == null ) {
+            owners = new ArrayList<Owner>();
+        }
+        owners.add(owner);
+    }
+
+    void removeOwner( Object container, String name )
+    {
+        Owner.remove(owners, container, name);
+    }
+
+    /**
+     * Returns a read-only snapshot of this Record: a copy of this Record and its substructures that can not be modified
+     * (set() and remove() throw an UnsupportedOperationException), and is not affected by later changes of this Record.
+     * It can be read by multiple threads at the same time, for example to check Preconditions in parallel.
+     * 
+     * The snapshot is kept until this Record or one of its substructures changes; then the next snapshot copies only 
+     * the changed parts and shares the rest with the previous snapshot. Changes are noticed in the same way as for 
+     * ChangeListeners, changes made in another way have to be reported with markChanged().
+     * 
+     * @return the snapshot, or this Record if it is a snapshot itself
+     */
+    public DefaultRecord snapshot()
+    {
+        if( readOnly ) {
+            return this;
+        }
+        if( snapshot == null ) {
+            DefaultRecord copy = new DefaultRecord(true);
+            for( String name : is.keySet() ) {
+                copy.is.put(name, DefaultItem.snapshot(is.get(name)));
+            }
+            snapshot = copy;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return true if this Record is a read-only snapshot
+     */
+    public boolean isReadOnly()
+    {
+        return readOnly;
+    }
+
+    /* Returns true if this Record has a snapshot that has to be discarded when it changes */
+    boolean hasSnapshot()
+    {
+        return snapshot != null;
+    }
+
+    /* Discards the snapshots of the given Item and all its substructures */
+    static void clearSnapshots( Item item )
+    {
+        Object value = item.getValue();
+        if( value instanceof DefaultRecord ) {
+            DefaultRecord record = (DefaultRecord)value;
+            record.snapshot = null;
+            for( Item i : record.is.values() ) {
+                clearSnapshots(i);
+            }
+        } else if( value instanceof DefaultList ) {
+            DefaultList list = (DefaultList)value;
+            list.clearSnapshot();
+            for( Item i : list.getFullList() ) {
+                clearSnapshots(i);
+            }
+        }
+    }
+
+    private void checkWritable()
+    {
+        if( readOnly ) {
+            throw new UnsupportedOperationException("This Record is a read-only snapshot");
         }
     }
 
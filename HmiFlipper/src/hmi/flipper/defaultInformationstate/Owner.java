@@ -0,0 +1,142 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.defaultInformationstate;
+
+import hmi.flipper.informationstate.Item;
+
+import java.util.ArrayList;
+
+/**
+ * An Owner is a link from a Record or a List to the Record or List that contains it.
+ * It is used to report a change in a substructure to the ChangeListeners of the root Record, 
+ * also when the substructure is modified directly (for example with is.getRecord("userturn").set(...)),
+ * and to discard the snapshots of the containers of a changed substructure.
+ */
+
+final class Owner
+{
+    /* The containing Record (with the name of the variable) or List */
+    private final DefaultRecord record;
+    private final String name;
+    private final DefaultList list;
+
+    Owner( DefaultRecord record, String name )
+    {
+        this.record = record;
+        this.name = name;
+        this.list = null;
+    }
+
+    Owner( DefaultList list )
+    {
+        this.record = null;
+        this.name = null;
+        this.list = list;
+    }
+
+    /**
+     * @return true if the given container (and name) is this Owner
+     */
+    boolean is( Object container, String name )
+    {
+        if( record != null ) {
+            return record == container && this.name.equals(name);
+        } else {
+            return list == container;
+        }
+    }
+
+    /**
+     * @return true if a change would be reported to a ChangeListener
+     */
+    boolean isObserved()
+    {
+        if( record != null ) {
+            return record.isObserved();
+        } else {
+            return list.isObserved();
+        }
+    }
+
+    /**
+     * @return true if the container has a snapshot, which has to be discarded when the contained substructure changes
+     */
+    boolean hasSnapshot()
+    {
+        if( record != null ) {
+            return record.hasSnapshot();
+        } else {
+            return list.hasSnapshot();
+        }
+    }
+
+    /**
+     * Reports a change in the contained substructure to the container.
+     * @param path - the path of the change in the substructure, or NULL if the substructure itself changed
+     */
+    void changed( String path )
+    {
+        if( record != null ) {
+            record.changed( path == null ? name : name + "." + path );
+        } else {
+            list.changed();
+        }
+    }
+
+    /**
+     * Adds the given Owner to the Record or List of the given Item (if it is a DefaultRecord or a DefaultList).
+     */
+    static void adopt( Item item, Owner owner )
+    {
+        if( item == null ) return;
+        Object value = item.getValue();
+        if( value instanceof DefaultRecord ) {
+            ((DefaultRecord)value).addOwner(owner);
+        } else if( value instanceof DefaultList ) {
+            ((DefaultList)value).addOwner(owner);
+        }
+    }
+
+    /**
+     * Removes the given container (and name) from the Owners of the Record or List of the given Item.
+     */
+    static void disown( Item item, Object container, String name )
+    {
+        if( item == null ) return;
+        Object value = item.getValue();
+        if( value instanceof DefaultRecord ) {
+            ((DefaultRecord)value).removeOwner(container, name);
+        } else if( value instanceof DefaultList ) {
+            ((DefaultList)value).removeOwner(container, name);
+        }
+    }
+
+    /**
+     * Removes the first Owner that is the given container (and name) from the given list of Owners.
+     */
+    static void remove( ArrayList<Owner> owners, Object container, String name )
+    {
+        if( owners == null ) return;
+        for( int i=0; i<owners.size(); i++ ) {
+            if( owners.get(i).is(container, name) ) {
+                owners.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if one of the given Owners is observed
+     */
+    static boolean isObserved( ArrayList<Owner> owners )
+    {
+        if( owners == null ) return false;
+        for( Owner owner : owners ) {
+            if( owner.isObserved() ) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.informationstate;
+
+/**
+ * A ChangeListener is notified when a variable in a Record is set or removed.
+ * 
+ * The path is relative to the Record the listener was added to, without $-sign, and can point to a
+ * substructure (for example 'userturn.intention'). A change in a List is reported as a change of the
+ * List as a whole (for example 'agents', or 'agents._addlast' when it was made through that path).
+ */
+public interface ChangeListener
+{
+    /**
+     * @param record - the Record the listener was added to
+     * @param path - the path of the variable that was set or removed
+     */
+    void changed( Record record, String path );
+}
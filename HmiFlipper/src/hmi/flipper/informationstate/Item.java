@@ -54,6 +54,18 @@ public interface Item
      */
     Item getValueOfPath( String path );
     Item getValueOfPath( String path , Record rootIS);
+
+    /**
+     * Retrieves the value of the given compiled Path, starting at the given segment.
+     * If there are no segments left, or if the type of this Item is a String, Integer, or Double it will return this Item.
+     * Else it will pass the path to the Record/List, and return the resulting Item.
+     * 
+     * @param path - the compiled path
+     * @param segment - the index of the first segment of the path that refers to the substructure of this Item
+     * @param is - the root informationstate Record
+     * @return the wanted Item
+     */
+    Item getValueOfPath( Path path, int segment, Record rootIS );
     
     void set( String path, Object value );
 }
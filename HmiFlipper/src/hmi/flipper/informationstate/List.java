@@ -26,6 +26,16 @@ public interface List
      */
     Item getValueOfPath( String path );
     Item getValueOfPath( String path , Record rootIS);
+
+    /**
+     * Returns the Item at the place of the given compiled Path, see getValueOfPath(String, Record).
+     * 
+     * @param path - the compiled path of the wanted Item
+     * @param segment - the index of the first segment of the path that refers to this List
+     * @param is - the root informationstate Record
+     * @return the wanted Item
+     */
+    Item getValueOfPath( Path path, int segment, Record rootIS );
     
     void set( String path, Object value );
     
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011 Mark ter Maat, Human Media Interaction, University of Twente.
+ * All rights reserved. This program is distributed under the BSD License.
+ */
+
+package hmi.flipper.informationstate;
+
+import java.util.ArrayList;
+
+/**
+ * A Path is a compiled version of a String-path to a variable in the InformationState (for example '$r1.list1._first.var1').
+ * The String is split into its segments once, so that a Record or a List can walk the Path without parsing it again.
+ *
+ * Since it is only known at lookup-time whether a segment refers to a Record or to a List, each segment keeps both
+ * its name (used by a Record) and its list-position (used by a List): _first, _last, an integer index, or a
+ * select expression like '_select[sub1=x]' (of which the sub-path and the value are compiled too).
+ *
+ * A Path is immutable, and can be shared between threads.
+ */
+
+public final class Path
+{
+    /** The type of list-position of a segment, if it is used to look up an Item in a List */
+    public enum Position {First, Last, Index, Select, None};
+
+    /**
+     * A single segment of a Path, between two dots.
+     */
+    public static final class Segment
+    {
+        private final String name;
+        private final Position position;
+        private final int index;
+
+        /* The compiled parts of a select expression '_select[sub=value]', where the value can be 'ROOT.path' */
+        private final Path selectPath;
+        private final String selectValue;
+        private final Path selectRootPath;
+
+        /* The message to report when this segment is used as a malformed select expression */
+        private final String error;
+
+        private Segment( String name, String path )
+        {
+            this.name = name;
+            String lower = name.toLowerCase();
+            int idx = -1;
+            Path sPath = null;
+            String sValue = null;
+            Path sRootPath = null;
+            String err = null;
+            if( lower.equals(FIRST) ) {
+                position = Position.First;
+            } else if( lower.equals(LAST) ) {
+                position = Position.Last;
+            } else if( lower.startsWith(SELECT) ) {
+                position = Position.Select;
+                if( !lower.endsWith("]") ) {
+                    err = "Problems parsing list-index (missing parenthesis): " + path;
+                } else {
+                    String[] selector = name.substring(SELECT.length(), name.length()-1).split("=");
+                    if( (selector.length != 2 ) || (selector[0].length()==0) || (selector[1].length()==0) ) {
+                        err = "Problems parsing list-index (selector not correct): " + path;
+                    } else {
+                        sPath = new Path(selector[0]);
+                        sValue = selector[1];
+                        if( sValue.startsWith(ROOT) ) {
+                            sRootPath = new Path(sValue.substring(ROOT.length()));
+                        }
+                    }
+                }
+            } else {
+                Position p = Position.None;
+                try {
+                    idx = Integer.parseInt(name);
+                    p = Position.Index;
+                }catch( NumberFormatException e ){}
+                position = p;
+            }
+            this.index = idx;
+            this.selectPath = sPath;
+            this.selectValue = sValue;
+            this.selectRootPath = sRootPath;
+            this.error = err;
+        }
+
+        /**
+         * @return the name of this segment, as used in a Record
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the list-position of this segment, as used in a List
+         */
+        public Position getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * @return the list-index, if the position is Position.Index
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * @return the sub-path of a select expression, or NULL if this is not a (correct) select expression
+         */
+        public Path getSelectPath()
+        {
+            return selectPath;
+        }
+
+        /**
+         * @return the value of a select expression, or NULL if this is not a (correct) select expression
+         */
+        public String getSelectValue()
+        {
+            return selectValue;
+        }
+
+        /**
+         * @return the path of a 'ROOT.' select value in the root InformationState, or NULL if the value is not a reference
+         */
+        public Path getSelectRootPath()
+        {
+            return selectRootPath;
+        }
+
+        /**
+         * @return the parse error of a select expression, or NULL if there is none
+         */
+        public String getError()
+        {
+            return error;
+        }
+    }
+
+    private static final String FIRST = "_first";
+    private static final String LAST = "_last";
+    private static final String SELECT = "_select[";
+    private static final String ROOT = "ROOT.";
+
+    private final String path;
+    private final Segment[] segments;
+
+    /**
+     * Compiles the given String-path. A leading $ is ignored.
+     * A select expression may contain dots, it ends at the first dot after its closing bracket.
+     *
+     * @param path - the String-path to compile
+     */
+    public Path( String path )
+    {
+        this.path = path;
+        ArrayList<Segment> list = new ArrayList<Segment>();
+        int start = 0;
+        if( path.length() > 0 && path.charAt(0) == '$' ) {
+            start = 1;
+        }
+        while( true ) {
+            int end;
+            if( path.startsWith(SELECT, start) ) {
+                int close = path.indexOf(']', start);
+                end = path.indexOf('.', close == -1 ? start : close);
+            } else {
+                end = path.indexOf('.', start);
+            }
+            if( end == -1 ) {
+                end = path.length();
+            }
+            list.add(new Segment(path.substring(start, end), path.substring(start)));
+            if( end == path.length() ) {
+                break;
+            }
+            start = end+1;
+        }
+        segments = list.toArray(new Segment[list.size()]);
+    }
+
+    /**
+     * @return the number of segments of this Path
+     */
+    public int size()
+    {
+        return segments.length;
+    }
+
+    /**
+     * @param i - the index of the segment
+     * @return the segment at the given index
+     */
+    public Segment getSegment( int i )
+    {
+        return segments[i];
+    }
+
+    /**
+     * @param i - the index of the segment
+     * @return the name of the segment at the given index
+     */
+    public String getName( int i )
+    {
+        return segments[i].name;
+    }
+
+    /**
+     * Returns the String-path this Path was compiled from.
+     */
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+}
@@ -28,6 +28,16 @@ public interface Record
      */
     Item getValueOfPath( String path );
     Item getValueOfPath( String path , Record rootIS);
+
+    /**
+     * Returns the Item at the place of the given compiled Path, see getValueOfPath(String, Record).
+     * @param path - the compiled path of the variable in the InformationState you want.
+     * @param segment - the index of the first segment of the path that refers to this Record
+     * @param is - the root informationstate Record
+     * @return the wanted Item
+     */
+    Item getValueOfPath( Path path, Record rootIS );
+    Item getValueOfPath( Path path, int segment, Record rootIS );
     
     /**
      * Returns the type of the item at the place of the given path.
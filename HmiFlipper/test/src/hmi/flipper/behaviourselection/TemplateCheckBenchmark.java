@@ -0,0 +1,131 @@
+package hmi.flipper.behaviourselection;
+
+import hmi.flipper.defaultInformationstate.DefaultList;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Benchmark for TemplateController.checkTemplates, checking the preconditions of a large template file
+ * with 1, 2, 4, ... threads (see TemplateController.setParallelism()).
+ * The file is parsed without XSD validation and loaded through TemplateParser.parseDocument(). Without a file, one with
+ * the given number of templates is generated, with preconditions on records, lists with select expressions and numeric
+ * comparisons that are never all fulfilled.
+ * A variable of the InformationState is changed before each check, so each check takes a new snapshot.
+ * Reports the number of template checks per second for each number of threads.
+ * Run with: java hmi.flipper.behaviourselection.TemplateCheckBenchmark [templateFile | nrOfTemplates] [seconds]
+ */
+public final class TemplateCheckBenchmark
+{
+    private static final int DEFAULT_TEMPLATES = 5000;
+    private static final double DEFAULT_SECONDS = 2;
+    private static final int AGENTS = 20;
+
+    private TemplateCheckBenchmark()
+    {
+    }
+
+    /**
+     * Writes a template file with the given number of templates, and returns its name.
+     */
+    static String createTemplateFile(int templates) throws IOException
+    {
+        File file = File.createTempFile("templates", ".xml");
+        file.deleteOnExit();
+        Writer out = new FileWriter(file);
+        try
+        {
+            out.write("<behaviourtemplates>\n");
+            for (int i = 0; i < templates; i++)
+            {
+                out.write("  <template id=\"" + i + "\" name=\"template" + i + "\">\n");
+                out.write("    <preconditions>\n");
+                out.write("      <compare value1=\"$userturn.intention\" value2=\"intention" + (i % 50) + "\" />\n");
+                out.write("      <compare value1=\"$agents._select[id=ROOT.current].mood\" comparator=\"not_equals\" value2=\"mood"
+                        + (i % 7) + "\" />\n");
+                out.write("      <compare value1=\"$userturn.count\" comparator=\"greater_than\" value2=\"" + (i % 100) + "\" />\n");
+                out.write("      <compare value1=\"$never\" comparator=\"exists\" />\n");
+                out.write("    </preconditions>\n");
+                out.write("    <effects>\n");
+                out.write("      <update name=\"$result\" value=\"" + i + "\" />\n");
+                out.write("    </effects>\n");
+                out.write("  </template>\n");
+            }
+            out.write("</behaviourtemplates>\n");
+        }
+        finally
+        {
+            out.close();
+        }
+        return file.getAbsolutePath();
+    }
+
+    static DefaultRecord createIS()
+    {
+        DefaultRecord is = new DefaultRecord();
+        is.set("userturn.intention", "intention3");
+        is.set("userturn.count", 42);
+        is.set("current", "agent" + (AGENTS - 1));
+        DefaultList agents = new DefaultList();
+        for (int i = 0; i < AGENTS; i++)
+        {
+            DefaultRecord agent = new DefaultRecord();
+            agent.set("id", "agent" + i);
+            agent.set("mood", "mood" + (i % 7));
+            agents.addItemEnd(agent);
+        }
+        is.set("agents", agents);
+        return is;
+    }
+
+    private static int check(TemplateController controller, DefaultRecord is, long nanos)
+    {
+        int checks = 0;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end)
+        {
+            is.set("tick", checks);
+            controller.checkTemplates(is);
+            checks++;
+        }
+        return checks;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String templateFile;
+        if (args.length > 0 && !args[0].matches("[0-9]+"))
+        {
+            templateFile = args[0];
+        }
+        else
+        {
+            templateFile = createTemplateFile(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TEMPLATES);
+        }
+        double seconds = (args.length > 1) ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+        long nanos = (long) (seconds * 1e9);
+
+        TemplateController controller = new TemplateController();
+        controller.templates.addAll(new TemplateParser().parseDocument(DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new File(templateFile))));
+        int templates = controller.templates.size();
+        System.out.println(templates + " templates, " + Runtime.getRuntime().availableProcessors() + " processors");
+
+        DefaultRecord is = createIS();
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            controller.setParallelism(threads);
+            check(controller, is, nanos / 2); // warm up
+            int checks = check(controller, is, nanos);
+            System.out.println(String.format("threads=%2d  %10.0f template checks/s  %8.1f checkTemplates/s", threads,
+                    (double) checks * templates / seconds, checks / seconds));
+        }
+        controller.setParallelism(1);
+    }
+}
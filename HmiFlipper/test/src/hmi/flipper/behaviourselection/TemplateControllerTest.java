@@ -0,0 +1,183 @@
+package hmi.flipper.behaviourselection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hmi.flipper.behaviourselection.template.Template;
+import hmi.flipper.behaviourselection.template.effects.Update;
+import hmi.flipper.behaviourselection.template.preconditions.Precondition;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareEquals;
+import hmi.flipper.behaviourselection.template.preconditions.compares.CompareNotExists;
+import hmi.flipper.defaultInformationstate.DefaultList;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.informationstate.Path;
+import hmi.flipper.informationstate.Record;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the incremental and parallel checking of the TemplateController
+ */
+public class TemplateControllerTest
+{
+    /** A Precondition on $x that counts how often it is checked */
+    private static class CountingPrecondition extends Precondition
+    {
+        private int checks = 0;
+
+        @Override
+        public boolean isValid(Record is)
+        {
+            checks++;
+            return is.getValueOfPath("$x") != null;
+        }
+
+        @Override
+        public ArrayList<Path> getPaths()
+        {
+            ArrayList<Path> paths = new ArrayList<Path>();
+            paths.add(new Path("$x"));
+            return paths;
+        }
+    }
+
+    private static TemplateController createController(boolean incremental, int threads) throws TemplateParseException
+    {
+        TemplateController controller = new TemplateController();
+        controller.setIncrementalChecking(incremental);
+        controller.setParallelism(threads);
+
+        Template greet = new Template("greet", "greet", null);
+        greet.addCompare(new CompareEquals("$userturn.intention", "greeting"));
+        greet.addCompare(new CompareNotExists("$greeted"));
+        greet.addEffect(new Update("$greeted", "1"));
+        controller.templates.add(greet);
+
+        Template reply = new Template("reply", "reply", null);
+        reply.addCompare(new CompareEquals("$greeted", "1"));
+        reply.addCompare(new CompareEquals("$agents._select[id=ROOT.current].mood", "happy"));
+        reply.addEffect(new Update("$reply", "hello"));
+        controller.templates.add(reply);
+        return controller;
+    }
+
+    private static DefaultRecord createIS()
+    {
+        DefaultRecord is = new DefaultRecord();
+        is.set("userturn", new DefaultRecord());
+        is.set("current", "a");
+        DefaultList agents = new DefaultList();
+        for (String id : new String[] { "a", "b" })
+        {
+            DefaultRecord agent = new DefaultRecord();
+            agent.set("id", id);
+            agent.set("mood", "sad");
+            agents.addItemEnd(agent);
+        }
+        is.set("agents", agents);
+        return is;
+    }
+
+    @Test
+    public void testSameAsFullCheck() throws TemplateParseException
+    {
+        for (int mode = 0; mode < 4; mode++)
+        {
+            TemplateController controller = createController(mode % 2 == 1, mode < 2 ? 1 : 4);
+            DefaultRecord is = createIS();
+            assertTrue(controller.checkTemplates(is));
+            assertNull(is.getString("greeted"));
+
+            /* changes in substructures are noticed too */
+            is.getRecord("userturn").set("intention", "greeting");
+            controller.checkTemplates(is);
+            assertEquals(Integer.valueOf(1), is.getInteger("greeted"));
+            controller.checkTemplates(is);
+            assertNull(is.getString("reply"));
+
+            is.getList("agents").getRecord(1).set("mood", "happy");
+            controller.checkTemplates(is);
+            assertNull(is.getString("reply"));
+
+            /* the selected agent changes through a ROOT. reference */
+            is.set("current", "b");
+            controller.checkTemplates(is);
+            assertEquals("hello", is.getString("reply"));
+            controller.setParallelism(1);
+        }
+    }
+
+    @Test
+    public void testParallelDeterministic() throws TemplateParseException
+    {
+        TemplateController controller = new TemplateController();
+        controller.setParallelism(3);
+        assertEquals(3, controller.getParallelism());
+        for (int i = 0; i < 100; i++)
+        {
+            Template template = new Template("t" + i, "t" + i, null);
+            template.addCompare(new CompareEquals("$step", String.valueOf(i % 10)));
+            template.addEffect(new Update("$last", String.valueOf(i)));
+            controller.templates.add(template);
+        }
+
+        DefaultRecord is = new DefaultRecord();
+        for (int step = 0; step < 10; step++)
+        {
+            is.set("step", step);
+            assertTrue(controller.checkTemplates(is));
+            /* the Effects are applied in the order of the Templates */
+            assertEquals(Integer.valueOf(90 + step), is.getInteger("last"));
+        }
+        controller.setParallelism(1);
+        assertEquals(1, controller.getParallelism());
+    }
+
+    @Test
+    public void testOnlyAffectedChecked() throws TemplateParseException
+    {
+        TemplateController controller = new TemplateController();
+        controller.setIncrementalChecking(true);
+        CountingPrecondition precondition = new CountingPrecondition();
+        Template template = new Template("t", "t", null);
+        template.addCompare(precondition);
+        template.addEffect(new Update("$z", "1"));
+        controller.templates.add(template);
+
+        DefaultRecord is = new DefaultRecord();
+        controller.checkTemplates(is);
+        controller.checkTemplates(is);
+        assertEquals(1, precondition.checks);
+
+        is.set("y", 1);
+        controller.checkTemplates(is);
+        assertEquals(1, precondition.checks);
+
+        is.set("x.sub", 1);
+        controller.checkTemplates(is);
+        assertEquals(2, precondition.checks);
+
+        /* a different InformationState is checked completely */
+        controller.checkTemplates(new DefaultRecord());
+        assertEquals(3, precondition.checks);
+
+        controller.setIncrementalChecking(false);
+        controller.checkTemplates(is);
+        controller.checkTemplates(is);
+        assertEquals(5, precondition.checks);
+    }
+
+    @Test
+    public void testOverlaps()
+    {
+        assertTrue(TemplateIndex.overlaps(new Path("a.b"), new Path("$a.b.c")));
+        assertTrue(TemplateIndex.overlaps(new Path("a"), new Path("$a.b.c")));
+        assertFalse(TemplateIndex.overlaps(new Path("a.c"), new Path("$a.b.c")));
+        assertTrue(TemplateIndex.overlaps(new Path("list._addlast"), new Path("$list._first.name")));
+        assertFalse(TemplateIndex.overlaps(new Path("other"), new Path("$list._first.name")));
+    }
+}
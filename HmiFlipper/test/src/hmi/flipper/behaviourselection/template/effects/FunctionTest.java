@@ -0,0 +1,119 @@
+package hmi.flipper.behaviourselection.template.effects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import hmi.flipper.behaviourselection.TemplateController;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+import hmi.flipper.exceptions.TemplateParseException;
+import hmi.flipper.exceptions.TemplateRunException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the resolving and calling of Functions
+ */
+public class FunctionTest
+{
+    /** User-specified functions, as added to a TemplateController */
+    public static class Functions
+    {
+        private final ArrayList<String> calls = new ArrayList<String>();
+
+        public void join(String[] args)
+        {
+            calls.add("join" + Arrays.toString(args));
+        }
+
+        public void pair(String a, String b)
+        {
+            calls.add("pair(" + a + "," + b + ")");
+        }
+
+        public void wrong(int i)
+        {
+        }
+
+        public void fail(String[] args)
+        {
+            throw new IllegalStateException("expected by FunctionTest");
+        }
+    }
+
+    private static Function createFunction(String name, String... args) throws TemplateParseException
+    {
+        Function function = new Function(name);
+        for (String arg : args)
+        {
+            function.addArg(arg);
+        }
+        return function;
+    }
+
+    @Test
+    public void testApply() throws TemplateParseException, TemplateRunException
+    {
+        Functions functions = new Functions();
+        TemplateController controller = new TemplateController();
+        controller.addFunction(functions);
+        DefaultRecord is = new DefaultRecord();
+        is.set("name", "bob");
+
+        Function join = createFunction("join", "$name", "hello");
+        assertFalse(join.isResolved());
+        join.apply(is, controller);
+        assertTrue(join.isResolved());
+        join.apply(is, controller);
+        createFunction("pair", "$name", "2").apply(is, controller);
+        assertEquals(Arrays.asList("join[bob, hello]", "join[bob, hello]", "pair(bob,2)"), functions.calls);
+    }
+
+    @Test
+    public void testApplyNullArgument() throws TemplateParseException, TemplateRunException
+    {
+        Functions functions = new Functions();
+        TemplateController controller = new TemplateController();
+        controller.addFunction(functions);
+        createFunction("pair", "$unset", "2").apply(new DefaultRecord(), controller);
+        createFunction("join", "$unset", "2").apply(new DefaultRecord(), controller);
+        assertEquals(Arrays.asList("pair(null,2)", "join[2]"), functions.calls);
+    }
+
+    @Test(expected = TemplateRunException.class)
+    public void testApplyFailing() throws TemplateParseException, TemplateRunException
+    {
+        TemplateController controller = new TemplateController();
+        controller.addFunction(new Functions());
+        createFunction("fail").apply(new DefaultRecord(), controller);
+    }
+
+    @Test
+    public void testResolve() throws TemplateParseException
+    {
+        ArrayList<Object> classes = new ArrayList<Object>();
+        assertFalse(createFunction("join").resolve(classes));
+        classes.add(new Functions());
+        assertTrue(createFunction("join").resolve(classes));
+        assertTrue(createFunction("pair", "a", "b").resolve(classes));
+        assertFalse(createFunction("missing").resolve(classes));
+    }
+
+    @Test(expected = TemplateParseException.class)
+    public void testResolveWrongArguments() throws TemplateParseException
+    {
+        ArrayList<Object> classes = new ArrayList<Object>();
+        classes.add(new Functions());
+        createFunction("wrong", "1").resolve(classes);
+    }
+
+    @Test(expected = TemplateRunException.class)
+    public void testApplyMissing() throws TemplateParseException, TemplateRunException
+    {
+        TemplateController controller = new TemplateController();
+        controller.addFunction(new Functions());
+        createFunction("missing").apply(new DefaultRecord(), controller);
+    }
+}
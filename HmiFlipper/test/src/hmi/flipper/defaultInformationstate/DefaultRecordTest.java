@@ -0,0 +1,81 @@
+package hmi.flipper.defaultInformationstate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the snapshots of the DefaultRecord
+ */
+public class DefaultRecordTest
+{
+    private static DefaultRecord createIS()
+    {
+        DefaultRecord is = new DefaultRecord();
+        is.set("user.name", "bob");
+        is.set("agent.mood", "sad");
+        DefaultList list = new DefaultList();
+        list.addItemEnd("a");
+        is.set("list", list);
+        return is;
+    }
+
+    @Test
+    public void testSnapshotIsolated()
+    {
+        DefaultRecord is = createIS();
+        DefaultRecord snapshot = is.snapshot();
+        assertTrue(snapshot.isReadOnly());
+        assertSame(snapshot, snapshot.snapshot());
+
+        is.set("user.name", "alice");
+        is.getList("list").addItemEnd("b");
+        is.remove("agent");
+        assertEquals("bob", snapshot.getString("user.name"));
+        assertEquals(1, snapshot.getList("list").size());
+        assertEquals("sad", snapshot.getString("agent.mood"));
+
+        DefaultRecord next = is.snapshot();
+        assertEquals("alice", next.getString("user.name"));
+        assertEquals(2, next.getList("list").size());
+        assertNull(next.getValueOfPath("agent"));
+    }
+
+    @Test
+    public void testSnapshotShared()
+    {
+        DefaultRecord is = createIS();
+        DefaultRecord snapshot = is.snapshot();
+        assertSame(snapshot, is.snapshot());
+
+        /* only the changed substructures are copied again */
+        is.getRecord("user").set("name", "alice");
+        DefaultRecord next = is.snapshot();
+        assertNotSame(snapshot, next);
+        assertNotSame(snapshot.getRecord("user"), next.getRecord("user"));
+        assertSame(snapshot.getRecord("agent"), next.getRecord("agent"));
+        assertSame(snapshot.getList("list"), next.getList("list"));
+
+        /* a change made directly in an Item has to be marked */
+        ((DefaultItem) ((DefaultRecord) is.getRecord("agent")).getItem("mood")).setStringValue("happy");
+        assertEquals("sad", is.snapshot().getString("agent.mood"));
+        is.markChanged("agent.mood");
+        assertEquals("happy", is.snapshot().getString("agent.mood"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotReadOnly()
+    {
+        createIS().snapshot().set("user.name", "alice");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotListReadOnly()
+    {
+        createIS().snapshot().getList("list").addItemEnd("b");
+    }
+}
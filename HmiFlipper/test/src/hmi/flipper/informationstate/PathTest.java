@@ -0,0 +1,83 @@
+package hmi.flipper.informationstate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import hmi.flipper.defaultInformationstate.DefaultList;
+import hmi.flipper.defaultInformationstate.DefaultRecord;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for compiled Paths: a lookup by Path should find the same Item as a lookup by String
+ */
+public class PathTest
+{
+    private DefaultRecord is;
+
+    @Before
+    public void setup()
+    {
+        is = new DefaultRecord();
+        is.set("$user.name", "Alice");
+        is.set("$user.age", 42);
+        is.set("$current", "b");
+        DefaultList agents = new DefaultList();
+        for (String id : new String[] { "a", "b", "c" })
+        {
+            DefaultRecord agent = new DefaultRecord();
+            agent.set("id", id);
+            agent.set("info.mood", id + "-mood");
+            agents.addItemEnd(agent);
+        }
+        is.set("$agents", agents);
+    }
+
+    private void assertSameLookup(String path)
+    {
+        Item expected = is.getValueOfPath(path, is);
+        Item actual = is.getValueOfPath(new Path(path), is);
+        assertSame(path, expected, actual);
+    }
+
+    @Test
+    public void testSegments()
+    {
+        Path path = new Path("$agents._select[info.mood=a-mood].id");
+        assertEquals(3, path.size());
+        assertEquals("agents", path.getName(0));
+        assertEquals(Path.Position.Select, path.getSegment(1).getPosition());
+        assertEquals(2, path.getSegment(1).getSelectPath().size());
+        assertEquals("a-mood", path.getSegment(1).getSelectValue());
+        assertEquals(Path.Position.Index, new Path("list.2").getSegment(1).getPosition());
+        assertEquals(2, new Path("list.2").getSegment(1).getIndex());
+        assertEquals(Path.Position.Last, new Path("list._LAST").getSegment(1).getPosition());
+    }
+
+    @Test
+    public void testLookups()
+    {
+        assertSameLookup("$user.name");
+        assertSameLookup("user.age");
+        assertSameLookup("$user");
+        assertSameLookup("$user.name.more");
+        assertSameLookup("$missing.name");
+        assertSameLookup("$agents._first.id");
+        assertSameLookup("$agents._last.info.mood");
+        assertSameLookup("$agents.1.id");
+        assertSameLookup("$agents.other");
+        assertSameLookup("$agents._select[id=c].info.mood");
+        assertSameLookup("$agents._select[info.mood=a-mood].id");
+        assertSameLookup("$agents._select[id=ROOT.current].info.mood");
+        assertEquals("b-mood", is.getValueOfPath(new Path("$agents._select[id=ROOT.current].info.mood"), is).getString());
+    }
+
+    @Test
+    public void testMissing()
+    {
+        assertNull(is.getValueOfPath(new Path("$agents.7.id"), is));
+        assertNull(is.getValueOfPath(new Path("$agents._select[id=x].id"), is));
+        assertNull(is.getValueOfPath(new Path("$agents._select[id].id"), is));
+    }
+}
@@ -26,9 +26,11 @@
 package hmi.graphics.opengl;
 
 import hmi.animation.VJoint;
+import hmi.graphics.scenegraph.SparseMorphTargets;
 import hmi.graphics.scenegraph.VertexAttribute;
 import hmi.math.Mat4f;
 import java.util.Arrays;
+import java.util.HashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,8 +43,7 @@ public class GLSkinnedMesh extends GLBasicMesh
 
     // nrOfVertices: inherited from GLBasicMesh
 
-    private float[] vertexCoordBaseData; // unmodified vertex coords for the morph base mesh
-    private float[][] vertexCoordMorphData; // unmodified vertex coords for all morph targes
+    private SparseMorphTargets vertexCoordMorphData; // base vertex coords, and sparse deltas for all morph targets
     private float[] vertexCoordMorphed; // unmodified vertex coordinates or result of morph
     private float[] vertexCoordCurrent; // current, i.e. modified, vertex coordinates
     private int vertexCoordAttrIndex;
@@ -81,6 +82,8 @@ public class GLSkinnedMesh extends GLBasicMesh
 
     private String[] morphTargets = null;
     private int nrOfMorphTargets = -1;
+    private HashMap<String, Integer> morphTargetIndex; // morph target name to index
+    private int[] morphTargetBuffer = new int[0]; // reused for resolving morph target names
 
     private hmi.graphics.opengl.scenegraph.GLNodeMarker[] jointMarkers; // objects (typical spheres) that are used to mark the positions of the
                                                                         // joints.
@@ -150,6 +153,11 @@ public class GLSkinnedMesh extends GLBasicMesh
     {
         this.morphTargets = morphTargets;
         nrOfMorphTargets = morphTargets.length;
+        morphTargetIndex = new HashMap<String, Integer>(2 * nrOfMorphTargets);
+        for (int i = nrOfMorphTargets - 1; i >= 0; i--)
+        {
+            morphTargetIndex.put(morphTargets[i], i); // in reverse, so the first occurrence of a name wins
+        }
     }
 
     /**
@@ -165,27 +173,27 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public int getMorphTargetIndexFor(String morphTarget)
     {
-        if (morphTargets == null || nrOfMorphTargets == 0)
+        if (morphTargetIndex == null || nrOfMorphTargets == 0)
             return -1;
-        for (int i = 0; i < nrOfMorphTargets; i++)
-        {
-            if (morphTargets[i].equals(morphTarget))
-                return i;
-        }
-        return -1;
+        Integer index = morphTargetIndex.get(morphTarget);
+        return (index == null) ? -1 : index;
     }
 
     /**
-     * Sets the array of arrays, containing the coord data for all morph targets
+     * Sets the array of arrays, containing the coord data for all morph targets.
+     * The data is converted into a sparse representation, with deltas for the vertices that differ from the base mesh,
+     * so the arrays are not retained.
      */
     public void setVertexCoordMorphData(float[][] vertexCoordMorphData)
     {
-        this.vertexCoordMorphData = vertexCoordMorphData;
         if (nrOfMorphTargets < 0)
             nrOfMorphTargets = vertexCoordMorphData.length;
-        vertexCoordBaseData = new float[vertexCoordMorphed.length];
-        for (int i = 0; i < vertexCoordBaseData.length; i++)
-            vertexCoordBaseData[i] = vertexCoordMorphed[i];
+        if (nrOfMorphTargets > vertexCoordMorphData.length)
+        {
+            logger.warn("GLSkinnedMesh: morph data for " + vertexCoordMorphData.length + " of " + nrOfMorphTargets + " morph targets");
+            nrOfMorphTargets = vertexCoordMorphData.length;
+        }
+        this.vertexCoordMorphData = new SparseMorphTargets(vertexCoordMorphed, vertexCoordMorphData, 3);
     }
 
     public void setJointSIDs(String[] jointSIDs)
@@ -406,7 +414,7 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void morph(String targetName, float weight)
     {
-        if (nrOfMorphTargets <= 0)  return;
+        if (nrOfMorphTargets <= 0 || vertexCoordMorphData == null)  return;
         morph(getMorphTargetIndexFor(targetName), weight);
     }
 
@@ -415,16 +423,11 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void morph(int target, float weight)
     {
-        if (nrOfMorphTargets <= 0)
+        if (nrOfMorphTargets <= 0 || vertexCoordMorphData == null)
             return;
         if (target < 0 || target >= nrOfMorphTargets)
             return;
-        float baseWeight = 1.0f - weight;
-        float[] targetData = vertexCoordMorphData[target];
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
-        {
-            vertexCoordMorphed[i] = baseWeight * vertexCoordBaseData[i] + weight * targetData[i];
-        }
+        vertexCoordMorphData.morph(vertexCoordMorphed, target, weight);
     }
 
     /**
@@ -432,15 +435,18 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void morph(String[] targetNames, float[] weights)
     {
-        if (nrOfMorphTargets <= 0)
+        if (nrOfMorphTargets <= 0 || vertexCoordMorphData == null || targetNames == null || weights == null)
+            return;
+        int tlen = targetNames.length < weights.length ? targetNames.length : weights.length;
+        if (tlen == 0)
             return;
-        int[] targets = new int[targetNames.length];
-        for (int ti = 0; ti < targets.length; ti++)
+        if (morphTargetBuffer.length < tlen)
+            morphTargetBuffer = new int[tlen];
+        for (int ti = 0; ti < tlen; ti++)
         {
-            targets[ti] = getMorphTargetIndexFor(targetNames[ti]);
+            morphTargetBuffer[ti] = getMorphTargetIndexFor(targetNames[ti]);
         }
-        morph(targets, weights);
-
+        vertexCoordMorphData.morph(vertexCoordMorphed, morphTargetBuffer, weights, tlen);
     }
 
     /**
@@ -448,41 +454,13 @@ public class GLSkinnedMesh extends GLBasicMesh
      */
     public void morph(int[] targets, float[] weights)
     {
-        if (nrOfMorphTargets <= 0 || targets == null || weights == null)
+        if (nrOfMorphTargets <= 0 || vertexCoordMorphData == null || targets == null || weights == null)
             return;
         int tlen = targets.length < weights.length ? targets.length : weights.length;
         if (tlen == 0)
             return;
-        // first, set all to zero
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
-        {
-            vertexCoordMorphed[i] = 0;
-        }
-        // then, add all targets that are valid
-        float totalWeight = 0.0f;
-        for (int ti = 0; ti < tlen; ti++)
-        {
-            float weight = weights[ti];
-            if ((targets[ti] == -1) || (weight <= 0.0f)) // don't morph: too small target, or no valid target
-            {
-            }
-            else
-            // do morph;
-            {
-                totalWeight += weight; // to later adjust base weight
-                float[] targetData = vertexCoordMorphData[targets[ti]];
-                for (int i = 0; i < vertexCoordMorphed.length; i++)
-                {
-                    vertexCoordMorphed[i] += weight * targetData[i];
-                }
-            }
-        }
-        float baseWeight = 1.0f - totalWeight; // NB could become negative!
-        // always use remainder of base
-        for (int i = 0; i < vertexCoordMorphed.length; i++)
-        {
-            vertexCoordMorphed[i] += baseWeight * vertexCoordBaseData[i];
-        }
+        // base + sum of weight * delta, for valid targets with positive weight only
+        vertexCoordMorphData.morph(vertexCoordMorphed, targets, weights, tlen);
     }
 
     /**
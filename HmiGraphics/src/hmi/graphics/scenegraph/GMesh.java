@@ -37,6 +37,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -910,7 +911,8 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
          * Mathematically, map[att] == { (indexData[i], indices[att][i]) | i in [0..n-1] }, so [0..m-1] = range(indexData) We build up
          * range(indexData) as a growing segment of the form [0 .. nrOfTuples-1], where nrOfTuples is the number of *distinct* tuples found thus far.
          * (tuple "equality" here is based on equal indices, not on the actual vertexData) For Vertex i, we check if it differs from the vertices for
-         * common indices [0..i-1]. If it actualy equals vertex k, we set indexData[i] to indexData[k]. Otherwise, that is, if it is new, we set
+         * common indices [0..i-1], by means of a hash table on the tuples found thus far (see TupleTable).
+         * If it actualy equals vertex k, we set indexData[i] to indexData[k]. Otherwise, that is, if it is new, we set
          * indexData[i] = nrOfTuples, and we add map[attr][nrOfTuples] = indices[attr][i] The map[attr] arrays are passed on to the remapData method
          * of the VertexAttribute instances, which will actually replace the vertexData arrays by vertexData' arrays.
          */
@@ -927,9 +929,88 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
 
     private static final double TUPLEINDEX_GROW_GUESTIMATE = 1.5;
 
+    /**
+     * Open addressing hash table for the distinct index tuples of calculateTuples. Tuple t consists of the values map[att][t], for all attributes
+     * att; the table stores tuple numbers only, so it does not need boxed keys, and finding or adding a tuple takes constant time on average.
+     */
+    private static final class TupleTable
+    {
+        private static final int EMPTY = -1;
+        private final int nrOfAttributes;
+        private int[] slots; // tuple numbers, or EMPTY. The length is a power of two.
+        private int mask;
+        private int size;
+
+        TupleTable(int nrOfAttributes, int expectedSize)
+        {
+            this.nrOfAttributes = nrOfAttributes;
+            int capacity = 16;
+            while (capacity < 2 * expectedSize)
+                capacity <<= 1;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity)
+        {
+            slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            mask = capacity - 1;
+        }
+
+        private int hash(int[][] map, int tuple)
+        {
+            int h = 0;
+            for (int att = 0; att < nrOfAttributes; att++)
+            {
+                h = (h ^ map[att][tuple]) * 0x9E3779B1;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private boolean equal(int[][] map, int tuple1, int tuple2)
+        {
+            for (int att = 0; att < nrOfAttributes; att++)
+            {
+                if (map[att][tuple1] != map[att][tuple2]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the number of the tuple that equals tuple newTuple, or adds newTuple and returns newTuple if there is no such tuple.
+         */
+        int findOrAdd(int[][] map, int newTuple)
+        {
+            int slot = hash(map, newTuple) & mask;
+            while (slots[slot] != EMPTY)
+            {
+                if (equal(map, slots[slot], newTuple)) return slots[slot];
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = newTuple;
+            size++;
+            if (2 * size > slots.length) rehash(map);
+            return newTuple;
+        }
+
+        private void rehash(int[][] map)
+        {
+            int[] oldSlots = slots;
+            allocate(2 * oldSlots.length);
+            for (int tuple : oldSlots)
+            {
+                if (tuple == EMPTY) continue;
+                int slot = hash(map, tuple) & mask;
+                while (slots[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                slots[slot] = tuple;
+            }
+        }
+    }
+
     /**
      * calculates tuples for all new indices, together with the data remapping tables. The remapping for vertexData is returned (for usage within the
-     * GSkinnedMesh class)
+     * GSkinnedMesh class). Tuples are numbered in order of their first occurrence in the attribute indices.
      */
     protected int[] calculateTuples()
     {
@@ -973,6 +1054,7 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
             map[att] = new int[tupleIndexSize];
             if (attr.getName().equals("mcPosition")) vertexCoordIndex = att;
         }
+        TupleTable tupleTable = new TupleTable(nrOfAttributes, Math.min(tupleIndexSize, indexLength));
         for (int i = 0; i < indexLength; i++)
         { // create tuple for common index i
             if (nrOfTuples >= tupleIndexSize)
@@ -983,29 +1065,17 @@ public class GMesh extends XMLStructureAdapter implements BinaryExternalizable,
                     int[] oldTupleIndices = map[attr];
 
                     map[attr] = new int[tupleIndexSize];
-                    System.arraycopy(oldTupleIndices, 0, map, 0, nrOfTuples);
+                    System.arraycopy(oldTupleIndices, 0, map[attr], 0, nrOfTuples);
                 }
             }
             for (int attr = 0; attr < nrOfAttributes; attr++)
             {
                 map[attr][nrOfTuples] = indices[attr][i];
             }
-            boolean isNew = true;
-            int tuple = 0;
-            for (tuple = 0; tuple < nrOfTuples; tuple++)
-            { // compare tuple at index "tuple" with new tuple at top
-                boolean tupleDiffers = false;
-                for (int attr = 0; attr < nrOfAttributes; attr++)
-                {
-                    tupleDiffers = (map[attr][tuple] != map[attr][nrOfTuples]);
-                    if (tupleDiffers) break;
-                }
-                isNew = tupleDiffers;
-                if (!isNew) break; // already prsesent, at index "tuple"
-            }
-            indexData[i] = tuple; // if new, tuple = nrOfTuples, else it is the number of the tuple found above.
+            int tuple = tupleTable.findOrAdd(map, nrOfTuples);
+            indexData[i] = tuple; // if new, tuple = nrOfTuples, else it is the number of the tuple found in the table.
 
-            if (isNew)
+            if (tuple == nrOfTuples)
             { // really new tuple: increase tuple count
                 nrOfTuples++;
             }
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.graphics.scenegraph;
+
+import java.util.Arrays;
+
+/**
+ * A sparse representation of the morph targets for one vertex attribute, typically "mcPosition".
+ * For every morph target, only the vertices that differ from the base mesh are stored, as a vertex index
+ * together with the difference (delta) between target and base values.
+ * A morph with weights w[t] for targets t, where the base mesh receives the remaining weight 1 - sum(w[t]),
+ * then equals base + sum(w[t] * delta[t]), and touches only the vertices affected by the targets with a non-zero weight.
+ * The morph methods write into a result array, and keep track of the vertices that were modified,
+ * so that the next morph can restore just those vertices to their base values.
+ * A SparseMorphTargets object is not thread safe.
+ */
+public class SparseMorphTargets
+{
+    private final int tupleSize;
+    private final int nrOfVertices;
+    private final float[] baseData; // copy of the base mesh attribute data
+    private final int[][] vertexIndices; // vertexIndices[t]: the vertices affected by target t, in increasing order
+    private final float[][] deltas; // deltas[t]: tupleSize floats (target - base) per affected vertex of target t
+
+    private final int[] touched; // vertices that differ from the base in the last result
+    private int nrOfTouched;
+    private final boolean[] isTouched;
+
+    /**
+     * Creates the sparse morph targets for a base attribute with the specified tuple size, and morph target data arrays as returned by
+     * GMesh.getMorphData. A null target array denotes a target that does not modify this attribute. The base data is copied.
+     */
+    public SparseMorphTargets(float[] baseData, float[][] targetData, int tupleSize)
+    {
+        this.tupleSize = tupleSize;
+        this.baseData = Arrays.copyOf(baseData, baseData.length);
+        nrOfVertices = baseData.length / tupleSize;
+        vertexIndices = new int[targetData.length][];
+        deltas = new float[targetData.length][];
+        int[] indexBuf = new int[nrOfVertices];
+        for (int t = 0; t < targetData.length; t++)
+        {
+            float[] target = targetData[t];
+            int nrOfAffected = 0;
+            if (target != null)
+            {
+                int len = Math.min(target.length, baseData.length) / tupleSize;
+                for (int v = 0; v < len; v++)
+                {
+                    int offset = v * tupleSize;
+                    for (int k = 0; k < tupleSize; k++)
+                    {
+                        if (target[offset + k] != baseData[offset + k])
+                        {
+                            indexBuf[nrOfAffected++] = v;
+                            break;
+                        }
+                    }
+                }
+            }
+            vertexIndices[t] = Arrays.copyOf(indexBuf, nrOfAffected);
+            float[] delta = new float[nrOfAffected * tupleSize];
+            for (int i = 0; i < nrOfAffected; i++)
+            {
+                int offset = vertexIndices[t][i] * tupleSize;
+                for (int k = 0; k < tupleSize; k++)
+                {
+                    delta[i * tupleSize + k] = target[offset + k] - baseData[offset + k];
+                }
+            }
+            deltas[t] = delta;
+        }
+        touched = new int[nrOfVertices];
+        isTouched = new boolean[nrOfVertices];
+    }
+
+    /**
+     * Returns the number of morph targets.
+     */
+    public int getNrOfTargets()
+    {
+        return vertexIndices.length;
+    }
+
+    /**
+     * Returns the (shared) array with the base mesh data.
+     */
+    public float[] getBaseData()
+    {
+        return baseData;
+    }
+
+    /**
+     * Returns the number of vertices affected by the specified target.
+     */
+    public int getNrOfAffectedVertices(int target)
+    {
+        return vertexIndices[target].length;
+    }
+
+    /**
+     * Returns the (shared) array with the indices of the vertices affected by the specified target.
+     */
+    public int[] getVertexIndices(int target)
+    {
+        return vertexIndices[target];
+    }
+
+    /**
+     * Returns the (shared) array with the deltas for the vertices affected by the specified target, tupleSize floats per vertex.
+     */
+    public float[] getDeltas(int target)
+    {
+        return deltas[target];
+    }
+
+    /**
+     * Copies the base data into result, which must have the same length as the base data.
+     * This must be called for a result array that does not hold the result of the previous morph for this object.
+     */
+    public void reset(float[] result)
+    {
+        System.arraycopy(baseData, 0, result, 0, baseData.length);
+        for (int i = 0; i < nrOfTouched; i++)
+            isTouched[touched[i]] = false;
+        nrOfTouched = 0;
+    }
+
+    /**
+     * Morphs the specified target, with the specified weight, together with the base mesh, which receives the remaining weight.
+     * The result array must hold the result of the previous morph, or the base data (see reset()).
+     * An invalid target index yields the base mesh.
+     */
+    public void morph(float[] result, int target, float weight)
+    {
+        restore(result);
+        if (target >= 0 && target < vertexIndices.length && weight != 0.0f)
+            accumulate(result, target, weight);
+    }
+
+    /**
+     * Morphs the first nrOfTargets specified targets, with the specified weights, together with the base mesh,
+     * which receives the remaining weight. Targets with index -1 (or otherwise invalid) and targets with a weight &lt;= 0 are skipped.
+     * The result array must hold the result of the previous morph, or the base data (see reset()).
+     */
+    public void morph(float[] result, int[] targets, float[] weights, int nrOfTargets)
+    {
+        restore(result);
+        for (int ti = 0; ti < nrOfTargets; ti++)
+        {
+            int target = targets[ti];
+            float weight = weights[ti];
+            if (target >= 0 && target < vertexIndices.length && weight > 0.0f)
+                accumulate(result, target, weight);
+        }
+    }
+
+    /* restores the vertices modified by the previous morph to their base values */
+    private void restore(float[] result)
+    {
+        for (int i = 0; i < nrOfTouched; i++)
+        {
+            int v = touched[i];
+            System.arraycopy(baseData, v * tupleSize, result, v * tupleSize, tupleSize);
+            isTouched[v] = false;
+        }
+        nrOfTouched = 0;
+    }
+
+    /* adds weight * delta for the vertices affected by target */
+    private void accumulate(float[] result, int target, float weight)
+    {
+        int[] vi = vertexIndices[target];
+        float[] delta = deltas[target];
+        int d = 0;
+        for (int i = 0; i < vi.length; i++)
+        {
+            int v = vi[i];
+            if (!isTouched[v])
+            {
+                isTouched[v] = true;
+                touched[nrOfTouched++] = v;
+            }
+            int offset = v * tupleSize;
+            for (int k = 0; k < tupleSize; k++)
+            {
+                result[offset + k] += weight * delta[d++];
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.graphics.skinning;
+
+import hmi.animation.VJoint;
+import hmi.graphics.scenegraph.GSkinnedMesh;
+import hmi.graphics.scenegraph.VertexWeights;
+import hmi.math.Mat4f;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Linear blend skinning on the CPU, for vertex coordinates and (optionally) normals, independent from OpenGL.
+ * The skinning formula is the same as for GLSkinnedMesh: every vertex is transformed by the weighted sum of its
+ * joint transforms, where the transform for joint j is jointMatrix[j] * inverseBindMatrix[j], and normals are renormalized.
+ * The variable length joint index and weight segments from VertexWeights are packed into fixed width arrays,
+ * with maxInfluences slots per vertex, ordered by decreasing (absolute) weight; unused slots have weight 0, and are skipped.
+ * The joint transforms are calculated once per skin() call, and stored as 3x4 row major matrices in a single float array.
+ * With parallel skinning (see setParallelism()), the vertices are skinned in chunks by a ForkJoinPool.
+ * A CpuSkinner is not thread safe: skin() should be called by one thread at a time.
+ */
+public class CpuSkinner
+{
+    private static final int CHUNK_SIZE = 2048; // number of vertices skinned by a single task
+    private static final int MATSIZE = 12; // first three rows of a Mat4f
+
+    private final int nrOfVertices;
+    private final int nrOfJoints;
+    private final int maxInfluences;
+    private final int[] influenceIndices; // maxInfluences joint indices per vertex
+    private final float[] influenceWeights; // maxInfluences joint weights per vertex
+    private final float[][] inverseBindMatrices;
+    private float[][] jointMatrices; // references to (typically VJoint global) matrices, not including inverse bind matrices
+    private final float[] transforms; // nrOfJoints 3x4 matrices: jointMatrix * inverseBindMatrix
+    private final float[] tmpMatrix = Mat4f.getMat4f();
+
+    private float[] coords; // input vertex coordinates
+    private final float[] normals; // input normals, or null
+    private final float[] skinnedCoords;
+    private final float[] skinnedNormals;
+
+    private ForkJoinPool skinPool = null;
+
+    /**
+     * Creates a CpuSkinner for a GSkinnedMesh with unified indices (see GMesh.unifyIndices()), using its "mcPosition" and
+     * "mcNormal" (when present) vertex data, VertexWeights and inverse bind matrices.
+     * The joint matrices must be set (see setVJoints, setJointMatrices) before skinning.
+     */
+    public CpuSkinner(GSkinnedMesh mesh)
+    {
+        this(mesh.getVertexData("mcPosition"), mesh.getVertexData("mcNormal"), mesh.getVertexWeights(), mesh.getInvBindMatrices());
+    }
+
+    /**
+     * Creates a CpuSkinner for the specified vertex coordinates, normals (possibly null), vertex weights and inverse bind matrices.
+     * The coordinate array is referenced, not copied, so it can be modified between skin() calls, for instance by morphing.
+     * The joint matrices must be set (see setVJoints, setJointMatrices) before skinning.
+     */
+    public CpuSkinner(float[] coords, float[] normals, VertexWeights vertexWeights, float[][] inverseBindMatrices)
+    {
+        if (coords == null || vertexWeights == null || inverseBindMatrices == null)
+        {
+            throw new IllegalArgumentException("CpuSkinner: coords, vertex weights and inverse bind matrices are required");
+        }
+        nrOfVertices = coords.length / 3;
+        if (normals != null && normals.length != coords.length)
+        {
+            throw new IllegalArgumentException("CpuSkinner: " + normals.length / 3 + " normals for " + nrOfVertices + " vertices");
+        }
+        int[] jcount = vertexWeights.getJCounts();
+        int[] jointIndices = vertexWeights.getJointIndices();
+        float[] jointWeights = vertexWeights.getJointWeights();
+        if (jcount == null || jcount.length != nrOfVertices)
+        {
+            throw new IllegalArgumentException("CpuSkinner: vertex weights for " + (jcount == null ? 0 : jcount.length) + " vertices, mesh has "
+                    + nrOfVertices + " vertices (unified indices required)");
+        }
+        this.coords = coords;
+        this.normals = normals;
+        this.inverseBindMatrices = inverseBindMatrices;
+        nrOfJoints = inverseBindMatrices.length;
+
+        int max = 0;
+        for (int v = 0; v < nrOfVertices; v++)
+            max = Math.max(max, jcount[v]);
+        maxInfluences = max;
+        influenceIndices = new int[nrOfVertices * maxInfluences];
+        influenceWeights = new float[nrOfVertices * maxInfluences];
+        int p = 0;
+        for (int v = 0; v < nrOfVertices; v++)
+        {
+            int slot = v * maxInfluences;
+            for (int i = 0; i < jcount[v]; i++)
+            {
+                int ji = jointIndices[p];
+                if (ji < 0 || ji >= nrOfJoints)
+                {
+                    throw new IllegalArgumentException("CpuSkinner: joint index " + ji + " for vertex " + v + ", mesh has " + nrOfJoints + " joints");
+                }
+                // insertion by decreasing absolute weight, so that the zero weight slots come last:
+                float w = jointWeights[p];
+                int k = slot + i;
+                while (k > slot && Math.abs(influenceWeights[k - 1]) < Math.abs(w))
+                {
+                    influenceIndices[k] = influenceIndices[k - 1];
+                    influenceWeights[k] = influenceWeights[k - 1];
+                    k--;
+                }
+                influenceIndices[k] = ji;
+                influenceWeights[k] = w;
+                p++;
+            }
+        }
+        transforms = new float[nrOfJoints * MATSIZE];
+        skinnedCoords = Arrays.copyOf(coords, coords.length);
+        skinnedNormals = (normals == null) ? null : Arrays.copyOf(normals, normals.length);
+    }
+
+    /**
+     * Uses the global matrices of the specified VJoints, one for every joint, as joint matrices.
+     */
+    public void setVJoints(VJoint[] vjoints)
+    {
+        float[][] matrices = new float[vjoints.length][];
+        for (int j = 0; j < vjoints.length; j++)
+        {
+            matrices[j] = vjoints[j].getGlobalMatrix();
+        }
+        setJointMatrices(matrices);
+    }
+
+    /**
+     * Sets references to the joint matrices (Mat4f, not including inverse bind matrices), one for every joint.
+     * The matrices are read again for every skin() call.
+     */
+    public void setJointMatrices(float[][] jointMatrices)
+    {
+        if (jointMatrices.length != nrOfJoints)
+        {
+            throw new IllegalArgumentException("CpuSkinner: " + jointMatrices.length + " joint matrices for " + nrOfJoints + " joints");
+        }
+        this.jointMatrices = jointMatrices;
+    }
+
+    /**
+     * Sets a reference to the input vertex coordinates, for instance the result of a morph, with the same length as the original coordinates.
+     */
+    public void setCoords(float[] coords)
+    {
+        if (coords.length != 3 * nrOfVertices)
+        {
+            throw new IllegalArgumentException("CpuSkinner: " + coords.length / 3 + " vertex coordinates for " + nrOfVertices + " vertices");
+        }
+        this.coords = coords;
+    }
+
+    /**
+     * Sets the number of threads used for skinning; 1 (default) skins in the calling thread.
+     */
+    public void setParallelism(int threads)
+    {
+        if (skinPool != null)
+        {
+            skinPool.shutdown();
+            skinPool = null;
+        }
+        if (threads > 1)
+        {
+            skinPool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Returns the number of threads used for skinning, see setParallelism()
+     */
+    public int getParallelism()
+    {
+        return skinPool == null ? 1 : skinPool.getParallelism();
+    }
+
+    /**
+     * Returns the maximum number of joints per vertex, i.e. the number of packed slots per vertex.
+     */
+    public int getMaxInfluences()
+    {
+        return maxInfluences;
+    }
+
+    public int getNrOfVertices()
+    {
+        return nrOfVertices;
+    }
+
+    /**
+     * Returns the (shared) array with skinned vertex coordinates, updated by skin().
+     */
+    public float[] getSkinnedCoords()
+    {
+        return skinnedCoords;
+    }
+
+    /**
+     * Returns the (shared) array with skinned normals, updated by skin(), or null when there are no normals.
+     */
+    public float[] getSkinnedNormals()
+    {
+        return skinnedNormals;
+    }
+
+    /**
+     * Calculates the joint transforms from the current joint matrices, and skins all vertices.
+     */
+    public void skin()
+    {
+        if (jointMatrices == null)
+        {
+            throw new IllegalStateException("CpuSkinner: no joint matrices");
+        }
+        calculateTransforms();
+        if (skinPool == null || nrOfVertices <= CHUNK_SIZE)
+        {
+            skin(0, nrOfVertices);
+        }
+        else
+        {
+            skinPool.invoke(new SkinTask(0, nrOfVertices));
+        }
+    }
+
+    /* transforms[j] = jointMatrices[j] * inverseBindMatrices[j], first three rows only */
+    private void calculateTransforms()
+    {
+        for (int j = 0; j < nrOfJoints; j++)
+        {
+            Mat4f.mul(tmpMatrix, jointMatrices[j], inverseBindMatrices[j]);
+            System.arraycopy(tmpMatrix, 0, transforms, j * MATSIZE, MATSIZE);
+        }
+    }
+
+    /* skins the vertices start, ..., end-1 */
+    private void skin(int start, int end)
+    {
+        // local copies of the fields, for the inner loops:
+        final float[] in = coords;
+        final float[] nin = normals;
+        final float[] out = skinnedCoords;
+        final float[] nout = skinnedNormals;
+        final float[] tf = transforms;
+        final int[] indices = influenceIndices;
+        final float[] weights = influenceWeights;
+        final int slots = maxInfluences;
+        for (int v = start; v < end; v++)
+        {
+            int vb = 3 * v;
+            float vx = in[vb];
+            float vy = in[vb + 1];
+            float vz = in[vb + 2];
+            // weighted sum of the transforms of the joints for vertex v:
+            float m0 = 0, m1 = 0, m2 = 0, m3 = 0, m4 = 0, m5 = 0, m6 = 0, m7 = 0, m8 = 0, m9 = 0, m10 = 0, m11 = 0;
+            int slot = v * slots;
+            for (int i = slot; i < slot + slots; i++)
+            {
+                float w = weights[i];
+                if (w == 0.0f) break; // remaining slots are unused
+                int mb = indices[i] * MATSIZE;
+                m0 += w * tf[mb];
+                m1 += w * tf[mb + 1];
+                m2 += w * tf[mb + 2];
+                m3 += w * tf[mb + 3];
+                m4 += w * tf[mb + 4];
+                m5 += w * tf[mb + 5];
+                m6 += w * tf[mb + 6];
+                m7 += w * tf[mb + 7];
+                m8 += w * tf[mb + 8];
+                m9 += w * tf[mb + 9];
+                m10 += w * tf[mb + 10];
+                m11 += w * tf[mb + 11];
+            }
+            out[vb] = m0 * vx + m1 * vy + m2 * vz + m3;
+            out[vb + 1] = m4 * vx + m5 * vy + m6 * vz + m7;
+            out[vb + 2] = m8 * vx + m9 * vy + m10 * vz + m11;
+            if (nin != null)
+            {
+                float nx = nin[vb];
+                float ny = nin[vb + 1];
+                float nz = nin[vb + 2];
+                float mnx = m0 * nx + m1 * ny + m2 * nz;
+                float mny = m4 * nx + m5 * ny + m6 * nz;
+                float mnz = m8 * nx + m9 * ny + m10 * nz;
+                double mnLenSq = mnx * mnx + mny * mny + mnz * mnz;
+                float mnfactor = (mnLenSq == 0.0) ? 1.0f : (float) (1.0 / Math.sqrt(mnLenSq));
+                nout[vb] = mnx * mnfactor;
+                nout[vb + 1] = mny * mnfactor;
+                nout[vb + 2] = mnz * mnfactor;
+            }
+        }
+    }
+
+    /*
+     * Skins a range of vertices, splitting it while it is larger than CHUNK_SIZE.
+     */
+    private class SkinTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        SkinTask(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start > CHUNK_SIZE)
+            {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SkinTask(start, middle), new SkinTask(middle, end));
+            }
+            else
+            {
+                skin(start, end);
+            }
+        }
+    }
+}
@@ -306,5 +306,80 @@ public class GMeshTest {
        
     } 
   
+    /**
+     * Fills gmesh with mcPosition, mcNormal and texCoord0 attributes with separate indices, like ColladaReader does for polylists.
+     * Positions are shared by about 6 indices, normals and texture coordinates by about 3, so many, but not all, index tuples are equal.
+     */
+    static void setIndexedAttributes(GMesh gmesh, int nrOfIndices, long seed) {
+       Random random = new Random(seed);
+       int nrOfPositions = Math.max(1, nrOfIndices / 6);
+       int nrOfNormals = Math.max(1, nrOfIndices / 3);
+       int[] posIndices = new int[nrOfIndices];
+       int[] normIndices = new int[nrOfIndices];
+       int[] texIndices = new int[nrOfIndices];
+       for (int i = 0; i < nrOfIndices; i++) {
+          posIndices[i] = random.nextInt(nrOfPositions);
+          // normals and texture coordinates mostly follow the position, as for smooth surfaces with some seams
+          normIndices[i] = (random.nextInt(4) == 0) ? random.nextInt(nrOfNormals) : posIndices[i];
+          texIndices[i] = (random.nextInt(4) == 0) ? random.nextInt(nrOfNormals) : posIndices[i];
+       }
+       gmesh.setMeshType(GMesh.MeshType.Triangles);
+       gmesh.setIndexedVertexData("mcPosition", 3, randomData(random, 3 * nrOfPositions), posIndices);
+       gmesh.setIndexedVertexData("mcNormal", 3, randomData(random, 3 * nrOfNormals), normIndices);
+       gmesh.setIndexedVertexData("texCoord0", 2, randomData(random, 2 * nrOfNormals), texIndices);
+    }
+    
+    private static float[] randomData(Random random, int size) {
+       float[] data = new float[size];
+       for (int i = 0; i < size; i++) data[i] = random.nextFloat();
+       return data;
+    }
+  
+    @Test
+    public void unifyIndices() {
+       GMesh gmesh = new GMesh();
+       setIndexedAttributes(gmesh, 3000, 42);
+       assertFalse(gmesh.hasUnifiedIndexData());
+       int nrOfAttributes = gmesh.getNrOfAttributes();
+       int[][] indices = new int[nrOfAttributes][];
+       float[][] data = new float[nrOfAttributes][];
+       int[] sizes = new int[nrOfAttributes];
+       for (int att = 0; att < nrOfAttributes; att++) {
+          VertexAttribute va = gmesh.getVertexAttributeList().get(att);
+          indices[att] = va.getIndexData().clone();
+          data[att] = va.getVertexData().clone();
+          sizes[att] = va.getAttributeValueSize();
+       }
+       
+       // reference numbering: tuples in order of first occurrence, found by comparing with all previous tuples
+       int n = indices[0].length;
+       int[] expectedIndex = new int[n];
+       int nrOfTuples = 0;
+       int[] firstOccurrence = new int[n];
+       for (int i = 0; i < n; i++) {
+          int tuple = 0;
+          for (; tuple < nrOfTuples; tuple++) {
+             boolean equal = true;
+             for (int att = 0; att < nrOfAttributes && equal; att++) equal = indices[att][firstOccurrence[tuple]] == indices[att][i];
+             if (equal) break;
+          }
+          if (tuple == nrOfTuples) firstOccurrence[nrOfTuples++] = i;
+          expectedIndex[i] = tuple;
+       }
+       
+       gmesh.unifyIndices();
+       assertTrue(gmesh.hasUnifiedIndexData());
+       assertEquals(nrOfTuples, gmesh.getNrOfVertices());
+       assertArrayEquals(expectedIndex, gmesh.getIndexData());
+       for (int att = 0; att < nrOfAttributes; att++) {
+          float[] unified = gmesh.getVertexAttributeList().get(att).getVertexData();
+          assertEquals(nrOfTuples * sizes[att], unified.length);
+          for (int i = 0; i < n; i++) {
+             for (int p = 0; p < sizes[att]; p++) {
+                assertEquals(data[att][indices[att][i] * sizes[att] + p], unified[expectedIndex[i] * sizes[att] + p], 0f);
+             }
+          }
+       }
+    }
   
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.graphics.scenegraph;
+
+/**
+ * Benchmark for GMesh.unifyIndices, on meshes with position, normal and texture coordinate indices
+ * (see GMeshTest.setIndexedAttributes) of 10k up to 500k indices.
+ * For the smaller meshes, the time of the previous algorithm, that compares each index tuple with all
+ * previous tuples, is reported as well.
+ * Run with: java hmi.graphics.scenegraph.GMeshUnifyBenchmark [repetitions]
+ */
+public final class GMeshUnifyBenchmark
+{
+    private static final int[] INDEX_COUNTS = { 10000, 50000, 100000, 250000, 500000 };
+    private static final int MAX_QUADRATIC_INDEX_COUNT = 50000;
+    private static final int DEFAULT_REPETITIONS = 5;
+
+    private GMeshUnifyBenchmark()
+    {
+    }
+
+    /**
+     * The previous tuple numbering of GMesh.calculateTuples, for comparison: returns the number of distinct tuples.
+     */
+    static int quadraticTuples(int[][] indices, int[] indexData)
+    {
+        int nrOfAttributes = indices.length;
+        int[] firstOccurrence = new int[indexData.length];
+        int nrOfTuples = 0;
+        for (int i = 0; i < indexData.length; i++)
+        {
+            int tuple = 0;
+            for (; tuple < nrOfTuples; tuple++)
+            {
+                boolean equal = true;
+                for (int att = 0; att < nrOfAttributes && equal; att++)
+                {
+                    equal = indices[att][firstOccurrence[tuple]] == indices[att][i];
+                }
+                if (equal) break;
+            }
+            if (tuple == nrOfTuples) firstOccurrence[nrOfTuples++] = i;
+            indexData[i] = tuple;
+        }
+        return nrOfTuples;
+    }
+
+    public static void main(String[] args)
+    {
+        int repetitions = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_REPETITIONS;
+        for (int indexCount : INDEX_COUNTS)
+        {
+            long best = Long.MAX_VALUE;
+            int vertices = 0;
+            for (int r = 0; r <= repetitions; r++)
+            {
+                GMesh gmesh = new GMesh();
+                GMeshTest.setIndexedAttributes(gmesh, indexCount, indexCount);
+                long start = System.nanoTime();
+                gmesh.unifyIndices();
+                long nanos = System.nanoTime() - start;
+                if (r > 0) best = Math.min(best, nanos); // first run is warm up
+                vertices = gmesh.getNrOfVertices();
+            }
+            String quadratic = "";
+            if (indexCount <= MAX_QUADRATIC_INDEX_COUNT)
+            {
+                GMesh gmesh = new GMesh();
+                GMeshTest.setIndexedAttributes(gmesh, indexCount, indexCount);
+                int[][] indices = new int[gmesh.getNrOfAttributes()][];
+                for (int att = 0; att < indices.length; att++)
+                {
+                    indices[att] = gmesh.getVertexAttributeList().get(att).getIndexData();
+                }
+                long start = System.nanoTime();
+                quadraticTuples(indices, new int[indexCount]);
+                quadratic = String.format("  (quadratic numbering %9.2f ms)", (System.nanoTime() - start) / 1e6);
+            }
+            System.out.println(String.format("indices=%7d  vertices=%7d  unifyIndices %8.2f ms%s", indexCount, vertices, best / 1e6,
+                    quadratic));
+        }
+    }
+}
@@ -391,5 +391,42 @@ public class GSkinnedMeshTest {
        
     } 
   
+    @Test
+    public void unifyIndices() {
+       GSkinnedMesh gsm = new GSkinnedMesh();
+       GMeshTest.setIndexedAttributes(gsm, 3000, 7);
+       int[] posIndices = gsm.getAttributeIndexData("mcPosition").clone();
+       int nrOfPositions = gsm.getVertexData("mcPosition").length / 3;
+       // vertex weights are defined per position: 1 or 2 joints, with joint index equal to the position index
+       int[] jcount = new int[nrOfPositions];
+       int size = 0;
+       for (int v = 0; v < nrOfPositions; v++) {
+          jcount[v] = 1 + v % 2;
+          size += jcount[v];
+       }
+       int[] jointIndices = new int[size];
+       float[] jointWeights = new float[size];
+       int offset = 0;
+       for (int v = 0; v < nrOfPositions; v++) {
+          for (int j = 0; j < jcount[v]; j++) {
+             jointIndices[offset] = v;
+             jointWeights[offset++] = 1.0f / jcount[v];
+          }
+       }
+       gsm.setVertexWeights(new VertexWeights(jcount, jointIndices, jointWeights));
+       
+       gsm.unifyIndices();
+       int[] indexData = gsm.getIndexData();
+       VertexWeights vw = gsm.getVertexWeights();
+       assertEquals(gsm.getNrOfVertices(), vw.getJCounts().length);
+       // the vertex weights of each unified vertex are those of its original position
+       int[] offsets = new int[vw.getJCounts().length];
+       for (int v = 1; v < offsets.length; v++) offsets[v] = offsets[v - 1] + vw.getJCounts()[v - 1];
+       for (int i = 0; i < indexData.length; i++) {
+          int v = indexData[i];
+          assertEquals(jcount[posIndices[i]], vw.getJCounts()[v]);
+          assertEquals(posIndices[i], vw.getJointIndices()[offsets[v]]);
+       }
+    }
   
 }
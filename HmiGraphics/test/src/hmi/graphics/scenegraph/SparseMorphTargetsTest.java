@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+/*
+ * SparseMorphTargets JUnit test
+ */
+
+package hmi.graphics.scenegraph;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+
+/**
+ * JUnit test for hmi.graphics.scenegraph.SparseMorphTargets
+ */
+public class SparseMorphTargetsTest {
+
+    private static final float EPS = 1e-5f;
+
+    /* random base with targets that each move a few random vertices */
+    static float[][] createTargets(float[] base, int nrOfTargets, int affected, long seed) {
+       Random random = new Random(seed);
+       for (int i = 0; i < base.length; i++) base[i] = random.nextFloat();
+       float[][] targets = new float[nrOfTargets][];
+       for (int t = 0; t < nrOfTargets; t++) {
+          targets[t] = Arrays.copyOf(base, base.length);
+          for (int a = 0; a < affected; a++) {
+             int v = random.nextInt(base.length / 3);
+             targets[t][3 * v + random.nextInt(3)] += random.nextFloat() - 0.5f;
+          }
+       }
+       return targets;
+    }
+
+    /* the dense weighted sum of the previous GLSkinnedMesh.morph */
+    static float[] denseMorph(float[] base, float[][] targets, int[] ti, float[] weights) {
+       float[] result = new float[base.length];
+       float totalWeight = 0.0f;
+       for (int t = 0; t < ti.length; t++) {
+          if (ti[t] < 0 || weights[t] <= 0.0f) continue;
+          totalWeight += weights[t];
+          for (int i = 0; i < base.length; i++) result[i] += weights[t] * targets[ti[t]][i];
+       }
+       for (int i = 0; i < base.length; i++) result[i] += (1.0f - totalWeight) * base[i];
+       return result;
+    }
+
+    @Test
+    public void sparseDeltas() {
+       float[] base = { 0f, 0f, 0f,   1f, 1f, 1f,   2f, 2f, 2f };
+       float[][] targets = { { 0f, 0f, 0f,   1f, 1.5f, 1f,   2f, 2f, 2f }, null };
+       SparseMorphTargets smt = new SparseMorphTargets(base, targets, 3);
+       assertTrue(smt.getNrOfTargets() == 2);
+       assertTrue(smt.getNrOfAffectedVertices(0) == 1);
+       assertTrue(smt.getVertexIndices(0)[0] == 1);
+       assertArrayEquals(new float[] { 0f, 0.5f, 0f }, smt.getDeltas(0), 0f);
+       assertTrue(smt.getNrOfAffectedVertices(1) == 0);
+       base[4] = 7f;
+       assertTrue(smt.getBaseData()[4] == 1f); // base data has been copied
+    }
+
+    @Test
+    public void morphSingle() {
+       float[] base = new float[300];
+       float[][] targets = createTargets(base, 4, 10, 11);
+       SparseMorphTargets smt = new SparseMorphTargets(base, targets, 3);
+       float[] result = Arrays.copyOf(base, base.length);
+       smt.morph(result, 2, 0.3f);
+       assertArrayEquals(denseMorph(base, targets, new int[] { 2 }, new float[] { 0.3f }), result, EPS);
+       smt.morph(result, 1, 1.0f);
+       assertArrayEquals(targets[1], result, EPS);
+       smt.morph(result, -1, 1.0f);
+       assertArrayEquals(base, result, 0f);
+    }
+
+    @Test
+    public void morphMultiple() {
+       float[] base = new float[3000];
+       float[][] targets = createTargets(base, 20, 50, 12);
+       SparseMorphTargets smt = new SparseMorphTargets(base, targets, 3);
+       float[] result = new float[base.length];
+       smt.reset(result);
+       Random random = new Random(13);
+       int[] ti = new int[6];
+       float[] weights = new float[6];
+       for (int frame = 0; frame < 50; frame++) {
+          for (int t = 0; t < ti.length; t++) {
+             ti[t] = random.nextInt(targets.length + 1) - 1; // includes -1
+             weights[t] = random.nextFloat() - 0.2f; // includes negative weights, which are skipped
+          }
+          smt.morph(result, ti, weights, ti.length);
+          assertArrayEquals(denseMorph(base, targets, ti, weights), result, EPS);
+       }
+       smt.morph(result, ti, weights, 0);
+       assertArrayEquals(base, result, 0f);
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.graphics.skinning;
+
+import hmi.graphics.scenegraph.VertexWeights;
+
+import java.util.Random;
+
+/**
+ * Benchmark for CpuSkinner.skin, on character sized meshes (10k up to 200k vertices, 80 joints, up to 4 joints per vertex),
+ * with 1, 2, 4, ... threads (see CpuSkinner.setParallelism()), compared with the variable length per joint loop of
+ * GLSkinnedMesh (see CpuSkinnerTest.referenceSkin).
+ * Reports the time per skin() call, i.e. per frame.
+ * Run with: java hmi.graphics.skinning.CpuSkinnerBenchmark [frames]
+ */
+public final class CpuSkinnerBenchmark
+{
+    private static final int[] VERTEX_COUNTS = { 10000, 50000, 200000 };
+    private static final int NR_OF_JOINTS = 80;
+    private static final int MAX_INFLUENCES = 4;
+    private static final int DEFAULT_FRAMES = 200;
+
+    private CpuSkinnerBenchmark()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        int frames = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        Random random = new Random(42);
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+        for (int nrOfVertices : VERTEX_COUNTS)
+        {
+            float[] coords = CpuSkinnerTest.randomVectors(random, nrOfVertices);
+            float[] normals = CpuSkinnerTest.randomVectors(random, nrOfVertices);
+            VertexWeights vw = CpuSkinnerTest.randomVertexWeights(random, nrOfVertices, NR_OF_JOINTS, MAX_INFLUENCES);
+            float[][] invBind = CpuSkinnerTest.randomMatrices(random, NR_OF_JOINTS);
+            float[][] jointMatrices = CpuSkinnerTest.randomMatrices(random, NR_OF_JOINTS);
+
+            float[] refCoords = new float[coords.length];
+            float[] refNormals = new float[normals.length];
+            for (int f = 0; f < frames; f++) // warm up
+            {
+                CpuSkinnerTest.referenceSkin(coords, normals, vw, jointMatrices, invBind, refCoords, refNormals);
+            }
+            long start = System.nanoTime();
+            for (int f = 0; f < frames; f++)
+            {
+                CpuSkinnerTest.referenceSkin(coords, normals, vw, jointMatrices, invBind, refCoords, refNormals);
+            }
+            System.out.println(String.format("vertices=%7d  per joint loop     %8.3f ms/frame", nrOfVertices, (System.nanoTime() - start)
+                    / 1e6 / frames));
+
+            CpuSkinner skinner = new CpuSkinner(coords, normals, vw, invBind);
+            skinner.setJointMatrices(jointMatrices);
+            for (int threads = 1; threads <= maxThreads; threads *= 2)
+            {
+                skinner.setParallelism(threads);
+                for (int f = 0; f < frames; f++) // warm up
+                {
+                    skinner.skin();
+                }
+                start = System.nanoTime();
+                for (int f = 0; f < frames; f++)
+                {
+                    skinner.skin();
+                }
+                System.out.println(String.format("vertices=%7d  CpuSkinner threads=%2d %8.3f ms/frame", nrOfVertices, threads,
+                        (System.nanoTime() - start) / 1e6 / frames));
+            }
+            skinner.setParallelism(1);
+        }
+    }
+}
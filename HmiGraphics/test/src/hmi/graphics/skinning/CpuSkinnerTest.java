@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+/*
+ * CpuSkinner JUnit test
+ */
+
+package hmi.graphics.skinning;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import hmi.graphics.scenegraph.VertexWeights;
+import hmi.math.Mat4f;
+import hmi.math.Quat4f;
+
+/**
+ * JUnit test for hmi.graphics.skinning.CpuSkinner
+ */
+public class CpuSkinnerTest {
+
+    private static final float EPS = 1e-4f;
+
+    /* random unit length vectors */
+    static float[] randomVectors(Random random, int nrOfVertices) {
+       float[] data = new float[3 * nrOfVertices];
+       for (int v = 0; v < nrOfVertices; v++) {
+          float x = random.nextFloat() - 0.5f, y = random.nextFloat() - 0.5f, z = random.nextFloat() + 0.1f;
+          float len = (float) Math.sqrt(x * x + y * y + z * z);
+          data[3 * v] = x / len; data[3 * v + 1] = y / len; data[3 * v + 2] = z / len;
+       }
+       return data;
+    }
+
+    /* vertex weights with 1 up to maxInfluences joints per vertex, with weights adding up to 1 */
+    static VertexWeights randomVertexWeights(Random random, int nrOfVertices, int nrOfJoints, int maxInfluences) {
+       int[] jcount = new int[nrOfVertices];
+       int total = 0;
+       for (int v = 0; v < nrOfVertices; v++) {
+          jcount[v] = 1 + random.nextInt(maxInfluences);
+          total += jcount[v];
+       }
+       int[] indices = new int[total];
+       float[] weights = new float[total];
+       int p = 0;
+       for (int v = 0; v < nrOfVertices; v++) {
+          float sum = 0.0f;
+          for (int i = 0; i < jcount[v]; i++) {
+             indices[p + i] = random.nextInt(nrOfJoints);
+             weights[p + i] = 0.1f + random.nextFloat();
+             sum += weights[p + i];
+          }
+          for (int i = 0; i < jcount[v]; i++) weights[p + i] /= sum;
+          p += jcount[v];
+       }
+       return new VertexWeights(jcount, indices, weights);
+    }
+
+    /* rigid transforms: a rotation around a random axis, and a random translation */
+    static float[][] randomMatrices(Random random, int nrOfJoints) {
+       float[][] matrices = new float[nrOfJoints][];
+       for (int j = 0; j < nrOfJoints; j++) {
+          float[] q = Quat4f.getQuat4fFromAxisAngle(random.nextFloat(), random.nextFloat(), random.nextFloat() + 0.1f, random.nextFloat() * 3f);
+          matrices[j] = Mat4f.getIdentity();
+          Mat4f.setRotation(matrices[j], q);
+          Mat4f.setTranslation(matrices[j], random.nextFloat(), random.nextFloat(), random.nextFloat());
+       }
+       return matrices;
+    }
+
+    /* the per vertex, per joint skinning loop of GLSkinnedMesh.deformCN */
+    static void referenceSkin(float[] coords, float[] normals, VertexWeights vw, float[][] jointMatrices, float[][] invBind,
+          float[] resultCoords, float[] resultNormals) {
+       float[][] transforms = new float[jointMatrices.length][];
+       for (int j = 0; j < transforms.length; j++) {
+          transforms[j] = Mat4f.getMat4f();
+          Mat4f.mul(transforms[j], jointMatrices[j], invBind[j]);
+       }
+       int p = 0;
+       for (int v = 0; v < coords.length / 3; v++) {
+          float vx = coords[3 * v], vy = coords[3 * v + 1], vz = coords[3 * v + 2];
+          float nx = normals[3 * v], ny = normals[3 * v + 1], nz = normals[3 * v + 2];
+          float mvx = 0, mvy = 0, mvz = 0, mnx = 0, mny = 0, mnz = 0;
+          for (int i = 0; i < vw.getJCounts()[v]; i++, p++) {
+             float[] mat = transforms[vw.getJointIndices()[p]];
+             float jw = vw.getJointWeights()[p];
+             mvx += jw * (mat[0] * vx + mat[1] * vy + mat[2] * vz + mat[3]);
+             mvy += jw * (mat[4] * vx + mat[5] * vy + mat[6] * vz + mat[7]);
+             mvz += jw * (mat[8] * vx + mat[9] * vy + mat[10] * vz + mat[11]);
+             mnx += jw * (mat[0] * nx + mat[1] * ny + mat[2] * nz);
+             mny += jw * (mat[4] * nx + mat[5] * ny + mat[6] * nz);
+             mnz += jw * (mat[8] * nx + mat[9] * ny + mat[10] * nz);
+          }
+          float len = (float) Math.sqrt(mnx * mnx + mny * mny + mnz * mnz);
+          resultCoords[3 * v] = mvx; resultCoords[3 * v + 1] = mvy; resultCoords[3 * v + 2] = mvz;
+          resultNormals[3 * v] = mnx / len; resultNormals[3 * v + 1] = mny / len; resultNormals[3 * v + 2] = mnz / len;
+       }
+    }
+
+    @Test
+    public void identity() {
+       Random random = new Random(1);
+       float[] coords = randomVectors(random, 100);
+       float[] normals = randomVectors(random, 100);
+       float[][] invBind = randomMatrices(random, 5);
+       float[][] jointMatrices = new float[5][];
+       for (int j = 0; j < 5; j++) {
+          jointMatrices[j] = Mat4f.getMat4f();
+          Mat4f.invertRigid(jointMatrices[j], invBind[j]); // joints in bind pose
+       }
+       CpuSkinner skinner = new CpuSkinner(coords, normals, randomVertexWeights(random, 100, 5, 3), invBind);
+       skinner.setJointMatrices(jointMatrices);
+       skinner.skin();
+       assertArrayEquals(coords, skinner.getSkinnedCoords(), EPS);
+       assertArrayEquals(normals, skinner.getSkinnedNormals(), EPS);
+       assertTrue(skinner.getMaxInfluences() == 3);
+    }
+
+    @Test
+    public void matchesReference() {
+       Random random = new Random(2);
+       int nrOfVertices = 20000; // several chunks
+       int nrOfJoints = 40;
+       float[] coords = randomVectors(random, nrOfVertices);
+       float[] normals = randomVectors(random, nrOfVertices);
+       VertexWeights vw = randomVertexWeights(random, nrOfVertices, nrOfJoints, 4);
+       float[][] invBind = randomMatrices(random, nrOfJoints);
+       float[] expectedCoords = new float[coords.length];
+       float[] expectedNormals = new float[normals.length];
+       CpuSkinner skinner = new CpuSkinner(coords, normals, vw, invBind);
+       for (int threads : new int[] { 1, 4 }) {
+          skinner.setParallelism(threads);
+          assertTrue(skinner.getParallelism() == threads);
+          for (int frame = 0; frame < 3; frame++) {
+             float[][] jointMatrices = randomMatrices(random, nrOfJoints);
+             skinner.setJointMatrices(jointMatrices);
+             skinner.skin();
+             referenceSkin(coords, normals, vw, jointMatrices, invBind, expectedCoords, expectedNormals);
+             assertArrayEquals(expectedCoords, skinner.getSkinnedCoords(), EPS);
+             assertArrayEquals(expectedNormals, skinner.getSkinnedNormals(), EPS);
+          }
+       }
+       skinner.setParallelism(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void vertexCountMismatch() {
+       Random random = new Random(3);
+       new CpuSkinner(randomVectors(random, 10), null, randomVertexWeights(random, 9, 2, 2), randomMatrices(random, 2));
+    }
+}
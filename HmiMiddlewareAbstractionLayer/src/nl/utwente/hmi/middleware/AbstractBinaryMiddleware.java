@@ -0,0 +1,89 @@
+package nl.utwente.hmi.middleware;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.helpers.JsonCodec;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
+
+/**
+ * Base class for BinaryMiddleware implementations, providing the JSON compatibility for existing MiddlewareListener users.
+ * JsonNodes and raw Strings are sent as UTF-8 encoded frames through sendData(ByteBuffer).
+ * Implementations pass each received frame to dispatch(), which hands it to the BinaryMiddlewareListeners, 
+ * and wraps it in a RawJsonMessage for the MiddlewareListeners, so that it is parsed once, and only if a listener needs the JsonNode. Empty frames are keep-alives, they are not dispatched.
+ * Exceptions thrown by listeners are logged, so that they do not stop the networking of the middleware.
+ */
+public abstract class AbstractBinaryMiddleware implements BinaryMiddleware {
+	private static Logger logger = LoggerFactory.getLogger(AbstractBinaryMiddleware.class.getName());
+
+	private final Set<MiddlewareListener> listeners = new CopyOnWriteArraySet<MiddlewareListener>();
+
+	private final Set<BinaryMiddlewareListener> binaryListeners = new CopyOnWriteArraySet<BinaryMiddlewareListener>();
+
+	@Override
+	public void sendData(JsonNode jn) {
+		if(jn == null){
+			return;
+		}
+		try {
+			sendData(ByteBuffer.wrap(JsonCodec.toBytes(jn)));
+		} catch (JsonProcessingException e) {
+			logger.warn("Error while serializing JSON: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public void sendDataRaw(String data) {
+		if(data != null){
+			sendData(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	@Override
+	public void addListener(MiddlewareListener ml) {
+		listeners.add(ml);
+	}
+
+	@Override
+	public void addBinaryListener(BinaryMiddlewareListener bl) {
+		binaryListeners.add(bl);
+	}
+
+	/**
+	 * Notifies all listeners of a received frame. 
+	 * @param frame the received message, between the position and limit of the buffer; the position is not modified
+	 */
+	protected void dispatch(ByteBuffer frame) {
+		if(!frame.hasRemaining()){
+			logger.debug("Got keep-alive");
+			return;
+		}
+		for(BinaryMiddlewareListener bl : binaryListeners){
+			try {
+				bl.receiveBytes(frame.duplicate());
+			} catch (RuntimeException e) {
+				logger.error("Error in listener {}: {}", bl, e);
+			}
+		}
+		if(listeners.isEmpty()){
+			return;
+		}
+		RawJsonMessage msg = RawJsonMessage.wrap(frame);
+		for(MiddlewareListener ml : listeners){
+			try {
+				msg.deliverTo(ml);
+			} catch (RuntimeException e) {
+				logger.error("Error in listener {}: {}", ml, e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package nl.utwente.hmi.middleware;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte-oriented extension of the Middleware interface, for middlewares that transport messages as binary frames.
+ * The JSON methods of the Middleware interface remain available: a JsonNode is sent as a frame containing its UTF-8 encoded JSON,
+ * and received frames are parsed as JSON for the registered MiddlewareListeners.
+ */
+public interface BinaryMiddleware extends Middleware {
+
+	/**
+	 * Send the bytes between the position and limit of data as one message accross the middleware channel.
+	 * The bytes are copied or sent before this method returns; the position of data is not modified, so the caller may reuse the buffer.
+	 * @param data the message
+	 */
+	public void sendData(ByteBuffer data);
+
+	/**
+	 * Add a listener to this middleware, which is notified via BinaryMiddlewareListener.receiveBytes() when a message is received from the middleware
+	 * @param bl the listener instance
+	 */
+	public void addBinaryListener(BinaryMiddlewareListener bl);
+
+}
@@ -0,0 +1,17 @@
+package nl.utwente.hmi.middleware;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A binary middleware listener will be notified of any incoming messages of a BinaryMiddleware by the receiveBytes() function
+ */
+public interface BinaryMiddlewareListener {
+
+	/**
+	 * Callback method which is called by the BinaryMiddleware when a new message arrives.
+	 * The buffer is only valid during this call: it may be reused by the middleware for the next message, so listeners that keep the data should copy it.
+	 * @param data the received message, between the position and limit of the buffer
+	 */
+	public void receiveBytes(ByteBuffer data);
+
+}
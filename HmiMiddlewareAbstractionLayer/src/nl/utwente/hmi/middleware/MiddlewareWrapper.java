@@ -4,7 +4,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.utwente.hmi.middleware.helpers.JsonNodeBuilders;
 import nl.utwente.hmi.middleware.loader.GenericMiddlewareLoader;
+import nl.utwente.hmi.middleware.worker.DataProcessor;
+import nl.utwente.hmi.middleware.worker.KeyExtractor;
+import nl.utwente.hmi.middleware.worker.QueuePolicy;
 import nl.utwente.hmi.middleware.worker.Worker;
+import nl.utwente.hmi.middleware.worker.WorkerMetrics;
+import nl.utwente.hmi.middleware.worker.WorkerPool;
+import nl.utwente.hmi.middleware.worker.WorkerQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,8 +19,6 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Properties;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import static nl.utwente.hmi.middleware.helpers.JsonNodeBuilders.object;
 
@@ -23,31 +27,70 @@ import static nl.utwente.hmi.middleware.helpers.JsonNodeBuilders.object;
  * (MiddlewareListener) for receiving data and a worker (Worker) for processing data. If more flexibility is required,
  * the author can utilize the Worker and MiddlewareListener interfaces. Additionally, this class contains methods
  * for sending data as well, next to methods for retrieving data.
+ * By default, only the latest received data is kept (a WorkerQueue with capacity 1 and QueuePolicy.DROP_OLDEST); when loaded from
+ * properties, this can be configured with the WorkerQueue properties, e.g. queueCapacity=100, queuePolicy=coalesce, queueKey=/topic.
+ * Data is processed by a single worker thread, unless a WorkerPool is configured (e.g. workerThreads=4, workerPartitionKey=/characterId),
+ * in which case processData() is called from multiple threads, and must be thread-safe. With a partition key, the default queue of each
+ * partition is unbounded (DEFAULT_PARTITIONED_QUEUE_CAPACITY and DEFAULT_PARTITIONED_QUEUE_POLICY), so that data of different keys in the same
+ * partition does not replace each other.
  * @author WaterschootJB
  */
 
-public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
+public abstract class MiddlewareWrapper implements Worker, MiddlewareListener, DataProcessor{
 
     private ObjectMapper mapper;
     private boolean running = true;
     private static Logger logger = LoggerFactory.getLogger(MiddlewareWrapper.class.getName());
-    private BlockingQueue<JsonNode> queue;
+    private WorkerQueue queue;
+    private WorkerPool pool;
     private Middleware middleware;
 
+    /** Capacity of the queue, unless configured otherwise */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1;
+
+    /** Policy of the queue, unless configured otherwise */
+    public static final QueuePolicy DEFAULT_QUEUE_POLICY = QueuePolicy.DROP_OLDEST;
+
+    /** Capacity of the queue of each partition of a partitioned WorkerPool, unless configured otherwise */
+    public static final int DEFAULT_PARTITIONED_QUEUE_CAPACITY = Integer.MAX_VALUE;
+
+    /** Policy of the queue of each partition of a partitioned WorkerPool, unless configured otherwise */
+    public static final QueuePolicy DEFAULT_PARTITIONED_QUEUE_POLICY = QueuePolicy.BLOCK;
+
     /**
-     * Constructor for instantiating a thread with an abstracted middleware wrapper using a
-     * LinkedBlockingQueue. This wrapper has two separate threads for retrieving data (itself) from
+     * Constructor for instantiating a thread with an abstracted middleware wrapper that keeps only the latest
+     * received data. This wrapper has two separate threads for retrieving data (itself) from
      * middleware and processing the received data (a worker thread).
      * @param middleware, the middleware being used for creating the wrapper
      */
     public MiddlewareWrapper(Middleware middleware){
+        this(middleware, new WorkerQueue(DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_POLICY, null));
+    }
+
+    /**
+     * Constructor for instantiating a thread with an abstracted middleware wrapper using the specified queue.
+     * @param middleware, the middleware being used for creating the wrapper
+     * @param queue, the queue in which received data waits for processing
+     */
+    public MiddlewareWrapper(Middleware middleware, WorkerQueue queue){
+        this(middleware, queue, 1, null);
+    }
+
+    /**
+     * Constructor for instantiating an abstracted middleware wrapper that processes data with a WorkerPool.
+     * @param middleware, the middleware being used for creating the wrapper
+     * @param queue, the queue in which received data waits for processing, see WorkerPool
+     * @param threads, the number of threads that call processData()
+     * @param partitionKey, if not null, data with the same key is processed in order, see WorkerPool
+     */
+    public MiddlewareWrapper(Middleware middleware, WorkerQueue queue, int threads, KeyExtractor partitionKey){
         this.middleware = middleware;
         this.mapper = new ObjectMapper();
-        middleware.addListener(this);
-        logger.debug("Listener created");
-        this.queue = new LinkedBlockingQueue<>();
-        new Thread(this).start();
-
+        this.queue = queue;
+        if(threads > 1){
+            this.pool = new WorkerPool(threads, partitionKey, queue, this);
+        }
+        start();
     }
 
     /**
@@ -63,10 +106,8 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
         GenericMiddlewareLoader gml = new GenericMiddlewareLoader(ps.getProperty("middleware"), ps);
         this.middleware = gml.load();
         this.mapper = new ObjectMapper();
-        middleware.addListener(this);
-        logger.debug("Listener created");
-        this.queue = new LinkedBlockingQueue<>();
-        new Thread(this).start();
+        initWorker(gml.getProperties());
+        start();
     }
 
 
@@ -89,10 +130,29 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
         GenericMiddlewareLoader gml = new GenericMiddlewareLoader(ps.getProperty("middleware"), ps);
         this.middleware = gml.load();
         this.mapper = new ObjectMapper();
+        initWorker(gml.getProperties());
+        start();
+    }
+
+    /** Creates the queue and, if configured, the WorkerPool from the properties */
+    private void initWorker(Properties ps){
+        if(WorkerPool.isPartitioned(ps)){
+            this.queue = WorkerQueue.fromProperties(ps, DEFAULT_PARTITIONED_QUEUE_CAPACITY, DEFAULT_PARTITIONED_QUEUE_POLICY);
+        } else {
+            this.queue = WorkerQueue.fromProperties(ps, DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_POLICY);
+        }
+        this.pool = WorkerPool.fromProperties(ps, queue, this);
+    }
+
+    /** Starts listening to the middleware, and processing the received data */
+    private void start(){
         middleware.addListener(this);
         logger.debug("Listener created");
-        this.queue = new LinkedBlockingQueue<>();
-        new Thread(this).start();
+        if(pool != null){
+            pool.start();
+        } else {
+            new Thread(this).start();
+        }
     }
 
     /**
@@ -102,9 +162,21 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
      */
     public abstract void processData(JsonNode jn);
 
+    /**
+     * Adds data to the queue. If the queue is full and its policy is QueuePolicy.BLOCK, this waits until there is room.
+     */
     @Override
     public void addDataToQueue(JsonNode jn) {
-        queue.add(jn);
+        if(pool != null){
+            pool.addDataToQueue(jn);
+            return;
+        }
+        try {
+            queue.put(jn);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while queueing data, data dropped");
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -113,7 +185,9 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
         while(running){
             try {
                 JsonNode jn = queue.take();
+                long start = System.nanoTime();
                 processData(jn);
+                queue.getMetrics().recordProcessed(System.nanoTime() - start);
             } catch (InterruptedException e) {
                 // TODO Auto-generated catch block
                 e.printStackTrace();
@@ -143,6 +217,21 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
         return mapper.createObjectNode();
     }
 
+    /**
+     * @return the metrics of the queue and the processing time of processData(); with a partitioned WorkerPool,
+     * a snapshot of those of all partitions combined, see WorkerPool.getCombinedMetrics()
+     */
+    public WorkerMetrics getMetrics() {
+        return pool != null ? pool.getCombinedMetrics() : queue.getMetrics();
+    }
+
+    /**
+     * @return the WorkerPool that processes the data, or null if it is processed by a single thread
+     */
+    public WorkerPool getWorkerPool() {
+        return pool;
+    }
+
     /**
      * Returns if the middleware is created and connected
      * @return true if connected, false if not
@@ -153,9 +242,8 @@ public abstract class MiddlewareWrapper implements Worker, MiddlewareListener{
 
 
     public void receiveData(JsonNode jn){
-        logger.debug("Received data: {}", jn.toString());
-        queue.clear();
-        queue.add(jn);
+        logger.debug("Received data: {}", jn);
+        addDataToQueue(jn);
     }
 
     /**
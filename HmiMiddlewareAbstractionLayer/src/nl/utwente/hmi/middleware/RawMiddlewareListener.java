@@ -0,0 +1,19 @@
+package nl.utwente.hmi.middleware;
+
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
+
+/**
+ * A MiddlewareListener that accepts received messages before they are parsed.
+ * Middlewares that support this call receiveRaw() instead of receiveData(), so the listener decides whether and how the message is parsed:
+ * as JsonNode with RawJsonMessage.getJsonNode(), with a streaming parser, or not at all (e.g. when forwarding it to another middleware).
+ * Middlewares that do not support this treat it as a normal MiddlewareListener, and call receiveData().
+ */
+public interface RawMiddlewareListener extends MiddlewareListener {
+
+	/**
+	 * Callback method which is called by the Middleware when a new data package arrives
+	 * @param msg the received data; only valid during this call, see RawJsonMessage
+	 */
+	public void receiveRaw(RawJsonMessage msg);
+
+}
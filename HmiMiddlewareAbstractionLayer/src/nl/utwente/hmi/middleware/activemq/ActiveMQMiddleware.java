@@ -1,6 +1,5 @@
 package nl.utwente.hmi.middleware.activemq;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,12 +23,11 @@ import javax.jms.Session;
 import javax.jms.TextMessage;
 import javax.jms.Topic;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import nl.utwente.hmi.middleware.Middleware;
 import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 import org.apache.activemq.ActiveMQConnection;
 import org.apache.activemq.ActiveMQConnectionFactory;
 
@@ -123,25 +121,10 @@ public class ActiveMQMiddleware implements Middleware,  MessageListener {
                 logger.debug("Got message on topic {}: {}", iTopic, textMessage.getText());	
                 String jsonString = textMessage.getText();
                 
-                //parse json string and create JsonObject
-                ObjectMapper mapper = new ObjectMapper();
-                
-                try {
-                    JsonNode jn = mapper.readTree(jsonString);
-                    logger.debug("Transformed to json object: {}", jn.toString());
-                    
-                    if(jn != null){
-                        for(MiddlewareListener ml : listeners){
-                            ml.receiveData(jn);
-                        }
-                    }
-                } catch (JsonProcessingException e) {
-                    logger.warn("Error while parsing JSON string \"{}\": {}", jsonString, e.getMessage());
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
+                //the json string is parsed once, when the first listener needs it
+                RawJsonMessage rawMsg = new RawJsonMessage(jsonString);
+                for(MiddlewareListener ml : listeners){
+                    rawMsg.deliverTo(ml);
                 }
             }
             else
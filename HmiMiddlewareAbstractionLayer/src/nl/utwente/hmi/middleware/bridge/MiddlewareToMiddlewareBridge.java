@@ -2,8 +2,10 @@ package nl.utwente.hmi.middleware.bridge;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import nl.utwente.hmi.middleware.BinaryMiddleware;
 import nl.utwente.hmi.middleware.Middleware;
-import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.RawMiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 
 /**
  * Creates a bridge between two middlewares, forwarding data packets from one to the other
@@ -29,11 +31,13 @@ public class MiddlewareToMiddlewareBridge {
 	}
 	
 	/**
-	 * A simple implementation of a MiddlewareListener that can send data packets on to a different middleware
+	 * A simple implementation of a MiddlewareListener that can send data packets on to a different middleware.
+	 * If the receiving middleware supports raw listeners, data is forwarded as received, without parsing and serializing it again
+	 * (so it is not validated either). Multi-line JSON is still reformatted when forwarded to a text based middleware.
 	 * @author davisond
 	 *
 	 */
-	private class DataForwarder implements MiddlewareListener {
+	private class DataForwarder implements RawMiddlewareListener {
 		private Middleware otherMiddleware;
 
 		public DataForwarder(Middleware otherMiddleware){
@@ -44,6 +48,24 @@ public class MiddlewareToMiddlewareBridge {
 		public void receiveData(JsonNode jn) {
 			otherMiddleware.sendData(jn);
 		}
+
+		@Override
+		public void receiveRaw(RawJsonMessage msg) {
+			if(otherMiddleware instanceof BinaryMiddleware){
+				((BinaryMiddleware) otherMiddleware).sendData(msg.getBytes());
+				return;
+			}
+			String text = msg.getText();
+			if(text.indexOf('\n') < 0 && text.indexOf('\r') < 0){
+				otherMiddleware.sendDataRaw(text);
+			} else {
+				// line based middlewares (e.g. TCPIP) can not send multi-line JSON as is
+				JsonNode jn = msg.getJsonNode();
+				if(jn != null){
+					otherMiddleware.sendData(jn);
+				}
+			}
+		}
 	}
 	
 }
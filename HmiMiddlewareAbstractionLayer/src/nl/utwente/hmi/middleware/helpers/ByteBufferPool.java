@@ -0,0 +1,122 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe pool of ByteBuffers, to avoid allocating (and collecting) a buffer for every received or sent message.
+ * Direct buffers are preferred for channel I/O, as the channel would otherwise copy heap buffers into a temporary direct buffer.
+ * <p>
+ * Buffers come in size classes: powers of two from minBufferSize, with maxBufferSize as the largest class. acquire(size) returns
+ * a buffer of the smallest class that fits size, so that small messages do not hold on to buffers of maxBufferSize bytes.
+ * When a class is empty, acquire() allocates a new buffer; release() keeps at most maxPooledBytes worth of buffers per class,
+ * others are left to the GC.
+ */
+public final class ByteBufferPool {
+
+	/** The pooled buffers of one size */
+	private static final class SizeClass {
+		private final int bufferSize;
+		private final int maxPooled;
+		private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicInteger pooled = new AtomicInteger();
+
+		SizeClass(int bufferSize, int maxPooled) {
+			this.bufferSize = bufferSize;
+			this.maxPooled = maxPooled;
+		}
+	}
+
+	private final int maxBufferSize;
+	private final boolean direct;
+	private final SizeClass[] classes;
+	private final AtomicLong allocated = new AtomicLong();
+
+	/**
+	 * @param minBufferSize capacity of the smallest buffers, should be a power of two
+	 * @param maxBufferSize capacity of the largest buffers
+	 * @param maxPooledBytes maximum total capacity of the released buffers that are kept for reuse, per size class
+	 * @param direct whether to allocate direct buffers
+	 */
+	public ByteBufferPool(int minBufferSize, int maxBufferSize, long maxPooledBytes, boolean direct) {
+		if(minBufferSize <= 0 || maxBufferSize < minBufferSize){
+			throw new IllegalArgumentException("Invalid buffer sizes " + minBufferSize + ", " + maxBufferSize);
+		}
+		this.maxBufferSize = maxBufferSize;
+		this.direct = direct;
+		int n = 1;
+		while ((long) minBufferSize << (n - 1) < maxBufferSize) {
+			n++;
+		}
+		classes = new SizeClass[n];
+		for(int i = 0; i < n; i++){
+			int size = i == n - 1 ? maxBufferSize : minBufferSize << i;
+			classes[i] = new SizeClass(size, (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxPooledBytes / size)));
+		}
+	}
+
+	/** @return the class of the smallest buffers of at least size bytes, or null if size > maxBufferSize */
+	private SizeClass getSizeClass(int size) {
+		for(SizeClass sc : classes){
+			if(sc.bufferSize >= size) return sc;
+		}
+		return null;
+	}
+
+	/** @return a cleared buffer of getMaxBufferSize() bytes, from the pool if available */
+	public ByteBuffer acquire() {
+		return acquire(maxBufferSize);
+	}
+
+	/**
+	 * @return a cleared buffer with a capacity of at least size bytes, from the pool if available
+	 * @throws IllegalArgumentException if size > getMaxBufferSize()
+	 */
+	public ByteBuffer acquire(int size) {
+		SizeClass sc = getSizeClass(size);
+		if(sc == null){
+			throw new IllegalArgumentException("Requested buffer of " + size + " bytes, maximum is " + maxBufferSize);
+		}
+		ByteBuffer buffer = sc.pool.poll();
+		if(buffer == null){
+			allocated.incrementAndGet();
+			return direct ? ByteBuffer.allocateDirect(sc.bufferSize) : ByteBuffer.allocate(sc.bufferSize);
+		}
+		sc.pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/** Returns a buffer obtained from acquire() to the pool; it must not be used by the caller afterwards */
+	public void release(ByteBuffer buffer) {
+		SizeClass sc = getSizeClass(buffer.capacity());
+		if(sc == null || sc.bufferSize != buffer.capacity() || buffer.isDirect() != direct){
+			throw new IllegalArgumentException("Buffer was not acquired from this pool");
+		}
+		if(sc.pooled.incrementAndGet() <= sc.maxPooled){
+			sc.pool.add(buffer);
+		} else {
+			sc.pooled.decrementAndGet();
+		}
+	}
+
+	public int getMaxBufferSize() {
+		return maxBufferSize;
+	}
+
+	/** @return the number of buffers currently available in the pool */
+	public int getPooled() {
+		int pooled = 0;
+		for(SizeClass sc : classes){
+			pooled += sc.pooled.get();
+		}
+		return pooled;
+	}
+
+	/** @return the total number of buffers allocated by this pool */
+	public long getAllocated() {
+		return allocated.get();
+	}
+}
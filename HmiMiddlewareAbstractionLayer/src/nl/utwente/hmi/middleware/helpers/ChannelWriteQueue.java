@@ -0,0 +1,110 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+
+/**
+ * Queue of messages to be written to a single non-blocking channel, as used by the selector based middlewares for every client.
+ * Messages are written with gathering writes of up to MAX_WRITE_BATCH buffers. The number of queued but unwritten bytes is bounded
+ * by maxPendingBytes: offer() refuses a message that would exceed it, so that the middleware can drop a client that does not keep up.
+ * Each message has an item (e.g. for latency measurement), which is passed to the Listener once the message is completely written.
+ * Not thread-safe: to be used by the selector thread only.
+ */
+public final class ChannelWriteQueue<T> {
+
+	/** Default maximum number of bytes queued for a single client */
+	public static final int DEFAULT_MAX_PENDING_BYTES = 8 * 1024 * 1024;
+
+	/** Maximum number of messages that are written to a channel in one gathering write */
+	public static final int MAX_WRITE_BATCH = 64;
+
+	/** Notified when a queued message has been written completely */
+	public interface Listener<T> {
+		void written(T item);
+	}
+
+	private final long maxPendingBytes;
+	private final Listener<T> listener;
+	private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+	private final ArrayDeque<Object> items = new ArrayDeque<Object>(); // NO_ITEM for null, as ArrayDeque does not accept null
+	private final ByteBuffer[] writeBatch = new ByteBuffer[MAX_WRITE_BATCH];
+	private long pendingBytes = 0;
+
+	private static final Object NO_ITEM = new Object();
+
+	/**
+	 * @param maxPendingBytes maximum number of queued, unwritten, bytes
+	 * @param listener notified of written messages, or null
+	 */
+	public ChannelWriteQueue(long maxPendingBytes, Listener<T> listener) {
+		this.maxPendingBytes = maxPendingBytes;
+		this.listener = listener;
+	}
+
+	/**
+	 * Queues the remaining bytes of data, without copying them; the position of data is not modified, so the same buffer can be
+	 * queued for several channels.
+	 * @return false, without queueing, if this would exceed maxPendingBytes
+	 */
+	public boolean offer(ByteBuffer data, T item) {
+		if(pendingBytes + data.remaining() > maxPendingBytes){
+			return false;
+		}
+		buffers.add(data.duplicate());
+		items.add(item == null ? NO_ITEM : item);
+		pendingBytes += data.remaining();
+		return true;
+	}
+
+	public boolean isEmpty() {
+		return buffers.isEmpty();
+	}
+
+	/** @return the number of queued, unwritten, bytes */
+	public long getPendingBytes() {
+		return pendingBytes;
+	}
+
+	/**
+	 * Writes as many queued messages as the channel accepts.
+	 * @return true if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean flush(GatheringByteChannel channel) throws IOException {
+		while(!buffers.isEmpty()){
+			int n = 0;
+			for(ByteBuffer buf : buffers){
+				if(n == MAX_WRITE_BATCH) break;
+				writeBatch[n++] = buf;
+			}
+			long written = channel.write(writeBatch, 0, n);
+			pendingBytes -= written;
+			while(!buffers.isEmpty() && !buffers.peek().hasRemaining()){
+				buffers.poll();
+				Object item = items.poll();
+				if(listener != null){
+					listener.written(item == NO_ITEM ? null : (T) item);
+				}
+			}
+			if(written == 0) break;
+		}
+		return buffers.isEmpty();
+	}
+
+	/**
+	 * Writes queued messages to the channel of key right away, unless the key is already waiting until the channel is writable.
+	 * When not all messages could be written, the interest set of key is set to writeInterestOps, which should include OP_WRITE;
+	 * the selector thread should then call flush when the channel is writable.
+	 */
+	public void flushOrAwaitWritable(SelectionKey key, int writeInterestOps) throws IOException {
+		if(buffers.isEmpty() || !key.isValid() || (key.interestOps() & SelectionKey.OP_WRITE) != 0){
+			return;
+		}
+		if(!flush((GatheringByteChannel) key.channel())){
+			key.interestOps(writeInterestOps);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The JSON codec shared by all middlewares. Creating an ObjectMapper is expensive (it builds its serializer and deserializer
+ * caches on first use), so instead of a mapper per message, this class holds a single, pre-configured ObjectReader and ObjectWriter.
+ * Both are immutable and thread-safe, so they can be used from any networking or listener thread.
+ */
+public final class JsonCodec {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static final ObjectReader READER = MAPPER.readerFor(JsonNode.class);
+
+	private static final ObjectWriter WRITER = MAPPER.writer();
+
+	private JsonCodec() {
+	}
+
+	/** @return the shared reader, for reading JsonNodes */
+	public static ObjectReader getReader() {
+		return READER;
+	}
+
+	/** @return the shared writer */
+	public static ObjectWriter getWriter() {
+		return WRITER;
+	}
+
+	/** @return the factory of the underlying mapper, for streaming (JsonParser/JsonGenerator) access */
+	public static JsonFactory getFactory() {
+		return MAPPER.getFactory();
+	}
+
+	/** @return a new, empty ObjectNode */
+	public static ObjectNode createObjectNode() {
+		return JsonNodeFactory.instance.objectNode();
+	}
+
+	/**
+	 * @return the JsonNode parsed from json, or null if json is empty or contains only whitespace
+	 * @throws IOException (JsonProcessingException) if json is not valid JSON
+	 */
+	public static JsonNode parse(String json) throws IOException {
+		if(json.trim().isEmpty()){
+			return null;
+		}
+		return READER.readValue(json);
+	}
+
+	/**
+	 * Parses the UTF-8 encoded JSON in bytes[offset..offset+length], without copying it.
+	 * @return the parsed JsonNode, or null if the range is empty or contains only whitespace
+	 * @throws IOException (JsonProcessingException) if the bytes are not valid JSON
+	 */
+	public static JsonNode parse(byte[] bytes, int offset, int length) throws IOException {
+		if(isBlank(bytes, offset, length)){
+			return null;
+		}
+		return READER.readValue(bytes, offset, length);
+	}
+
+	private static boolean isBlank(byte[] bytes, int offset, int length) {
+		for(int i = offset; i < offset + length; i++){
+			if(bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '\n' && bytes[i] != '\r'){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** @return a streaming parser on json; the caller should close it */
+	public static JsonParser createParser(String json) throws IOException {
+		return MAPPER.getFactory().createParser(json);
+	}
+
+	/** @return a streaming parser on the UTF-8 encoded JSON in bytes[offset..offset+length]; the caller should close it */
+	public static JsonParser createParser(byte[] bytes, int offset, int length) throws IOException {
+		return MAPPER.getFactory().createParser(bytes, offset, length);
+	}
+
+	/** @return jn serialized as UTF-8 encoded JSON */
+	public static byte[] toBytes(JsonNode jn) throws JsonProcessingException {
+		return WRITER.writeValueAsBytes(jn);
+	}
+
+	/** @return jn serialized as JSON String */
+	public static String toString(JsonNode jn) throws JsonProcessingException {
+		return WRITER.writeValueAsString(jn);
+	}
+
+	/** @return the UTF-8 encoding of a JSON String, as sent by the text based middlewares */
+	public static byte[] encode(String json) {
+		return json.getBytes(StandardCharsets.UTF_8);
+	}
+}
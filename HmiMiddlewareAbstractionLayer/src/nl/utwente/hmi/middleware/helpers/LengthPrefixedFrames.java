@@ -0,0 +1,128 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Length-prefixed framing of binary messages over a byte stream (e.g. a TCP SocketChannel) or in datagrams.
+ * Each frame consists of a 4 byte big-endian length, followed by that many bytes of payload.
+ * A frame with an empty payload can be used as keep-alive.
+ */
+public final class LengthPrefixedFrames {
+
+	/** Size of the length prefix, in bytes */
+	public static final int HEADER_SIZE = 4;
+
+	/** Default upper limit on the payload size of received frames, protecting against corrupt length prefixes */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	private LengthPrefixedFrames() {
+	}
+
+	/**
+	 * Encodes the bytes between position and limit of payload as a frame. The position of payload is not modified.
+	 * @return a new buffer containing the frame, ready for writing to a channel
+	 */
+	public static ByteBuffer encode(ByteBuffer payload) {
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.remaining());
+		frame.putInt(payload.remaining());
+		frame.put(payload.duplicate());
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Decodes frames from data that arrives in arbitrary chunks, as from a stream. Not thread-safe.
+	 * Data is appended either by reading from a channel with readFrom(), or with put();
+	 * after that, nextFrame() returns the complete frames one by one. The returned frames are views on the internal buffer,
+	 * which are only valid until the next call to readFrom(), put() or nextFrame().
+	 */
+	public static final class Decoder {
+		private final int maxFrameSize;
+
+		/** contains the received data from index readIndex up to its position */
+		private ByteBuffer buffer;
+
+		private int readIndex = 0;
+
+		public Decoder() {
+			this(8192, DEFAULT_MAX_FRAME_SIZE);
+		}
+
+		/**
+		 * @param initialCapacity initial size of the receive buffer, which grows if larger frames arrive
+		 * @param maxFrameSize largest payload size that is accepted
+		 */
+		public Decoder(int initialCapacity, int maxFrameSize) {
+			this.buffer = ByteBuffer.allocate(Math.max(initialCapacity, HEADER_SIZE));
+			this.maxFrameSize = maxFrameSize;
+		}
+
+		/**
+		 * Reads as many bytes from channel as are available and fit in the buffer.
+		 * @return the number of bytes read, or -1 if the channel has reached end-of-stream
+		 */
+		public int readFrom(ReadableByteChannel channel) throws IOException {
+			compact();
+			return channel.read(buffer);
+		}
+
+		/**
+		 * Appends the remaining bytes of data, growing the buffer if needed.
+		 */
+		public void put(ByteBuffer data) {
+			compact();
+			ensureFree(data.remaining());
+			buffer.put(data);
+		}
+
+		/**
+		 * @return the payload of the next complete frame, or null if no complete frame has been received yet
+		 * @throws ProtocolException if the length prefix of the next frame is negative or too large
+		 */
+		public ByteBuffer nextFrame() throws ProtocolException {
+			int available = buffer.position() - readIndex;
+			if(available < HEADER_SIZE){
+				return null;
+			}
+			int length = buffer.getInt(readIndex);
+			if(length < 0 || length > maxFrameSize){
+				throw new ProtocolException("Invalid frame length " + length);
+			}
+			if(available < HEADER_SIZE + length){
+				// make room for the rest of this frame for the next read
+				if(buffer.capacity() - readIndex < HEADER_SIZE + length){
+					compact();
+					ensureFree(HEADER_SIZE + length - available);
+				}
+				return null;
+			}
+			ByteBuffer frame = buffer.duplicate();
+			frame.limit(readIndex + HEADER_SIZE + length);
+			frame.position(readIndex + HEADER_SIZE);
+			readIndex += HEADER_SIZE + length;
+			return frame.slice();
+		}
+
+		/** Moves the unprocessed data to the start of the buffer */
+		private void compact() {
+			if(readIndex > 0){
+				buffer.limit(buffer.position());
+				buffer.position(readIndex);
+				buffer.compact();
+				readIndex = 0;
+			}
+		}
+
+		private void ensureFree(int bytes) {
+			if(buffer.remaining() < bytes){
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
+		}
+	}
+}
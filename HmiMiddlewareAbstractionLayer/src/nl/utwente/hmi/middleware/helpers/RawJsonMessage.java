@@ -0,0 +1,113 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.RawMiddlewareListener;
+
+/**
+ * A received JSON message, as String or as UTF-8 encoded bytes, that is parsed only when needed.
+ * The JsonNode is parsed at most once, and shared by all listeners; the conversions between String and bytes are also done at most once.
+ * A middleware creates one RawJsonMessage per received message, and hands it to each of its listeners with deliverTo().
+ * The message may wrap the receive buffer of the middleware, so it is only valid during the listener callback:
+ * listeners that keep the data should keep the result of getText() or getJsonNode(). Not thread-safe.
+ */
+public final class RawJsonMessage {
+	private static Logger logger = LoggerFactory.getLogger(RawJsonMessage.class.getName());
+
+	private String text;
+	private byte[] bytes;
+	private int offset;
+	private int length;
+
+	private JsonNode jsonNode;
+	private boolean parsed = false;
+
+	/** A message received as String */
+	public RawJsonMessage(String text) {
+		this.text = text;
+	}
+
+	/** A message received as UTF-8 encoded bytes[offset..offset+length], the bytes are not copied */
+	public RawJsonMessage(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/** A message received as the UTF-8 encoded bytes between position and limit of buffer; the backing array is used if there is one */
+	public static RawJsonMessage wrap(ByteBuffer buffer) {
+		if(buffer.hasArray()){
+			return new RawJsonMessage(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		byte[] copy = new byte[buffer.remaining()];
+		buffer.duplicate().get(copy);
+		return new RawJsonMessage(copy, 0, copy.length);
+	}
+
+	/** @return the message as String */
+	public String getText() {
+		if(text == null){
+			text = new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+		return text;
+	}
+
+	/** @return a read-only view on the UTF-8 encoded message */
+	public ByteBuffer getBytes() {
+		if(bytes == null){
+			bytes = JsonCodec.encode(text);
+			offset = 0;
+			length = bytes.length;
+		}
+		return ByteBuffer.wrap(bytes, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Parses the message on the first call.
+	 * @return the parsed message, or null if it is not valid JSON (which is logged once)
+	 */
+	public JsonNode getJsonNode() {
+		if(!parsed){
+			parsed = true;
+			try {
+				jsonNode = bytes != null ? JsonCodec.parse(bytes, offset, length) : JsonCodec.parse(text);
+			} catch (IOException e) { // JsonProcessingException
+				logger.warn("Error while parsing JSON string \"{}\": {}", getText(), e.getMessage());
+			}
+		}
+		return jsonNode;
+	}
+
+	/** @return a new streaming parser on the message, without building a JsonNode; the caller should close it */
+	public JsonParser createParser() throws IOException {
+		return bytes != null ? JsonCodec.createParser(bytes, offset, length) : JsonCodec.createParser(text);
+	}
+
+	/**
+	 * Hands this message to ml: as raw message if it is a RawMiddlewareListener, otherwise parsed (if valid) with receiveData()
+	 */
+	public void deliverTo(MiddlewareListener ml) {
+		if(ml instanceof RawMiddlewareListener){
+			((RawMiddlewareListener) ml).receiveRaw(this);
+			return;
+		}
+		JsonNode jn = getJsonNode();
+		if(jn != null){
+			ml.receiveData(jn);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getText();
+	}
+}
@@ -0,0 +1,70 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counter of the messages passing through one direction of a middleware: number of messages, bytes and latency.
+ * What the latency covers is defined by the middleware, e.g. from sendData() until the message is written to the socket.
+ */
+public final class TrafficCounter {
+
+	private final AtomicLong messages = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+	private volatile long startNanos = System.nanoTime();
+
+	/**
+	 * Records a message
+	 * @param size size of the message in bytes
+	 * @param latencyNanos latency of the message in nanoseconds
+	 */
+	public void record(int size, long latencyNanos) {
+		messages.incrementAndGet();
+		bytes.addAndGet(size);
+		totalLatencyNanos.addAndGet(latencyNanos);
+		long max;
+		while (latencyNanos > (max = maxLatencyNanos.get()) && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+			// retry
+		}
+	}
+
+	/** Restarts counting from 0 */
+	public void reset() {
+		messages.set(0);
+		bytes.set(0);
+		totalLatencyNanos.set(0);
+		maxLatencyNanos.set(0);
+		startNanos = System.nanoTime();
+	}
+
+	public long getMessages() {
+		return messages.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getMaxLatencyNanos() {
+		return maxLatencyNanos.get();
+	}
+
+	public long getMeanLatencyNanos() {
+		long n = messages.get();
+		return n == 0 ? 0 : totalLatencyNanos.get() / n;
+	}
+
+	/** @return the average number of messages per second since construction or the last reset */
+	public double getMessagesPerSecond() {
+		long elapsed = System.nanoTime() - startNanos;
+		return elapsed <= 0 ? 0 : messages.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d msgs, %d bytes, %.1f msgs/s, latency mean %.3f ms, max %.3f ms", getMessages(), getBytes(),
+				getMessagesPerSecond(), getMeanLatencyNanos() / 1e6, getMaxLatencyNanos() / 1e6);
+	}
+}
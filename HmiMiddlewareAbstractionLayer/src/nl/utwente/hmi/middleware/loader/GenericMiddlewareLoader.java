@@ -85,6 +85,14 @@ public class GenericMiddlewareLoader {
     	
     }
     
+    /**
+     * @return the properties with which the Middleware is loaded: the global properties, overridden by the requested ones
+     */
+    public Properties getProperties()
+    {
+    	return actualProps;
+    }
+    
     /**
      * Static loader function (WILL NOT USE GLOBAL PROPS!)
      * @author: jankolkmeier
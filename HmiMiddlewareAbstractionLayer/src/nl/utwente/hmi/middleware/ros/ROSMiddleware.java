@@ -1,10 +1,9 @@
 package nl.utwente.hmi.middleware.ros;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.utwente.hmi.middleware.Middleware;
 import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ros.Publisher;
@@ -14,7 +13,6 @@ import ros.SubscriptionRequestMsg;
 import ros.msgs.std_msgs.PrimitiveMsg;
 import ros.tools.MessageUnpacker;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -64,25 +62,10 @@ public class ROSMiddleware  implements Middleware {
     }
 
     public void convertMsg(String jsonString) {
-        //parse json string and create JsonObject
-        ObjectMapper mapper = new ObjectMapper();
-
-        try {
-            JsonNode jn = mapper.readTree(jsonString);
-            logger.debug("Transformed to json object: {}", jn.toString());
-
-            if(jn != null){
-                for(MiddlewareListener ml : listeners){
-                    ml.receiveData(jn);
-                }
-            }
-        } catch (JsonProcessingException e) {
-            logger.warn("Error while parsing JSON string \"{}\": {}", jsonString, e.getMessage());
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        //the json string is parsed once, when the first listener needs it
+        RawJsonMessage msg = new RawJsonMessage(jsonString);
+        for(MiddlewareListener ml : listeners){
+            msg.deliverTo(ml);
         }
 
     }
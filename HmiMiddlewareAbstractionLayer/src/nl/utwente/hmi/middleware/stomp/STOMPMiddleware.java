@@ -1,6 +1,5 @@
 package nl.utwente.hmi.middleware.stomp;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -8,14 +7,13 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import pk.aamir.stompj.Message;
 import pk.aamir.stompj.MessageHandler;
 import nl.utwente.hmi.middleware.Middleware;
 import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 
 /**
  * Implementation for the STOMP middleware.
@@ -82,25 +80,10 @@ public class STOMPMiddleware implements Middleware, MessageHandler {
 		logger.debug("Got message on topic {}: {}", iTopic, msg.getContentAsString());	
 		String jsonString = msg.getContentAsString();
 		
-		//parse json string and create JsonObject
-		ObjectMapper mapper = new ObjectMapper();
-		
-		try {
-			JsonNode jn = mapper.readTree(jsonString);
-			logger.debug("Transformed to json object: {}", jn.toString());
-			
-			if(jn != null){
-				for(MiddlewareListener ml : listeners){
-					ml.receiveData(jn);
-				}
-			}
-		} catch (JsonProcessingException e) {
-			logger.warn("Error while parsing JSON string \"{}\": {}", jsonString, e.getMessage());
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		//the json string is parsed once, when the first listener needs it
+		RawJsonMessage rawMsg = new RawJsonMessage(jsonString);
+		for(MiddlewareListener ml : listeners){
+			rawMsg.deliverTo(ml);
 		}
 		
 	}
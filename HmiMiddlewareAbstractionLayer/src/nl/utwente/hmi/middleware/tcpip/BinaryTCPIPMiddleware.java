@@ -0,0 +1,275 @@
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.utwente.hmi.middleware.AbstractBinaryMiddleware;
+import nl.utwente.hmi.middleware.helpers.ChannelWriteQueue;
+import nl.utwente.hmi.middleware.helpers.LengthPrefixedFrames;
+
+/**
+ * Implements a BinaryMiddleware over TCP/IP, using length-prefixed frames (see LengthPrefixedFrames) in both directions.
+ * The middleware listens on a single port; any number of clients can connect, and each connection is used for both receiving and sending.
+ * Outgoing messages are sent to all connected clients: each message is framed once, and the frame is shared by all client write queues.
+ * All networking is done by a single thread with a Selector on non-blocking channels.
+ * Listeners are notified on this thread, so they should hand off expensive processing (as the MiddlewareWrapper does).
+ * A client whose unsent data exceeds MAX_PENDING_BYTES is considered too slow, and is dropped.
+ */
+public final class BinaryTCPIPMiddleware extends AbstractBinaryMiddleware implements Runnable
+{
+	private static Logger logger = LoggerFactory.getLogger(BinaryTCPIPMiddleware.class.getName());
+
+	/** Maximum number of bytes queued for a single client */
+	public static final int MAX_PENDING_BYTES = ChannelWriteQueue.DEFAULT_MAX_PENDING_BYTES;
+
+	private final int port;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	/** Frames to be sent to all clients, handed from the sending threads to the selector thread */
+	private final ConcurrentLinkedQueue<ByteBuffer> sendQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/** Connected clients, only accessed by the selector thread */
+	private final List<Client> clients = new ArrayList<Client>();
+
+	private volatile int clientCount = 0;
+
+	private volatile boolean running = true;
+
+	/** A connected client, with its receive decoder and its queue of frames to send. */
+	private static final class Client
+	{
+		private final SocketChannel channel;
+		private final LengthPrefixedFrames.Decoder decoder = new LengthPrefixedFrames.Decoder();
+		private final ChannelWriteQueue<Void> writeQueue = new ChannelWriteQueue<Void>(MAX_PENDING_BYTES, null);
+
+		Client(SocketChannel channel)
+		{
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * Opens the server socket, and starts the networking thread.
+	 * @param port the port on which the middleware listens for clients
+	 * @throws IOException if the server socket can not be opened
+	 */
+	public BinaryTCPIPMiddleware(int port) throws IOException
+	{
+		this.port = port;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		try
+		{
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.socket().bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (IOException e)
+		{
+			serverChannel.close();
+			selector.close();
+			throw e;
+		}
+		Thread thread = new Thread(this, "BinaryTCPIPMiddleware:" + port);
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("Listening for clients on port {}", port);
+	}
+
+	public int getPort()
+	{
+		return port;
+	}
+
+	/** @return the number of connected clients */
+	public int getClientCount()
+	{
+		return clientCount;
+	}
+
+	/**
+	 * Closes all connections and stops the networking thread. May return before the connections are closed.
+	 */
+	public void close()
+	{
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void sendData(ByteBuffer data)
+	{
+		if (clientCount == 0)
+		{
+			logger.debug("Dropped message, as no client is connected");
+			return;
+		}
+		sendQueue.add(LengthPrefixedFrames.encode(data));
+		selector.wakeup();
+	}
+
+	/** The networking loop */
+	@Override
+	public void run()
+	{
+		try
+		{
+			while (running)
+			{
+				selector.select();
+				distributeSendQueue();
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext())
+				{
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable())
+					{
+						accept();
+						continue;
+					}
+					Client client = (Client) key.attachment();
+					try
+					{
+						if (key.isReadable())
+						{
+							read(client);
+						}
+						if (key.isValid() && key.isWritable() && client.writeQueue.flush(client.channel))
+						{
+							key.interestOps(SelectionKey.OP_READ);
+						}
+					}
+					catch (IOException e)
+					{
+						dropClient(client, e.getMessage());
+					}
+				}
+			}
+		}
+		catch (IOException | ClosedSelectorException e)
+		{
+			logger.error("Networking failed, shutting down: {}", e.getMessage());
+		}
+		finally
+		{
+			shutdown();
+		}
+	}
+
+	private void accept() throws IOException
+	{
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) return;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Client client = new Client(channel);
+		channel.register(selector, SelectionKey.OP_READ, client);
+		clients.add(client);
+		clientCount = clients.size();
+		logger.info("Client connected from {}", channel.socket().getRemoteSocketAddress());
+	}
+
+	private void read(Client client) throws IOException
+	{
+		int read;
+		do
+		{
+			read = client.decoder.readFrom(client.channel);
+			if (read < 0)
+			{
+				dropClient(client, "connection closed by client");
+				return;
+			}
+			ByteBuffer frame;
+			while ((frame = client.decoder.nextFrame()) != null)
+			{
+				dispatch(frame);
+			}
+		}
+		while (read > 0);
+	}
+
+	/** Moves frames from the sendQueue to the write queues of all clients, and writes as much as possible right away. */
+	private void distributeSendQueue()
+	{
+		ByteBuffer frame;
+		while ((frame = sendQueue.poll()) != null)
+		{
+			for (Client client : new ArrayList<Client>(clients))
+			{
+				if (!client.writeQueue.offer(frame, null))
+				{
+					dropClient(client, "client does not keep up, " + client.writeQueue.getPendingBytes() + " bytes pending");
+				}
+			}
+		}
+		for (Client client : new ArrayList<Client>(clients))
+		{
+			try
+			{
+				SelectionKey key = client.channel.keyFor(selector);
+				if (key != null)
+				{
+					client.writeQueue.flushOrAwaitWritable(key, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			}
+			catch (IOException e)
+			{
+				dropClient(client, e.getMessage());
+			}
+		}
+	}
+
+	private void dropClient(Client client, String msg)
+	{
+		if (!clients.remove(client)) return;
+		clientCount = clients.size();
+		logger.warn("Dropping client {}: {}", client.channel.socket().getRemoteSocketAddress(), msg);
+		try
+		{
+			client.channel.close();
+		}
+		catch (IOException e)
+		{
+			logger.debug("Error closing client channel: {}", e.getMessage());
+		}
+	}
+
+	private void shutdown()
+	{
+		for (Client client : new ArrayList<Client>(clients))
+		{
+			dropClient(client, "shutdown");
+		}
+		try
+		{
+			serverChannel.close();
+			selector.close();
+		}
+		catch (IOException e)
+		{
+			logger.debug("Error closing server channel: {}", e.getMessage());
+		}
+		sendQueue.clear();
+		logger.info("Server shutdown finished");
+	}
+}
@@ -0,0 +1,53 @@
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.loader.MiddlewareLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads a BinaryTCPIPMiddleware
+ * @see BinaryTCPIPMiddleware
+ */
+public class BinaryTCPIPMiddlewareLoader implements MiddlewareLoader {
+	private static Logger logger = LoggerFactory.getLogger(BinaryTCPIPMiddlewareLoader.class.getName());
+
+	/**
+	 * This loads the BinaryTCPIPMiddleware instance given the supplied properties
+	 * @param ps contains the required property port
+	 */
+	@Override
+	public Middleware loadMiddleware(Properties ps) {
+
+		Middleware m = null;
+		int port = -1;
+		
+		for(Entry<Object, Object> entry : ps.entrySet()){
+			try{
+				if(((String)entry.getKey()).equals("port")){
+					port = Integer.parseInt(((String)entry.getValue()));
+				}
+			} catch(NumberFormatException nfe){
+				logger.error("Error loading the port specification. Please ensure it is numeric.");
+			}
+		}
+		
+		if(port >= 1 && port <= 65535){
+			try {
+				m = new BinaryTCPIPMiddleware(port);
+			} catch (IOException e) {
+				logger.error("Could not open the BinaryTCPIPMiddleware on port {}: {}", port, e.getMessage());
+			}
+		} else {
+			logger.error("Could not load the BinaryTCPIPMiddleware, need at least property: port. Please ensure it is numeric and within acceptable range [1 .. 65535]. Can be set in the global middleware props or in the load call.");
+		}
+		
+		return m;
+	}
+
+}
@@ -0,0 +1,563 @@
+package nl.utwente.hmi.middleware.tcpip;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.ChannelWriteQueue;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
+import nl.utwente.hmi.middleware.helpers.TrafficCounter;
+
+/**
+ * Event-driven implementation of the TCPIPMiddleware protocol: clients connect to the read port and send newline-terminated JSON messages;
+ * for each client, the middleware connects back to the send port on the client's address, and sends newline-terminated JSON messages over that connection.
+ * In contrast with the TCPIPMiddleware, any number of clients can be connected at the same time; outgoing messages are sent to all of them.
+ * <p>
+ * All networking is done by a single thread with a Selector on non-blocking channels, which wakes up as soon as there is data to read or send.
+ * Each wakeup, all queued outgoing messages are written, batched in gathering writes. Each message is encoded once, and shared by all clients.
+ * Received messages are handed to a dispatcher thread through a blocking queue; the dispatcher parses them and notifies the listeners.
+ * <p>
+ * Traffic counters are kept for both directions: the send latency runs from sendData() until the message is written to the socket of a client
+ * (so a message counts once for every client it is sent to), the receive latency from reading the message from the socket until all listeners are notified.
+ */
+public final class SelectorTCPIPMiddleware implements Middleware
+{
+    private static Logger logger = LoggerFactory.getLogger(SelectorTCPIPMiddleware.class.getName());
+
+    private static final int CONNECT_RETRY_WAIT = 1000;
+
+    /** Maximum number of bytes queued for a single client; clients that do not keep up are dropped */
+    public static final int MAX_PENDING_BYTES = ChannelWriteQueue.DEFAULT_MAX_PENDING_BYTES;
+
+    /** Maximum length of a received line */
+    public static final int MAX_LINE_LENGTH = 16 * 1024 * 1024;
+
+    private final int readPort;
+
+    private final int sendPort;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel readServerChannel;
+
+    private final List<MiddlewareListener> listeners = new CopyOnWriteArrayList<MiddlewareListener>();
+
+    /** Messages to send to all clients, handed from the sending threads to the selector thread */
+    private final ConcurrentLinkedQueue<Message> sendQueue = new ConcurrentLinkedQueue<Message>();
+
+    /** Received messages, handed from the selector thread to the dispatcher thread */
+    private final BlockingQueue<Message> readQueue = new LinkedBlockingQueue<Message>();
+
+    /** Clients, only accessed by the selector thread */
+    private final List<Client> clients = new ArrayList<Client>();
+
+    /** Number of clients, including those for which the sending connection is not yet established */
+    private volatile int clientCount = 0;
+
+    /** Number of clients connected in both directions */
+    private volatile int connectedClients = 0;
+
+    private volatile boolean mustshutdown = false;
+
+    private final TrafficCounter sendCounter = new TrafficCounter();
+
+    private final TrafficCounter receiveCounter = new TrafficCounter();
+
+    /** Sent or received message, with its size in bytes and the time it was queued */
+    private static final class Message
+    {
+        private final ByteBuffer data;
+        private final String text;
+        private final int size;
+        private final long queued;
+
+        Message(ByteBuffer data, String text, int size)
+        {
+            this.data = data;
+            this.text = text;
+            this.size = size;
+            this.queued = System.nanoTime();
+        }
+    }
+
+    /** Records written messages in the sendCounter */
+    private final ChannelWriteQueue.Listener<Message> sentListener = new ChannelWriteQueue.Listener<Message>()
+    {
+        @Override
+        public void written(Message msg)
+        {
+            sendCounter.record(msg.size, System.nanoTime() - msg.queued);
+        }
+    };
+
+    /** Marks the end of the readQueue */
+    private static final Message POISON = new Message(null, null, 0);
+
+    /** A client, with its incoming connection, its outgoing connection and its queue of messages to send */
+    private final class Client
+    {
+        private final SocketChannel readChannel;
+        private final InetSocketAddress sendAddress;
+        private SocketChannel sendChannel;
+        private boolean sendConnected = false;
+        private long nextConnectAttempt = 0;
+        private ByteBuffer lineBuffer = ByteBuffer.allocate(8192);
+        private int scanIndex = 0;
+        private final ChannelWriteQueue<Message> writeQueue = new ChannelWriteQueue<Message>(MAX_PENDING_BYTES, sentListener);
+
+        Client(SocketChannel readChannel)
+        {
+            this.readChannel = readChannel;
+            this.sendAddress = new InetSocketAddress(((InetSocketAddress) readChannel.socket().getRemoteSocketAddress()).getAddress(),
+                    sendPort);
+        }
+
+        void connect() throws IOException
+        {
+            nextConnectAttempt = 0;
+            logger.info("Connecting to IP: {} on port: {}", sendAddress.getAddress(), sendAddress.getPort());
+            sendChannel = SocketChannel.open();
+            sendChannel.configureBlocking(false);
+            sendChannel.socket().setTcpNoDelay(true);
+            if (sendChannel.connect(sendAddress))
+            {
+                connected();
+            }
+            else
+            {
+                sendChannel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        void finishConnect()
+        {
+            try
+            {
+                if (sendChannel.finishConnect())
+                {
+                    connected();
+                }
+            }
+            catch (IOException e)
+            {
+                logger.error("Error connecting to client feedback channel: [{}] Will try again in {} msec...", e.getMessage(), CONNECT_RETRY_WAIT);
+                closeQuietly(sendChannel);
+                sendChannel = null;
+                nextConnectAttempt = System.currentTimeMillis() + CONNECT_RETRY_WAIT;
+            }
+        }
+
+        private void connected() throws IOException
+        {
+            sendConnected = true;
+            connectedClients++;
+            sendChannel.register(selector, writeQueue.isEmpty() ? 0 : SelectionKey.OP_WRITE, this);
+            logger.info("Feedback sender connected to {}", sendAddress);
+        }
+
+        /** Reads available data, and queues all complete lines. @return false if the connection was closed by the client */
+        boolean read() throws IOException
+        {
+            while (true)
+            {
+                if (!lineBuffer.hasRemaining())
+                {
+                    if (lineBuffer.capacity() >= MAX_LINE_LENGTH)
+                    {
+                        throw new IOException("Line too long");
+                    }
+                    ByteBuffer grown = ByteBuffer.allocate(lineBuffer.capacity() * 2);
+                    lineBuffer.flip();
+                    grown.put(lineBuffer);
+                    lineBuffer = grown;
+                }
+                int read = readChannel.read(lineBuffer);
+                if (read < 0) return false;
+                if (read == 0) return true;
+                extractLines();
+            }
+        }
+
+        private void extractLines()
+        {
+            byte[] bytes = lineBuffer.array();
+            int end = lineBuffer.position();
+            int start = 0;
+            for (int i = scanIndex; i < end; i++)
+            {
+                if (bytes[i] == '\n')
+                {
+                    int lineEnd = (i > start && bytes[i - 1] == '\r') ? i - 1 : i;
+                    if (lineEnd > start)
+                    {
+                        String line = new String(bytes, start, lineEnd - start, StandardCharsets.UTF_8);
+                        logger.debug("Got message: {}", line);
+                        readQueue.add(new Message(null, line, lineEnd - start));
+                    }
+                    start = i + 1;
+                }
+            }
+            // keep the incomplete line
+            lineBuffer.flip();
+            lineBuffer.position(start);
+            lineBuffer.compact();
+            scanIndex = lineBuffer.position();
+        }
+
+        void close()
+        {
+            closeQuietly(readChannel);
+            if (sendChannel != null)
+            {
+                closeQuietly(sendChannel);
+            }
+            if (sendConnected)
+            {
+                connectedClients--;
+                sendConnected = false;
+            }
+        }
+    }
+
+    /**
+     * Opens the server socket on readPort, and starts the networking and dispatching threads.
+     * @throws IOException if the server socket can not be opened
+     */
+    public SelectorTCPIPMiddleware(int readPort, int sendPort) throws IOException
+    {
+        this.readPort = readPort;
+        this.sendPort = sendPort;
+        this.selector = Selector.open();
+        this.readServerChannel = ServerSocketChannel.open();
+        try
+        {
+            readServerChannel.socket().setReuseAddress(true);
+            readServerChannel.socket().bind(new InetSocketAddress(readPort));
+            readServerChannel.configureBlocking(false);
+            readServerChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e)
+        {
+            readServerChannel.close();
+            selector.close();
+            throw e;
+        }
+        new Thread(new Dispatcher(), "SelectorTCPIPMiddleware-dispatcher:" + readPort).start();
+        new Thread(new Networking(), "SelectorTCPIPMiddleware:" + readPort).start();
+        logger.info("Waiting for clients to connect on port {}", readPort);
+    }
+
+    public int getReadPort()
+    {
+        return readPort;
+    }
+
+    public int getSendPort()
+    {
+        return sendPort;
+    }
+
+    /** Returns true iff at least one client is connected in both directions. */
+    public boolean isConnectedToClient()
+    {
+        return connectedClients > 0;
+    }
+
+    /** @return the number of clients connected in both directions */
+    public int getClientCount()
+    {
+        return connectedClients;
+    }
+
+    /** @return the counter for messages sent to clients */
+    public TrafficCounter getSendCounter()
+    {
+        return sendCounter;
+    }
+
+    /** @return the counter for messages received from clients */
+    public TrafficCounter getReceiveCounter()
+    {
+        return receiveCounter;
+    }
+
+    /**
+     * Instigates total shutdown. May return from this method before shutdown is completed. Shutdown
+     * process will terminate all connections and threads for this server.
+     */
+    public void shutdown()
+    {
+        mustshutdown = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void sendData(JsonNode jn)
+    {
+        queueSend(jn.toString());
+    }
+
+    @Override
+    public void sendDataRaw(String data)
+    {
+        queueSend(data);
+    }
+
+    @Override
+    public void addListener(MiddlewareListener ml)
+    {
+        listeners.add(ml);
+    }
+
+    private void queueSend(String msg)
+    {
+        if (clientCount == 0)
+        {
+            logger.warn("Dropped feedback, as no client is connected!");
+            return;
+        }
+        logger.debug("Putting feedback on queue: {}", msg);
+        byte[] bytes = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+        sendQueue.add(new Message(ByteBuffer.wrap(bytes), null, bytes.length));
+        selector.wakeup();
+    }
+
+    private static void closeQuietly(SocketChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("Error closing channel: {}", e.getMessage());
+        }
+    }
+
+    /** The selector loop */
+    private class Networking implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!mustshutdown)
+                {
+                    selector.select(nextTimeout());
+                    retryConnects();
+                    distributeSendQueue();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext())
+                    {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable())
+                        {
+                            accept();
+                            continue;
+                        }
+                        Client client = (Client) key.attachment();
+                        try
+                        {
+                            if (key.isConnectable())
+                            {
+                                client.finishConnect();
+                            }
+                            else if (key.isReadable())
+                            {
+                                if (!client.read())
+                                {
+                                    dropClient(client, "connection closed by client");
+                                }
+                            }
+                            else if (key.isWritable() && client.writeQueue.flush(client.sendChannel))
+                            {
+                                key.interestOps(0);
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            dropClient(client, e.getMessage());
+                        }
+                    }
+                }
+            }
+            catch (IOException | ClosedSelectorException e)
+            {
+                logger.error("Networking failed, shutting down: {}", e.getMessage());
+                mustshutdown = true;
+            }
+            finally
+            {
+                for (Client client : new ArrayList<Client>(clients))
+                {
+                    dropClient(client, "shutdown");
+                }
+                try
+                {
+                    readServerChannel.close();
+                    selector.close();
+                }
+                catch (IOException e)
+                {
+                    logger.debug("Error closing server channel: {}", e.getMessage());
+                }
+                sendQueue.clear();
+                readQueue.add(POISON);
+                logger.info("Server shutdown finished");
+            }
+        }
+
+        private long nextTimeout()
+        {
+            long next = Long.MAX_VALUE;
+            for (Client client : clients)
+            {
+                if (client.nextConnectAttempt > 0)
+                {
+                    next = Math.min(next, client.nextConnectAttempt);
+                }
+            }
+            return next == Long.MAX_VALUE ? 0 : Math.max(1, next - System.currentTimeMillis());
+        }
+
+        private void retryConnects()
+        {
+            long now = System.currentTimeMillis();
+            for (Client client : new ArrayList<Client>(clients))
+            {
+                if (client.nextConnectAttempt > 0 && client.nextConnectAttempt <= now)
+                {
+                    try
+                    {
+                        client.connect();
+                    }
+                    catch (IOException e)
+                    {
+                        dropClient(client, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        private void accept() throws IOException
+        {
+            SocketChannel channel = readServerChannel.accept();
+            if (channel == null) return;
+            logger.info("Incoming client from {}", channel.socket().getRemoteSocketAddress());
+            channel.configureBlocking(false);
+            Client client = new Client(channel);
+            channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            clientCount = clients.size();
+            try
+            {
+                client.connect();
+            }
+            catch (IOException e)
+            {
+                dropClient(client, e.getMessage());
+            }
+        }
+
+        /** Moves all messages from the sendQueue to the write queues of the clients, and writes as much as possible right away. */
+        private void distributeSendQueue()
+        {
+            Message msg;
+            boolean queued = false;
+            while ((msg = sendQueue.poll()) != null)
+            {
+                for (Client client : new ArrayList<Client>(clients))
+                {
+                    if (client.writeQueue.offer(msg.data, msg))
+                    {
+                        queued = true;
+                    }
+                    else
+                    {
+                        dropClient(client, "client does not keep up, " + client.writeQueue.getPendingBytes() + " bytes pending");
+                    }
+                }
+            }
+            if (!queued) return;
+            for (Client client : new ArrayList<Client>(clients))
+            {
+                if (!client.sendConnected) continue;
+                try
+                {
+                    client.writeQueue.flushOrAwaitWritable(client.sendChannel.keyFor(selector), SelectionKey.OP_WRITE);
+                }
+                catch (IOException e)
+                {
+                    dropClient(client, "sending channel broken: " + e.getMessage());
+                }
+            }
+        }
+
+        private void dropClient(Client client, String msg)
+        {
+            if (!clients.remove(client)) return;
+            clientCount = clients.size();
+            logger.error("Dropping client {}: {}", client.sendAddress.getAddress(), msg);
+            client.close();
+        }
+    }
+
+    /** Takes received messages from the readQueue, and sends them to the listeners on the middleware. */
+    private class Dispatcher implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Message msg;
+                try
+                {
+                    msg = readQueue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    break;
+                }
+                if (msg == POISON) break;
+                RawJsonMessage rawMsg = new RawJsonMessage(msg.text);
+                for (MiddlewareListener ml : listeners)
+                {
+                    try
+                    {
+                        rawMsg.deliverTo(ml);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.error("Error in listener {} while handling \"{}\": {}", ml, msg.text, e);
+                    }
+                }
+                receiveCounter.record(msg.size, System.nanoTime() - msg.queued);
+            }
+            logger.info("Shutdown Redirection readQueue");
+        }
+    }
+}
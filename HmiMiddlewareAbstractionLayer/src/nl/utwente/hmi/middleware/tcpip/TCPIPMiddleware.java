@@ -18,13 +18,13 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import nl.utwente.hmi.middleware.Middleware;
 import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 
 /**
  * Implements a Middleware interface, for converting between JSON objects and a TCP/IP socket.
@@ -603,25 +603,10 @@ public final class TCPIPMiddleware implements Runnable, Middleware
                 {
                     try
                     {
-                		//parse json string and create JsonObject
-                		ObjectMapper mapper = new ObjectMapper();
-                		
-                		try {
-                			JsonNode jn = mapper.readTree(jsonString);
-                			logger.debug("Transformed to json object: {}", jn.toString());
-                			
-                			if(jn != null){
-                				for(MiddlewareListener ml : listeners){
-                					ml.receiveData(jn);
-                				}
-                			}
-                		} catch (JsonProcessingException e) {
-                			logger.warn("Error while parsing JSON string \"{}\": {}", jsonString, e.getMessage());
-                			// TODO Auto-generated catch block
-                			e.printStackTrace();
-                		} catch (IOException e) {
-                			// TODO Auto-generated catch block
-                			e.printStackTrace();
+                		//the json string is parsed once, when the first listener needs it
+                		RawJsonMessage msg = new RawJsonMessage(jsonString);
+                		for(MiddlewareListener ml : listeners){
+                			msg.deliverTo(ml);
                 		}
                     	
                     }
@@ -1,5 +1,6 @@
 package nl.utwente.hmi.middleware.tcpip;
 
+import java.io.IOException;
 import java.util.Map.Entry;
 import java.util.Properties;
 
@@ -13,7 +14,8 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 	private static Logger logger = LoggerFactory.getLogger(TCPIPMiddlewareLoader.class.getName());
 
 	/**
-	 * This loads the TCPIPMiddleware instance given the supplied properties
+	 * This loads the TCPIPMiddleware instance given the supplied properties readPort and sendPort.
+	 * With the property mode=selector, the event-driven SelectorTCPIPMiddleware is loaded, which supports multiple clients.
 	 */
 	@Override
 	public Middleware loadMiddleware(Properties ps) {
@@ -21,6 +23,7 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 		Middleware m = null;
 		int readPort = -1;
 		int sendPort = -1;
+		String mode = "";
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
 			try{
@@ -30,6 +33,9 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 				if(((String)entry.getKey()).equals("sendPort")){
 					sendPort = Integer.parseInt(((String)entry.getValue()));
 				}
+				if(((String)entry.getKey()).equals("mode")){
+					mode = (String)entry.getValue();
+				}
 			} catch(NumberFormatException nfe){
 				logger.error("Error loading the port specifications. Please ensure these are numeric.");
 			}
@@ -38,7 +44,15 @@ public class TCPIPMiddlewareLoader implements MiddlewareLoader {
 		if(		(readPort >= 1 && readPort <= 65535) && 
 				(sendPort >= 1 && sendPort <= 65535))
 		{
-			m = new TCPIPMiddleware(readPort, sendPort);
+			if(mode.equals("selector")){
+				try {
+					m = new SelectorTCPIPMiddleware(readPort, sendPort);
+				} catch (IOException e) {
+					logger.error("Could not open the SelectorTCPIPMiddleware on port {}: {}", readPort, e.getMessage());
+				}
+			} else {
+				m = new TCPIPMiddleware(readPort, sendPort);
+			}
 		} else {
 			logger.error("Could not load the TCPIPMiddleware, need at least properties: readPort, sendPort. Please ensure these are numeric and within acceptable range [1 .. 65535]. . Can be set in the global middleware props or in the load call.");
 		}
@@ -0,0 +1,185 @@
+package nl.utwente.hmi.middleware.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.utwente.hmi.middleware.AbstractBinaryMiddleware;
+import nl.utwente.hmi.middleware.helpers.LengthPrefixedFrames;
+
+/**
+ * BinaryMiddleware over UDP, on a single DatagramChannel that is used for both receiving and sending.
+ * Each datagram contains one or more length-prefixed frames (see LengthPrefixedFrames); a message must fit in a single datagram.
+ * As in the UDPMiddleware, outgoing data is sent either to a preconfigured remote (single mode),
+ * or to all clients that have sent data to the local port (multi mode). In multi mode, clients that have not sent anything
+ * (e.g. an empty frame as heartbeat) for timeout ms are removed.
+ * Outgoing messages are framed once, and sent from the calling thread to all clients.
+ * Received datagrams are read by a single thread into a reused buffer, listeners are notified on this thread.
+ */
+public class BinaryUDPMiddleware extends AbstractBinaryMiddleware implements Runnable {
+	private static Logger logger = LoggerFactory.getLogger(BinaryUDPMiddleware.class.getName());
+
+	/** Maximum UDP payload size */
+	public static final int MAX_DATAGRAM_SIZE = 65507;
+
+	private static final ByteBuffer KEEP_ALIVE = LengthPrefixedFrames.encode(ByteBuffer.allocate(0));
+
+	private final DatagramChannel channel;
+	private final int listenPort;
+	private final int timeout;
+	private final InetSocketAddress defaultRemote;
+
+	/** Client endpoints, with the time they were last heard from */
+	private final Map<SocketAddress, Long> clients = new ConcurrentHashMap<SocketAddress, Long>();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a multi-client BinaryUDPMiddleware using the specified local port.
+	 * @param listenPort the port to listen on incoming data
+	 * @param timeout if positive, clients that have not sent anything for timeout ms no longer receive outgoing data
+	 * @throws IOException if the port can not be opened
+	 */
+	public BinaryUDPMiddleware(int listenPort, int timeout) throws IOException {
+		this(listenPort, timeout, null, -1);
+	}
+
+	/**
+	 * Creates a single-client BinaryUDPMiddleware using the specified local port and remote.
+	 * @param listenPort the port to listen on incoming data
+	 * @param defaultRemote the remote to which all outgoing data is sent
+	 * @param heartbeat if > 0, sends an empty frame to defaultRemote every $heartbeat$ms.
+	 * @throws IOException if the port can not be opened
+	 */
+	public BinaryUDPMiddleware(int listenPort, InetSocketAddress defaultRemote, int heartbeat) throws IOException {
+		this(listenPort, -1, defaultRemote, heartbeat);
+	}
+
+	private BinaryUDPMiddleware(int listenPort, int timeout, InetSocketAddress defaultRemote, final int heartbeat) throws IOException {
+		this.listenPort = listenPort;
+		this.timeout = timeout;
+		this.defaultRemote = defaultRemote;
+		this.channel = DatagramChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(listenPort));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		Thread receiver = new Thread(this, "BinaryUDPMiddleware:" + listenPort);
+		receiver.setDaemon(true);
+		receiver.start();
+
+		if (defaultRemote != null && heartbeat > 0) {
+			Thread heartbeatThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (running) {
+						send(KEEP_ALIVE);
+						try {
+							Thread.sleep(heartbeat);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}, "BinaryUDPMiddleware-heartbeat:" + listenPort);
+			heartbeatThread.setDaemon(true);
+			heartbeatThread.start();
+		}
+	}
+
+	public void close() {
+		running = false;
+		try {
+			channel.close(); // unblocks the receiving thread
+		} catch (IOException e) {
+			logger.debug("Error closing channel: {}", e.getMessage());
+		}
+	}
+
+	/** @return the number of clients in multi mode */
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	@Override
+	public void sendData(ByteBuffer data) {
+		if (LengthPrefixedFrames.HEADER_SIZE + data.remaining() > MAX_DATAGRAM_SIZE) {
+			logger.warn("Dropped message of {} bytes, which does not fit in a datagram", data.remaining());
+			return;
+		}
+		send(LengthPrefixedFrames.encode(data));
+	}
+
+	/** Sends the frame to the default remote, or to all clients that have not timed out. */
+	private void send(ByteBuffer frame) {
+		try {
+			if (defaultRemote != null) {
+				channel.send(frame.duplicate(), defaultRemote);
+				return;
+			}
+			long now = System.currentTimeMillis();
+			Iterator<Map.Entry<SocketAddress, Long>> it = clients.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<SocketAddress, Long> client = it.next();
+				if (timeout > 0 && client.getValue() + timeout < now) {
+					logger.info("Removing client {}, timed out", client.getKey());
+					it.remove();
+					continue;
+				}
+				channel.send(frame.duplicate(), client.getKey());
+			}
+		} catch (ClosedChannelException e) {
+			logger.debug("Dropped message, middleware closed");
+		} catch (IOException e) {
+			logger.warn("Failed to send data: {}", e.getMessage());
+		}
+	}
+
+	/** The receiving loop */
+	@Override
+	public void run() {
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+		while (running) {
+			SocketAddress sender;
+			buffer.clear();
+			try {
+				sender = channel.receive(buffer);
+			} catch (ClosedChannelException e) {
+				break;
+			} catch (IOException e) {
+				logger.error("Failed to receive packet: {}", e.getMessage());
+				break;
+			}
+			buffer.flip();
+			if (defaultRemote == null) {
+				if (clients.put(sender, System.currentTimeMillis()) == null) {
+					logger.info("Added remote client at: {}", sender);
+				}
+			}
+			while (buffer.remaining() >= LengthPrefixedFrames.HEADER_SIZE) {
+				int length = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					logger.warn("Dropped datagram from {} with invalid frame length {}", sender, length);
+					break;
+				}
+				ByteBuffer frame = buffer.slice();
+				frame.limit(length);
+				buffer.position(buffer.position() + length);
+				dispatch(frame);
+			}
+		}
+		running = false;
+		logger.info("Stopped listening on port {}", listenPort);
+	}
+}
@@ -0,0 +1,78 @@
+package nl.utwente.hmi.middleware.udp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.loader.MiddlewareLoader;
+
+/**
+ * BinaryUDPMiddlewareLoader class for binary communication over UDP.
+ * With the properties remoteIP and remotePort, a single client BinaryUDPMiddleware is loaded, otherwise a multi client one.
+ * @see BinaryUDPMiddleware
+ */
+public class BinaryUDPMiddlewareLoader implements MiddlewareLoader {
+	private static Logger logger = LoggerFactory.getLogger(BinaryUDPMiddlewareLoader.class.getName());
+
+	/**
+	 * This loads the BinaryUDPMiddleware instance
+	 * @param ps contains the required property localPort, and optionally remoteIP and remotePort with heartbeat (in ms), 
+	 * or timeout (in ms, default: 10000) for multiple clients.
+	 */
+	@Override
+	public Middleware loadMiddleware(Properties ps) {
+		String remoteIP = "";
+		int localPort = -1;
+		int remotePort = -1;
+		int heartbeat = -1;
+		int timeout = 10000;
+		
+		for(Entry<Object, Object> entry : ps.entrySet()){
+			logger.debug("propkey: {}",(String)entry.getKey());
+			logger.debug("propval: {}",(String)entry.getValue());
+			try {
+				if(((String)entry.getKey()).equals("remoteIP")){
+					remoteIP = (String)entry.getValue();
+				}
+				if(((String)entry.getKey()).equals("localPort")){
+					localPort = Integer.parseInt((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals("remotePort")){
+					remotePort = Integer.parseInt((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals("heartbeat")){
+					heartbeat = Integer.parseInt((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals("timeout")){
+					timeout = Integer.parseInt((String)entry.getValue());
+				}
+			} catch(NumberFormatException nfe){
+				logger.error("Error loading property {}. Please ensure it is numeric.", entry.getKey());
+			}
+		}
+		
+		if (localPort < 1) {
+			logger.error("Could not load the BinaryUDPMiddleware, need at least property: localPort. Can be set in the global middleware props or in the load call.");
+			return null;
+		}
+		try {
+			if (remoteIP.equals("") || remotePort < 1) {
+				return new BinaryUDPMiddleware(localPort, timeout);
+			}
+			return new BinaryUDPMiddleware(localPort, new InetSocketAddress(InetAddress.getByName(remoteIP), remotePort), heartbeat);
+		} catch (UnknownHostException e) {
+			logger.error("Could not parse remoteIP: {}", remoteIP);
+		} catch (IOException e) {
+			logger.error("Could not open the BinaryUDPMiddleware on port {}: {}", localPort, e.getMessage());
+		}
+		return null;
+	}
+
+}
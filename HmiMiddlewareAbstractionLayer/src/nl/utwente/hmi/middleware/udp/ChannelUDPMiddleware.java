@@ -0,0 +1,450 @@
+package nl.utwente.hmi.middleware.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.ByteBufferPool;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
+
+/**
+ * Variant of the UDPMiddleware on a single DatagramChannel, with the same protocol and the same one-to-one and one-to-many modes:
+ * each datagram contains one JSON message, empty ("" or "{}") messages are heartbeats.
+ * <p>
+ * Instead of a thread per remote endpoint, a fixed set of three threads is used, regardless of the number of clients:
+ * a receiving thread, a dispatching thread that notifies the listeners and keeps track of the endpoints, and a single sending
+ * thread that fans out all outgoing messages to all endpoints. Datagrams are sent from pooled direct ByteBuffers, and received
+ * into a direct buffer, from which they are copied once, into pooled heap buffers that the listeners' messages wrap without further
+ * copying. So no buffers are allocated per message. Queued messages are held in buffers sized to the message, rather than to the
+ * maximum datagram size, so that full queues of small messages take little memory.
+ * <p>
+ * In scatter mode (the default), each outgoing message is encoded once, on the calling thread, and the same buffer is sent to every endpoint.
+ * Otherwise, the sending thread encodes the message again for each endpoint, as the UDPMiddleware does.
+ * Both the receive and send queues are bounded; as with UDP itself, messages are dropped (and a warning is logged) when they are full.
+ */
+public class ChannelUDPMiddleware implements Middleware {
+	private static Logger logger = LoggerFactory.getLogger(ChannelUDPMiddleware.class.getName());
+
+	/** Maximum UDP payload size */
+	public static final int MAX_DATAGRAM_SIZE = 65507;
+
+	/** Maximum number of messages queued for sending, or for dispatching to the listeners */
+	public static final int QUEUE_CAPACITY = 1024;
+
+	/** Capacity of the smallest pooled buffers */
+	private static final int MIN_BUFFER_SIZE = 512;
+
+	/** Maximum total capacity of the idle buffers of each size that are kept in the pool */
+	private static final int MAX_POOLED_BYTES = 1024 * 1024;
+
+	/** Interval at which the threads check whether the middleware is closed, in ms */
+	private static final int POLL_WAIT = 100;
+
+	private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			return StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+	};
+
+	/** A remote client, with the time it was last heard from */
+	private static final class Endpoint {
+		private final SocketAddress address;
+		private volatile long lastHeartbeat = System.currentTimeMillis();
+
+		Endpoint(SocketAddress address) {
+			this.address = address;
+		}
+	}
+
+	/** A received datagram, in a pooled buffer */
+	private static final class Received {
+		private final SocketAddress sender;
+		private final ByteBuffer data;
+
+		Received(SocketAddress sender, ByteBuffer data) {
+			this.sender = sender;
+			this.data = data;
+		}
+	}
+
+	private final DatagramChannel channel;
+	private final int listenPort;
+	private final int timeout;
+	private final int heartbeat;
+	private final boolean scatter;
+
+	/** The remote in single mode, null in multi mode */
+	private final InetSocketAddress defaultRemote;
+
+	/** Direct buffers for outgoing messages */
+	private final ByteBufferPool pool = new ByteBufferPool(MIN_BUFFER_SIZE, MAX_DATAGRAM_SIZE, MAX_POOLED_BYTES, true);
+
+	/** Heap buffers for received messages, which are decoded from the backing array */
+	private final ByteBufferPool receivePool = new ByteBufferPool(MIN_BUFFER_SIZE, MAX_DATAGRAM_SIZE, MAX_POOLED_BYTES, false);
+
+	private final Set<MiddlewareListener> listeners = new CopyOnWriteArraySet<MiddlewareListener>();
+
+	private final Map<SocketAddress, Endpoint> endpoints = new ConcurrentHashMap<SocketAddress, Endpoint>();
+
+	private final BlockingQueue<Received> receiveQueue = new ArrayBlockingQueue<Received>(QUEUE_CAPACITY);
+
+	/** Encoded messages in scatter mode */
+	private final BlockingQueue<ByteBuffer> sendQueue;
+
+	/** Messages to be encoded per endpoint, when not in scatter mode */
+	private final BlockingQueue<String> textQueue;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a multi-client ChannelUDPMiddleware in scatter mode, see UDPMiddleware(int, int).
+	 * @param listenPort the port to listen on incoming data
+	 * @param timeout if positive, clients that have not sent anything for timeout ms no longer receive outgoing data
+	 * @throws IOException if the port can not be opened
+	 */
+	public ChannelUDPMiddleware(int listenPort, int timeout) throws IOException {
+		this(listenPort, timeout, true);
+	}
+
+	/**
+	 * Creates a multi-client ChannelUDPMiddleware, see UDPMiddleware(int, int).
+	 * @param listenPort the port to listen on incoming data
+	 * @param timeout if positive, clients that have not sent anything for timeout ms no longer receive outgoing data
+	 * @param scatter whether each outgoing message is encoded once for all clients
+	 * @throws IOException if the port can not be opened
+	 */
+	public ChannelUDPMiddleware(int listenPort, int timeout, boolean scatter) throws IOException {
+		this(listenPort, timeout, null, -1, scatter);
+	}
+
+	/**
+	 * Creates a single-client ChannelUDPMiddleware, see UDPMiddleware(int, InetSocketAddress, int).
+	 * @param listenPort the port to listen on incoming data
+	 * @param defaultRemote the remote to which all outgoing data is sent
+	 * @param heartbeat if > 0, sends an empty message to defaultRemote every $heartbeat$ms.
+	 * @throws IOException if the port can not be opened
+	 */
+	public ChannelUDPMiddleware(int listenPort, InetSocketAddress defaultRemote, int heartbeat) throws IOException {
+		this(listenPort, -1, defaultRemote, heartbeat, true);
+	}
+
+	private ChannelUDPMiddleware(int listenPort, int timeout, InetSocketAddress defaultRemote, int heartbeat, boolean scatter)
+			throws IOException {
+		this.listenPort = listenPort;
+		this.timeout = timeout;
+		this.defaultRemote = defaultRemote;
+		this.heartbeat = heartbeat;
+		this.scatter = scatter;
+		this.sendQueue = scatter ? new ArrayBlockingQueue<ByteBuffer>(QUEUE_CAPACITY) : null;
+		this.textQueue = scatter ? null : new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+		this.channel = DatagramChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(listenPort));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		startThread(new Runnable() {
+			@Override
+			public void run() {
+				receive();
+			}
+		}, "receive");
+		startThread(new Runnable() {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		}, "dispatch");
+		startThread(new Runnable() {
+			@Override
+			public void run() {
+				send();
+			}
+		}, "send");
+	}
+
+	private void startThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, "ChannelUDPMiddleware-" + name + ":" + listenPort);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void close() {
+		running = false;
+		try {
+			channel.close(); // unblocks the receiving thread
+		} catch (IOException e) {
+			logger.debug("Error closing channel: {}", e.getMessage());
+		}
+	}
+
+	/** @return the number of remote endpoints that receive outgoing data */
+	public int getClientCount() {
+		return defaultRemote != null ? 1 : endpoints.size();
+	}
+
+	public boolean isScatter() {
+		return scatter;
+	}
+
+	ByteBufferPool getBufferPool() {
+		return pool;
+	}
+
+	ByteBufferPool getReceiveBufferPool() {
+		return receivePool;
+	}
+
+	@Override
+	public void sendData(JsonNode jn) {
+		if(jn != null){
+			sendDataRaw(jn.toString());
+		}
+	}
+
+	@Override
+	public void sendDataRaw(String data) {
+		if(data == null || !running) return;
+		if(defaultRemote == null && endpoints.isEmpty()){
+			logger.debug("Dropped message, as no client is connected");
+			return;
+		}
+		logger.debug("Sending data: {}", data);
+		if(!scatter){
+			if(!textQueue.offer(data)){
+				logger.warn("Dropped message, send queue is full");
+			}
+			return;
+		}
+		ByteBuffer buffer = pool.acquire(Math.min(maxEncodedLength(data), MAX_DATAGRAM_SIZE));
+		if(!encode(data, buffer)){
+			pool.release(buffer);
+			logger.warn("Dropped message of {} characters, which does not fit in a datagram", data.length());
+			return;
+		}
+		buffer.flip();
+		if(!sendQueue.offer(buffer)){
+			pool.release(buffer);
+			logger.warn("Dropped message, send queue is full");
+		}
+	}
+
+	@Override
+	public void addListener(MiddlewareListener ml) {
+		listeners.add(ml);
+	}
+
+	/** Encodes data as UTF-8 into buffer. @return false if it does not fit */
+	private static boolean encode(String data, ByteBuffer buffer) {
+		CharsetEncoder encoder = ENCODER.get().reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(data), buffer, true);
+		return !result.isOverflow() && !encoder.flush(buffer).isOverflow();
+	}
+
+	/** @return an upper bound of the length of data encoded as UTF-8 */
+	private static int maxEncodedLength(String data) {
+		int length = 0;
+		for(int i = 0; i < data.length(); i++){
+			char c = data.charAt(i);
+			length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3; // a surrogate pair encodes to 4 bytes, less than 2 * 3
+		}
+		return length;
+	}
+
+	/** @return whether the bytes between position and limit of data are a heartbeat */
+	private static boolean isHeartbeat(ByteBuffer data) {
+		int length = data.remaining();
+		int p = data.position();
+		return length == 0 || (length == 2 && data.get(p) == '{' && data.get(p + 1) == '}');
+	}
+
+	/** The receiving loop: receives datagrams, and queues copies in pooled heap buffers of their size for dispatching */
+	private void receive() {
+		ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+		while (running) {
+			SocketAddress sender;
+			receiveBuffer.clear();
+			try {
+				sender = channel.receive(receiveBuffer);
+			} catch (ClosedChannelException e) {
+				break;
+			} catch (IOException e) {
+				logger.error("Failed to receive packet: {}", e.getMessage());
+				break;
+			}
+			receiveBuffer.flip();
+			ByteBuffer buffer = receivePool.acquire(receiveBuffer.remaining());
+			buffer.put(receiveBuffer);
+			buffer.flip();
+			if(!receiveQueue.offer(new Received(sender, buffer))){
+				receivePool.release(buffer);
+				logger.warn("Dropped packet from {}, listeners do not keep up", sender);
+			}
+		}
+		running = false;
+		logger.info("Stopped listening on port {}", listenPort);
+	}
+
+	/**
+	 * The dispatching loop: registers new clients, and notifies the listeners of received messages.
+	 * The messages wrap the received buffers, which are returned to the pool after all listeners have been notified.
+	 */
+	private void dispatch() {
+		while (running) {
+			Received received;
+			try {
+				received = receiveQueue.poll(POLL_WAIT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if(received == null) continue;
+			try {
+				dispatch(received);
+			} finally {
+				receivePool.release(received.data);
+			}
+		}
+		for(Received received; (received = receiveQueue.poll()) != null;){
+			receivePool.release(received.data);
+		}
+	}
+
+	/** Registers or refreshes the sender, and notifies the listeners unless the message is a heartbeat */
+	private void dispatch(Received received) {
+		if(defaultRemote == null){
+			Endpoint endpoint = endpoints.get(received.sender);
+			if(endpoint == null){
+				endpoints.put(received.sender, new Endpoint(received.sender));
+				logger.info("Added remote client at: {}", received.sender);
+			} else {
+				endpoint.lastHeartbeat = System.currentTimeMillis();
+			}
+		}
+
+		if(isHeartbeat(received.data)){
+			logger.debug("Got heartbeat on port {}", listenPort);
+			return;
+		}
+		RawJsonMessage msg = RawJsonMessage.wrap(received.data);
+		for(MiddlewareListener ml : listeners){
+			try {
+				msg.deliverTo(ml);
+			} catch (RuntimeException e) {
+				logger.error("Error in listener {}: {}", ml, e);
+			}
+		}
+	}
+
+	/** The sending loop: sends queued messages to all endpoints, and heartbeats in single mode */
+	private void send() {
+		ByteBuffer encodeBuffer = scatter ? null : ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+		ByteBuffer emptyBuffer = ByteBuffer.allocateDirect(0);
+		long nextHeartbeat = 0;
+		while (running) {
+			long wait = POLL_WAIT;
+			if(defaultRemote != null && heartbeat > 0){
+				long now = System.currentTimeMillis();
+				if(now >= nextHeartbeat){
+					logger.debug("Sending heartbeat");
+					fanOut(emptyBuffer, null);
+					nextHeartbeat = now + heartbeat;
+				}
+				wait = Math.min(wait, nextHeartbeat - now);
+			}
+			try {
+				if(scatter){
+					ByteBuffer buffer = sendQueue.poll(wait, TimeUnit.MILLISECONDS);
+					if(buffer != null){
+						fanOut(buffer, null);
+						pool.release(buffer);
+					}
+				} else {
+					String text = textQueue.poll(wait, TimeUnit.MILLISECONDS);
+					if(text != null){
+						fanOut(encodeBuffer, text);
+					}
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+		if(scatter){
+			for(ByteBuffer buffer; (buffer = sendQueue.poll()) != null;){
+				pool.release(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Sends a message to the default remote, or to all endpoints that have not timed out.
+	 * @param buffer the encoded message if text is null, otherwise the buffer in which text is encoded for each endpoint
+	 */
+	private void fanOut(ByteBuffer buffer, String text) {
+		if(defaultRemote != null){
+			sendTo(buffer, text, defaultRemote);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Iterator<Endpoint> it = endpoints.values().iterator();
+		while (it.hasNext()) {
+			Endpoint endpoint = it.next();
+			if(timeout > 0 && endpoint.lastHeartbeat + timeout < now){
+				logger.info("Removing client {}, timed out", endpoint.address);
+				it.remove();
+			} else if(!sendTo(buffer, text, endpoint.address)){
+				logger.info("Removing client {}, failed to send data", endpoint.address);
+				it.remove();
+			}
+		}
+	}
+
+	/** @return false if sending failed */
+	private boolean sendTo(ByteBuffer buffer, String text, SocketAddress address) {
+		if(text == null){
+			buffer.rewind();
+		} else {
+			buffer.clear();
+			if(!encode(text, buffer)){
+				logger.warn("Dropped message of {} characters, which does not fit in a datagram", text.length());
+				return true;
+			}
+			buffer.flip();
+		}
+		try {
+			channel.send(buffer, address);
+			return true;
+		} catch (ClosedChannelException e) {
+			logger.debug("Dropped message, middleware closed");
+			return true;
+		} catch (IOException e) {
+			logger.warn("Failed to send data to {}: {}", address, e.getMessage());
+			return false;
+		}
+	}
+}
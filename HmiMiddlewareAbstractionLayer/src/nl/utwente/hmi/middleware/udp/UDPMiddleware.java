@@ -11,10 +11,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import nl.utwente.hmi.middleware.Middleware;
 import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.RawJsonMessage;
 
 /**
  * UDPMiddleware class for one-to-one and one-to-many communication over UDP.
@@ -176,18 +176,13 @@ public class UDPMiddleware implements Middleware, Runnable {
 	}
 	
 	public void receiveCallback(String data) {
-		ObjectMapper mapper = new ObjectMapper();
-		try {
-			JsonNode jn = mapper.readTree(data);
-			logger.debug("Transformed to json object: {}", jn.toString());
-			if(jn != null){
-				for(MiddlewareListener ml : mwListeners){
-					ml.receiveData(jn);
-				}
+		RawJsonMessage msg = new RawJsonMessage(data);
+		for(MiddlewareListener ml : mwListeners){
+			try {
+				msg.deliverTo(ml);
+			} catch (RuntimeException e) {
+				logger.error("Error in listener {}: {}", ml, e);
 			}
-		} catch (Exception e) { // JsonProcessingException, IOException
-			logger.warn("Error while parsing JSON string \"{}\": {}", data, e.getMessage());
-			e.printStackTrace();
 		}
 	}
 
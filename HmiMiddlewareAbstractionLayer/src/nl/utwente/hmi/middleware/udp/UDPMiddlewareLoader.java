@@ -1,5 +1,6 @@
 package nl.utwente.hmi.middleware.udp;
 
+import java.io.IOException;
 import java.net.InetAddress;
 
 import java.net.InetSocketAddress;
@@ -23,7 +24,7 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 
 	/**
 	 * This loads the UDPMiddleware instance
-	 * @param ps contains the required properties remoteIP, remotePort and localPort
+	 * @param ps contains the required properties remoteIP, remotePort and localPort; with mode=channel, the ChannelUDPMiddleware is loaded
 	 * @see UDPMiddleware
 	 * @author jankolkmeier
 	 */
@@ -34,6 +35,7 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 		int localPort = 0;
 		int remotePort = -1;
 		int heartbeat = -1;
+		String mode = "";
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
             System.out.println("propkey:"+(String)entry.getKey());
@@ -52,6 +54,10 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 			if(((String)entry.getKey()).equals("heartbeat")){
 				heartbeat = Integer.parseInt((String)entry.getValue());
 			}
+
+			if(((String)entry.getKey()).equals("mode")){
+				mode = (String)entry.getValue();
+			}
 		}
 		
 		if (remoteIP.equals("") || remotePort < 1) {
@@ -66,7 +72,15 @@ public class UDPMiddlewareLoader implements MiddlewareLoader {
 				return null;
 			}
 			
-			m = new UDPMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+			if(mode.equals("channel")){
+				try {
+					m = new ChannelUDPMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+				} catch (IOException e) {
+					logger.error("Could not open the ChannelUDPMiddleware on port {}: {}", localPort, e.getMessage());
+				}
+			} else {
+				m = new UDPMiddleware(localPort, new InetSocketAddress(addr, remotePort), heartbeat);
+			}
 		}
 		
 		return m;
@@ -1,5 +1,6 @@
 package nl.utwente.hmi.middleware.udp;
 
+import java.io.IOException;
 import java.util.Properties;
 import java.util.Map.Entry;
 
@@ -22,11 +23,14 @@ public class UDPMultiClientMiddlewareLoader implements MiddlewareLoader {
 	/**
 	 * This loads the UDPMiddleware instance with multiple client support
 	 *  @param ps contains the required properties port and optionally timeout (in ms, default: 10000).
+	 *  With mode=channel, the ChannelUDPMiddleware is loaded, which encodes each message once for all clients unless scatter=false.
 	 */
 	public Middleware loadMiddleware(Properties ps) {
 		Middleware m = null;
 		int listenPort = -1;
 		int timeout = 10000;
+		String mode = "";
+		boolean scatter = true;
 		
 		for(Entry<Object, Object> entry : ps.entrySet()){
 			logger.debug("propkey: {}",(String)entry.getKey());
@@ -38,12 +42,28 @@ public class UDPMultiClientMiddlewareLoader implements MiddlewareLoader {
 			if(((String)entry.getKey()).equals("timeout")){
 				timeout = Integer.parseInt((String)entry.getValue());
 			}
+
+			if(((String)entry.getKey()).equals("mode")){
+				mode = (String)entry.getValue();
+			}
+
+			if(((String)entry.getKey()).equals("scatter")){
+				scatter = Boolean.parseBoolean((String)entry.getValue());
+			}
 		}
 		
 		if (listenPort < 1) {
 			logger.error("Could not load the UDPMiddleware, need at least properties: port. Can be set in the global middleware props or in the load call.");
 		} else {
-			m = new UDPMiddleware(listenPort, timeout);
+			if(mode.equals("channel")){
+				try {
+					m = new ChannelUDPMiddleware(listenPort, timeout, scatter);
+				} catch (IOException e) {
+					logger.error("Could not open the ChannelUDPMiddleware on port {}: {}", listenPort, e.getMessage());
+				}
+			} else {
+				m = new UDPMiddleware(listenPort, timeout);
+			}
 		}
 		
 		return m;
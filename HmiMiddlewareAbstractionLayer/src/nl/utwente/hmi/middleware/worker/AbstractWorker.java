@@ -1,7 +1,9 @@
 package nl.utwente.hmi.middleware.worker;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -9,28 +11,53 @@ import com.fasterxml.jackson.databind.JsonNode;
 /**
  * A simple abstract implementation of a worker thread. This thread has an internal queue which is filled with Data by a middleware listener. 
  * Each Data is then processed by the processData method, which can be implemented by subclasses to fit their specific needs
+ * By default the queue is unbounded; a bounded WorkerQueue with a QueuePolicy can be passed to the constructor instead.
  * @author davisond
  *
  */
-public abstract class AbstractWorker implements Worker {
+public abstract class AbstractWorker implements Worker, DataProcessor {
+	private static Logger logger = LoggerFactory.getLogger(AbstractWorker.class.getName());
 
 	protected BlockingQueue<JsonNode> queue = null;
 
+	private final WorkerMetrics metrics;
+
 	private boolean running = true;
 	
 	/**
 	 * Create a new AbstractWorker object. This provides the basics required for recieving data into the processing queue
 	 */
 	public AbstractWorker(){
-		this.queue = new LinkedBlockingQueue<JsonNode>();
+		this(new WorkerQueue());
+	}
+
+	/**
+	 * Create a new AbstractWorker object with the specified processing queue, e.g. WorkerQueue.fromProperties(ps, ...)
+	 */
+	public AbstractWorker(WorkerQueue queue){
+		this.queue = queue;
+		this.metrics = queue.getMetrics();
 	}
 	
 	/**
-	 * Adds a certain data to the processing queue of this worker
+	 * Adds a certain data to the processing queue of this worker.
+	 * If the queue is full and its policy is QueuePolicy.BLOCK, this waits until there is room.
 	 */
 	@Override
 	public void addDataToQueue(JsonNode jn) {
-		queue.add(jn);
+		try {
+			queue.put(jn);
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while queueing data, data dropped");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the metrics of the processing queue and the processing time of this worker
+	 */
+	public WorkerMetrics getMetrics(){
+		return metrics;
 	}
 
 	/**
@@ -42,7 +69,9 @@ public abstract class AbstractWorker implements Worker {
 		while(running){
 			try {
 				JsonNode jn = queue.take();
+				long start = System.nanoTime();
 				processData(jn);
+				metrics.recordProcessed(System.nanoTime() - start);
 			} catch (InterruptedException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -0,0 +1,16 @@
+package nl.utwente.hmi.middleware.worker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Does the actual processing of data for a worker, e.g. for a WorkerPool
+ */
+public interface DataProcessor {
+
+	/**
+	 * Does the required processing on the data
+	 * @param jn the incoming data
+	 */
+	public void processData(JsonNode jn);
+
+}
@@ -0,0 +1,32 @@
+package nl.utwente.hmi.middleware.worker;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * KeyExtractor that uses the value at a path in the data as key.
+ * The path is either a JSON pointer (e.g. "/header/topic"), or the name of a top level field (e.g. "topic").
+ * Data in which the path is missing or null has no key.
+ */
+public class JsonKeyExtractor implements KeyExtractor {
+
+	private final JsonPointer pointer;
+
+	public JsonKeyExtractor(String path) {
+		this.pointer = JsonPointer.compile(path.startsWith("/") ? path : "/" + path);
+	}
+
+	@Override
+	public Object getKey(JsonNode jn) {
+		JsonNode value = jn.at(pointer);
+		if(value.isMissingNode() || value.isNull()){
+			return null;
+		}
+		return value.isValueNode() ? value.asText() : value.toString();
+	}
+
+	@Override
+	public String toString() {
+		return pointer.toString();
+	}
+}
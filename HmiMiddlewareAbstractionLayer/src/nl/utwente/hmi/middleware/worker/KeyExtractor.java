@@ -0,0 +1,16 @@
+package nl.utwente.hmi.middleware.worker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Extracts a key (e.g. topic or character id) from data, which workers use to tell unrelated streams of data apart.
+ */
+public interface KeyExtractor {
+
+	/**
+	 * @param jn the data
+	 * @return the key of jn, or null if it has none; keys are compared with equals()
+	 */
+	public Object getKey(JsonNode jn);
+
+}
@@ -0,0 +1,28 @@
+package nl.utwente.hmi.middleware.worker;
+
+/**
+ * What a WorkerQueue does with new data when it is full.
+ */
+public enum QueuePolicy {
+	/** Wait until there is room, so that a slow worker slows down the middleware (backpressure) */
+	BLOCK,
+	/** Drop the oldest queued data */
+	DROP_OLDEST,
+	/**
+	 * Keep only the latest data per key: new data replaces queued data with the same key, in its position in the queue.
+	 * Data with a new key (or without key) is queued as with DROP_OLDEST. Suits streams of state updates, such as poses.
+	 */
+	COALESCE;
+
+	/**
+	 * Parses a policy name, case insensitive and with - or _ as separator, e.g. "block", "drop-oldest", "coalesce"
+	 * @throws IllegalArgumentException if name is not a policy
+	 */
+	public static QueuePolicy parse(String name) {
+		String normalized = name.trim().toUpperCase().replace('-', '_');
+		if(normalized.equals("COALESCE_BY_KEY")){
+			return COALESCE;
+		}
+		return valueOf(normalized);
+	}
+}
@@ -0,0 +1,133 @@
+package nl.utwente.hmi.middleware.worker;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe metrics of a worker and its queue: queue depth, the number of queued, dropped and coalesced data,
+ * the time data waits in the queue, and the time the worker takes to process it.
+ */
+public final class WorkerMetrics {
+
+	private final AtomicInteger depth = new AtomicInteger();
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong dequeued = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong totalProcessingNanos = new AtomicLong();
+	private final AtomicLong maxProcessingNanos = new AtomicLong();
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * @return a snapshot of the combined metrics, e.g. of all partitions of a WorkerPool: the sums of the depths, counts and durations,
+	 * and the largest of the maxima
+	 */
+	public static WorkerMetrics combine(Collection<WorkerMetrics> metrics) {
+		WorkerMetrics sum = new WorkerMetrics();
+		for(WorkerMetrics m : metrics){
+			sum.depth.addAndGet(m.depth.get());
+			sum.enqueued.addAndGet(m.enqueued.get());
+			sum.dropped.addAndGet(m.dropped.get());
+			sum.coalesced.addAndGet(m.coalesced.get());
+			sum.dequeued.addAndGet(m.dequeued.get());
+			sum.totalWaitNanos.addAndGet(m.totalWaitNanos.get());
+			updateMax(sum.maxWaitNanos, m.maxWaitNanos.get());
+			sum.processed.addAndGet(m.processed.get());
+			sum.totalProcessingNanos.addAndGet(m.totalProcessingNanos.get());
+			updateMax(sum.maxProcessingNanos, m.maxProcessingNanos.get());
+		}
+		return sum;
+	}
+
+	void setDepth(int depth) {
+		this.depth.set(depth);
+	}
+
+	void recordEnqueued() {
+		enqueued.incrementAndGet();
+	}
+
+	void recordDropped() {
+		dropped.incrementAndGet();
+	}
+
+	void recordCoalesced() {
+		coalesced.incrementAndGet();
+	}
+
+	void recordDequeued(long waitNanos) {
+		dequeued.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		updateMax(maxWaitNanos, waitNanos);
+	}
+
+	/**
+	 * Records the processing of one piece of data by the worker
+	 * @param processingNanos the duration of the processing, in nanoseconds
+	 */
+	public void recordProcessed(long processingNanos) {
+		processed.incrementAndGet();
+		totalProcessingNanos.addAndGet(processingNanos);
+		updateMax(maxProcessingNanos, processingNanos);
+	}
+
+	/** @return the number of data currently in the queue */
+	public int getDepth() {
+		return depth.get();
+	}
+
+	/** @return the number of data that was offered to the queue */
+	public long getEnqueued() {
+		return enqueued.get();
+	}
+
+	/** @return the number of data that was dropped, because the queue was full */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/** @return the number of data that replaced queued data with the same key */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/** @return the number of data that was processed */
+	public long getProcessed() {
+		return processed.get();
+	}
+
+	public long getMeanWaitNanos() {
+		long n = dequeued.get();
+		return n == 0 ? 0 : totalWaitNanos.get() / n;
+	}
+
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+	public long getMeanProcessingNanos() {
+		long n = processed.get();
+		return n == 0 ? 0 : totalProcessingNanos.get() / n;
+	}
+
+	public long getMaxProcessingNanos() {
+		return maxProcessingNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("depth %d, %d queued, %d dropped, %d coalesced, %d processed, wait mean %.3f ms max %.3f ms, "
+				+ "processing mean %.3f ms max %.3f ms", getDepth(), getEnqueued(), getDropped(), getCoalesced(), getProcessed(),
+				getMeanWaitNanos() / 1e6, getMaxWaitNanos() / 1e6, getMeanProcessingNanos() / 1e6, getMaxProcessingNanos() / 1e6);
+	}
+}
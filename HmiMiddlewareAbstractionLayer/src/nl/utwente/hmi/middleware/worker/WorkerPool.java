@@ -0,0 +1,224 @@
+package nl.utwente.hmi.middleware.worker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A Worker that processes data on multiple threads, with a DataProcessor.
+ * <p>
+ * Without partition key, all threads take data from a single shared queue, so data is processed in parallel in no particular order.
+ * With a partition key, each thread has its own queue, and data is assigned to a thread by its key (data without key is assigned to the first thread):
+ * data with the same key is processed in order, while data with different keys can be processed in parallel.
+ * The DataProcessor must be thread-safe in both cases.
+ * <p>
+ * The queue(s) are configured by the WorkerQueue passed to the constructor: it is used as the shared queue, or as the queue of the first thread,
+ * the other threads get a queue with the same configuration. As several keys share a partition, a partitioned pool should not use a small
+ * queue that drops data (QueuePolicy.DROP_OLDEST), as that drops data of one key for data of another; the MiddlewareWrapper uses an
+ * unbounded queue for partitioned pools, unless configured otherwise. A pool can also be configured with the properties PROPERTY_THREADS and
+ * PROPERTY_PARTITION_KEY (e.g. workerThreads=4, workerPartitionKey=/characterId), see fromProperties().
+ */
+public class WorkerPool implements Worker {
+	private static Logger logger = LoggerFactory.getLogger(WorkerPool.class.getName());
+
+	/** Property with the number of threads */
+	public static final String PROPERTY_THREADS = "workerThreads";
+
+	/** Property with the path of the partition key in the data, see JsonKeyExtractor */
+	public static final String PROPERTY_PARTITION_KEY = "workerPartitionKey";
+
+	private final DataProcessor processor;
+	private final KeyExtractor partitionKey;
+	private final List<WorkerQueue> queues = new ArrayList<WorkerQueue>();
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private volatile boolean running = false;
+
+	/**
+	 * Creates a pool with an unbounded shared queue
+	 * @param threads the number of threads
+	 * @param processor processes the data
+	 */
+	public WorkerPool(int threads, DataProcessor processor) {
+		this(threads, null, new WorkerQueue(), processor);
+	}
+
+	/**
+	 * @param threadCount the number of threads
+	 * @param partitionKey if not null, determines the thread that processes data, see above
+	 * @param queue the shared queue, or the queue of the first thread if partitioned; its configuration is used for the queues of the other threads
+	 * @param processor processes the data
+	 */
+	public WorkerPool(int threadCount, KeyExtractor partitionKey, WorkerQueue queue, DataProcessor processor) {
+		if(threadCount < 1){
+			throw new IllegalArgumentException("A WorkerPool needs at least one thread, got " + threadCount);
+		}
+		this.processor = processor;
+		this.partitionKey = partitionKey;
+		if(partitionKey != null && threadCount > 1 && queue.getPolicy() == QueuePolicy.DROP_OLDEST){
+			logger.warn("Partitioned WorkerPool with a {} queue of capacity {}: data of different keys in the same partition may be dropped",
+					queue.getPolicy(), queue.getCapacity());
+		}
+		queues.add(queue);
+		if(partitionKey != null){
+			for(int i = 1; i < threadCount; i++){
+				queues.add(new WorkerQueue(queue));
+			}
+		}
+		for(int i = 0; i < threadCount; i++){
+			final WorkerQueue threadQueue = queues.get(partitionKey != null ? i : 0);
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					process(threadQueue);
+				}
+			}, "WorkerPool-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+	}
+
+	/**
+	 * Creates a pool configured with the properties PROPERTY_THREADS and PROPERTY_PARTITION_KEY in ps.
+	 * @param queue the queue, as passed to the constructor
+	 * @return the pool, or null if ps does not specify more than one thread
+	 */
+	public static WorkerPool fromProperties(Properties ps, WorkerQueue queue, DataProcessor processor) {
+		int threads = 1;
+		KeyExtractor partitionKey = null;
+		for(Entry<Object, Object> entry : ps.entrySet()){
+			try {
+				if(((String)entry.getKey()).equals(PROPERTY_THREADS)){
+					threads = Integer.parseInt((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals(PROPERTY_PARTITION_KEY)){
+					partitionKey = new JsonKeyExtractor((String)entry.getValue());
+				}
+			} catch(IllegalArgumentException e){ // NumberFormatException
+				logger.error("Error loading property {}: {}", entry.getKey(), e.getMessage());
+			}
+		}
+		if(threads <= 1){
+			return null;
+		}
+		return new WorkerPool(threads, partitionKey, queue, processor);
+	}
+
+	/**
+	 * @return true if ps configures a partitioned pool: more than one thread (PROPERTY_THREADS) and a PROPERTY_PARTITION_KEY
+	 */
+	public static boolean isPartitioned(Properties ps) {
+		if(ps.getProperty(PROPERTY_PARTITION_KEY) == null){
+			return false;
+		}
+		try {
+			return Integer.parseInt(ps.getProperty(PROPERTY_THREADS, "1")) > 1;
+		} catch(NumberFormatException e){
+			return false;
+		}
+	}
+
+	/**
+	 * Starts the threads of the pool, if not yet started. Does not block.
+	 */
+	public synchronized void start() {
+		if(running){
+			return;
+		}
+		running = true;
+		for(Thread thread : threads){
+			thread.start();
+		}
+	}
+
+	/**
+	 * Starts the threads of the pool, see start(); returns immediately.
+	 */
+	@Override
+	public void run() {
+		start();
+	}
+
+	/**
+	 * Stops the threads, by interrupting them. Data still queued is not processed.
+	 */
+	public synchronized void shutdown() {
+		running = false;
+		for(Thread thread : threads){
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Adds data to the queue of the thread that should process it.
+	 * If that queue is full and its policy is QueuePolicy.BLOCK, this waits until there is room.
+	 */
+	@Override
+	public void addDataToQueue(JsonNode jn) {
+		WorkerQueue queue = queues.get(partition(jn));
+		try {
+			queue.put(jn);
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while queueing data, data dropped");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private int partition(JsonNode jn) {
+		if(queues.size() == 1){
+			return 0;
+		}
+		Object key = partitionKey.getKey(jn);
+		return key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % queues.size();
+	}
+
+	public int getThreadCount() {
+		return threads.size();
+	}
+
+	/**
+	 * @return the metrics of each queue: one shared queue, or one per thread if partitioned
+	 */
+	public List<WorkerMetrics> getMetrics() {
+		List<WorkerMetrics> metrics = new ArrayList<WorkerMetrics>();
+		for(WorkerQueue queue : queues){
+			metrics.add(queue.getMetrics());
+		}
+		return Collections.unmodifiableList(metrics);
+	}
+
+	/**
+	 * @return the metrics of all queues combined: those of the shared queue, or a snapshot of the sum of all partitions, see WorkerMetrics.combine()
+	 */
+	public WorkerMetrics getCombinedMetrics() {
+		if(queues.size() == 1){
+			return queues.get(0).getMetrics();
+		}
+		return WorkerMetrics.combine(getMetrics());
+	}
+
+	private void process(WorkerQueue queue) {
+		while (running) {
+			JsonNode jn;
+			try {
+				jn = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			long start = System.nanoTime();
+			try {
+				processor.processData(jn);
+			} catch (RuntimeException e) {
+				logger.error("Error processing data {}: {}", jn, e);
+			}
+			queue.getMetrics().recordProcessed(System.nanoTime() - start);
+		}
+	}
+}
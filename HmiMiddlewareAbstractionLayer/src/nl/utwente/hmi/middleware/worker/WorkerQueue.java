@@ -0,0 +1,463 @@
+package nl.utwente.hmi.middleware.worker;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The processing queue of a worker: a BlockingQueue with an optional capacity, and a QueuePolicy that decides what happens when it is full.
+ * With QueuePolicy.BLOCK, put() waits for room and offer() fails as with any bounded BlockingQueue;
+ * with the other policies, put() and offer() always succeed, and old data is dropped or coalesced instead.
+ * The queue keeps WorkerMetrics of its depth, drops and the time data waits in the queue.
+ * <p>
+ * The queue can be configured with the properties PROPERTY_CAPACITY, PROPERTY_POLICY and PROPERTY_KEY
+ * (e.g. queueCapacity=100, queuePolicy=coalesce, queueKey=/topic), see fromProperties().
+ */
+public class WorkerQueue extends AbstractQueue<JsonNode> implements BlockingQueue<JsonNode> {
+	private static Logger logger = LoggerFactory.getLogger(WorkerQueue.class.getName());
+
+	/** Property with the maximum number of queued data */
+	public static final String PROPERTY_CAPACITY = "queueCapacity";
+
+	/** Property with the QueuePolicy: block, drop-oldest or coalesce */
+	public static final String PROPERTY_POLICY = "queuePolicy";
+
+	/** Property with the path of the key in the data, for QueuePolicy.COALESCE, see JsonKeyExtractor */
+	public static final String PROPERTY_KEY = "queueKey";
+
+	/** Queued data with its key, and the time it was queued */
+	private static final class Item {
+		private JsonNode jn;
+		private final Object key;
+		private long enqueued;
+
+		Item(JsonNode jn, Object key) {
+			this.jn = jn;
+			this.key = key;
+			this.enqueued = System.nanoTime();
+		}
+	}
+
+	private final int capacity;
+	private final QueuePolicy policy;
+	private final KeyExtractor keyExtractor;
+	private final WorkerMetrics metrics = new WorkerMetrics();
+
+	private final ArrayDeque<Item> items = new ArrayDeque<Item>();
+
+	/** The queued item of each key, for QueuePolicy.COALESCE */
+	private final Map<Object, Item> itemsByKey = new HashMap<Object, Item>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * Creates an unbounded queue
+	 */
+	public WorkerQueue() {
+		this(Integer.MAX_VALUE, QueuePolicy.BLOCK, null);
+	}
+
+	/**
+	 * @param capacity maximum number of queued data
+	 * @param policy what to do with new data when the queue is full
+	 * @param keyExtractor determines the key of data, required for QueuePolicy.COALESCE
+	 */
+	public WorkerQueue(int capacity, QueuePolicy policy, KeyExtractor keyExtractor) {
+		if(capacity < 1){
+			throw new IllegalArgumentException("Queue capacity must be positive, got " + capacity);
+		}
+		if(policy == QueuePolicy.COALESCE && keyExtractor == null){
+			throw new IllegalArgumentException("QueuePolicy.COALESCE requires a KeyExtractor");
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		this.keyExtractor = keyExtractor;
+	}
+
+	/**
+	 * Creates an empty queue with the same capacity, policy and KeyExtractor as queue
+	 */
+	public WorkerQueue(WorkerQueue queue) {
+		this(queue.capacity, queue.policy, queue.keyExtractor);
+	}
+
+	/**
+	 * Creates a queue configured with the properties PROPERTY_CAPACITY, PROPERTY_POLICY and PROPERTY_KEY in ps.
+	 * Invalid or missing values are logged, and the defaults are used instead.
+	 * @param defaultCapacity capacity if ps does not specify it
+	 * @param defaultPolicy policy if ps does not specify it (or if it specifies coalesce without a key)
+	 */
+	public static WorkerQueue fromProperties(Properties ps, int defaultCapacity, QueuePolicy defaultPolicy) {
+		int capacity = defaultCapacity;
+		QueuePolicy policy = defaultPolicy;
+		KeyExtractor keyExtractor = null;
+
+		for(Entry<Object, Object> entry : ps.entrySet()){
+			try {
+				if(((String)entry.getKey()).equals(PROPERTY_CAPACITY)){
+					capacity = Integer.parseInt((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals(PROPERTY_POLICY)){
+					policy = QueuePolicy.parse((String)entry.getValue());
+				}
+				if(((String)entry.getKey()).equals(PROPERTY_KEY)){
+					keyExtractor = new JsonKeyExtractor((String)entry.getValue());
+				}
+			} catch(IllegalArgumentException e){ // NumberFormatException
+				logger.error("Error loading property {}: {}", entry.getKey(), e.getMessage());
+			}
+		}
+
+		if(capacity < 1){
+			logger.error("Invalid {} {}, using {}", PROPERTY_CAPACITY, capacity, defaultCapacity);
+			capacity = defaultCapacity;
+		}
+		if(policy == QueuePolicy.COALESCE && keyExtractor == null){
+			logger.error("{} coalesce requires property {}, using {}", PROPERTY_POLICY, PROPERTY_KEY, defaultPolicy);
+			policy = defaultPolicy;
+		}
+		return new WorkerQueue(capacity, policy, keyExtractor);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public QueuePolicy getPolicy() {
+		return policy;
+	}
+
+	public WorkerMetrics getMetrics() {
+		return metrics;
+	}
+
+	private Object keyOf(JsonNode jn) {
+		if(jn == null){
+			throw new NullPointerException();
+		}
+		return policy == QueuePolicy.COALESCE ? keyExtractor.getKey(jn) : null;
+	}
+
+	/** Replaces the queued data with the same key, if any. Must hold the lock. @return true if replaced */
+	private boolean coalesce(JsonNode jn, Object key) {
+		if(key == null){
+			return false;
+		}
+		Item item = itemsByKey.get(key);
+		if(item == null){
+			return false;
+		}
+		item.jn = jn;
+		item.enqueued = System.nanoTime();
+		metrics.recordEnqueued();
+		metrics.recordCoalesced();
+		return true;
+	}
+
+	/** Queues the data, dropping the oldest data if full. Must hold the lock. */
+	private void enqueue(JsonNode jn, Object key) {
+		if(items.size() >= capacity){
+			Item dropped = dequeueItem();
+			metrics.recordDropped();
+			logger.debug("Dropped data, queue full: {}", dropped.jn);
+		}
+		Item item = new Item(jn, key);
+		items.add(item);
+		if(key != null){
+			itemsByKey.put(key, item);
+		}
+		metrics.recordEnqueued();
+		metrics.setDepth(items.size());
+		notEmpty.signal();
+	}
+
+	/** Must hold the lock, and the queue must not be empty */
+	private Item dequeueItem() {
+		Item item = items.poll();
+		if(item.key != null){
+			itemsByKey.remove(item.key);
+		}
+		metrics.setDepth(items.size());
+		notFull.signal();
+		return item;
+	}
+
+	/** Must hold the lock, and the queue must not be empty */
+	private JsonNode dequeue() {
+		Item item = dequeueItem();
+		metrics.recordDequeued(System.nanoTime() - item.enqueued);
+		return item.jn;
+	}
+
+	@Override
+	public boolean offer(JsonNode jn) {
+		Object key = keyOf(jn);
+		lock.lock();
+		try {
+			if(coalesce(jn, key)){
+				return true;
+			}
+			if(policy == QueuePolicy.BLOCK && items.size() >= capacity){
+				return false;
+			}
+			enqueue(jn, key);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(JsonNode jn) throws InterruptedException {
+		Object key = keyOf(jn);
+		lock.lockInterruptibly();
+		try {
+			if(coalesce(jn, key)){
+				return;
+			}
+			while (policy == QueuePolicy.BLOCK && items.size() >= capacity) {
+				notFull.await();
+			}
+			enqueue(jn, key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(JsonNode jn, long timeout, TimeUnit unit) throws InterruptedException {
+		Object key = keyOf(jn);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			if(coalesce(jn, key)){
+				return true;
+			}
+			while (policy == QueuePolicy.BLOCK && items.size() >= capacity) {
+				if(nanos <= 0){
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(jn, key);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public JsonNode take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (items.isEmpty()) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public JsonNode poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (items.isEmpty()) {
+				if(nanos <= 0){
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public JsonNode poll() {
+		lock.lock();
+		try {
+			return items.isEmpty() ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public JsonNode peek() {
+		lock.lock();
+		try {
+			Item item = items.peek();
+			return item == null ? null : item.jn;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			items.clear();
+			itemsByKey.clear();
+			metrics.setDepth(0);
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super JsonNode> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super JsonNode> c, int maxElements) {
+		if(c == this){
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int n = 0;
+			while (n < maxElements && !items.isEmpty()) {
+				c.add(dequeue());
+				n++;
+			}
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes one queued instance of o, if any.
+	 * @return true if removed
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(o == null){
+			return false;
+		}
+		lock.lock();
+		try {
+			Iterator<Item> it = items.iterator();
+			while (it.hasNext()) {
+				Item item = it.next();
+				if(o.equals(item.jn)){
+					removeItem(it, item);
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		return removeMatching(c, true);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		return removeMatching(c, false);
+	}
+
+	/** Removes the queued data that is (or, if contained is false, is not) in c. @return true if any data was removed */
+	private boolean removeMatching(Collection<?> c, boolean contained) {
+		if(c == null){
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			boolean removed = false;
+			Iterator<Item> it = items.iterator();
+			while (it.hasNext()) {
+				Item item = it.next();
+				if(c.contains(item.jn) == contained){
+					removeItem(it, item);
+					removed = true;
+				}
+			}
+			return removed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Removes item, the current item of it, from the queue. Must hold the lock. */
+	private void removeItem(Iterator<Item> it, Item item) {
+		it.remove();
+		if(item.key != null){
+			itemsByKey.remove(item.key);
+		}
+		metrics.setDepth(items.size());
+		notFull.signal();
+	}
+
+	/**
+	 * @return an iterator over a snapshot of the queued data, which does not support remove(); use remove(Object) instead
+	 */
+	@Override
+	public Iterator<JsonNode> iterator() {
+		List<JsonNode> snapshot = new ArrayList<JsonNode>();
+		lock.lock();
+		try {
+			for(Item item : items){
+				snapshot.add(item.jn);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	@Override
+	public String toString() {
+		return "WorkerQueue[" + policy + ", capacity " + capacity + ", " + metrics + "]";
+	}
+}
@@ -0,0 +1,143 @@
+package nl.utwente.hmi.middleware;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import nl.utwente.hmi.middleware.helpers.LengthPrefixedFrames;
+import nl.utwente.hmi.middleware.tcpip.BinaryTCPIPMiddleware;
+import nl.utwente.hmi.middleware.udp.BinaryUDPMiddleware;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Loopback tests for the binary middlewares, and their JSON compatibility
+ */
+public class BinaryMiddlewareTest
+{
+    private static final int TIMEOUT = 5000;
+
+    private final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+
+    private final MiddlewareListener listener = new MiddlewareListener()
+    {
+        @Override
+        public void receiveData(JsonNode jn)
+        {
+            received.add(jn);
+        }
+    };
+
+    private static ByteBuffer frame(String payload)
+    {
+        return LengthPrefixedFrames.encode(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String readFrame(SocketChannel channel) throws IOException
+    {
+        LengthPrefixedFrames.Decoder decoder = new LengthPrefixedFrames.Decoder();
+        ByteBuffer frame;
+        while ((frame = decoder.nextFrame()) == null)
+        {
+            if (decoder.readFrom(channel) < 0) throw new IOException("closed");
+        }
+        return StandardCharsets.UTF_8.decode(frame).toString();
+    }
+
+    private static void waitForClients(BinaryTCPIPMiddleware mw, int clients) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (mw.getClientCount() < clients && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(clients, mw.getClientCount());
+    }
+
+    @Test
+    public void testTCPIP() throws IOException, InterruptedException
+    {
+        BinaryTCPIPMiddleware mw = new BinaryTCPIPMiddleware(17512);
+        mw.addListener(listener);
+        try (SocketChannel c1 = SocketChannel.open(new InetSocketAddress("localhost", mw.getPort()));
+                SocketChannel c2 = SocketChannel.open(new InetSocketAddress("localhost", mw.getPort())))
+        {
+            waitForClients(mw, 2);
+
+            // a frame split over two writes, followed by a keep-alive and a second frame in one write
+            ByteBuffer f1 = frame("{\"content\":\"hello\"}");
+            ByteBuffer part = f1.duplicate();
+            part.limit(6);
+            c1.write(part);
+            Thread.sleep(50);
+            f1.position(6);
+            ByteBuffer rest = ByteBuffer.allocate(100);
+            rest.put(f1).put(frame("")).put(frame("{\"n\":2}"));
+            rest.flip();
+            c1.write(rest);
+
+            assertEquals("hello", received.poll(TIMEOUT, TimeUnit.MILLISECONDS).get("content").asText());
+            assertEquals(2, received.poll(TIMEOUT, TimeUnit.MILLISECONDS).get("n").asInt());
+
+            mw.sendData(new ObjectMapper().createObjectNode().put("pose", 1));
+            mw.sendDataRaw("{\"pose\":2}");
+            assertEquals("{\"pose\":1}", readFrame(c1));
+            assertEquals("{\"pose\":1}", readFrame(c2));
+        }
+        finally
+        {
+            mw.close();
+        }
+    }
+
+    @Test
+    public void testUDP() throws IOException, InterruptedException
+    {
+        BinaryUDPMiddleware mw = new BinaryUDPMiddleware(17513, 10000);
+        final BlockingQueue<Integer> sizes = new LinkedBlockingQueue<>();
+        mw.addListener(listener);
+        mw.addBinaryListener(new BinaryMiddlewareListener()
+        {
+            @Override
+            public void receiveBytes(ByteBuffer data)
+            {
+                sizes.add(data.remaining());
+            }
+        });
+        try (DatagramChannel client = DatagramChannel.open())
+        {
+            client.socket().bind(new InetSocketAddress("localhost", 0));
+            ByteBuffer datagram = ByteBuffer.allocate(100);
+            datagram.put(frame("{\"a\":1}")).put(frame("{\"b\":2}"));
+            datagram.flip();
+            client.send(datagram, new InetSocketAddress("localhost", 17513));
+
+            assertEquals(1, received.poll(TIMEOUT, TimeUnit.MILLISECONDS).get("a").asInt());
+            assertEquals(2, received.poll(TIMEOUT, TimeUnit.MILLISECONDS).get("b").asInt());
+            assertEquals(7, (int) sizes.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals(1, mw.getClientCount());
+
+            mw.sendDataRaw("{\"c\":3}");
+            ByteBuffer reply = ByteBuffer.allocate(100);
+            client.receive(reply);
+            reply.flip();
+            assertEquals(7, reply.getInt());
+            assertEquals("{\"c\":3}", StandardCharsets.UTF_8.decode(reply).toString());
+        }
+        finally
+        {
+            mw.close();
+        }
+    }
+}
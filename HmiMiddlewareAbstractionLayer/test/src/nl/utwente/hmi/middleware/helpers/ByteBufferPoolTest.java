@@ -0,0 +1,53 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the ByteBufferPool
+ */
+public class ByteBufferPoolTest
+{
+    @Test
+    public void testSizeClasses()
+    {
+        ByteBufferPool pool = new ByteBufferPool(16, 100, 1000, false);
+        assertEquals(16, pool.acquire(1).capacity());
+        assertEquals(16, pool.acquire(16).capacity());
+        assertEquals(32, pool.acquire(17).capacity());
+        assertEquals(64, pool.acquire(33).capacity());
+        assertEquals(100, pool.acquire(65).capacity());
+        assertEquals(100, pool.acquire().capacity());
+    }
+
+    @Test
+    public void testReuse()
+    {
+        ByteBufferPool pool = new ByteBufferPool(16, 100, 32, false);
+        ByteBuffer b1 = pool.acquire(10);
+        ByteBuffer b2 = pool.acquire(10);
+        ByteBuffer b3 = pool.acquire(10);
+        pool.release(b1);
+        pool.release(b2);
+        pool.release(b3); // only 32 bytes of 16 byte buffers are kept
+        assertEquals(2, pool.getPooled());
+        assertSame(b1, pool.acquire(5));
+        assertEquals(3, pool.getAllocated());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLarge()
+    {
+        new ByteBufferPool(16, 100, 1000, false).acquire(101);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignBuffer()
+    {
+        new ByteBufferPool(16, 100, 1000, false).release(ByteBuffer.allocate(20));
+    }
+}
@@ -0,0 +1,62 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the ChannelWriteQueue
+ */
+public class ChannelWriteQueueTest
+{
+    @Test
+    public void testOfferAndFlush() throws IOException
+    {
+        final List<String> written = new ArrayList<String>();
+        ChannelWriteQueue<String> queue = new ChannelWriteQueue<String>(5, new ChannelWriteQueue.Listener<String>()
+        {
+            @Override
+            public void written(String item)
+            {
+                written.add(item);
+            }
+        });
+        ByteBuffer data = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        assertTrue(queue.offer(data, "a"));
+        assertFalse(queue.offer(data, "b")); // would exceed 5 pending bytes
+        assertTrue(queue.offer(ByteBuffer.wrap(new byte[] { 4, 5 }), "c"));
+        assertEquals(0, data.position());
+        assertEquals(5, queue.getPendingBytes());
+
+        Pipe pipe = Pipe.open();
+        assertTrue(queue.flush(pipe.sink()));
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getPendingBytes());
+        assertEquals(2, written.size());
+        assertEquals("c", written.get(1));
+
+        ByteBuffer received = ByteBuffer.allocate(5);
+        while (received.hasRemaining())
+        {
+            pipe.source().read(received);
+        }
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, received.array());
+    }
+
+    @Test
+    public void testNullItems() throws IOException
+    {
+        ChannelWriteQueue<Void> queue = new ChannelWriteQueue<Void>(100, null);
+        assertTrue(queue.offer(ByteBuffer.wrap(new byte[] { 1 }), null));
+        assertTrue(queue.flush(Pipe.open().sink()));
+    }
+}
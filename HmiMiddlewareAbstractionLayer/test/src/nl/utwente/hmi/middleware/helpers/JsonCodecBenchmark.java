@@ -0,0 +1,167 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.bridge.MiddlewareToMiddlewareBridge;
+
+/**
+ * Micro benchmark for the receive path of the middlewares, comparing the previous path (a new ObjectMapper per message)
+ * with the shared JsonCodec and RawJsonMessage, both for delivering messages to two listeners, and for forwarding them
+ * through a MiddlewareToMiddlewareBridge. Reports messages per second, and the number of bytes allocated per message,
+ * measured with the per thread allocation counter of the JVM.
+ * Run with: java nl.utwente.hmi.middleware.helpers.JsonCodecBenchmark [iterations]
+ */
+public final class JsonCodecBenchmark
+{
+    private static final int DEFAULT_ITERATIONS = 100000;
+
+    private static final String SMALL = "{\"keepalive\":\"ping\"}";
+
+    private static final String BML = "{\"bml\":{\"content\":\"<bml xmlns=\\\"http://www.bml-initiative.org/bml/bml-1.0\\\" "
+            + "id=\\\"bml1\\\" characterId=\\\"Billie\\\"><speech id=\\\"s1\\\" start=\\\"0\\\"><text>Hello, this is a "
+            + "somewhat longer sentence, as a typical behaviour request contains.</text></speech><gesture id=\\\"g1\\\" "
+            + "lexeme=\\\"BEAT\\\" start=\\\"s1:start\\\" end=\\\"s1:end\\\"/><head id=\\\"h1\\\" lexeme=\\\"NOD\\\" "
+            + "start=\\\"g1:stroke\\\"/></bml>\"},\"feedback\":{\"blocks\":[1,2,3,4,5,6,7,8],\"time\":12.375,\"ok\":true}}";
+
+    private static volatile Object sink;
+
+    private JsonCodecBenchmark()
+    {
+    }
+
+    /** Keeps the received data reachable, so that the JIT can not remove the work */
+    private static final MiddlewareListener SINK_LISTENER = new MiddlewareListener()
+    {
+        @Override
+        public void receiveData(JsonNode jn)
+        {
+            sink = jn;
+        }
+    };
+
+    /** A middleware that only consumes what is sent to it */
+    private static class SinkMiddleware implements Middleware
+    {
+        private MiddlewareListener listener;
+
+        @Override
+        public void sendData(JsonNode jn)
+        {
+            sink = jn.toString();
+        }
+
+        @Override
+        public void sendDataRaw(String data)
+        {
+            sink = data;
+        }
+
+        @Override
+        public void addListener(MiddlewareListener ml)
+        {
+            listener = ml;
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread, or -1 if not supported by the JVM.
+     */
+    static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private abstract static class Task
+    {
+        abstract void run(String json) throws IOException;
+    }
+
+    private static void runLoop(Task task, String json, int iterations) throws IOException
+    {
+        for (int i = 0; i < iterations; i++)
+        {
+            task.run(json);
+        }
+    }
+
+    private static void measure(String label, String json, Task task, int iterations) throws IOException
+    {
+        runLoop(task, json, iterations); // warm up
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        runLoop(task, json, iterations);
+        long nanos = System.nanoTime() - start;
+        long bytesAfter = allocatedBytes();
+        String allocation = (bytesBefore < 0) ? "n/a" : String.format("%.0f", (double) (bytesAfter - bytesBefore) / iterations);
+        System.out.println(String.format("%-30s size=%4d  %10.0f msgs/s  %s bytes/msg", label, json.length(), iterations
+                * 1e9 / nanos, allocation));
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+        SinkMiddleware m1 = new SinkMiddleware();
+        SinkMiddleware m2 = new SinkMiddleware();
+        new MiddlewareToMiddlewareBridge(m1, m2).initBridge();
+        final MiddlewareListener forwarder = m1.listener;
+
+        for (String json : new String[] { SMALL, BML })
+        {
+            measure("receive: mapper per message", json, new Task()
+            {
+                @Override
+                void run(String json) throws IOException
+                {
+                    JsonNode jn = new ObjectMapper().readTree(json);
+                    SINK_LISTENER.receiveData(jn);
+                    SINK_LISTENER.receiveData(jn);
+                }
+            }, iterations);
+
+            measure("receive: shared codec", json, new Task()
+            {
+                @Override
+                void run(String json)
+                {
+                    RawJsonMessage msg = new RawJsonMessage(json);
+                    msg.deliverTo(SINK_LISTENER);
+                    msg.deliverTo(SINK_LISTENER);
+                }
+            }, iterations);
+
+            measure("bridge: mapper per message", json, new Task()
+            {
+                @Override
+                void run(String json) throws IOException
+                {
+                    forwarder.receiveData(new ObjectMapper().readTree(json));
+                }
+            }, iterations);
+
+            measure("bridge: raw forwarding", json, new Task()
+            {
+                @Override
+                void run(String json)
+                {
+                    new RawJsonMessage(json).deliverTo(forwarder);
+                }
+            }, iterations);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the LengthPrefixedFrames
+ */
+public class LengthPrefixedFramesTest
+{
+    private static String string(ByteBuffer frame)
+    {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer frame(String payload)
+    {
+        return LengthPrefixedFrames.encode(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testEncode()
+    {
+        ByteBuffer payload = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        ByteBuffer frame = LengthPrefixedFrames.encode(payload);
+        assertEquals(0, payload.position());
+        assertEquals(7, frame.remaining());
+        assertEquals(3, frame.getInt(0));
+    }
+
+    @Test
+    public void testDecodeChunks() throws ProtocolException
+    {
+        ByteBuffer stream = ByteBuffer.allocate(1000);
+        stream.put(frame("{\"a\":1}")).put(frame("")).put(frame("{\"b\":2}"));
+        stream.flip();
+
+        LengthPrefixedFrames.Decoder decoder = new LengthPrefixedFrames.Decoder(8, 1024);
+        StringBuilder decoded = new StringBuilder();
+        int frames = 0;
+        while (stream.hasRemaining())
+        {
+            ByteBuffer chunk = stream.slice();
+            chunk.limit(Math.min(3, chunk.remaining()));
+            stream.position(stream.position() + chunk.remaining());
+            decoder.put(chunk);
+            ByteBuffer frame;
+            while ((frame = decoder.nextFrame()) != null)
+            {
+                decoded.append(string(frame)).append('|');
+                frames++;
+            }
+        }
+        assertEquals(3, frames);
+        assertEquals("{\"a\":1}||{\"b\":2}|", decoded.toString());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void testInvalidLength() throws ProtocolException
+    {
+        LengthPrefixedFrames.Decoder decoder = new LengthPrefixedFrames.Decoder(8, 16);
+        decoder.put(frame("this payload is too large"));
+        decoder.nextFrame();
+    }
+}
@@ -0,0 +1,165 @@
+package nl.utwente.hmi.middleware.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import nl.utwente.hmi.middleware.Middleware;
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.RawMiddlewareListener;
+import nl.utwente.hmi.middleware.bridge.MiddlewareToMiddlewareBridge;
+
+/**
+ * Unit tests for the RawJsonMessage and the raw forwarding of the MiddlewareToMiddlewareBridge
+ */
+public class RawJsonMessageTest
+{
+    private static final String JSON = "{\"bml\":{\"content\":\"<bml id=\\\"bml1\\\"/>\"},\"n\":3}";
+
+    private static class RecordingListener implements MiddlewareListener
+    {
+        private final List<JsonNode> received = new ArrayList<JsonNode>();
+
+        @Override
+        public void receiveData(JsonNode jn)
+        {
+            received.add(jn);
+        }
+    }
+
+    /** A middleware that records what is sent, and on which data can be received with receive() */
+    private static class StubMiddleware implements Middleware
+    {
+        private final List<MiddlewareListener> listeners = new ArrayList<MiddlewareListener>();
+        private final List<String> sentRaw = new ArrayList<String>();
+        private final List<JsonNode> sent = new ArrayList<JsonNode>();
+
+        @Override
+        public void sendData(JsonNode jn)
+        {
+            sent.add(jn);
+        }
+
+        @Override
+        public void sendDataRaw(String data)
+        {
+            sentRaw.add(data);
+        }
+
+        @Override
+        public void addListener(MiddlewareListener ml)
+        {
+            listeners.add(ml);
+        }
+
+        void receive(String data)
+        {
+            RawJsonMessage msg = new RawJsonMessage(data);
+            for (MiddlewareListener ml : listeners)
+            {
+                msg.deliverTo(ml);
+            }
+        }
+    }
+
+    @Test
+    public void testParsedOnceForAllListeners()
+    {
+        RawJsonMessage msg = new RawJsonMessage(JSON);
+        RecordingListener l1 = new RecordingListener();
+        RecordingListener l2 = new RecordingListener();
+        msg.deliverTo(l1);
+        msg.deliverTo(l2);
+        assertEquals(1, l1.received.size());
+        assertSame(l1.received.get(0), l2.received.get(0));
+        assertEquals(3, l1.received.get(0).get("n").asInt());
+    }
+
+    @Test
+    public void testRawListenerIsNotParsedFor()
+    {
+        final List<String> texts = new ArrayList<String>();
+        RawMiddlewareListener raw = new RawMiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                throw new AssertionError("raw listener should not receive parsed data");
+            }
+
+            @Override
+            public void receiveRaw(RawJsonMessage msg)
+            {
+                texts.add(msg.getText());
+            }
+        };
+        new RawJsonMessage(JSON).deliverTo(raw);
+        assertEquals(JSON, texts.get(0));
+    }
+
+    @Test
+    public void testBytes() throws IOException
+    {
+        byte[] bytes = ("xx" + JSON + "yy").getBytes(StandardCharsets.UTF_8);
+        RawJsonMessage msg = RawJsonMessage.wrap(ByteBuffer.wrap(bytes, 2, bytes.length - 4));
+        assertEquals(JSON, msg.getText());
+        assertEquals("<bml id=\"bml1\"/>", msg.getJsonNode().get("bml").get("content").asText());
+        ByteBuffer view = msg.getBytes();
+        assertEquals(bytes.length - 4, view.remaining());
+        assertEquals('{', view.get(0));
+
+        try (JsonParser parser = msg.createParser())
+        {
+            assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+            assertEquals("bml", parser.nextFieldName());
+        }
+    }
+
+    @Test
+    public void testInvalidJson()
+    {
+        RecordingListener l = new RecordingListener();
+        RawJsonMessage msg = new RawJsonMessage("{\"unterminated\":");
+        assertNull(msg.getJsonNode());
+        msg.deliverTo(l);
+        assertEquals(0, l.received.size());
+    }
+
+    @Test
+    public void testEmptyJson() throws IOException
+    {
+        assertNull(JsonCodec.parse(" \n"));
+        assertNull(JsonCodec.parse(new byte[] { '{', ' ', '}' }, 1, 1));
+        assertNull(new RawJsonMessage("").getJsonNode());
+    }
+
+    @Test
+    public void testBridgeForwardsRaw()
+    {
+        StubMiddleware m1 = new StubMiddleware();
+        StubMiddleware m2 = new StubMiddleware();
+        new MiddlewareToMiddlewareBridge(m1, m2).initBridge();
+
+        m1.receive(JSON);
+        assertEquals(1, m2.sentRaw.size());
+        assertSame(JSON, m2.sentRaw.get(0));
+        assertEquals(0, m2.sent.size());
+
+        // multi-line JSON is reformatted for line based middlewares
+        m2.receive("{\n\"a\":1\n}");
+        assertEquals(0, m1.sentRaw.size());
+        assertEquals("{\"a\":1}", m1.sent.get(0).toString());
+    }
+}
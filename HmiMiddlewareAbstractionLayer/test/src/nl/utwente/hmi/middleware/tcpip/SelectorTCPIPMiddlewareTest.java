@@ -0,0 +1,125 @@
+package nl.utwente.hmi.middleware.tcpip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+import nl.utwente.hmi.middleware.helpers.TrafficCounter;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Loopback test for the SelectorTCPIPMiddleware, with two clients
+ */
+public class SelectorTCPIPMiddlewareTest
+{
+    private static final int READ_PORT = 17522;
+    private static final int SEND_PORT = 17523;
+    private static final int TIMEOUT = 5000;
+
+    private static void awaitMessages(TrafficCounter counter, long messages) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (counter.getMessages() < messages && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(messages, counter.getMessages());
+    }
+
+    @Test
+    public void testClients() throws IOException, InterruptedException
+    {
+        final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        SelectorTCPIPMiddleware mw = new SelectorTCPIPMiddleware(READ_PORT, SEND_PORT);
+        mw.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                throw new IllegalStateException("failing listener");
+            }
+        }); // should not keep the other listener from receiving
+        mw.addListener(new MiddlewareListener()
+        {
+            @Override
+            public void receiveData(JsonNode jn)
+            {
+                received.add(jn);
+            }
+        });
+        try (ServerSocket feedbackServer = new ServerSocket(SEND_PORT);
+                Socket c1 = new Socket("localhost", READ_PORT);
+                Socket c2 = new Socket("localhost", READ_PORT))
+        {
+            feedbackServer.setSoTimeout(TIMEOUT);
+            try (Socket f1 = feedbackServer.accept(); Socket f2 = feedbackServer.accept())
+            {
+                long end = System.currentTimeMillis() + TIMEOUT;
+                while (mw.getClientCount() < 2 && System.currentTimeMillis() < end)
+                {
+                    Thread.sleep(10);
+                }
+                assertTrue(mw.isConnectedToClient());
+                assertEquals(2, mw.getClientCount());
+
+                // a message split over two writes, and a burst of messages in a single write
+                OutputStream out = c1.getOutputStream();
+                out.write("{\"content\":".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(50);
+                StringBuilder burst = new StringBuilder("\"hello\"}\r\n");
+                for (int i = 0; i < 100; i++)
+                {
+                    burst.append("{\"n\":").append(i).append("}\n");
+                }
+                out.write(burst.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                c2.getOutputStream().write("{\"from\":2}\n".getBytes(StandardCharsets.UTF_8));
+
+                int n = 0;
+                boolean fromClient2 = false;
+                for (int i = 0; i < 102; i++)
+                {
+                    JsonNode jn = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (jn.has("content")) assertEquals("hello", jn.get("content").asText());
+                    if (jn.has("n")) assertEquals(n++, jn.get("n").asInt());
+                    if (jn.has("from")) fromClient2 = true;
+                }
+                assertEquals(100, n);
+                assertTrue(fromClient2);
+                awaitMessages(mw.getReceiveCounter(), 102);
+
+                for (int i = 0; i < 1000; i++)
+                {
+                    mw.sendDataRaw("{\"pose\":" + i + "}");
+                }
+                BufferedReader r1 = new BufferedReader(new InputStreamReader(f1.getInputStream(), StandardCharsets.UTF_8));
+                BufferedReader r2 = new BufferedReader(new InputStreamReader(f2.getInputStream(), StandardCharsets.UTF_8));
+                for (int i = 0; i < 1000; i++)
+                {
+                    assertEquals("{\"pose\":" + i + "}", r1.readLine());
+                    assertEquals("{\"pose\":" + i + "}", r2.readLine());
+                }
+                awaitMessages(mw.getSendCounter(), 2000);
+            }
+        }
+        finally
+        {
+            mw.shutdown();
+        }
+    }
+}
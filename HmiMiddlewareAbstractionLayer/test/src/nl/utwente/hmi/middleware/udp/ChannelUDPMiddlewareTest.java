@@ -0,0 +1,135 @@
+package nl.utwente.hmi.middleware.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import nl.utwente.hmi.middleware.MiddlewareListener;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Loopback tests for the ChannelUDPMiddleware
+ */
+public class ChannelUDPMiddlewareTest
+{
+    private static final int TIMEOUT = 5000;
+
+    private final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+
+    private final MiddlewareListener listener = new MiddlewareListener()
+    {
+        @Override
+        public void receiveData(JsonNode jn)
+        {
+            received.add(jn);
+        }
+    };
+
+    private static void send(DatagramChannel client, String msg, int port) throws IOException
+    {
+        client.send(ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8)), new InetSocketAddress("localhost", port));
+    }
+
+    private static String receive(DatagramChannel client) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(ChannelUDPMiddleware.MAX_DATAGRAM_SIZE);
+        client.receive(buffer);
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private static void waitForClients(ChannelUDPMiddleware mw, int clients) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (mw.getClientCount() < clients && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(clients, mw.getClientCount());
+    }
+
+    private void testMultiClient(boolean scatter, int port) throws IOException, InterruptedException
+    {
+        ChannelUDPMiddleware mw = new ChannelUDPMiddleware(port, 10000, scatter);
+        mw.addListener(listener);
+        try (DatagramChannel c1 = DatagramChannel.open(); DatagramChannel c2 = DatagramChannel.open())
+        {
+            c1.socket().bind(new InetSocketAddress("localhost", 0));
+            c2.socket().bind(new InetSocketAddress("localhost", 0));
+            send(c1, "{}", port);
+            send(c2, "", port);
+            waitForClients(mw, 2);
+
+            for (int i = 0; i < 100; i++)
+            {
+                send(c1, "{\"a\":" + i + "}", port);
+                JsonNode jn = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+                assertEquals(i, jn.get("a").asInt());
+            }
+            assertTrue(received.isEmpty()); // heartbeats are not dispatched
+            assertTrue(mw.getReceiveBufferPool().getAllocated() < 10);
+
+            for (int i = 0; i < 100; i++)
+            {
+                mw.sendDataRaw("{\"i\":" + i + "}");
+                assertEquals("{\"i\":" + i + "}", receive(c1));
+                assertEquals("{\"i\":" + i + "}", receive(c2));
+            }
+            // buffers are reused, rather than allocated per message
+            assertTrue(mw.getBufferPool().getAllocated() < 10);
+        }
+        finally
+        {
+            mw.close();
+        }
+    }
+
+    @Test
+    public void testScatter() throws IOException, InterruptedException
+    {
+        testMultiClient(true, 17532);
+    }
+
+    @Test
+    public void testEncodePerClient() throws IOException, InterruptedException
+    {
+        testMultiClient(false, 17533);
+    }
+
+    @Test
+    public void testSingleClientHeartbeat() throws IOException, InterruptedException
+    {
+        try (DatagramChannel client = DatagramChannel.open())
+        {
+            client.socket().bind(new InetSocketAddress("localhost", 0));
+            ChannelUDPMiddleware mw = new ChannelUDPMiddleware(17534, (InetSocketAddress) client.getLocalAddress(), 50);
+            try
+            {
+                assertEquals("", receive(client));
+                mw.sendDataRaw("{\"b\":2}");
+                String msg;
+                do
+                {
+                    msg = receive(client);
+                }
+                while (msg.isEmpty());
+                assertEquals("{\"b\":2}", msg);
+            }
+            finally
+            {
+                mw.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package nl.utwente.hmi.middleware.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+/**
+ * Unit tests for the WorkerPool
+ */
+public class WorkerPoolTest
+{
+    private static final int KEYS = 8;
+    private static final int PER_KEY = 500;
+
+    private static JsonNode data(String key, int seq)
+    {
+        return JsonNodeFactory.instance.objectNode().put("key", key).put("seq", seq);
+    }
+
+    /** Records the threads used, and counts data processed out of order per key */
+    private static class OrderCheckingProcessor implements DataProcessor
+    {
+        private final ConcurrentHashMap<String, Integer> lastSeq = new ConcurrentHashMap<String, Integer>();
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        private final AtomicInteger outOfOrder = new AtomicInteger();
+        private final CountDownLatch done;
+
+        OrderCheckingProcessor(int expected)
+        {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void processData(JsonNode jn)
+        {
+            threads.add(Thread.currentThread().getName());
+            String key = jn.get("key").asText();
+            int seq = jn.get("seq").asInt();
+            Integer last = lastSeq.put(key, seq);
+            if (last != null && last != seq - 1)
+            {
+                outOfOrder.incrementAndGet();
+            }
+            done.countDown();
+        }
+    }
+
+    private static void feed(WorkerPool pool)
+    {
+        for (int i = 0; i < PER_KEY; i++)
+        {
+            for (int k = 0; k < KEYS; k++)
+            {
+                pool.addDataToQueue(data("character" + k, i));
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPartitionedOrder() throws InterruptedException
+    {
+        OrderCheckingProcessor processor = new OrderCheckingProcessor(KEYS * PER_KEY);
+        WorkerPool pool = new WorkerPool(4, new JsonKeyExtractor("key"), new WorkerQueue(), processor);
+        pool.start();
+        try
+        {
+            feed(pool);
+            assertTrue(processor.done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, processor.outOfOrder.get());
+            assertEquals(4, pool.getMetrics().size());
+            long processed = 0;
+            for (WorkerMetrics metrics : pool.getMetrics())
+            {
+                processed += metrics.getEnqueued();
+            }
+            assertEquals(KEYS * PER_KEY, processed);
+            assertEquals(KEYS * PER_KEY, pool.getCombinedMetrics().getEnqueued());
+            assertTrue(processor.threads.size() > 1);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShared() throws InterruptedException
+    {
+        OrderCheckingProcessor processor = new OrderCheckingProcessor(KEYS * PER_KEY);
+        WorkerPool pool = new WorkerPool(3, processor);
+        pool.start();
+        try
+        {
+            feed(pool);
+            assertTrue(processor.done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, pool.getMetrics().size());
+            assertEquals(KEYS * PER_KEY, pool.getMetrics().get(0).getEnqueued());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFromProperties()
+    {
+        DataProcessor processor = new OrderCheckingProcessor(0);
+        Properties ps = new Properties();
+        assertNull(WorkerPool.fromProperties(ps, new WorkerQueue(), processor));
+        ps.setProperty(WorkerPool.PROPERTY_THREADS, "3");
+        assertFalse(WorkerPool.isPartitioned(ps));
+        ps.setProperty(WorkerPool.PROPERTY_PARTITION_KEY, "/key");
+        assertTrue(WorkerPool.isPartitioned(ps));
+        WorkerPool pool = WorkerPool.fromProperties(ps, new WorkerQueue(10, QueuePolicy.DROP_OLDEST, null), processor);
+        assertEquals(3, pool.getThreadCount());
+        assertEquals(3, pool.getMetrics().size());
+    }
+}
@@ -0,0 +1,195 @@
+package nl.utwente.hmi.middleware.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+/**
+ * Unit tests for the WorkerQueue policies and metrics
+ */
+public class WorkerQueueTest
+{
+    private static JsonNode data(String topic, int value)
+    {
+        return JsonNodeFactory.instance.objectNode().put("topic", topic).put("value", value);
+    }
+
+    private static int value(JsonNode jn)
+    {
+        return jn.get("value").asInt();
+    }
+
+    @Test(timeout = 5000)
+    public void testBlock() throws InterruptedException
+    {
+        final WorkerQueue queue = new WorkerQueue(2, QueuePolicy.BLOCK, null);
+        assertTrue(queue.offer(data("a", 1)));
+        assertTrue(queue.offer(data("a", 2)));
+        assertFalse(queue.offer(data("a", 3)));
+        assertFalse(queue.offer(data("a", 3), 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, queue.remainingCapacity());
+
+        final CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    queue.put(data("a", 3));
+                    put.countDown();
+                }
+                catch (InterruptedException e)
+                {
+                    // test fails on the latch
+                }
+            }
+        };
+        producer.start();
+        assertFalse(put.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, value(queue.take()));
+        assertTrue(put.await(1, TimeUnit.SECONDS));
+        assertEquals(2, value(queue.take()));
+        assertEquals(3, value(queue.take()));
+        assertEquals(0, queue.getMetrics().getDropped());
+        assertEquals(3, queue.getMetrics().getEnqueued());
+    }
+
+    @Test
+    public void testDropOldest()
+    {
+        WorkerQueue queue = new WorkerQueue(2, QueuePolicy.DROP_OLDEST, null);
+        for (int i = 1; i <= 5; i++)
+        {
+            assertTrue(queue.offer(data("a", i)));
+        }
+        assertEquals(2, queue.getMetrics().getDepth());
+        assertEquals(3, queue.getMetrics().getDropped());
+        assertEquals(4, value(queue.poll()));
+        assertEquals(5, value(queue.poll()));
+        assertNull(queue.poll());
+        assertEquals(0, queue.getMetrics().getDepth());
+    }
+
+    @Test
+    public void testCoalesce()
+    {
+        WorkerQueue queue = new WorkerQueue(10, QueuePolicy.COALESCE, new JsonKeyExtractor("topic"));
+        queue.offer(data("pose", 1));
+        queue.offer(data("speech", 2));
+        queue.offer(data("pose", 3));
+        queue.offer(JsonNodeFactory.instance.objectNode().put("value", 4)); // no key
+        queue.offer(data("pose", 5));
+
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getMetrics().getCoalesced());
+        // the latest pose, in the position of the first
+        assertEquals(5, value(queue.poll()));
+        assertEquals(2, value(queue.poll()));
+        assertEquals(4, value(queue.poll()));
+
+        // once taken, a key is queued anew
+        queue.offer(data("pose", 6));
+        assertEquals(1, queue.size());
+        assertEquals(6, value(queue.poll()));
+    }
+
+    @Test
+    public void testCoalesceFull()
+    {
+        WorkerQueue queue = new WorkerQueue(2, QueuePolicy.COALESCE, new JsonKeyExtractor("/topic"));
+        queue.offer(data("a", 1));
+        queue.offer(data("b", 2));
+        queue.offer(data("a", 3));
+        queue.offer(data("c", 4)); // drops a
+        queue.offer(data("a", 5)); // a is no longer queued, drops b
+        assertEquals(2, queue.getMetrics().getDropped());
+        assertEquals(1, queue.getMetrics().getCoalesced());
+        assertEquals(4, value(queue.poll()));
+        assertEquals(5, value(queue.poll()));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        WorkerQueue queue = new WorkerQueue(10, QueuePolicy.COALESCE, new JsonKeyExtractor("topic"));
+        for (int i = 0; i < 4; i++)
+        {
+            queue.offer(data("t" + i, i));
+        }
+        assertTrue(queue.remove(data("t1", 1)));
+        assertFalse(queue.remove(data("t1", 1)));
+        assertTrue(queue.removeAll(Arrays.asList(data("t2", 2))));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getMetrics().getDepth());
+        assertTrue(queue.retainAll(Arrays.asList(data("t3", 3))));
+        assertEquals(3, value(queue.peek()));
+
+        queue.offer(data("t1", 5)); // no longer coalesced with the removed data
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testFromProperties()
+    {
+        Properties ps = new Properties();
+        ps.setProperty(WorkerQueue.PROPERTY_CAPACITY, "100");
+        ps.setProperty(WorkerQueue.PROPERTY_POLICY, "coalesce-by-key");
+        ps.setProperty(WorkerQueue.PROPERTY_KEY, "/header/topic");
+        WorkerQueue queue = WorkerQueue.fromProperties(ps, 1, QueuePolicy.DROP_OLDEST);
+        assertEquals(100, queue.getCapacity());
+        assertEquals(QueuePolicy.COALESCE, queue.getPolicy());
+
+        ps.remove(WorkerQueue.PROPERTY_KEY);
+        ps.setProperty(WorkerQueue.PROPERTY_CAPACITY, "many");
+        queue = WorkerQueue.fromProperties(ps, 1, QueuePolicy.DROP_OLDEST);
+        assertEquals(1, queue.getCapacity());
+        assertEquals(QueuePolicy.DROP_OLDEST, queue.getPolicy());
+
+        assertEquals(QueuePolicy.DROP_OLDEST, QueuePolicy.parse("drop-oldest"));
+        assertEquals(QueuePolicy.BLOCK, QueuePolicy.parse(" Block"));
+    }
+
+    @Test(timeout = 5000)
+    public void testWorkerMetrics() throws InterruptedException
+    {
+        final CountDownLatch processed = new CountDownLatch(3);
+        AbstractWorker worker = new AbstractWorker(new WorkerQueue(10, QueuePolicy.BLOCK, null))
+        {
+            @Override
+            public void processData(JsonNode jn)
+            {
+                processed.countDown();
+            }
+        };
+        Thread thread = new Thread(worker);
+        thread.setDaemon(true);
+        thread.start();
+        for (int i = 0; i < 3; i++)
+        {
+            worker.addDataToQueue(data("a", i));
+        }
+        processed.await();
+        long end = System.currentTimeMillis() + 1000;
+        while (worker.getMetrics().getProcessed() < 3 && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(5);
+        }
+        assertEquals(3, worker.getMetrics().getProcessed());
+        assertEquals(3, worker.getMetrics().getEnqueued());
+        assertEquals(0, worker.getMetrics().getDepth());
+    }
+}
@@ -0,0 +1,650 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Clock, with the same media time, rate and start/pause/terminate behavior as SystemClock, that divides every clock tick into phases.
+ * <ol>
+ * <li>Every ClockListener is added for some Phase, by means of addClockListener(listener, phase, dependencies). Listeners added with
+ * addClockListener(listener) run in the ANIMATION phase.</li>
+ * <li>The phases of a tick run one after the other, in the order INPUT, ANIMATION, PHYSICS, RENDER_HANDOFF. So a listener can rely on all
+ * listeners of earlier phases having finished their time() call for the current tick, without synchronizing on a global monitor.</li>
+ * <li>Within a phase, a listener can declare dependencies on other listeners of the same phase; it is called after its dependencies
+ * have finished. Listeners that do not depend on each other run in parallel, on a pool of worker threads.</li>
+ * <li>The clock thread paces the ticks on System.nanoTime(): it parks until shortly before the next tick, and then yields until the tick is due.
+ * Ticks are scheduled at a fixed rate; when the clock falls behind more than one tick, it continues from the current time, rather than
+ * sending a burst of ticks.</li>
+ * <li>For every listener, the duration of its time() calls is recorded in a TimingStats object, obtained by getTimingStats(listener).
+ * getTickStats() gives the duration of complete ticks.</li>
+ * </ol>
+ * initTime() calls are made on the clock thread, for all listeners in phase order, before the first tick.
+ * A RuntimeException thrown by a listener is logged; the tick continues with the remaining listeners.
+ */
+public class PhasedClock implements Clock
+{
+    private static Logger logger = LoggerFactory.getLogger(PhasedClock.class.getName());
+
+    /**
+     * The phases of a clock tick, in the order in which they run.
+     */
+    public enum Phase
+    {
+        INPUT, ANIMATION, PHYSICS, RENDER_HANDOFF
+    }
+
+    /**
+     * Timing statistics for a series of calls, in nanoseconds. Updated by one thread at a time, and readable from any thread.
+     */
+    public static final class TimingStats
+    {
+        private volatile long count;
+        private volatile long totalNanos;
+        private volatile long maxNanos;
+        private volatile long lastNanos;
+
+        synchronized void record(long nanos)
+        {
+            count++;
+            totalNanos += nanos;
+            lastNanos = nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+        }
+
+        synchronized void reset()
+        {
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            lastNanos = 0;
+        }
+
+        /** The number of recorded calls */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /** The total duration of the recorded calls */
+        public long getTotalNanos()
+        {
+            return totalNanos;
+        }
+
+        /** The duration of the longest call */
+        public long getMaxNanos()
+        {
+            return maxNanos;
+        }
+
+        /** The duration of the last call */
+        public long getLastNanos()
+        {
+            return lastNanos;
+        }
+
+        /** The average duration of the recorded calls, or 0 when there are none */
+        public double getAverageNanos()
+        {
+            long n = count;
+            return n == 0 ? 0 : (double) totalNanos / n;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("count=%d avg=%.3fms max=%.3fms last=%.3fms", count, getAverageNanos() / NANOSPERSMILLISECOND,
+                    (double) maxNanos / NANOSPERSMILLISECOND, (double) lastNanos / NANOSPERSMILLISECOND);
+        }
+    }
+
+    /* A registered listener, and its place in the dependency graph of its phase */
+    private final class Node implements Runnable
+    {
+        private final ClockListener listener;
+        private final Phase phase;
+        private final List<Node> dependencies = new ArrayList<Node>(); // within the same phase
+        private final TimingStats stats = new TimingStats();
+        private Node[] dependents = new Node[0]; // set by updateListeners, on the clock thread
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Node(ClockListener listener, Phase phase)
+        {
+            this.listener = listener;
+            this.phase = phase;
+        }
+
+        @Override
+        public void run()
+        {
+            long start = System.nanoTime();
+            try
+            {
+                listener.time(tickTime);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Exception in time() of clock listener " + listener + ": ", e);
+            }
+            finally
+            {
+                stats.record(System.nanoTime() - start);
+                for (Node dependent : dependents)
+                {
+                    if (dependent.pending.decrementAndGet() == 0)
+                    {
+                        workers.execute(dependent);
+                    }
+                }
+                if (phaseRemaining.decrementAndGet() == 0)
+                {
+                    phaseDone.release();
+                }
+            }
+        }
+    }
+
+    private Thread clockThread; // The Java Thread running the "clock" when "ticking".
+    private volatile long nanoTickSize = 0; // delay between the starts of clock ticks, in nanoseconds.
+    private volatile long spinNanos = DEFAULT_SPIN_NANOS; // time before a tick that is spent yielding rather than parked
+
+    private long currentTimeBaseTime = System.nanoTime();
+    private volatile long mediaTime; // current media time, in nanoseconds.
+    private volatile double rate = 1.0; // clock rate: determines ratio between system time rate and media time rate.
+
+    private volatile boolean listenersModified = false; // flag, denoting whether new clock listeners have been added
+    private final IdentityHashMap<ClockListener, Node> nodes = new IdentityHashMap<ClockListener, Node>(); // all added listeners
+    private final List<Node> newNodes = new ArrayList<Node>(); // added nodes, not yet in phaseNodes
+    private final List<Node> allNodes = new ArrayList<Node>(); // nodes in phaseNodes, in the order of addition
+    private Node[][] phaseNodes = new Node[Phase.values().length][0]; // per phase, the nodes used by the clock thread
+    private Node[][] phaseRoots = new Node[Phase.values().length][0]; // per phase, the nodes without dependencies
+
+    private final int nrOfThreads;
+    private ExecutorService workers;
+    private volatile double tickTime; // media time of the current tick, in seconds
+    private final AtomicInteger phaseRemaining = new AtomicInteger();
+    private final Semaphore phaseDone = new Semaphore(0);
+    private final TimingStats tickStats = new TimingStats();
+
+    private static final int INIT = 0; // constant denoting the initial clock state, when no clock Thread is running
+    private static final int RUNNING = 1; // constant denoting the state where the clock Thread is running, and sending clock ticks
+    private static final int PAUSED = 2; // constant denoting the state where the clock Thread is still active, but waiting.
+    private static final int TERMINATED = 3; // constant denoting the terminated state where the clock Thread is terminating.
+    private volatile int clockState = INIT;
+
+    private Semaphore runSem = new Semaphore(0);
+    private String threadName = null;
+
+    private static final long NANOSPERSMILLISECOND = 1000000L;
+    private static final double NANOSPERSECOND = 1E9;
+    private static final long DEFAULT_SPIN_NANOS = NANOSPERSMILLISECOND;
+
+    /**
+     * Create a new PhasedClock with tickSize == 0 (i.e. run as fast as possible), and one worker thread per available processor.
+     */
+    public PhasedClock()
+    {
+        this(0);
+    }
+
+    /**
+     * Create a new PhasedClock with specified tickSize, in milliseconds, and null Clock-Thread name
+     */
+    public PhasedClock(long tickSize)
+    {
+        this(tickSize, null);
+    }
+
+    /**
+     * Create a new PhasedClock with specified tickSize, in milliseconds, and specified Clock-Thread name
+     */
+    public PhasedClock(long tickSize, String threadName)
+    {
+        this(tickSize, threadName, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new PhasedClock with specified tickSize, in milliseconds, specified Clock-Thread name, and the specified number of
+     * worker threads for running listeners in parallel. The clock thread itself runs listeners as well.
+     * The Clock is not yet &quot;ticking&quot;, with mediaTime set to 0.
+     */
+    public PhasedClock(long tickSize, String threadName, int nrOfThreads)
+    {
+        if (nrOfThreads < 1) throw new IllegalArgumentException("nrOfThreads must be at least 1, was " + nrOfThreads);
+        this.threadName = threadName;
+        this.nrOfThreads = nrOfThreads;
+        mediaTime = 0;
+        clockState = INIT;
+        this.nanoTickSize = tickSize * NANOSPERSMILLISECOND;
+    }
+
+    /**
+     * Sets the delay between the starts of two clock ticks, in nanoseconds. 0 means: run as fast as possible.
+     */
+    public void setTickNanoseconds(long nanos)
+    {
+        nanoTickSize = nanos;
+    }
+
+    public long getTickNanoseconds()
+    {
+        return nanoTickSize;
+    }
+
+    /**
+     * Sets the time before a tick, in nanoseconds, that the clock thread yields rather than parks, to compensate for the
+     * granularity of the OS timer. Default: 1 ms.
+     */
+    public void setSpinNanoseconds(long nanos)
+    {
+        spinNanos = nanos;
+    }
+
+    /**
+     * Adds "listener" to the ANIMATION phase, without dependencies.
+     */
+    @Override
+    public void addClockListener(ClockListener listener)
+    {
+        addClockListener(listener, Phase.ANIMATION);
+    }
+
+    /**
+     * Adds "listener" to the specified phase. Within every tick, its time() call is made after those of the specified dependencies,
+     * which must have been added already, for the same phase or an earlier one (in the latter case the dependency is implied by the
+     * phase order). Listeners can be added while the clock is running; they take part from the next tick on.
+     */
+    public void addClockListener(ClockListener listener, Phase phase, ClockListener... dependencies)
+    {
+        synchronized (nodes)
+        {
+            if (nodes.containsKey(listener))
+            {
+                throw new IllegalArgumentException("Clock listener " + listener + " was added already");
+            }
+            Node node = new Node(listener, phase);
+            for (ClockListener dependency : dependencies)
+            {
+                Node dependencyNode = nodes.get(dependency);
+                if (dependencyNode == null)
+                {
+                    throw new IllegalArgumentException("Dependency " + dependency + " of clock listener " + listener + " has not been added");
+                }
+                if (dependencyNode.phase.compareTo(phase) > 0)
+                {
+                    throw new IllegalArgumentException("Dependency " + dependency + " of clock listener " + listener + " is in later phase "
+                            + dependencyNode.phase);
+                }
+                if (dependencyNode.phase == phase && !node.dependencies.contains(dependencyNode))
+                {
+                    node.dependencies.add(dependencyNode);
+                }
+            }
+            nodes.put(listener, node);
+            newNodes.add(node);
+            listenersModified = true;
+        }
+    }
+
+    /**
+     * The timing statistics of the time() calls of the specified listener, or null when the listener has not been added.
+     */
+    public TimingStats getTimingStats(ClockListener listener)
+    {
+        synchronized (nodes)
+        {
+            Node node = nodes.get(listener);
+            return node == null ? null : node.stats;
+        }
+    }
+
+    /**
+     * The timing statistics of complete clock ticks, i.e. of all phases, excluding the wait for the next tick.
+     */
+    public TimingStats getTickStats()
+    {
+        return tickStats;
+    }
+
+    /**
+     * Resets the timing statistics of the ticks and of all listeners.
+     */
+    public void resetTimingStats()
+    {
+        synchronized (nodes)
+        {
+            for (Node node : nodes.values())
+            {
+                node.stats.reset();
+            }
+        }
+        tickStats.reset();
+    }
+
+    /*
+     * Rebuilds the per phase node arrays, when new listeners have been added. Called on the clock thread, between ticks.
+     */
+    private void updateListeners()
+    {
+        if (!listenersModified) return;
+        synchronized (nodes)
+        {
+            allNodes.addAll(newNodes);
+            newNodes.clear();
+            listenersModified = false;
+        }
+        for (Phase phase : Phase.values())
+        {
+            List<Node> inPhase = new ArrayList<Node>();
+            List<Node> roots = new ArrayList<Node>();
+            for (Node node : allNodes)
+            {
+                if (node.phase != phase) continue;
+                inPhase.add(node);
+                if (node.dependencies.isEmpty()) roots.add(node);
+                List<Node> dependents = new ArrayList<Node>();
+                for (Node other : allNodes)
+                {
+                    if (other.dependencies.contains(node)) dependents.add(other);
+                }
+                node.dependents = dependents.toArray(new Node[dependents.size()]);
+            }
+            phaseNodes[phase.ordinal()] = inPhase.toArray(new Node[inPhase.size()]);
+            phaseRoots[phase.ordinal()] = roots.toArray(new Node[roots.size()]);
+        }
+    }
+
+    /**
+     * Gets this Clock's current media time in seconds.
+     * The result is a double, obtained by casting the internal long nanosecond representation.
+     */
+    @Override
+    public double getMediaSeconds()
+    {
+        return getMediaNanoseconds() / NANOSPERSECOND;
+    }
+
+    /**
+     * Sets the Clock's media time, specified in seconds.
+     * When the clock is already RUNNING, the effect is that the clock &apos;skips&apos; instantly to the new time.
+     */
+    public synchronized void setMediaSeconds(double mt)
+    {
+        mediaTime = (long) (mt * NANOSPERSECOND);
+    }
+
+    /**
+     * Gets this Clock's current media time in nanoseconds, specified by a long.
+     */
+    public long getMediaNanoseconds()
+    {
+        return mediaTime;
+    }
+
+    /**
+     * Start running, i.e. start &apos;ticking&apos; by performing time(currentTime) callbacks.
+     * This method can be called whenever the Clock is in its initial state, or when it is paused.
+     * A Clock that has terminated cannot be started again.
+     */
+    public synchronized void start()
+    {
+        if (clockState == TERMINATED || clockState == RUNNING) return;
+        if (clockState == INIT)
+        {
+            clockState = RUNNING;
+            startClockThread();
+        }
+        else
+        { // clockState == PAUSED
+            clockState = RUNNING;
+        }
+        runSem.release();
+    }
+
+    /**
+     * Put the clock in the paused state. In this state, the clock Thread is waiting, but not terminated.
+     * The clock can resume ticking by calling the start() method again.
+     * It is allowed to call pause when the clock is not yet running; in that case the clock Thread will be
+     * created, but starts waiting.
+     */
+    public synchronized void pause()
+    {
+        if (clockState == TERMINATED || clockState == PAUSED) return;
+        if (clockState == INIT)
+        {
+            clockState = PAUSED;
+            startClockThread(); // do not release runSem. This will have to be done by a later start() call
+        }
+        else
+        {
+            clockState = PAUSED;
+        }
+    }
+
+    /**
+     * Will stop the clock and will terminate the clock Thread and the worker threads, after the current tick.
+     */
+    public synchronized void terminate()
+    {
+        if (clockState == TERMINATED) return;
+        clockState = TERMINATED;
+        runSem.release(); // wake up a paused clock thread, so that it can terminate
+    }
+
+    /**
+     * Initializes the media time, broadcasts this media time to all clock listeners and puts the clock in the paused state, ready to start
+     */
+    public synchronized void init()
+    {
+        if (clockState != INIT) return;
+        pause();
+    }
+
+    /**
+     * Sets the temporal scale factor, as SystemClock.setRate.
+     */
+    public synchronized void setRate(double rate)
+    {
+        this.rate = rate;
+    }
+
+    /**
+     * Gets the current temporal scale factor.
+     */
+    public synchronized double getRate()
+    {
+        return rate;
+    }
+
+    /*
+     * Forwards the current media time, converted to seconds, to all registered ClockListeners, in phase order, on the clock thread.
+     */
+    private void initTime()
+    {
+        updateListeners();
+        double curTime = mediaTime / NANOSPERSECOND;
+        for (Node[] nodesInPhase : phaseNodes)
+        {
+            for (Node node : nodesInPhase)
+            {
+                node.listener.initTime(curTime);
+            }
+        }
+    }
+
+    /*
+     * Runs all phases for the current media time.
+     */
+    private void time() throws InterruptedException
+    {
+        updateListeners();
+        long start = System.nanoTime();
+        tickTime = mediaTime / NANOSPERSECOND;
+        for (int phase = 0; phase < phaseNodes.length; phase++)
+        {
+            runPhase(phaseNodes[phase], phaseRoots[phase]);
+        }
+        tickStats.record(System.nanoTime() - start);
+    }
+
+    /*
+     * Runs the nodes of one phase: the roots are started, and every node starts the dependents for which it was the last dependency.
+     * The first root runs on the clock thread itself. Returns when all nodes have finished.
+     */
+    private void runPhase(Node[] nodesInPhase, Node[] roots) throws InterruptedException
+    {
+        if (nodesInPhase.length == 0) return;
+        for (Node node : nodesInPhase)
+        {
+            node.pending.set(node.dependencies.size());
+        }
+        phaseRemaining.set(nodesInPhase.length);
+        for (int i = 1; i < roots.length; i++)
+        {
+            workers.execute(roots[i]);
+        }
+        roots[0].run();
+        phaseDone.acquire();
+    }
+
+    /*
+     * Waits until System.nanoTime() reaches the deadline: parked until spinNanos before the deadline, yielding after that.
+     */
+    private void waitUntil(long deadline) throws InterruptedException
+    {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > spinNanos)
+        {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.interrupted()) throw new InterruptedException();
+            remaining = deadline - System.nanoTime();
+        }
+        while (deadline - System.nanoTime() > 0)
+        {
+            Thread.yield();
+        }
+    }
+
+    // independent Thread that drives the clock
+    class ClockThread extends Thread
+    {
+        public ClockThread(String threadName)
+        {
+            super(threadName);
+        }
+
+        public ClockThread()
+        {
+            super();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                long prevTimeBaseTime = currentTimeBaseTime;
+                initTime();
+                while (clockState != TERMINATED)
+                {
+                    runSem.acquire();
+                    currentTimeBaseTime = System.nanoTime();
+                    long nextTick = currentTimeBaseTime;
+                    while (clockState == RUNNING)
+                    {
+                        time();
+                        long tickSize = nanoTickSize;
+                        nextTick += tickSize;
+                        long now = System.nanoTime();
+                        if (nextTick - now <= 0)
+                        {
+                            if (now - nextTick > tickSize)
+                            {
+                                nextTick = now; // more than a tick behind: do not try to catch up
+                            }
+                            Thread.yield();
+                        }
+                        else
+                        {
+                            waitUntil(nextTick);
+                        }
+                        prevTimeBaseTime = currentTimeBaseTime;
+                        currentTimeBaseTime = System.nanoTime();
+                        long timeBaseDelta = currentTimeBaseTime - prevTimeBaseTime;
+                        long mediaTimeDelta = (rate == 1.0) ? timeBaseDelta : (long) (rate * timeBaseDelta);
+                        mediaTime += mediaTimeDelta;
+                    }
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                clockState = TERMINATED;
+            } // just stop running when interrupted
+            finally
+            {
+                workers.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Creates the worker threads, and creates and starts a Thread that delivers clock ticks.
+     */
+    private void startClockThread()
+    {
+        final String workerPrefix = (threadName == null ? "PhasedClock" : threadName) + "-worker-";
+        workers = Executors.newFixedThreadPool(nrOfThreads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, workerPrefix + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (this.threadName == null)
+        {
+            clockThread = new ClockThread();
+        }
+        else
+        {
+            clockThread = new ClockThread(threadName);
+        }
+        clockThread.start();
+    }
+}
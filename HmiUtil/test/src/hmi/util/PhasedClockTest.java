@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * Copyright (c) 2015 University of Twente
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package hmi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the PhasedClock
+ */
+public class PhasedClockTest
+{
+    private PhasedClock clock;
+
+    /* Counts its time() calls, and checks that its predecessors have been called once more in the current tick */
+    private static class CountingListener implements ClockListener
+    {
+        final AtomicInteger count = new AtomicInteger();
+        final CountingListener[] predecessors;
+        final AtomicBoolean orderViolated;
+        final CountDownLatch ticks;
+
+        CountingListener(AtomicBoolean orderViolated, CountDownLatch ticks, CountingListener... predecessors)
+        {
+            this.orderViolated = orderViolated;
+            this.ticks = ticks;
+            this.predecessors = predecessors;
+        }
+
+        @Override
+        public void initTime(double initTime)
+        {
+        }
+
+        @Override
+        public void time(double currentTime)
+        {
+            int n = count.incrementAndGet();
+            for (CountingListener predecessor : predecessors)
+            {
+                if (predecessor.count.get() != n) orderViolated.set(true);
+            }
+            ticks.countDown();
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (clock != null) clock.terminate();
+    }
+
+    @Test(timeout = 10000)
+    public void testPhasesAndDependencies() throws InterruptedException
+    {
+        clock = new PhasedClock(0, "PhasedClockTest", 3);
+        AtomicBoolean orderViolated = new AtomicBoolean(false);
+        CountDownLatch ticks = new CountDownLatch(100);
+        CountDownLatch none = new CountDownLatch(0);
+        CountingListener input = new CountingListener(orderViolated, none);
+        CountingListener anim1 = new CountingListener(orderViolated, none, input);
+        CountingListener anim2 = new CountingListener(orderViolated, none, input);
+        CountingListener anim3 = new CountingListener(orderViolated, none, input, anim1, anim2);
+        CountingListener physics = new CountingListener(orderViolated, none, anim1, anim2, anim3);
+        CountingListener render = new CountingListener(orderViolated, ticks, physics);
+        clock.addClockListener(render, PhasedClock.Phase.RENDER_HANDOFF);
+        clock.addClockListener(physics, PhasedClock.Phase.PHYSICS);
+        clock.addClockListener(input, PhasedClock.Phase.INPUT);
+        clock.addClockListener(anim1);
+        clock.addClockListener(anim2, PhasedClock.Phase.ANIMATION, input);
+        clock.addClockListener(anim3, PhasedClock.Phase.ANIMATION, anim1, anim2);
+        clock.start();
+        ticks.await();
+        clock.terminate();
+        assertFalse(orderViolated.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testIndependentListenersRunInParallel() throws InterruptedException
+    {
+        clock = new PhasedClock(0, null, 1);
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicBoolean sequential = new AtomicBoolean(false);
+        final CountDownLatch ticks = new CountDownLatch(20);
+        for (int i = 0; i < 2; i++)
+        {
+            clock.addClockListener(new ClockListener()
+            {
+                @Override
+                public void initTime(double initTime)
+                {
+                }
+
+                @Override
+                public void time(double currentTime)
+                {
+                    try
+                    {
+                        barrier.await(2, TimeUnit.SECONDS);
+                    }
+                    catch (Exception e)
+                    {
+                        sequential.set(true);
+                    }
+                    ticks.countDown();
+                }
+            });
+        }
+        clock.start();
+        ticks.await();
+        assertFalse(sequential.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimingStatsAndPacing() throws InterruptedException
+    {
+        clock = new PhasedClock(10);
+        final CountDownLatch ticks = new CountDownLatch(21);
+        final CountDownLatch checked = new CountDownLatch(1);
+        ClockListener sleeper = new ClockListener()
+        {
+            @Override
+            public void initTime(double initTime)
+            {
+            }
+
+            @Override
+            public void time(double currentTime)
+            {
+                Stopwatch.delay(2);
+            }
+        };
+        clock.addClockListener(sleeper, PhasedClock.Phase.PHYSICS);
+        // In tick 21, after the sleeper's phase, 20 ticks are complete; the clock thread is held there, so that no stats are
+        // recorded while they are checked
+        ClockListener holder = new ClockListener()
+        {
+            @Override
+            public void initTime(double initTime)
+            {
+            }
+
+            @Override
+            public void time(double currentTime)
+            {
+                ticks.countDown();
+                if (ticks.getCount() == 0)
+                {
+                    try
+                    {
+                        checked.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        clock.addClockListener(holder, PhasedClock.Phase.RENDER_HANDOFF);
+        long start = System.nanoTime();
+        clock.start();
+        ticks.await();
+        long elapsed = System.nanoTime() - start;
+        try
+        {
+            PhasedClock.TimingStats stats = clock.getTimingStats(sleeper);
+            assertEquals(21, stats.getCount());
+            assertTrue(stats.getAverageNanos() >= 2000000);
+            assertTrue(stats.getMaxNanos() >= stats.getLastNanos());
+            assertEquals(20, clock.getTickStats().getCount());
+            assertTrue(elapsed >= 20 * 10000000L); // 21 ticks, 10 ms apart
+        }
+        finally
+        {
+            checked.countDown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testExceptionDoesNotStopClock() throws InterruptedException
+    {
+        clock = new PhasedClock();
+        final CountDownLatch ticks = new CountDownLatch(10);
+        ClockListener failing = new ClockListener()
+        {
+            @Override
+            public void initTime(double initTime)
+            {
+            }
+
+            @Override
+            public void time(double currentTime)
+            {
+                throw new RuntimeException("expected by PhasedClockTest");
+            }
+        };
+        clock.addClockListener(failing, PhasedClock.Phase.INPUT);
+        clock.addClockListener(new CountingListener(new AtomicBoolean(), ticks), PhasedClock.Phase.ANIMATION, failing);
+        clock.start();
+        ticks.await();
+        assertEquals(0, ticks.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDependencyInLaterPhase()
+    {
+        clock = new PhasedClock();
+        CountingListener physics = new CountingListener(new AtomicBoolean(), new CountDownLatch(0));
+        clock.addClockListener(physics, PhasedClock.Phase.PHYSICS);
+        clock.addClockListener(new CountingListener(new AtomicBoolean(), new CountDownLatch(0)), PhasedClock.Phase.INPUT, physics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency()
+    {
+        clock = new PhasedClock();
+        clock.addClockListener(new CountingListener(new AtomicBoolean(), new CountDownLatch(0)), PhasedClock.Phase.INPUT,
+                new CountingListener(new AtomicBoolean(), new CountDownLatch(0)));
+    }
+}